@@ -16,4 +16,5 @@ module org.dionthorn.isekairpg {
     opens org.dionthorn.isekairpg.groups to javafx.fxml;
     exports org.dionthorn.isekairpg.items;
     opens org.dionthorn.isekairpg.items to javafx.fxml;
+    exports org.dionthorn.isekairpg.persistence;
 }
\ No newline at end of file
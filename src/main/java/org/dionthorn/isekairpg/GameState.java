@@ -1,18 +1,36 @@
 package org.dionthorn.isekairpg;
 
 import javafx.scene.control.Alert;
-import org.dionthorn.isekairpg.characters.AbstractCharacter;
+import org.dionthorn.isekairpg.characters.BirthdayIndex;
+import org.dionthorn.isekairpg.characters.CharacterTable;
 import org.dionthorn.isekairpg.characters.NPC;
+import org.dionthorn.isekairpg.characters.NPCScheduler;
+import org.dionthorn.isekairpg.characters.ParallelTick;
 import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.characters.RelationshipStore;
+import org.dionthorn.isekairpg.characters.SimulationLod;
 import org.dionthorn.isekairpg.groups.Nation;
+import org.dionthorn.isekairpg.persistence.Journal;
+import org.dionthorn.isekairpg.persistence.SaveFile;
+import org.dionthorn.isekairpg.persistence.Snapshot;
+import org.dionthorn.isekairpg.persistence.WorldImage;
 import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
 import org.dionthorn.isekairpg.worlds.Area;
+import org.dionthorn.isekairpg.worlds.LocationId;
 import org.dionthorn.isekairpg.worlds.Place;
-import org.dionthorn.isekairpg.worlds.Region;
+import org.dionthorn.isekairpg.worlds.PlaceIndex;
 import org.dionthorn.isekairpg.worlds.World;
+import org.dionthorn.isekairpg.worlds.WorldCensus;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The GameState is the authority for all game related variables that determine 'state'
@@ -24,12 +42,12 @@ public final class GameState {
     // actionStrings from when things happen to the player or player does things
     public static ArrayList<String> actionStrings = new ArrayList<>();
     // time tracking variables
-    public static final int DAYS_PER_MONTH = 30; // 360 days a year
+    // 30 days per 12 months = 360 days per year therefore each of the 4 seasons is ~90 days
+    // winter in tundra could kill you, summer in desert etc.
+    public static final int HOURS_PER_DAY = 24;
+    public static final int DAYS_PER_MONTH = 30; // 360 days a year, mostly because the author is lazy.
     public static final int MONTHS_PER_YEAR = 12;
-    private int currentYear = 1;
-    private int currentMonth = 1;
-    private int currentDay = 1;
-    private int currentHour = 1;
+    private long totalHours = 0; // hours since the first hour of year 1, the calendar is derived from it
     // Game variables
     private World world;
     private Player player;
@@ -38,19 +56,36 @@ public final class GameState {
     private final ArrayList<Area> communities = new ArrayList<>(); // hamlet, village, town
     private final ArrayList<Area> dungeons = new ArrayList<>();    // dungeon
     private final ArrayList<Area> castles = new ArrayList<>();     // castle
-    // final Place reference lists, clear the list to reuse
-    private final ArrayList<Place> homes = new ArrayList<>();       // home places
-    private final ArrayList<Place> lumberjacks = new ArrayList<>(); // wood working places
-    private final ArrayList<Place> blacksmiths = new ArrayList<>(); // metal working places
-    private final ArrayList<Place> farmers = new ArrayList<>();     // farming places
-    private final ArrayList<Place> fishers = new ArrayList<>();     // fishing places
-    private final ArrayList<Place> hunters = new ArrayList<>();     // hunting places
-    private final ArrayList<Place> miners = new ArrayList<>();      // mining places
-    private final ArrayList<Place> shops = new ArrayList<>();       // shopping places
-    private final ArrayList<Place> crypts = new ArrayList<>();      // graveyard places
+    // homes, work places, shops and graveyards by Place.Type, rebuilt with the World
+    private PlaceIndex placeIndex;
     // final NPC reference lists, clear the list to reuse
     private final ArrayList<NPC> allNPCs = new ArrayList<>();    // every NPC in the world
     private final ArrayList<Nation> nations = new ArrayList<>(); // every Nation in the world
+    // plan NPC hours in parallel then commit them in order, see ParallelTick
+    private boolean parallelTick = Boolean.getBoolean("isekairpg.parallelTick");
+    // only NPCs that change this hour are ticked, built on the first tick after the NPCs are replaced
+    private NPCScheduler npcScheduler;
+    // only Regions this close to the Player tick every hour, the rest catch up when near, negative ticks everywhere
+    // far NPCs don't socialize while they catch up so it is only on by default in Worlds with a memory budget,
+    // ticking every NPC there would generate every Region again each hour, see SimulationLod
+    private static final int DEFAULT_LOD_RADIUS = Integer.MIN_VALUE; // isekairpg.lodRadius was not set
+    private static final int BUDGET_LOD_RADIUS = 1;
+    private int lodRadius = Integer.getInteger("isekairpg.lodRadius", DEFAULT_LOD_RADIUS);
+    private SimulationLod lod;
+    // characters by birthday so only the ones born today are aged, built on the first tick like the scheduler
+    private BirthdayIndex birthdayIndex;
+
+    private final CharacterTable characterTable = new CharacterTable();
+    private final RelationshipStore relationshipStore = new RelationshipStore(characterTable);
+    // autosave, every change is journaled next to the last checkpoint save while it is on
+    private Journal journal;
+    private Path autosavePath;
+    private final long journalLimitBytes = Long.getLong("isekairpg.journalLimitMB", 64) * 1024 * 1024;
+    // background save, the game copies what it changes into the Snapshot until the writer is done with it
+    private volatile Snapshot snapshot;
+    private Thread snapshotWriter;
+    private volatile String saveFailure; // set by the writer threads, reported on the console
+    private volatile boolean checkpointFailed; // the journal follows a checkpoint that is not on disk
 
     /**
      * The user creates a Player Character and starts a new game
@@ -74,118 +109,164 @@ public final class GameState {
     }
 
     /**
-     * Will create a new World and populate all relevant lists
+     * Will create a new World from a random seed and populate all relevant lists
      * @param worldSize World.Size representing the size of the World to generate
+     * @param player Player representing the users character to place in the World
      */
     public void createWorld(World.Size worldSize, Player player) {
-        world = new World(worldSize);
-        world.create();
+        createWorld(worldSize, player, RandomStreams.current().nextLong());
+    }
+
+    /**
+     * Will create a new World and populate all relevant lists, the same seed always creates the same World
+     * @param worldSize World.Size representing the size of the World to generate
+     * @param player Player representing the users character to place in the World
+     * @param seed long representing the seed of the World
+     */
+    public void createWorld(World.Size worldSize, Player player, long seed) {
+        createWorld(worldSize, player, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Will create a new World generating and indexing it on the provided pool, or on the calling thread if it is null
+     * the game is the same for the same seed no matter how the work is split
+     * @param worldSize World.Size representing the size of the World to generate
+     * @param player Player representing the users character to place in the World
+     * @param seed long representing the seed of the World
+     * @param pool ForkJoinPool representing the pool to generate on, null to generate sequentially
+     */
+    public void createWorld(World.Size worldSize, Player player, long seed, ForkJoinPool pool) {
+        // everything rolled on the game thread from here on comes from the seed
+        RandomStreams.reseed(seed);
+        stopAutosave();
+        closeRegionSource();
+        world = new World(worldSize, seed);
+        world.create(pool);
+        startGame(player, pool);
+    }
+
+    /**
+     * Will start a new game in the World stored in a world image with the NPCs and Nations stored with it
+     * the place index and census are read from the image too so nothing walks the World,
+     * an image written as a game started matches the game createWorld(World.Size, Player, long) starts from its seed
+     * @param worldImage Path representing a world image written with writeWorldImage
+     * @param player Player representing the users character to place in the World
+     * @throws IOException if the world image can't be opened
+     */
+    public void createWorld(Path worldImage, Player player) throws IOException {
+        awaitSnapshot();
+        WorldImage image = WorldImage.open(worldImage);
+        PlaceIndex storedIndex;
+        try {
+            storedIndex = image.restore(this, player);
+        } catch(IOException | RuntimeException e) {
+            image.close();
+            throw e;
+        }
+        releaseBuried();
         this.player = player;
+        placeIndex = storedIndex;
+        findSettlements();
+        printCensus(placeIndex.getCensus());
+        // the Player starts the same way it would in the generated World
+        RandomStreams.reseed(image.getSeed());
+        placePlayer();
+        RandomStreams.resume(image.getSeed(), totalHours);
+        System.out.println("\nCharacters Loaded: " + characterTable.getCount());
+        System.out.println("##### ##### ##### ##### ##### #####");
+    }
+
+    /**
+     * Will write the World of the game with its place index, NPCs and Nations to a world image
+     * a new game started from it with createWorld(Path, Player) gets the World as it is now
+     * @param path Path representing the world image file, replaced once the new image is complete
+     * @throws IOException if the world image can't be written
+     */
+    public void writeWorldImage(Path path) throws IOException {
+        awaitSnapshot();
+        WorldImage.write(this, path);
+    }
+
+    /**
+     * Will index the new World then place the Player, Nations and NPCs
+     * @param player Player representing the users character to place in the World
+     * @param pool ForkJoinPool representing the pool to index on, null to index on the calling thread
+     */
+    private void startGame(Player player, ForkJoinPool pool) {
+        this.player = player;
+
+        // a new World starts on the first hour of the first day
+        totalHours = 0;
 
         // clear lists
         allNPCs.clear();
+        npcScheduler = null;
+        lod = null;
+        birthdayIndex = null;
         communities.clear();
         dungeons.clear();
         castles.clear();
-        homes.clear();
-        lumberjacks.clear();
-        farmers.clear();
-        fishers.clear();
-        miners.clear();
-        blacksmiths.clear();
-        hunters.clear();
-        shops.clear();
-        crypts.clear();
         nations.clear();
-        AbstractCharacter.resetCharacterCount();
+        placeIndex = null;
+        characterTable.clear();
+        relationshipStore.clear();
+        characterTable.add(player); // created before the new game started
         System.gc();
 
-        // put useful places into master reference lists
-        for(Region[] regionLayer: world.getRegions()) {
-            for(Region region: regionLayer) {
-                for(Area[] areaLayer: region.getAreas()) {
-                    for(Area area: areaLayer) {
-                        if(area.getSetting() == Area.Setting.HAMLET ||
-                                area.getSetting() == Area.Setting.VILLAGE ||
-                                area.getSetting() == Area.Setting.TOWN) {
-                            communities.add(area);
-                        } else if(area.getSetting() == Area.Setting.CASTLE) {
-                            castles.add(area);
-                        } else if(area.getSetting() == Area.Setting.DUNGEON) {
-                            dungeons.add(area);
-                        }
-                        for(Place[] placeLayer: area.getPlaces()) {
-                            for(Place place: placeLayer) {
-                                if(place.getType() == Place.Type.INN) {
-                                    homes.add(place);
-                                } else if(place.getType() == Place.Type.FARM) {
-                                    farmers.add(place);
-                                } else if(place.getType() == Place.Type.FISHERY) {
-                                    fishers.add(place);
-                                } else if(place.getType() == Place.Type.WOODLAND) {
-                                    lumberjacks.add(place);
-                                } else if(place.getType() == Place.Type.MINE) {
-                                    miners.add(place);
-                                } else if(place.getType() == Place.Type.TRADER) {
-                                    shops.add(place);
-                                } else if(place.getType() == Place.Type.BLACKSMITH) {
-                                    blacksmiths.add(place);
-                                } else if(place.getType() == Place.Type.RESERVE) {
-                                    hunters.add(place);
-                                } else if(place.getType() == Place.Type.GRAVEYARD) {
-                                    crypts.add(place);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        // output list sizes to console
-        System.out.println("##### ##### ##### ##### ##### #####");
-        System.out.println("Communities Generated: " + communities.size());
-        System.out.println("    Castles Generated: " + castles.size());
-        System.out.println("   Dungeons Generated: " + dungeons.size());
-        System.out.println("     Houses Generated: " + homes.size());
-        System.out.println("      Farms Generated: " + farmers.size());
-        System.out.println("    Fishers Generated: " + fishers.size());
-        System.out.println("  Foresters Generated: " + lumberjacks.size());
-        System.out.println("      Mines Generated: " + miners.size());
-        System.out.println("    Hunters Generated: " + hunters.size());
-        System.out.println("Blacksmiths Generated: " + blacksmiths.size());
-        System.out.println("    Traders Generated: " + shops.size());
-        System.out.println("     Crypts Generated: " + crypts.size());
-        System.out.println("\nRegions Count: " + world.getRegionSize() * world.getRegionSize());
-        int areasCount = 0;
-        for(Region[] regionLayer: world.getRegions()) {
-            for(Region region: regionLayer) {
-                areasCount += region.getAreaSize() * region.getAreaSize();
-            }
-        }
-        System.out.println("Areas   Count: " + areasCount);
-        int placesCount = 0;
-        for(Region[] regionLayer: world.getRegions()) {
-            for(Region region: regionLayer) {
-                for(Area[] areaLayer: region.getAreas()) {
-                    for(Area area: areaLayer) {
-                        placesCount += area.getPlaceSize() * area.getPlaceSize();
-                    }
-                }
-            }
-        }
-        System.out.println("Places  Count: " + placesCount);
+        // index useful places and count everything in one pass over the World
+        placeIndex = PlaceIndex.build(world, pool);
+        WorldCensus census = placeIndex.getCensus();
+        findSettlements();
+        printCensus(census);
 
         placePlayer();
         placeNations();
         placeDungeons();
         placeNPCs();
+        // only needed while placing, a held Area would stay in memory after its Region is evicted
+        communities.clear();
+        dungeons.clear();
+        castles.clear();
+        // rolls after the start continue the same way in a game started from a world image of it
+        RandomStreams.resume(world.getSeed(), totalHours);
 
-        System.out.println("\nCharacters Generated: " + AbstractCharacter.getCharacterCount());
-        System.out.println("Places per Character: " + (placesCount/AbstractCharacter.getCharacterCount()));
+        System.out.println("\nCharacters Generated: " + characterTable.getCount());
+        System.out.println("Places per Character: " + (census.getPlaceCount() / characterTable.getCount()));
         System.out.println("##### ##### ##### ##### ##### #####");
     }
 
+    /**
+     * Will fill the communities, castles and dungeons from the place index
+     */
+    private void findSettlements() {
+        communities.addAll(placeIndex.getAreas(EnumSet.of(Area.Setting.HAMLET, Area.Setting.VILLAGE, Area.Setting.TOWN)));
+        castles.addAll(placeIndex.getAreas(EnumSet.of(Area.Setting.CASTLE)));
+        dungeons.addAll(placeIndex.getAreas(EnumSet.of(Area.Setting.DUNGEON)));
+    }
+
+    /**
+     * Will output the census to console
+     * @param census WorldCensus representing the counts of the World
+     */
+    private void printCensus(WorldCensus census) {
+        System.out.println("##### ##### ##### ##### ##### #####");
+        System.out.println("Communities Generated: " + census.getCommunityCount());
+        System.out.println("    Castles Generated: " + census.getAreaCount(Area.Setting.CASTLE));
+        System.out.println("   Dungeons Generated: " + census.getAreaCount(Area.Setting.DUNGEON));
+        System.out.println("     Houses Generated: " + census.getPlaceCount(Place.Type.INN));
+        System.out.println("      Farms Generated: " + census.getPlaceCount(Place.Type.FARM));
+        System.out.println("    Fishers Generated: " + census.getPlaceCount(Place.Type.FISHERY));
+        System.out.println("  Foresters Generated: " + census.getPlaceCount(Place.Type.WOODLAND));
+        System.out.println("      Mines Generated: " + census.getPlaceCount(Place.Type.MINE));
+        System.out.println("    Hunters Generated: " + census.getPlaceCount(Place.Type.RESERVE));
+        System.out.println("Blacksmiths Generated: " + census.getPlaceCount(Place.Type.BLACKSMITH));
+        System.out.println("    Traders Generated: " + census.getPlaceCount(Place.Type.TRADER));
+        System.out.println("     Crypts Generated: " + census.getPlaceCount(Place.Type.GRAVEYARD));
+        System.out.println("\nRegions Count: " + census.getRegionCount());
+        System.out.println("Areas   Count: " + census.getAreaCount());
+        System.out.println("Places  Count: " + census.getPlaceCount());
+    }
+
     /**
      * Will place the Player object in the World
      */
@@ -242,19 +323,17 @@ public final class GameState {
             int randY = chanceDie.roll() - 1;
             kingsRoom = castle.getPlace(randX, randY);
             kingsRoom.setType(Place.Type.THRONEROOM); // change this room to a KING type
-            currentKing = new NPC(Dice.d12, kingsRoom);
-            allNPCs.add(currentKing);
+            currentKing = addNPC(new NPC(Dice.d12, kingsRoom));
 
             // create the new Nation group
-            Nation newNation = new Nation("Kingdom of " + currentKing.getLastName(), currentKing, castle);
+            Nation newNation = new Nation("Kingdom of " + currentKing.getLastName(), currentKing, LocationId.of(castle));
             nations.add(newNation);
 
             // once we place the king we should spawn Knight NPCs in all the other rooms
             for(Place[] placeLayer: castle.getPlaces()) {
                 for(Place place: placeLayer) {
                     if(place.getType() != Place.Type.THRONEROOM) {
-                        NPC knight = new NPC(Dice.d12, place);
-                        allNPCs.add(knight);
+                        NPC knight = addNPC(new NPC(Dice.d12, place));
                         newNation.addCitizen(knight);
                     }
                 }
@@ -262,90 +341,376 @@ public final class GameState {
         }
     }
 
+    /**
+     * Will add an NPC that was just constructed to the CharacterTable and the NPCs of the game
+     * @param npc NPC representing the new NPC
+     * @return NPC representing the same NPC
+     */
+    private NPC addNPC(NPC npc) {
+        characterTable.add(npc);
+        allNPCs.add(npc);
+        return npc;
+    }
+
     private void placeDungeons() {
 
     }
 
     /**
-     * Will go through the entire communities list and place proper NPCs where they are needed.
+     * Will go through the homes and work places of every community and place proper NPCs where they are needed,
+     * the handles of each Type come from the place index so the Places in between are never visited
      */
     private void placeNPCs() {
-        // spawn NPCs in homes and work places
-        for(Area community: communities) {
-            for(Place[] placeLayer: community.getPlaces()) {
-                for(Place place: placeLayer) {
-                    if(place.getType() == Place.Type.INN) {
-                        allNPCs.add(new NPC(Dice.d4, place));
-                    } else if(place.getType() == Place.Type.FARM) {
-                        allNPCs.add(new NPC(Dice.d8, place));
-                    } else if(place.getType() == Place.Type.BLACKSMITH) {
-                        allNPCs.add(new NPC(Dice.d10, place));
-                    } else if(place.getType() == Place.Type.WOODLAND) {
-                        allNPCs.add(new NPC(Dice.d10, place));
-                    } else if(place.getType() == Place.Type.RESERVE) {
-                        allNPCs.add(new NPC(Dice.d8, place));
-                    } else if(place.getType() == Place.Type.FISHERY) {
-                        allNPCs.add(new NPC(Dice.d6, place));
-                    } else if(place.getType() == Place.Type.MINE) {
-                        allNPCs.add(new NPC(Dice.d10, place));
-                    } else if(place.getType() == Place.Type.TRADER) {
-                        allNPCs.add(new NPC(Dice.d4, place));
-                    } else if(place.getType() == Place.Type.GRAVEYARD) {
-                        allNPCs.add(new NPC(Dice.d8, place));
+        long[] communityIds = new long[communities.size()];
+        for(int i = 0; i < communityIds.length; i++) {
+            communityIds[i] = LocationId.of(communities.get(i)); // in World order so already sorted
+        }
+        // merge the handles of every Type so NPCs are spawned in World order, the order the dice are rolled in
+        Place.Type[] types = PlaceIndex.INDEXED_TYPES.toArray(new Place.Type[0]);
+        int[] cursors = new int[types.length];
+        while(true) {
+            int next = -1;
+            long nextHandle = Long.MAX_VALUE;
+            for(int i = 0; i < types.length; i++) {
+                if(cursors[i] < placeIndex.size(types[i])) {
+                    long handle = placeIndex.getHandle(types[i], cursors[i]);
+                    if(handle < nextHandle) {
+                        nextHandle = handle;
+                        next = i;
                     }
                 }
             }
+            if(next == -1) {
+                break;
+            }
+            cursors[next]++;
+            if(Arrays.binarySearch(communityIds, LocationId.toArea(nextHandle)) < 0) {
+                continue; // outside the communities
+            }
+            Place place = placeIndex.getPlace(nextHandle);
+            switch(place.getType()) {
+                case INN, TRADER -> addNPC(new NPC(Dice.d4, place));
+                case FISHERY -> addNPC(new NPC(Dice.d6, place));
+                case FARM, RESERVE, GRAVEYARD -> addNPC(new NPC(Dice.d8, place));
+                case BLACKSMITH, WOODLAND, MINE -> addNPC(new NPC(Dice.d10, place));
+                default -> { } // changed since the index was built
+            }
         }
     }
 
     /**
-     * advance the game 1 hour
+     * Will replace the game with a loaded one, used by SaveFile.restore(GameState)
+     * @param world World representing the loaded World
+     * @param player Player representing the loaded Player
+     * @param npcs List<NPC> representing every loaded NPC
+     * @param nations List<Nation> representing every loaded Nation
+     * @param year int representing the loaded game year
+     * @param month int representing the loaded game month
+     * @param day int representing the loaded game day
+     * @param hour int representing the loaded game hour
      */
-    public void tick() {
-        currentHour++;
-        // 30 days per 12 months = 360 days per year therefore each of the 4 seasons is ~90 days
-        // winter in tundra could kill you, summer in desert etc.
-        // boring old earth sameness
-        int HOURS_PER_DAY = 24;
-        if(currentHour > HOURS_PER_DAY) {
-            currentHour = 1;
-            currentDay++;
-            // 30 days per month in this isekai, mostly because the author is lazy.
-            if(currentDay > DAYS_PER_MONTH) {
-                currentDay = 1;
-                currentMonth++;
-                // boring old earth sameness
-                if(currentMonth > MONTHS_PER_YEAR) {
-                    currentMonth = 1;
-                    currentYear++;
+    public void restore(World world, Player player, List<NPC> npcs, List<Nation> nations,
+                        int year, int month, int day, int hour) {
+        stopAutosave();
+        closeRegionSource();
+        this.world = world;
+        this.player = player;
+        totalHours = totalHoursOf(year, month, day, hour);
+        battleNPC = null;
+        allNPCs.clear();
+        allNPCs.addAll(npcs);
+        npcScheduler = null;
+        lod = null;
+        birthdayIndex = null;
+        this.nations.clear();
+        this.nations.addAll(nations);
+        // the place index needs every Region so it is only built if something asks for it
+        communities.clear();
+        dungeons.clear();
+        castles.clear();
+        placeIndex = null;
+    }
+
+    /**
+     * Will save the game, the file is replaced only once the new save is complete
+     * @param path Path representing the save file
+     * @throws IOException if the save file can't be written
+     */
+    public void saveGame(Path path) throws IOException {
+        awaitSnapshot();
+        boolean journaled = journal != null && path.equals(autosavePath);
+        if(journaled) {
+            stopAutosave(); // the journal must restart from the new checkpoint
+        }
+        SaveFile.write(this, path);
+        // continue from the same point in the random stream a load of this save starts from
+        RandomStreams.resume(world.getSeed(), getTotalHours());
+        if(journaled) {
+            startJournal(path);
+        }
+    }
+
+    /**
+     * Will save the game as it is now on a background thread while play continues, see Snapshot
+     * waits for a background save that is still being written first
+     * @param path Path representing the save file, replaced once the new save is complete
+     * @throws IOException if the autosave journal can't be restarted
+     */
+    public void saveGameInBackground(Path path) throws IOException {
+        if(journal != null && path.equals(autosavePath)) {
+            checkpoint(path);
+        } else {
+            writeInBackground(path, null, false);
+        }
+    }
+
+    /**
+     * Will capture a Snapshot and write it on the writer thread
+     * @param path Path representing the save file
+     * @param finished Journal representing the journal the save replaces, closed by the writer, null if none
+     * @param promote boolean representing true if the save is the checkpoint of the next journal
+     */
+    private void writeInBackground(Path path, Journal finished, boolean promote) {
+        awaitSnapshot();
+        Snapshot captured = Snapshot.capture(this);
+        snapshot = captured;
+        // continue from the same point in the random stream a load of this save starts from
+        RandomStreams.resume(world.getSeed(), getTotalHours());
+        snapshotWriter = new Thread(() -> {
+            try {
+                if(finished != null) {
+                    finished.close();
                 }
+                SaveFile.write(captured, path);
+                if(promote) {
+                    Journal.promote(path); // the checkpoint is on disk so its journal takes over
+                }
+            } catch(IOException e) {
+                checkpointFailed = promote;
+                reportSaveFailure("Background save to " + path + " failed: " + e.getMessage());
+            } finally {
+                snapshot = null;
+            }
+        }, "snapshot-writer");
+        snapshotWriter.setDaemon(true);
+        snapshotWriter.start();
+    }
+
+    /**
+     * Will wait for a background save that is still being written
+     */
+    private void awaitSnapshot() {
+        if(snapshotWriter != null) {
+            try {
+                snapshotWriter.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            snapshotWriter = null;
+        }
+    }
+
+    /**
+     * Will check if a background save is still being written
+     * @return boolean representing true while the writer thread is running
+     */
+    public boolean isSaving() { return snapshotWriter != null && snapshotWriter.isAlive(); }
+
+    /**
+     * Will provide why the last background save or autosave failed and forget it, so it is reported once
+     * @return String representing the failure, null if nothing failed since the last call
+     */
+    public String takeSaveFailure() {
+        String failure = saveFailure;
+        saveFailure = null;
+        return failure;
+    }
+
+    private void reportSaveFailure(String failure) {
+        System.err.println(failure);
+        saveFailure = failure;
+    }
+
+    /**
+     * Will provide the Snapshot of the background save being written
+     * @return Snapshot representing the open Snapshot, null if no background save is being written
+     */
+    public Snapshot getSnapshot() { return snapshot; }
+
+    /**
+     * Will load a saved game replacing the current one, Regions are read from the file as they are visited
+     * @param path Path representing the save file
+     * @throws IOException if the save file can't be read or is corrupt
+     */
+    public void loadGame(Path path) throws IOException {
+        awaitSnapshot();
+        SaveFile saveFile = SaveFile.open(path);
+        try {
+            saveFile.restore(this);
+        } catch(IOException | RuntimeException e) {
+            saveFile.close();
+            throw e;
+        }
+        releaseBuried();
+    }
+
+    /**
+     * Will take back the IDs of the bodies collected before the game was saved, IDs are handed out again on load
+     */
+    private void releaseBuried() {
+        for(NPC npc: allNPCs) {
+            if(!npc.isAlive() && npc.getCurrentPlaceId() == LocationId.NONE) {
+                characterTable.release(npc);
+            }
+        }
+        characterTable.recycle(relationshipStore, npcScheduler);
+    }
+
+    /**
+     * Will write a checkpoint save in the background then journal every change after it, see Journal
+     * the journal is compacted into a new checkpoint whenever it grows past isekairpg.journalLimitMB (64 MB)
+     * @param path Path representing the checkpoint save file, the journal is written beside it
+     * @throws IOException if the journal can't be created
+     */
+    public void startAutosave(Path path) throws IOException {
+        stopAutosave();
+        checkpoint(path);
+    }
+
+    /**
+     * Will start the next journal then write the checkpoint it follows in the background,
+     * the previous checkpoint and journal recover the game until the new checkpoint is on disk, see Journal.nextPathOf
+     * @param path Path representing the checkpoint save file
+     * @throws IOException if the next journal can't be created
+     */
+    private void checkpoint(Path path) throws IOException {
+        awaitSnapshot();
+        Journal finished = journal;
+        journal = Journal.start(Journal.nextPathOf(path), this, journalLimitBytes);
+        autosavePath = path;
+        writeInBackground(path, finished, true);
+    }
+
+    /**
+     * Will start journaling after a checkpoint that was just written
+     * @param path Path representing the checkpoint save file
+     * @throws IOException if the journal can't be created
+     */
+    private void startJournal(Path path) throws IOException {
+        Files.deleteIfExists(Journal.nextPathOf(path)); // the checkpoint holds everything it recorded
+        journal = Journal.start(Journal.pathOf(path), this, journalLimitBytes);
+        autosavePath = path;
+    }
+
+    /**
+     * Will stop journaling, the checkpoint and journal on disk still recover the game up to the last tick
+     * waits for a background save that is still being written first
+     */
+    public void stopAutosave() {
+        awaitSnapshot();
+        if(journal != null) {
+            try {
+                journal.close();
+            } catch(IOException e) {
+                reportSaveFailure("Autosave stopped, the journal could not be written: " + e.getMessage());
+            }
+            journal = null;
+            autosavePath = null;
+            checkpointFailed = false;
+        }
+    }
+
+    /**
+     * Will load the last checkpoint and replay its journal, used to recover a game after a crash
+     * then continues autosaving from a new checkpoint
+     * @param path Path representing the checkpoint save file
+     * @throws IOException if the checkpoint or journal can't be read
+     */
+    public void recoverGame(Path path) throws IOException {
+        loadGame(path);
+        // the next journal continues where the first one ends if a checkpoint was being written
+        for(Path journalPath: List.of(Journal.pathOf(path), Journal.nextPathOf(path))) {
+            long totalHours = Journal.replay(journalPath, this);
+            if(totalHours >= 0) {
+                setTotalHours(totalHours);
             }
         }
-        // tick player for aging logic
-        player.tick();
+        releaseBuried(); // bodies collected since the checkpoint
+        saveGame(path);
+        startJournal(path);
+    }
+
+    /**
+     * Will provide the autosave journal, the game records its changes to it while autosave is on
+     * @return Journal representing the open journal, null if autosave is off
+     */
+    public Journal getJournal() { return journal; }
+
+    /**
+     * Will close the files of the current World, the file it reads its Regions from if it was loaded
+     * and the file its changed Areas were spilled to
+     */
+    private void closeRegionSource() {
+        if(world != null && world.getRegionSource() instanceof AutoCloseable source) {
+            try {
+                source.close();
+            } catch(Exception e) {
+                System.err.println("Could not close " + source + ": " + e.getMessage());
+            }
+        }
+        if(world != null) {
+            try {
+                world.getDirtyRegionStore().close();
+            } catch(IOException e) {
+                System.err.println("Could not delete changed Areas: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * advance the game 1 hour
+     */
+    public void tick() {
+        totalHours++;
+        // age the characters born today, those reaching their maxAge die before acting this hour
+        if(getCurrentHour() == 1) {
+            birthdays().celebrate(getCurrentMonth(), getCurrentDay());
+        }
         // perform every NPC tick logic we have an alert ready incase it takes longer than 1 second
         Alert loading = new Alert(Alert.AlertType.INFORMATION);
         loading.setHeaderText("");
-        loading.setContentText("Processing " + AbstractCharacter.getCharacterCount() + " NPCs");
+        loading.setContentText("Processing " + characterTable.getCount() + " NPCs");
         loading.setTitle("Loading.");
         long startTime = System.nanoTime();
         long processingTime;
         long totalTime;
         int totalSeconds;
-        for(NPC npc: allNPCs) {
-            npc.tick();
-            processingTime = System.nanoTime();
-            totalTime = processingTime - startTime;
-            totalSeconds = (int) (totalTime / 1_000_000_000);
-            if(totalSeconds >= 1) {
-                loading.show(); // if any individual tick takes 1 second or longer show loading alert
-            }
+        if(npcScheduler == null) {
+            npcScheduler = new NPCScheduler(allNPCs, characterTable);
+        }
+        if(lod == null && getLodRadius() >= 0) {
+            lod = new SimulationLod(allNPCs, world.getRegionSize(), getLodRadius(), totalHours - 1);
+        }
+        if(lod != null) {
+            npcScheduler.add(lod.update(player.getCurrentRegion(), totalHours)); // Regions coming near catch up
         }
+        int[] due = npcScheduler.due(totalHours); // NPCs asleep or at work at home are skipped until they change
+        if(lod != null) {
+            due = lod.filter(due); // NPCs of far Regions wait until the Player comes near
+        }
+        // plan on the calling thread or the pool, both give the same hour for a seed
+        ParallelTick.run(allNPCs, due, world, totalHours, parallelTick ? ForkJoinPool.commonPool() : null);
+        npcScheduler.settle(due, totalHours);
+        characterTable.recycle(relationshipStore, npcScheduler); // IDs of the bodies crypt-keepers collected this hour
         processingTime = System.nanoTime();
         totalTime = processingTime - startTime;
         totalSeconds = (int) (totalTime / 1_000_000_000);
+        if(totalSeconds >= 1) {
+            loading.show(); // if the hour took 1 second or longer show loading alert
+        }
         loading.setTitle("Finished.");
-        loading.setContentText("Finished Processing " + AbstractCharacter.getCharacterCount() + " NPCs took " + totalSeconds + " seconds.");
+        loading.setContentText("Finished Processing " + characterTable.getCount() + " NPCs took " + totalSeconds + " seconds.");
+        endJournaledTick();
     }
 
     /**
@@ -358,13 +723,68 @@ public final class GameState {
         }
     }
 
+    /**
+     * advance the game x hours at once, the clock jumps and every system catches up on what it skipped
+     * characters age on each birthday that passed and NPCs end up where their schedule has them at the new hour,
+     * farmers keeping the rice of each work day. NPCs don't wander or talk in skipped hours, use tick(int) for that
+     * @param hours long representing the amount of hours to skip
+     */
+    public void fastForward(long hours) {
+        if(hours <= 0) {
+            return;
+        }
+        long from = totalHours;
+        long to = from + hours;
+        // hour 1 of each day after from, aged in the order they came
+        long firstDay = from / HOURS_PER_DAY + 1;
+        birthdays().celebrate(firstDay, to / HOURS_PER_DAY - from / HOURS_PER_DAY);
+        // hour 7 of each day after from, when NPCs start work
+        long workDays = Math.floorDiv(to - 6, HOURS_PER_DAY) - Math.floorDiv(from - 6, HOURS_PER_DAY);
+        int hour = hourOf(to);
+        if(lod == null && getLodRadius() >= 0) {
+            lod = new SimulationLod(allNPCs, world.getRegionSize(), getLodRadius(), from);
+        }
+        if(lod != null) {
+            lod.fastForward(workDays, hour); // far Regions catch up when the Player comes near
+        } else {
+            for(NPC npc: allNPCs) {
+                npc.fastForward(workDays, hour);
+            }
+        }
+        characterTable.recycle(relationshipStore, npcScheduler);
+        setTotalHours(to);
+        endJournaledTick();
+    }
+
+    /**
+     * Will close the journaled tick once the clock has moved, compacting the journal into a new checkpoint
+     * while play continues once it has grown past its limit. Autosave stops if the journal or its checkpoint
+     * could not be written, see takeSaveFailure
+     */
+    private void endJournaledTick() {
+        if(journal != null && (journal.getFailure() != null || checkpointFailed)) {
+            stopAutosave();
+        }
+        if(journal != null) {
+            journal.endTick(totalHours);
+            if(journal.needsCheckpoint() && !isSaving()) {
+                try {
+                    checkpoint(autosavePath);
+                } catch(IOException e) {
+                    stopAutosave();
+                    reportSaveFailure("Autosave stopped, could not start the next journal: " + e.getMessage());
+                }
+            }
+        }
+    }
+
     /**
      * returns a formatted date string 'Year: yyyy Month: mm Day: dd Hour: hh'
      * @return String representing the current time 'Year: yyyy Month: mm Day: dd Hour: hh'
      */
     public String getDateString() {
         return String.format("Year: %04d Month: %2d Day: %2d Hour: %2d",
-                currentYear, currentMonth, currentDay, currentHour
+                getCurrentYear(), getCurrentMonth(), getCurrentDay(), getCurrentHour()
         );
     }
 
@@ -380,6 +800,17 @@ public final class GameState {
      */
     public World getWorld() { return world; }
 
+    /**
+     * Will provide the index of homes, work places, shops and graveyards along with the World census
+     * @return PlaceIndex representing the index built when the World was created or first asked for after loading
+     */
+    public PlaceIndex getPlaceIndex() {
+        if(placeIndex == null && world != null) {
+            placeIndex = PlaceIndex.build(world);
+        }
+        return placeIndex;
+    }
+
     /**
      * Will provide the list of all NPCs in the World
      * @return ArrayList<NPC> representing all NPCs in the World
@@ -392,29 +823,111 @@ public final class GameState {
      */
     public ArrayList<Nation> getNations() { return nations; }
 
+    /**
+     * Will provide how every character feels about the characters they know
+     * @return RelationshipStore representing the relations of every character
+     */
+    public RelationshipStore getRelationshipStore() { return relationshipStore; }
+
+    /**
+     * Will provide the IDs of every character
+     * @return CharacterTable representing the table resolving character IDs
+     */
+    public CharacterTable getCharacterTable() { return characterTable; }
+
+    /**
+     * Will provide how many hours have passed since the World was created
+     * @return long representing the hours played
+     */
+    public long getTotalHours() { return totalHours; }
+
+    private void setTotalHours(long totalHours) {
+        this.totalHours = totalHours;
+        npcScheduler = null; // wake hours were for the old time
+        RandomStreams.resume(world.getSeed(), totalHours);
+    }
+
+    /**
+     * Will provide the characters by birthday, built the first time it is needed after the characters are replaced
+     * @return BirthdayIndex representing the Player and every living NPC by birthday
+     */
+    private BirthdayIndex birthdays() {
+        if(birthdayIndex == null) {
+            birthdayIndex = new BirthdayIndex(player, allNPCs);
+        }
+        return birthdayIndex;
+    }
+
     /**
      * Will provide the current game year
      * @return int representing the current game year
      */
-    public int getCurrentYear() { return currentYear; }
+    public int getCurrentYear() { return yearOf(totalHours); }
 
     /**
      * Will provide the current game month
      * @return int representing the current game month
      */
-    public int getCurrentMonth() { return currentMonth; }
+    public int getCurrentMonth() { return monthOf(totalHours); }
 
     /**
      * Will provide the current game day
      * @return int representing the current game day
      */
-    public int getCurrentDay() { return currentDay; }
+    public int getCurrentDay() { return dayOf(totalHours); }
 
     /**
      * Will provide the current game hour
      * @return int representing the current game hour
      */
-    public int getCurrentHour() { return currentHour; }
+    public int getCurrentHour() { return hourOf(totalHours); }
+
+    // calendar of an hour count, see getTotalHours()
+
+    /**
+     * Will provide the hours since the first hour of year 1 at a date
+     * @param year int representing the year starting at 1
+     * @param month int representing the month 1-12
+     * @param day int representing the day 1-30
+     * @param hour int representing the hour 1-24
+     * @return long representing the hour count of the date
+     */
+    public static long totalHoursOf(int year, int month, int day, int hour) {
+        long days = ((long) (year - 1) * MONTHS_PER_YEAR + (month - 1)) * DAYS_PER_MONTH + (day - 1);
+        return days * HOURS_PER_DAY + (hour - 1);
+    }
+
+    /**
+     * Will provide the year of an hour count
+     * @param totalHours long representing hours since the first hour of year 1
+     * @return int representing the year starting at 1
+     */
+    public static int yearOf(long totalHours) {
+        return (int) (totalHours / ((long) HOURS_PER_DAY * DAYS_PER_MONTH * MONTHS_PER_YEAR)) + 1;
+    }
+
+    /**
+     * Will provide the month of an hour count
+     * @param totalHours long representing hours since the first hour of year 1
+     * @return int representing the month 1-12
+     */
+    public static int monthOf(long totalHours) {
+        return (int) ((totalHours / ((long) HOURS_PER_DAY * DAYS_PER_MONTH)) % MONTHS_PER_YEAR) + 1;
+    }
+
+    /**
+     * Will provide the day of an hour count
+     * @param totalHours long representing hours since the first hour of year 1
+     * @return int representing the day 1-30
+     */
+    public static int dayOf(long totalHours) { return (int) ((totalHours / HOURS_PER_DAY) % DAYS_PER_MONTH) + 1; }
+
+    /**
+     * Will provide the hour of an hour count
+     * @param totalHours long representing hours since the first hour of year 1
+     * @return int representing the hour 1-24
+     */
+    public static int hourOf(long totalHours) { return (int) (totalHours % HOURS_PER_DAY) + 1; }
 
     /**
      * Will provide the current Player vs NPC target NPC
@@ -422,10 +935,48 @@ public final class GameState {
      */
     public NPC getBattleNPC() { return battleNPC; }
 
+    /**
+     * Will check if NPC hours are planned in parallel, see ParallelTick
+     * @return boolean representing true if ticks plan in parallel then commit in order
+     */
+    public boolean isParallelTick() { return parallelTick; }
+
     /**
      * Set the target NPC for Player vs NPC battles
      * @param npc representing the target NPC for Player vs NPC battles
      */
     public void setBattleNPC(NPC npc) { battleNPC = npc; }
 
+    /**
+     * Will switch between planning NPC hours on the game thread and in parallel, see ParallelTick
+     * both give the same result for a seed on any number of cores
+     * @param parallel boolean representing true to plan NPC hours in parallel
+     */
+    public void setParallelTick(boolean parallel) { parallelTick = parallel; }
+
+    /**
+     * Will provide how many Regions around the Player Region tick every hour, see SimulationLod
+     * unless isekairpg.lodRadius or setLodRadius says otherwise only Worlds with a memory budget use one
+     * @return int representing the radius in Regions, -1 if every Region ticks
+     */
+    public int getLodRadius() {
+        if(lodRadius != DEFAULT_LOD_RADIUS) {
+            return lodRadius;
+        }
+        return (world == null || world.getMemoryBudget() == World.UNLIMITED_BUDGET) ? -1 : BUDGET_LOD_RADIUS;
+    }
+
+    /**
+     * Will set how many Regions around the Player Region tick every hour, see SimulationLod
+     * far Regions catch up first so every NPC starts from the current hour
+     * @param radius int representing the radius in Regions, -1 to tick every Region
+     */
+    public void setLodRadius(int radius) {
+        if(lod != null) {
+            lod.catchUpAll(totalHours);
+        }
+        lodRadius = radius;
+        lod = null;
+    }
+
 }
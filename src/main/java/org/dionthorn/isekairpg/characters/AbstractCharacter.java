@@ -5,12 +5,15 @@ import org.dionthorn.isekairpg.items.*;
 import org.dionthorn.isekairpg.utilities.Dice;
 import org.dionthorn.isekairpg.Engine;
 import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.persistence.Journal;
+import org.dionthorn.isekairpg.persistence.Snapshot;
 import org.dionthorn.isekairpg.utilities.Names;
 import org.dionthorn.isekairpg.worlds.Area;
+import org.dionthorn.isekairpg.worlds.LocationId;
 import org.dionthorn.isekairpg.worlds.Place;
 import org.dionthorn.isekairpg.worlds.Region;
-import java.util.ArrayList;
-import java.util.HashMap;
+import org.dionthorn.isekairpg.worlds.World;
+import java.util.Map;
 
 /**
  * AbstractCharacter class which Player and NPC inherit from
@@ -18,10 +21,8 @@ import java.util.HashMap;
 public abstract class AbstractCharacter {
 
     private static final int XP_SCALE = 1000; // (level + 1) * XP_SCALE = needed XP to level up
-    private static int characterCount = 0; // how many characters have been created
 
-    private final HashMap<AbstractCharacter, Integer> relationships = new HashMap<>();
-    private final ArrayList<AbstractItem> inventory = new ArrayList<>();
+    private final Inventory inventory = new Inventory();
     private final Money money = new Money(0, 0, 0, 0);
     private final Attributes attributes;
     private final String firstName;
@@ -29,21 +30,22 @@ public abstract class AbstractCharacter {
     private final int birthMonth;
     private final int birthDay;
 
-    private boolean alive;
-    private int maxAge;
-    private int age;
+    // alive, age, maxAge, hit points, profession and Places are kept in the row of this character, see CharacterComponents
+    private CharacterComponents components; // the store of the CharacterTable, or of its own once it was released
+    private int row;
     private int maxHitPoints;
-    private int hitPoints;
     private int soulPoints = 1;
     private int level = 1;
     private int xp = 0;
 
     private Dice hitDie;
-    private Place home;
-    private Place currentPlace;
-    private Profession profession;
+    private World world; // the World the Places in the row are in, they are resolved when asked for
     private Weapon equippedWeapon = null;
     private Armor equippedArmor = null;
+    private int occupancySlot = -1; // index within the occupants of the current Place, kept by OccupancyIndex
+    private int journalIndex = -1; // index within the checkpoint table of the open Journal, kept by Journal
+    private int id = -1; // dense ID within the CharacterTable of the GameState, kept by CharacterTable
+    private volatile int snapshotEpoch = 0; // epoch of the last Snapshot that has all of this character, kept by Snapshot
 
     /**
      * used to determine what NPCs do the place types that determine Profession for NPCs are:
@@ -64,10 +66,11 @@ public abstract class AbstractCharacter {
         INNKEEPER, BUILDER, TRADER, BLACKSMITH, FARMER, FISHER, HUNTER, LUMBERJACK, MINER,
         BANDIT, MAGE, SAMURAI, DAIMYO, CRYPTKEEPER
     }
+    private static final Profession[] PROFESSIONS = Profession.values();
 
     private AbstractCharacter() {
-        characterCount++;
-        alive = true;
+        Engine.getGameState().getCharacterTable().reserve(this);
+        components.setAlive(row, true);
         birthDay = new Dice(GameState.DAYS_PER_MONTH).roll(); // random birthday between 1-30
         birthMonth = new Dice(GameState.MONTHS_PER_YEAR).roll(); // random birth month between 1-12
         firstName = Names.getName();
@@ -106,7 +109,7 @@ public abstract class AbstractCharacter {
     public AbstractCharacter(Dice hitDie, Place currentPlace) {
         this();
         // place the character and set home
-        this.home = currentPlace;
+        setHome(currentPlace);
         setCurrentPlace(currentPlace);
         this.hitDie = hitDie;
         startingHP();
@@ -125,6 +128,77 @@ public abstract class AbstractCharacter {
         // processing higher levels should be done in implementing objects
     }
 
+    /**
+     * Used to restore a saved character, nothing is rolled
+     * the Places, items, money and relationships are restored by the caller afterwards
+     * @param record CharacterRecord representing the saved state of the character
+     */
+    protected AbstractCharacter(CharacterRecord record) {
+        Engine.getGameState().getCharacterTable().reserve(this);
+        firstName = record.firstName();
+        lastName = record.lastName();
+        birthMonth = record.birthMonth();
+        birthDay = record.birthDay();
+        attributes = new Attributes(record.attributes());
+        hitDie = new Dice(record.hitDieAmount(), record.hitDieFaces(), record.hitDieModifier());
+        components.setAlive(row, record.alive());
+        components.setMaxAge(row, record.maxAge());
+        components.setAge(row, record.age());
+        maxHitPoints = record.maxHitPoints();
+        components.setHitPoints(row, record.hitPoints());
+        soulPoints = record.soulPoints();
+        level = record.level();
+        xp = record.xp();
+        components.setProfession(row, record.profession());
+    }
+
+    /**
+     * Used by the CharacterTable to move the state of this character into the row of its ID
+     * @param to CharacterComponents representing the store of the table
+     * @param id int representing the ID of this character
+     */
+    void attach(CharacterComponents to, int id) {
+        to.copy(id, components, row);
+        bind(to, id);
+    }
+
+    /**
+     * Used by the CharacterTable to give this character the row of its ID as it is constructed, nothing is copied
+     * @param to CharacterComponents representing the store of the table
+     * @param id int representing the ID of this character
+     */
+    void bind(CharacterComponents to, int id) {
+        components = to;
+        row = id;
+    }
+
+    /**
+     * Used by the CharacterTable to move the state of this character into a store of its own when it gives up its ID
+     */
+    void detach() {
+        CharacterComponents own = new HeapComponents(1);
+        own.copy(0, components, row);
+        components = own;
+        row = 0;
+    }
+
+    /**
+     * Will copy the rolled and progressed state of this character, see CharacterRecord
+     * @return CharacterRecord representing the state of this character
+     */
+    public CharacterRecord toRecord() {
+        int[] scores = new int[Attribute.values().length];
+        for(Attribute attribute: Attribute.values()) {
+            scores[attribute.ordinal()] = attributes.get(attribute);
+        }
+        return new CharacterRecord(
+                firstName, lastName, birthMonth, birthDay, scores,
+                hitDie.getAmount(), hitDie.getFaces(), hitDie.getModifier(),
+                isAlive(), getMaxAge(), getAge(), maxHitPoints, getHP(), soulPoints, level, xp,
+                components.getProfession(row)
+        );
+    }
+
     private void startingHP() {
         // level 1 hit points = hitDie + constitution modifier
         int startingHP = (hitDie.getFaces() * hitDie.getAmount()) + attributes.getModifier(Attribute.CONSTITUTION);
@@ -132,21 +206,38 @@ public abstract class AbstractCharacter {
             startingHP = 1;
         }
         this.maxHitPoints = startingHP;
-        this.hitPoints = maxHitPoints;
+        components.setHitPoints(row, maxHitPoints);
     }
 
     // methods
 
     public boolean increaseXP(int amount) {
+        beforeChange(Snapshot.CORE);
         xp += amount;
+        boolean leveled = false;
         if(xp >= getNeededXP()) {
             level++;
-            return true;
+            leveled = true;
+        }
+        Journal journal = Engine.getGameState().getJournal();
+        if(journal != null) {
+            journal.vitalsChanged(this);
         }
-        return false;
+        return leveled;
     }
 
     public int talkTo(AbstractCharacter otherCharacter) {
+        int relationRoll = rollTalk(otherCharacter);
+        changeRelation(otherCharacter, relationRoll);
+        return relationRoll;
+    }
+
+    /**
+     * Will roll how talking to the other character changes how this character feels about them, nothing is changed
+     * @param otherCharacter AbstractCharacter representing the character talked to
+     * @return int representing the change, a d10 either way plus the other character charisma modifier
+     */
+    public int rollTalk(AbstractCharacter otherCharacter) {
         int relationRoll = Dice.d10.roll(); // d10
         int headsOrTails = Dice.d2.roll();
         if(headsOrTails == 1) {
@@ -154,64 +245,138 @@ public abstract class AbstractCharacter {
         }
         // add otherCharacter charisma modifier
         relationRoll += otherCharacter.getAttributes().getModifier(Attribute.CHARISMA);
-        // if not known add, otherwise add to current value.
-        if(relationships.get(otherCharacter) == null) {
-            relationships.put(otherCharacter, relationRoll);
-        } else {
-            relationships.put(otherCharacter, relationships.get(otherCharacter) + relationRoll);
-        }
         return relationRoll;
     }
 
     /**
-     * All child classes use super.tick() to advance age of the character and die at maxAge
+     * Will change how this character feels about the other character
+     * @param otherCharacter AbstractCharacter representing the character to change the relation with
+     * @param change int representing the amount to add, the relation starts at the change if they weren't known
+     */
+    public void changeRelation(AbstractCharacter otherCharacter, int change) {
+        beforeChange(Snapshot.RELATIONS);
+        int relation = Engine.getGameState().getRelationshipStore().adjust(this, otherCharacter, change);
+        Journal journal = Engine.getGameState().getJournal();
+        if(journal != null) {
+            journal.relationChanged(this, otherCharacter, relation);
+        }
+    }
+
+    /**
+     * Child classes override tick() to act every hour, aging is done on birthdays by the BirthdayIndex
      */
     public void tick() {
         // child classes should override and call super
-        GameState gameState = Engine.getGameState();
-        if(gameState.getCurrentMonth() == birthMonth) {
-            if(gameState.getCurrentDay() == birthDay) {
-                if(gameState.getCurrentHour() == 1) {
-                    // this is the first hour of the character birthday age up.
-                    age++;
-                    // check if maxAge
-                    if(age == maxAge) {
-                        // character dies of old age
-                        alive = false;
-                        System.out.println(firstName + " " + lastName + " has died of old age!");
-                    }
-                }
-            }
+    }
+
+    /**
+     * Will age the character one year and die of old age at maxAge, called by the BirthdayIndex
+     * on the first hour of the character birthday
+     */
+    public void birthday() {
+        beforeChange(Snapshot.CORE);
+        components.setAge(row, getAge() + 1);
+        // check if maxAge
+        if(getAge() == getMaxAge()) {
+            // character dies of old age
+            components.setAlive(row, false);
+            System.out.println(firstName + " " + lastName + " has died of old age!");
+        }
+        Journal journal = Engine.getGameState().getJournal();
+        if(journal != null) {
+            journal.vitalsChanged(this);
         }
     }
 
-    public static void resetCharacterCount() { characterCount = 0; }
+    /**
+     * Will let an open Snapshot copy a part of this character before it changes, see Snapshot.preserve
+     * @param part int representing the part about to change, Snapshot.CORE, RELATIONS or INVENTORY
+     */
+    protected final void beforeChange(int part) {
+        Snapshot snapshot = Engine.getGameState().getSnapshot();
+        if(snapshot != null && snapshotEpoch != snapshot.getEpoch()) {
+            snapshot.preserve(this, part);
+        }
+    }
 
     // logical setters
 
     public void setHP(int newHP) {
-        hitPoints = newHP;
+        beforeChange(Snapshot.CORE);
+        int hitPoints = newHP;
         if(hitPoints <= 0) {
-            alive = false; // kill the character if hp <= 0
+            components.setAlive(row, false); // kill the character if hp <= 0
             hitPoints = 0;
         } else if(hitPoints > maxHitPoints) {
             hitPoints = maxHitPoints; // HP cannot exceed maxHP
         }
+        components.setHitPoints(row, hitPoints);
+        Journal journal = Engine.getGameState().getJournal();
+        if(journal != null) {
+            journal.vitalsChanged(this);
+        }
     }
 
     public void setSP(int newSP) {
+        beforeChange(Snapshot.CORE);
         soulPoints = newSP;
         if(soulPoints <= 0) {
-            alive = false; // kill the character if sp <= 0
+            components.setAlive(row, false); // kill the character if sp <= 0
             soulPoints = 0;
         }
+        Journal journal = Engine.getGameState().getJournal();
+        if(journal != null) {
+            journal.vitalsChanged(this);
+        }
+    }
+
+    /**
+     * Used to replay a Journal, sets the vitals as they were recorded without any of the setHP rules
+     * @param newHP int representing the hit points
+     * @param newSP int representing the soul points
+     * @param newAge int representing the age
+     * @param newXP int representing the experience
+     * @param newLevel int representing the level
+     * @param isAlive boolean representing if the character is alive
+     */
+    public void restoreVitals(int newHP, int newSP, int newAge, int newXP, int newLevel, boolean isAlive) {
+        components.setHitPoints(row, newHP);
+        soulPoints = newSP;
+        components.setAge(row, newAge);
+        xp = newXP;
+        level = newLevel;
+        components.setAlive(row, isAlive);
+    }
+
+    /**
+     * Used to restore saved relations and replay a Journal, sets the relation without journaling it
+     * @param otherCharacter AbstractCharacter representing the character the relation is with
+     * @param relation int representing how this character feels about the other character
+     */
+    public void restoreRelation(AbstractCharacter otherCharacter, int relation) {
+        Engine.getGameState().getRelationshipStore().set(this, otherCharacter, relation);
     }
 
     // logical getters
 
-    public Area getCurrentArea() { return ((Area) currentPlace.getParent()); }
+    public Area getCurrentArea() { return (world == null) ? null : world.resolveArea(getCurrentPlaceId()); }
+
+    /**
+     * Will provide the Region the character is in without generating its Areas
+     * @return Region representing the current Region, null if the character is not in the World
+     */
+    public Region getCurrentRegion() { return (world == null) ? null : world.resolveRegion(getCurrentPlaceId()); }
 
-    public Region getCurrentRegion() { return ((Region) currentPlace.getParent().getParent()); }
+    /**
+     * Will check if the character is at home without looking up either Place
+     * @return boolean representing true if the character has a home and is at it
+     */
+    public boolean isAtHome() {
+        long home = getHomeId();
+        return home != LocationId.NONE && home == getCurrentPlaceId();
+    }
+
+    private static long idOf(Place place) { return (place == null) ? LocationId.NONE : place.id(); }
 
     public int getMaxCarryWeight() { return 100 + (20 * attributes.getModifier(Attribute.STRENGTH)); }
 
@@ -227,17 +392,11 @@ public abstract class AbstractCharacter {
     public int getNeededXP() { return (level + 1) * XP_SCALE; }
 
     public Integer getRelation(AbstractCharacter otherCharacter) {
-        if(relationships.get(otherCharacter) != null) {
-            return relationships.get(otherCharacter);
-        }
-        return null;
+        return Engine.getGameState().getRelationshipStore().get(this, otherCharacter);
     }
 
     public int getCarriedWeight() {
-        int weight = 0;
-        for(AbstractItem item: inventory) {
-            weight += item.getWeight();
-        }
+        int weight = inventory.getWeight();
         if(equippedWeapon != null) {
             weight += equippedWeapon.getWeight();
         }
@@ -278,48 +437,121 @@ public abstract class AbstractCharacter {
     // logical setters
 
     public void setCurrentPlace(Place toMove) {
-        if(currentPlace != null) {
-            currentPlace.getNearbyCharacters().remove(this); // remove from previous Place list
+        beforeChange(Snapshot.CORE);
+        long previousId = getCurrentPlaceId();
+        if(previousId != LocationId.NONE) {
+            world.getOccupancy().remove(previousId, this); // remove from previous Place occupants
         }
-        currentPlace = toMove;
-        if(currentPlace != null) {
-            currentPlace.getNearbyCharacters().add(this); // add to new Place list
+        long placeId = idOf(toMove);
+        components.setPlace(row, placeId);
+        if(toMove != null) {
+            world = toMove.getWorld();
+            world.getOccupancy().add(placeId, this); // add to new Place occupants
+        }
+        Journal journal = Engine.getGameState().getJournal();
+        if(journal != null) {
+            journal.moved(this, placeId);
         }
     }
 
     // setters
 
-    public void setHome(Place newHome) { home = newHome; }
+    /**
+     * Used by the OccupancyIndex to remember where this character is stored so it can leave a Place in O(1)
+     * @param slot int representing the index within the occupants of the current Place, -1 if none
+     */
+    public void setOccupancySlot(int slot) {
+        beforeChange(Snapshot.CORE);
+        occupancySlot = slot;
+    }
+
+    /**
+     * Used by the Journal to remember where this character is in the checkpoint table so records can refer to it
+     * @param index int representing the index within the checkpoint table, -1 if none
+     */
+    public void setJournalIndex(int index) { journalIndex = index; }
 
-    public void setAge(int newAge) { age = newAge; }
+    /**
+     * Used by the CharacterTable to give this character its ID
+     * @param id int representing the ID within the CharacterTable, -1 if none
+     */
+    public void setId(int id) { this.id = id; }
 
-    public void setMaxAge(int newMaxAge) { maxAge = newMaxAge; }
+    /**
+     * Used by a Snapshot to mark this character as fully copied so the game no longer copies it before changes
+     * @param epoch int representing the epoch of the Snapshot
+     */
+    public void setSnapshotEpoch(int epoch) { snapshotEpoch = epoch; }
 
-    public void setProfession(Profession newProfession) { profession = newProfession; }
+    public void setHome(Place newHome) {
+        beforeChange(Snapshot.CORE);
+        if(newHome != null) {
+            world = newHome.getWorld();
+        }
+        components.setHome(row, idOf(newHome));
+    }
 
-    public void setEquippedWeapon(Weapon newWeapon) { equippedWeapon = newWeapon; }
+    public void setAge(int newAge) {
+        beforeChange(Snapshot.CORE);
+        components.setAge(row, newAge);
+    }
 
-    public void setEquippedArmor(Armor newArmor) { equippedArmor = newArmor; }
+    public void setMaxAge(int newMaxAge) {
+        beforeChange(Snapshot.CORE);
+        components.setMaxAge(row, newMaxAge);
+    }
 
-    // boolean is
+    public void setProfession(Profession newProfession) {
+        beforeChange(Snapshot.CORE);
+        components.setProfession(row, (newProfession == null) ? -1 : newProfession.ordinal());
+    }
 
-    public boolean isAlive() { return alive; }
+    public void setEquippedWeapon(Weapon newWeapon) {
+        beforeChange(Snapshot.CORE);
+        equippedWeapon = newWeapon;
+    }
 
-    // static getter
+    public void setEquippedArmor(Armor newArmor) {
+        beforeChange(Snapshot.CORE);
+        equippedArmor = newArmor;
+    }
 
-    public static int getCharacterCount() { return characterCount; }
+    // boolean is
+
+    public boolean isAlive() { return components.isAlive(row); }
 
     // pure getters
 
     public String getFirstName() { return firstName; }
 
+    public int getOccupancySlot() { return occupancySlot; }
+
+    public int getJournalIndex() { return journalIndex; }
+
+    public int getId() { return id; }
+
+    /**
+     * Will provide the store the state of this character is kept in, the shared one of the CharacterTable once it has an ID
+     * @return CharacterComponents representing the store holding the row of this character
+     */
+    CharacterComponents components() { return components; }
+
+    /**
+     * @return int representing the row of this character in components()
+     */
+    int row() { return row; }
+
+    public int getSnapshotEpoch() { return snapshotEpoch; }
+
     public String getLastName() { return lastName; }
 
     public int getLevel() { return level; }
 
     public int getXP() { return xp; }
 
-    public int getAge() { return age; }
+    public int getAge() { return components.getAge(row); }
+
+    public int getMaxAge() { return components.getMaxAge(row); }
 
     public int getBirthDay() { return birthDay; }
 
@@ -329,23 +561,44 @@ public abstract class AbstractCharacter {
 
     public int getMaxHP() { return maxHitPoints; }
 
-    public int getHP() { return hitPoints; }
+    public int getHP() { return components.getHitPoints(row); }
 
     public int getSP() { return soulPoints; }
 
-    public Place getCurrentPlace() { return currentPlace; }
+    /**
+     * Will provide the Place the character is at, generating its Area if it was evicted, see World.resolve
+     * @return Place representing the current Place, null if the character is not in the World
+     */
+    public Place getCurrentPlace() { return (world == null) ? null : world.resolve(getCurrentPlaceId()); }
 
-    public Place getHome() { return home; }
+    /**
+     * Will provide the home of the character, generating its Area if it was evicted, see World.resolve
+     * @return Place representing the home, null if the character has none
+     */
+    public Place getHome() { return (world == null) ? null : world.resolve(getHomeId()); }
 
-    public Profession getProfession() { return profession; }
+    public long getCurrentPlaceId() { return components.getPlace(row); }
+
+    public long getHomeId() { return components.getHome(row); }
+
+    public Profession getProfession() {
+        int profession = components.getProfession(row);
+        return (profession < 0) ? null : PROFESSIONS[profession];
+    }
 
     public Money getMoney() { return money; }
 
-    public HashMap<AbstractCharacter, Integer> getRelationships() { return relationships; }
+    /**
+     * Will provide a read only view of how this character feels about the characters it knows
+     * @return Map<AbstractCharacter, Integer> representing the relations, see RelationshipStore
+     */
+    public Map<AbstractCharacter, Integer> getRelationships() {
+        return Engine.getGameState().getRelationshipStore().view(this);
+    }
 
     public Attributes getAttributes() { return attributes; }
 
-    public ArrayList<AbstractItem> getInventory() { return inventory; }
+    public Inventory getInventory() { return inventory; }
 
     public Armor getEquippedArmor() { return equippedArmor; }
 
@@ -0,0 +1,130 @@
+package org.dionthorn.isekairpg.characters;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * CharacterComponents kept off the heap as fixed layout records in direct buffers, one record per row
+ * <p>
+ * Records are kept in pages of PAGE_ROWS so growing adds a page instead of copying the records,
+ * the garbage collector only sees one small buffer object per page however many characters there are.
+ * The last page only holds the rows asked for so far and doubles as it fills, so a small World doesn't
+ * take a whole page. A record is RECORD_SIZE bytes in native byte order:
+ * <p>
+ *   0 flags, 1 profession + 1, 2 age, 4 maxAge, 8 hit points, 16 home LocationId, 24 current Place LocationId
+ * <p>
+ * LocationIds are stored inverted so an all zero record is an empty row, new pages need no filling.
+ * Direct buffers can't be freed on demand, so the CharacterTable keeps its store for the next game, see clear.
+ */
+final class ArenaComponents extends CharacterComponents {
+
+    private static final int PAGE_SHIFT = 16;
+    static final int PAGE_ROWS = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_ROWS - 1;
+    private static final int RECORD_SHIFT = 5;
+    private static final int RECORD_SIZE = 1 << RECORD_SHIFT;
+    static final int MIN_ROWS = 1024; // smallest last page
+
+    // offsets in a record
+    private static final int FLAGS = 0;
+    private static final int PROFESSION = 1;
+    private static final int AGE = 2;
+    private static final int MAX_AGE = 4;
+    private static final int HIT_POINTS = 8;
+    private static final int HOME = 16;
+    private static final int PLACE = 24;
+
+    private ByteBuffer[] pages = new ByteBuffer[0];
+
+    /**
+     * @param capacity int representing how many rows to start with
+     */
+    ArenaComponents(int capacity) {
+        ensureCapacity(capacity);
+    }
+
+    @Override
+    void ensureCapacity(int capacity) {
+        int count = (capacity + PAGE_MASK) >>> PAGE_SHIFT;
+        if(count > pages.length) {
+            pages = Arrays.copyOf(pages, count);
+        }
+        for(int page = 0; page < count; page++) {
+            int rows = (page < count - 1) ? PAGE_ROWS : capacity - (page << PAGE_SHIFT);
+            int held = (pages[page] == null) ? 0 : pages[page].capacity() >>> RECORD_SHIFT;
+            if(rows > held) {
+                // a full page or double the last one, the records are copied over
+                rows = (rows > PAGE_ROWS / 2) ? PAGE_ROWS : Math.max(MIN_ROWS, Math.max(held * 2, rows));
+                ByteBuffer records = ByteBuffer.allocateDirect(rows * RECORD_SIZE).order(ByteOrder.nativeOrder());
+                if(held > 0) {
+                    records.put(0, pages[page], 0, held * RECORD_SIZE);
+                }
+                pages[page] = records;
+            }
+        }
+    }
+
+    /**
+     * Will provide how many rows the pages have room for, each takes RECORD_SIZE bytes off the heap
+     * @return long representing the rows held by every page
+     */
+    long getHeldRows() {
+        long held = 0;
+        for(ByteBuffer page: pages) {
+            held += page.capacity() >>> RECORD_SHIFT;
+        }
+        return held;
+    }
+
+    private ByteBuffer page(int row) { return pages[row >>> PAGE_SHIFT]; }
+
+    private static int offset(int row, int field) { return ((row & PAGE_MASK) << RECORD_SHIFT) + field; }
+
+    @Override
+    byte flags(int row) { return page(row).get(offset(row, FLAGS)); }
+
+    @Override
+    void setFlags(int row, byte flags) { page(row).put(offset(row, FLAGS), flags); }
+
+    // setters
+
+    @Override
+    void setAge(int row, int age) { page(row).putShort(offset(row, AGE), (short) age); }
+
+    @Override
+    void setMaxAge(int row, int maxAge) { page(row).putShort(offset(row, MAX_AGE), (short) maxAge); }
+
+    @Override
+    void setHitPoints(int row, int points) { page(row).putInt(offset(row, HIT_POINTS), points); }
+
+    @Override
+    void setProfession(int row, int profession) { page(row).put(offset(row, PROFESSION), (byte) (profession + 1)); }
+
+    @Override
+    void setHome(int row, long placeId) { page(row).putLong(offset(row, HOME), ~placeId); }
+
+    @Override
+    void setPlace(int row, long placeId) { page(row).putLong(offset(row, PLACE), ~placeId); }
+
+    // getters
+
+    @Override
+    public int getAge(int row) { return page(row).getShort(offset(row, AGE)); }
+
+    @Override
+    public int getMaxAge(int row) { return page(row).getShort(offset(row, MAX_AGE)); }
+
+    @Override
+    public int getHitPoints(int row) { return page(row).getInt(offset(row, HIT_POINTS)); }
+
+    @Override
+    public int getProfession(int row) { return page(row).get(offset(row, PROFESSION)) - 1; }
+
+    @Override
+    public long getHome(int row) { return ~page(row).getLong(offset(row, HOME)); }
+
+    @Override
+    public long getPlace(int row) { return ~page(row).getLong(offset(row, PLACE)); }
+
+}
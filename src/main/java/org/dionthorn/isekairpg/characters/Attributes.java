@@ -24,6 +24,12 @@ public class Attributes {
         };
     }
 
+    /**
+     * Used to restore saved attribute scores
+     * @param scores int[] representing the scores indexed with Attribute.ordinal()
+     */
+    public Attributes(int[] scores) { this.attributes = scores.clone(); }
+
     public int get(Attribute attribute) { return attributes[attribute.ordinal()]; }
 
     public int getModifier(Attribute attribute) { return (get(attribute) - 10) / 2; }
@@ -0,0 +1,111 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.GameState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The BirthdayIndex buckets the living characters by the day of the year they were born on
+ * <p>
+ * On the first hour of a day GameState ages only the characters born that day, they die of old age once their
+ * age reaches their maxAge and leave the index. NPCs added to the GameState list are picked up before the next
+ * birthday and characters that died any other way are dropped when their bucket next comes up.
+ * A bucket keeps the Player first then the NPCs in GameState order, the order they used to age in.
+ */
+public final class BirthdayIndex {
+
+    private final List<NPC> npcs;
+    private final ArrayList<ArrayList<AbstractCharacter>> days; // day of the year -> characters born on it
+    private int known; // NPCs this index has seen
+
+    /**
+     * Will bucket the Player and every living NPC by their birthday
+     * @param player Player representing the Player character, may be null before a game starts
+     * @param npcs List<NPC> representing every NPC in GameState order
+     */
+    public BirthdayIndex(Player player, List<NPC> npcs) {
+        this.npcs = npcs;
+        int dayCount = GameState.MONTHS_PER_YEAR * GameState.DAYS_PER_MONTH;
+        days = new ArrayList<>(dayCount);
+        for(int day = 0; day < dayCount; day++) {
+            days.add(new ArrayList<>());
+        }
+        if(player != null) {
+            add(player);
+        }
+        known = 0;
+        addNew();
+    }
+
+    /**
+     * Will add a living character to the bucket of its birthday
+     * @param character AbstractCharacter representing the character to add
+     */
+    private void add(AbstractCharacter character) {
+        if(character.isAlive()) {
+            days.get(dayOf(character.getBirthMonth(), character.getBirthDay())).add(character);
+        }
+    }
+
+    private void addNew() {
+        for(int index = known; index < npcs.size(); index++) {
+            add(npcs.get(index));
+        }
+        known = npcs.size();
+    }
+
+    /**
+     * Will age every living character born on the day, called on the first hour of the day
+     * @param month int representing the current game month
+     * @param day int representing the current game day
+     * @return int representing how many characters died of old age
+     */
+    public int celebrate(int month, int day) {
+        addNew();
+        return age(days.get(dayOf(month, day)), 1);
+    }
+
+    /**
+     * Will age every living character for each of their birthdays in a run of days, used when time is skipped
+     * every bucket is visited at most once however many years the run spans
+     * @param firstDay long representing the first day of the run counted from the first day of year 1
+     * @param dayCount long representing how many days the run spans
+     * @return int representing how many characters died of old age
+     */
+    public int celebrate(long firstDay, long dayCount) {
+        addNew();
+        int daysPerYear = days.size();
+        long years = dayCount / daysPerYear;
+        int rest = (int) (dayCount % daysPerYear);
+        int died = 0;
+        for(int offset = 0; offset < Math.min(dayCount, daysPerYear); offset++) {
+            int day = (int) ((firstDay + offset) % daysPerYear);
+            died += age(days.get(day), years + ((offset < rest) ? 1 : 0));
+        }
+        return died;
+    }
+
+    private static int age(ArrayList<AbstractCharacter> bucket, long birthdays) {
+        int kept = 0;
+        int died = 0;
+        for(AbstractCharacter character: bucket) {
+            if(!character.isAlive()) {
+                continue; // killed since the last birthday
+            }
+            for(long birthday = 0; birthday < birthdays && character.isAlive(); birthday++) {
+                character.birthday();
+            }
+            if(character.isAlive()) {
+                bucket.set(kept++, character);
+            } else {
+                died++;
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+        return died;
+    }
+
+    private static int dayOf(int month, int day) { return (month - 1) * GameState.DAYS_PER_MONTH + (day - 1); }
+
+}
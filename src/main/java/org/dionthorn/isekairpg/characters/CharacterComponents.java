@@ -0,0 +1,137 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.worlds.LocationId;
+
+/**
+ * The CharacterComponents hold the state every hour of the simulation reads, a row per character ID
+ * <p>
+ * A row holds whether the character is alive, sleeping or working, its age and maxAge, hit points, profession and
+ * the LocationIds of its home and current Place, see CharacterTable. A character is a handle on its row,
+ * so the NPCScheduler can sort NPCs by walking the rows instead of every NPC object. A character is constructed
+ * in the row of its ID, one that gives its ID up moves into a store of its own, see AbstractCharacter.detach.
+ * <p>
+ * Rows are kept in parallel primitive arrays on the heap, or with -Disekairpg.offHeap=true in fixed layout
+ * records in direct buffers off the heap, see ArenaComponents.
+ */
+public abstract class CharacterComponents {
+
+    private static final boolean OFF_HEAP = Boolean.getBoolean("isekairpg.offHeap");
+
+    // flags of a row
+    static final byte ALIVE = 1;
+    static final byte SLEEPING = 2;
+    static final byte WORKING = 4;
+
+    CharacterComponents() { }
+
+    /**
+     * Will provide the store for the rows of a CharacterTable, off the heap when the game runs with -Disekairpg.offHeap
+     * @param capacity int representing how many rows to start with
+     * @return CharacterComponents representing an empty store
+     */
+    static CharacterComponents create(int capacity) {
+        return OFF_HEAP ? new ArenaComponents(capacity) : new HeapComponents(capacity);
+    }
+
+    /**
+     * Will copy a row of another store into a row of this one, growing this store to fit
+     * @param row int representing the row to copy into
+     * @param from CharacterComponents representing the store to copy from
+     * @param fromRow int representing the row to copy
+     */
+    void copy(int row, CharacterComponents from, int fromRow) {
+        ensureCapacity(row + 1);
+        setFlags(row, from.flags(fromRow));
+        setAge(row, from.getAge(fromRow));
+        setMaxAge(row, from.getMaxAge(fromRow));
+        setHitPoints(row, from.getHitPoints(fromRow));
+        setProfession(row, from.getProfession(fromRow));
+        setHome(row, from.getHome(fromRow));
+        setPlace(row, from.getPlace(fromRow));
+    }
+
+    /**
+     * Will make room for a row and empty it, it is then as a new row
+     * @param row int representing the row to clear
+     */
+    void clear(int row) {
+        ensureCapacity(row + 1);
+        setFlags(row, (byte) 0);
+        setAge(row, 0);
+        setMaxAge(row, 0);
+        setHitPoints(row, 0);
+        setProfession(row, -1);
+        setHome(row, LocationId.NONE);
+        setPlace(row, LocationId.NONE);
+    }
+
+    /**
+     * Will make room for rows up to the capacity, new rows have no profession, home or Place
+     */
+    abstract void ensureCapacity(int capacity);
+
+    abstract byte flags(int row);
+
+    abstract void setFlags(int row, byte flags);
+
+    private void setFlag(int row, byte flag, boolean set) {
+        setFlags(row, (byte) (set ? (flags(row) | flag) : (flags(row) & ~flag)));
+    }
+
+    // setters
+
+    void setAlive(int row, boolean alive) { setFlag(row, ALIVE, alive); }
+
+    void setSleeping(int row, boolean sleeping) { setFlag(row, SLEEPING, sleeping); }
+
+    void setWorking(int row, boolean working) { setFlag(row, WORKING, working); }
+
+    abstract void setAge(int row, int age);
+
+    abstract void setMaxAge(int row, int maxAge);
+
+    abstract void setHitPoints(int row, int points);
+
+    abstract void setProfession(int row, int profession);
+
+    abstract void setHome(int row, long placeId);
+
+    abstract void setPlace(int row, long placeId);
+
+    // getters
+
+    public boolean isAlive(int row) { return (flags(row) & ALIVE) != 0; }
+
+    public boolean isSleeping(int row) { return (flags(row) & SLEEPING) != 0; }
+
+    public boolean isWorking(int row) { return (flags(row) & WORKING) != 0; }
+
+    /**
+     * Will tell if the character of a row is at home
+     * @param row int representing the row of the character
+     * @return boolean representing if its current Place is its home, true for characters off the map without a home
+     */
+    public boolean isHome(int row) { return getPlace(row) == getHome(row); }
+
+    public abstract int getAge(int row);
+
+    public abstract int getMaxAge(int row);
+
+    public abstract int getHitPoints(int row);
+
+    /**
+     * @return int representing the Profession ordinal, -1 without one
+     */
+    public abstract int getProfession(int row);
+
+    /**
+     * @return long representing the LocationId of the home, LocationId.NONE without one
+     */
+    public abstract long getHome(int row);
+
+    /**
+     * @return long representing the LocationId of the current Place, LocationId.NONE when off the map
+     */
+    public abstract long getPlace(int row);
+
+}
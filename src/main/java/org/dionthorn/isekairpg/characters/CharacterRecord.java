@@ -0,0 +1,29 @@
+package org.dionthorn.isekairpg.characters;
+
+/**
+ * The rolled and progressed state of a character, everything that can't be derived again
+ * Places, items, money and relationships are restored separately through the AbstractCharacter setters
+ * @param firstName String representing the first name
+ * @param lastName String representing the last name
+ * @param birthMonth int representing the birth month 1-12
+ * @param birthDay int representing the birth day 1-30
+ * @param attributes int[] representing the attribute scores indexed with Attribute.ordinal()
+ * @param hitDieAmount int representing how many hit die are rolled
+ * @param hitDieFaces int representing the faces of the hit die
+ * @param hitDieModifier int representing the modifier of the hit die
+ * @param alive boolean representing if the character is alive
+ * @param maxAge int representing the age the character dies at
+ * @param age int representing the current age
+ * @param maxHitPoints int representing the maximum hit points
+ * @param hitPoints int representing the current hit points
+ * @param soulPoints int representing the current soul points
+ * @param level int representing the current level
+ * @param xp int representing the current experience
+ * @param profession int representing the Profession ordinal, -1 if none
+ */
+public record CharacterRecord(
+        String firstName, String lastName, int birthMonth, int birthDay, int[] attributes,
+        int hitDieAmount, int hitDieFaces, int hitDieModifier,
+        boolean alive, int maxAge, int age, int maxHitPoints, int hitPoints, int soulPoints, int level, int xp,
+        int profession
+) { }
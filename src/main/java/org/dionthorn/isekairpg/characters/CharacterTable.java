@@ -0,0 +1,159 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.persistence.Snapshot;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The CharacterTable gives every character a dense int ID and resolves IDs back to characters
+ * <p>
+ * IDs are handed out from the lowest never used one, or from the free list of IDs given up by buried characters.
+ * A released ID is held back until recycle has cleared it from the RelationshipStore so no relation can point
+ * at the next character that gets it, see NPC.collectBodies and GameState.tick().
+ * IDs are not saved, a loaded game hands them out again in the order the characters are restored.
+ * The table also holds the CharacterComponents. A character reserves its ID and row as it is constructed and
+ * writes its state straight into the row, it is only resolved by get once it is added after its construction.
+ * Slots are written under the table lock and read without it, the AtomicReferenceArray publishes each write
+ * so a worker planning in parallel never sees a stale slot.
+ */
+public final class CharacterTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // ID -> character
+    private volatile AtomicReferenceArray<AbstractCharacter> characters = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private final CharacterComponents components = CharacterComponents.create(INITIAL_CAPACITY);
+    private int nextId = 0; // lowest ID never handed out
+    private int[] free = new int[16];
+    private int freeCount = 0;
+    private int[] released = new int[16]; // IDs given up since the last recycle
+    private int releasedCount = 0;
+
+    public CharacterTable() { }
+
+    /**
+     * Will give a character being constructed an ID and a cleared row, see AbstractCharacter
+     * the ID of a character that is never added is only handed out again once the table is cleared
+     * @param character AbstractCharacter representing the character being constructed
+     */
+    synchronized void reserve(AbstractCharacter character) {
+        int id = nextId();
+        components.clear(id);
+        character.setId(id);
+        character.bind(components, id);
+    }
+
+    /**
+     * Will add a character once it is constructed so get resolves its ID, safe to call from any thread
+     * a character built for an earlier table, ex: the Player made before the game started, moves into a new row
+     * @param character AbstractCharacter representing the character to add
+     * @return int representing the ID of the character
+     */
+    public synchronized int add(AbstractCharacter character) {
+        int id = character.getId();
+        if(id < 0 || id >= nextId || characters.get(id) != null || character.components() != components) {
+            id = nextId();
+            character.setId(id);
+            character.attach(components, id);
+        }
+        characters.set(id, character);
+        return id;
+    }
+
+    private int nextId() {
+        int id = (freeCount > 0) ? free[--freeCount] : nextId++;
+        if(id == characters.length()) {
+            AtomicReferenceArray<AbstractCharacter> grown = new AtomicReferenceArray<>(id * 2);
+            for(int copied = 0; copied < id; copied++) {
+                grown.set(copied, characters.get(copied));
+            }
+            characters = grown;
+        }
+        return id;
+    }
+
+    /**
+     * Will take the ID of a character back, the ID is handed out again after the next recycle
+     * @param character AbstractCharacter representing the character to remove
+     */
+    public synchronized void release(AbstractCharacter character) {
+        int id = character.getId();
+        if(id < 0 || id >= nextId || characters.get(id) != character) {
+            return; // not in this table
+        }
+        character.beforeChange(Snapshot.RELATIONS); // its relations are gone from now on
+        characters.set(id, null);
+        character.setId(-1);
+        character.detach();
+        if(releasedCount == released.length) {
+            released = Arrays.copyOf(released, releasedCount * 2);
+        }
+        released[releasedCount++] = id;
+    }
+
+    /**
+     * Will clear the released IDs out of the relations then put them on the free list, called on the game thread
+     * @param relationships RelationshipStore representing the relations that may still name the released IDs
+     * @param scheduler NPCScheduler representing the schedule that may still hold the released rows, null if none
+     */
+    public synchronized void recycle(RelationshipStore relationships, NPCScheduler scheduler) {
+        if(releasedCount == 0) {
+            return;
+        }
+        relationships.forget(released, releasedCount);
+        if(free.length < freeCount + releasedCount) {
+            free = Arrays.copyOf(free, Math.max(free.length * 2, freeCount + releasedCount));
+        }
+        // the lowest IDs are handed out first
+        Arrays.sort(released, 0, releasedCount);
+        if(scheduler != null) {
+            scheduler.forget(released, releasedCount);
+        }
+        for(int next = releasedCount - 1; next >= 0; next--) {
+            free[freeCount++] = released[next];
+        }
+        releasedCount = 0;
+    }
+
+    /**
+     * Will forget every character, called when a game is started or loaded
+     * the store is kept for the next game so an off heap store isn't left for the garbage collector to free,
+     * rows are cleared as they are reserved again so a character carried over must be added before any other
+     */
+    public synchronized void clear() {
+        characters = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        nextId = 0;
+        freeCount = 0;
+        releasedCount = 0;
+    }
+
+    /**
+     * Will provide the character with an ID
+     * @param id int representing the ID
+     * @return AbstractCharacter representing the character, null if no character has the ID
+     */
+    public AbstractCharacter get(int id) {
+        AtomicReferenceArray<AbstractCharacter> table = characters;
+        return (id >= 0 && id < table.length()) ? table.get(id) : null;
+    }
+
+    /**
+     * Will provide the rows of every character with an ID, indexed by ID
+     * @return CharacterComponents representing the shared store of this table
+     */
+    public CharacterComponents getComponents() { return components; }
+
+    /**
+     * Will provide how many characters have an ID
+     * @return int representing the count of characters in the table
+     */
+    public synchronized int getCount() { return nextId - freeCount - releasedCount; }
+
+    /**
+     * Will provide the ID after the highest one handed out, every ID is below it
+     * @return int representing the bound of the IDs
+     */
+    public synchronized int getBound() { return nextId; }
+
+}
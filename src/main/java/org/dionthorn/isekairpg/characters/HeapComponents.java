@@ -0,0 +1,101 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.worlds.LocationId;
+
+import java.util.Arrays;
+
+/**
+ * CharacterComponents kept in parallel primitive arrays on the heap, one element per row
+ */
+final class HeapComponents extends CharacterComponents {
+
+    private byte[] flags;
+    private short[] ages;
+    private short[] maxAges;
+    private int[] hitPoints;
+    private byte[] professions; // Profession ordinal, -1 without one
+    private long[] homes;       // LocationId, NONE without one
+    private long[] places;      // LocationId, NONE when off the map
+
+    /**
+     * @param capacity int representing how many rows to start with
+     */
+    HeapComponents(int capacity) {
+        flags = new byte[capacity];
+        ages = new short[capacity];
+        maxAges = new short[capacity];
+        hitPoints = new int[capacity];
+        professions = new byte[capacity];
+        homes = new long[capacity];
+        places = new long[capacity];
+        Arrays.fill(professions, (byte) -1);
+        Arrays.fill(homes, LocationId.NONE);
+        Arrays.fill(places, LocationId.NONE);
+    }
+
+    @Override
+    void ensureCapacity(int capacity) {
+        int old = flags.length;
+        if(capacity <= old) {
+            return;
+        }
+        capacity = Math.max(old * 2, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        maxAges = Arrays.copyOf(maxAges, capacity);
+        hitPoints = Arrays.copyOf(hitPoints, capacity);
+        professions = Arrays.copyOf(professions, capacity);
+        homes = Arrays.copyOf(homes, capacity);
+        places = Arrays.copyOf(places, capacity);
+        Arrays.fill(professions, old, capacity, (byte) -1);
+        Arrays.fill(homes, old, capacity, LocationId.NONE);
+        Arrays.fill(places, old, capacity, LocationId.NONE);
+    }
+
+    @Override
+    byte flags(int row) { return flags[row]; }
+
+    @Override
+    void setFlags(int row, byte flags) { this.flags[row] = flags; }
+
+    // setters
+
+    @Override
+    void setAge(int row, int age) { ages[row] = (short) age; }
+
+    @Override
+    void setMaxAge(int row, int maxAge) { maxAges[row] = (short) maxAge; }
+
+    @Override
+    void setHitPoints(int row, int points) { hitPoints[row] = points; }
+
+    @Override
+    void setProfession(int row, int profession) { professions[row] = (byte) profession; }
+
+    @Override
+    void setHome(int row, long placeId) { homes[row] = placeId; }
+
+    @Override
+    void setPlace(int row, long placeId) { places[row] = placeId; }
+
+    // getters
+
+    @Override
+    public int getAge(int row) { return ages[row]; }
+
+    @Override
+    public int getMaxAge(int row) { return maxAges[row]; }
+
+    @Override
+    public int getHitPoints(int row) { return hitPoints[row]; }
+
+    @Override
+    public int getProfession(int row) { return professions[row]; }
+
+    @Override
+    public long getHome(int row) { return homes[row]; }
+
+    @Override
+    public long getPlace(int row) { return places[row]; }
+
+}
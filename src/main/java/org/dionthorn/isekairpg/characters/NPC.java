@@ -5,19 +5,39 @@ import org.dionthorn.isekairpg.GameState;
 import org.dionthorn.isekairpg.items.Armors;
 import org.dionthorn.isekairpg.items.Foods;
 import org.dionthorn.isekairpg.items.Weapons;
+import org.dionthorn.isekairpg.persistence.Journal;
+import org.dionthorn.isekairpg.persistence.Snapshot;
 import org.dionthorn.isekairpg.utilities.Dice;
 import org.dionthorn.isekairpg.worlds.Area;
+import org.dionthorn.isekairpg.worlds.FlowFields;
+import org.dionthorn.isekairpg.worlds.LocationId;
+import org.dionthorn.isekairpg.worlds.Pathfinder;
 import org.dionthorn.isekairpg.worlds.Place;
 import org.dionthorn.isekairpg.worlds.Region;
 import org.dionthorn.isekairpg.worlds.World;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
 /**
  * The NPC class represents all AbstractCharacters that are not the Player
  */
 public class NPC extends AbstractCharacter {
 
-    private boolean isSleeping = false;
-    private boolean isWorking = false;
+    private static final Dice RICE_PER_WORK_HOUR = new Dice(2, 2, -2); // 2d2-2 (0-2) Rice
+
+    // the Areas left to cross on the way to routeTarget, found again once the NPC strays from its route
+    private byte[] route;
+    private int routeStep;
+    private long routeArea = LocationId.NONE;   // Area the NPC is in while on its route
+    private long routeTarget = LocationId.NONE; // Area the route leads to
+    // the flow fields last walked along, fetched again once the FlowFields version moves on
+    private byte[] placeField;
+    private long placeFieldTarget = LocationId.NONE; // Place the place field leads to
+    private byte[] areaField;
+    private long areaFieldTarget = LocationId.NONE;  // Area the area field leads to
+    private int fieldVersion;
 
     public NPC(Dice hitDie, Place initialLocation) {
         super(hitDie, initialLocation);
@@ -121,10 +141,28 @@ public class NPC extends AbstractCharacter {
         }
 
         // all NPC start with rice for food
-        getInventory().add(Foods.get(Foods.Type.RICE));
+        getInventory().add(Foods.Type.RICE, 1);
+    }
+
+    /**
+     * Used to restore a saved NPC, nothing is rolled
+     * @param record CharacterRecord representing the saved state of the NPC
+     * @param sleeping boolean representing if the NPC was sleeping
+     * @param working boolean representing if the NPC was working
+     */
+    public NPC(CharacterRecord record, boolean sleeping, boolean working) {
+        super(record);
+        components().setSleeping(row(), sleeping);
+        components().setWorking(row(), working);
     }
 
-    private void moveNPC(int directionX, int directionY) {
+    /**
+     * Will find the Place one step in a direction, the step crosses into the next Area or Region at an edge
+     * @param directionX int representing the x direction -1, 0 or 1
+     * @param directionY int representing the y direction -1, 0 or 1
+     * @return Place representing the Place to move to, null if the step is past the edge of the World
+     */
+    private Place stepPlace(int directionX, int directionY) {
         GameState gameState = Engine.getGameState();
         World world = gameState.getWorld();
 
@@ -132,20 +170,18 @@ public class NPC extends AbstractCharacter {
         Area currentArea = this.getCurrentArea();
         Region currentRegion = this.getCurrentRegion();
 
-        Place attemptPlaceMove = currentArea.getPlace(
-                currentPlace.getX() + directionX,
-                currentPlace.getY() + directionY
-        );
-        if(attemptPlaceMove != null) {
+        long currentId = currentPlace.id();
+        // step with plain ID arithmetic, the neighbor is NONE when it is past the edge
+        long placeMoveId = LocationId.offsetPlace(currentId, directionX, directionY, currentArea.getPlaceSize());
+        if(placeMoveId != LocationId.NONE) {
+            Place attemptPlaceMove = world.resolve(placeMoveId);
             // can move place
-            this.setCurrentPlace(attemptPlaceMove); // 1 hour move
+            return attemptPlaceMove; // 1 hour move
         } else {
             // cannot move place attempt to move area
-            Area attemptAreaMove = currentRegion.getArea(
-                    currentArea.getX() + directionX,
-                    currentArea.getY() + directionY
-            );
-            if(attemptAreaMove != null) {
+            long areaMoveId = LocationId.offsetArea(currentId, directionX, directionY, currentRegion.getAreaSize());
+            if(areaMoveId != LocationId.NONE) {
+                Area attemptAreaMove = world.resolveArea(areaMoveId);
                 // can move area
                 int placeSize = attemptAreaMove.getPlaceSize();
                 Dice placeDie = new Dice(placeSize);
@@ -163,14 +199,12 @@ public class NPC extends AbstractCharacter {
                     // moving north choose random place on southern side
                     toMove = attemptAreaMove.getPlace(placeDie.roll() - 1, placeSize - 1);
                 }
-                this.setCurrentPlace(toMove); // 3 hour move
+                return toMove; // 3 hour move
             } else {
                 // cannot move area
-                Region attemptRegionMove = world.getRegion(
-                        currentRegion.getX() + directionX,
-                        currentRegion.getY() + directionY
-                );
-                if(attemptRegionMove != null) {
+                long regionMoveId = LocationId.offsetRegion(currentId, directionX, directionY, world.getRegionSize());
+                if(regionMoveId != LocationId.NONE) {
+                    Region attemptRegionMove = world.resolveRegion(regionMoveId);
                     // can move Region
                     Area areaToMove = null;
                     // get the area to move to within the target region
@@ -217,201 +251,409 @@ public class NPC extends AbstractCharacter {
                         // must be moving north choose random place on southern side
                         toMove = areaToMove.getPlace(placeDie.roll() - 1, placeSize - 1);
                     }
-                    this.setCurrentPlace(toMove); // 5 hour move
-                } else {
-                    // cannot move Region so doesn't move
+                    return toMove; // 5 hour move
                 }
             }
         }
+        return null; // cannot move Region so doesn't move
     }
 
-    private void goTowardsPlace(Place target) {
-        isSleeping = false;
-        isWorking = false;
+    /**
+     * Will find the next Place on the way to the target, by the flow fields within its Area and Region
+     * or along the route to its Area from farther away,
+     * the route and fields are kept on the NPC so only the NPC itself may call this, planning included
+     * @param target Place representing the Place to go to
+     * @return Place representing the next Place, null if there is no step to take
+     */
+    private Place stepTowards(Place target) {
         Area targetArea = (Area) target.getParent();
         Area currentArea = this.getCurrentArea();
-        int targetX = target.getX();
-        int targetY = target.getY();
-        int npcX;
-        int npcY;
+        FlowFields flowFields = Engine.getGameState().getWorld().getFlowFields();
+        if(fieldVersion != flowFields.getVersion()) {
+            placeField = null;
+            areaField = null;
+            fieldVersion = flowFields.getVersion();
+        }
+        byte direction;
         if(targetArea.equals(currentArea)) {
             // npc is in the same Area as its target
-            npcX = getCurrentPlace().getX();
-            npcY = getCurrentPlace().getY();
-            if(npcY < targetY) {
-                // npc is north of target
-                moveNPC(0, 1);
-            } else if(npcY > targetY) {
-                // npc is south of target
-                moveNPC(0, -1);
-            } else if(npcX < targetX) {
-                // npc is west of target
-                moveNPC(1, 0);
-            } else if(npcX > targetX) {
-                // npc is east of target
-                moveNPC(-1, 0);
+            if(placeField == null || placeFieldTarget != target.id()) {
+                placeField = flowFields.placeField(currentArea, target.getX(), target.getY());
+                placeFieldTarget = target.id();
+            }
+            Place place = getCurrentPlace();
+            direction = placeField[place.getY() * currentArea.getPlaceSize() + place.getX()];
+        } else if(targetArea.getParent().equals(currentArea.getParent())) {
+            // npc is in the same Region as its target so walk toward the target Area
+            Region region = getCurrentRegion();
+            long there = LocationId.of(targetArea);
+            if(areaField == null || areaFieldTarget != there) {
+                areaField = flowFields.areaField(region, targetArea.getX(), targetArea.getY());
+                areaFieldTarget = there;
             }
+            direction = areaField[currentArea.getY() * region.getAreaSize() + currentArea.getX()];
         } else {
-            // npc is not in the same Area as its target check if they are in the correct Region
-            Region targetRegion = (Region) targetArea.getParent();
-            Region currentRegion = this.getCurrentRegion();
-            if(targetRegion.equals(currentRegion)) {
-                // npc is in the same region so move toward target area
-                int targetAreaX = targetArea.getX();
-                int targetAreaY = targetArea.getY();
-                npcX = currentArea.getX();
-                npcY = currentArea.getY();
-                if(npcY < targetAreaY) {
-                    // npc is north of target
-                    moveNPC(0, 1);
-                } else if(npcY > targetAreaY) {
-                    // npc is south of target
-                    moveNPC(0, -1);
-                } else if(npcX < targetAreaX) {
-                    // npc is west of target
-                    moveNPC(1, 0);
-                } else if(npcX > targetAreaX) {
-                    // npc is east of target
-                    moveNPC(-1, 0);
-                }
-            } else {
-                // npc is not in the same region so move towards target region
-                int targetRegionX = targetRegion.getX();
-                int targetRegionY = targetRegion.getY();
-                npcX = currentRegion.getX();
-                npcY = currentRegion.getY();
-                if(npcY < targetRegionY) {
-                    // npc is north of target
-                    moveNPC(0, 1);
-                } else if(npcY > targetRegionY) {
-                    // npc is south of target
-                    moveNPC(0, -1);
-                } else if(npcX < targetRegionX) {
-                    // npc is west of target
-                    moveNPC(1, 0);
-                } else if(npcX > targetRegionX) {
-                    // npc is east of target
-                    moveNPC(-1, 0);
+            // npc is not in the same Area as its target so follow the route to the target Area
+            long here = LocationId.of(currentArea);
+            long there = LocationId.of(targetArea);
+            // a long route ends early and is asked for again from its end, see Pathfinder.route
+            if(route == null || routeTarget != there || routeArea != here || routeStep == route.length) {
+                route = Engine.getGameState().getWorld().getPathfinder().route(here, there);
+                routeStep = 0;
+                routeArea = here;
+                routeTarget = there;
+            }
+            if(routeStep < route.length) {
+                Place step = stepPlace(Pathfinder.directionX(route[routeStep]), Pathfinder.directionY(route[routeStep]));
+                if(step != null && LocationId.toArea(step.id()) != here) {
+                    // crossed into the next Area of the route
+                    routeStep++;
+                    routeArea = LocationId.toArea(step.id());
                 }
+                return step;
             }
+            return null;
         }
+        return (direction == FlowFields.ARRIVED) ? null
+                : stepPlace(Pathfinder.directionX(direction), Pathfinder.directionY(direction));
     }
 
-    private void sleep() {
-        isWorking = false;
-        isSleeping = true;
+    /**
+     * Will take the bodies lying in the Area of this crypt-keeper off the map and give up their IDs,
+     * see CharacterTable, the Player is never collected
+     */
+    private void collectBodies() {
+        Area area = getCurrentArea();
+        long areaId = LocationId.of(area);
+        GameState gameState = Engine.getGameState();
+        for(int y = 0; y < area.getPlaceSize(); y++) {
+            for(int x = 0; x < area.getPlaceSize(); x++) {
+                long placeId = LocationId.of(
+                        LocationId.getRegionX(areaId), LocationId.getRegionY(areaId),
+                        LocationId.getAreaX(areaId), LocationId.getAreaY(areaId), x, y
+                );
+                for(AbstractCharacter body: gameState.getWorld().getOccupancy().copy(placeId)) {
+                    if(!body.isAlive() && body instanceof NPC) {
+                        body.setCurrentPlace(null);
+                        gameState.getCharacterTable().release(body);
+                    }
+                }
+            }
+        }
     }
 
-    private void work() {
-        isWorking = true;
-        isSleeping = false;
-        // Different professions gain different things from work
-        if(getProfession() == Profession.FARMER) {
-            int amount = new Dice(2, 2, -2).roll(); // 2d2-2 (0-2) Rice per work hour
-            for(int count=0; count<amount; count++) {
-                getInventory().add(Foods.get(Foods.Type.RICE));
-            }
+    /**
+     * Will add the rice gathered while working to the inventory
+     * @param amount int representing how much rice was gathered
+     */
+    private void gather(int amount) {
+        if(amount <= 0) {
+            return;
+        }
+        beforeChange(Snapshot.INVENTORY);
+        getInventory().add(Foods.Type.RICE, amount);
+        Journal journal = Engine.getGameState().getJournal();
+        if(journal != null) {
+            journal.foodAdded(this, Foods.Type.RICE, amount);
         }
     }
 
-    public boolean isSleeping() { return isSleeping; }
-
-    public boolean isWorking() { return isWorking; }
-
-    private void socialize() {
-        isWorking = false;
-        isSleeping = false;
-        // will talk with all nearby characters
-        for(AbstractCharacter nearby: getCurrentPlace().getNearbyCharacters()) {
-            if(nearby instanceof Player player) {
-                // NPC talks to player add action string to show result.
-                StringBuilder sb = new StringBuilder();
-
-                // calculate player change
-                int playerRelationChange = player.talkTo(this);
-                String playerChange = (playerRelationChange < 0) ?
-                        String.valueOf(playerRelationChange) : sb.append("+").append(playerRelationChange).toString();
-                sb.setLength(0); // clear string builder faster than generating new empty
-                int playerRelationToNPC = player.getRelation(this);
-
-                // calculate npc change
-                int npcRelationChange = this.talkTo(player);
-                String npcChange = (npcRelationChange < 0) ?
-                        String.valueOf(npcRelationChange) : sb.append("+").append(npcRelationChange).toString();
-                sb.setLength(0);
-                int npcRelationToPlayer = this.getRelation(player);
-
-                // generate action strings for post turn output
-                sb.append(getFirstName()).append(" ").append(getLastName()).append(" talked with you.");
-                GameState.actionStrings.add(sb.toString());
-                sb.setLength(0);
-
-                sb.append("  Your feelings: ").append(playerChange).append(" total: ").append(playerRelationToNPC);
-                GameState.actionStrings.add(sb.toString());
-                sb.setLength(0);
-
-                sb.append("  ").append(getFirstName()).append(" feelings: ")
-                        .append(npcChange).append(" total: ").append(npcRelationToPlayer);
-                GameState.actionStrings.add(sb.toString());
-            } else if(nearby instanceof NPC npc) {
-                if(!npc.isSleeping() && !npc.isWorking()) {
-                    this.talkTo(npc);
-                    npc.talkTo(this);
-                }
-            }
+    public boolean isSleeping() { return components().isSleeping(row()); }
+
+    public boolean isWorking() { return components().isWorking(row()); }
+
+    /**
+     * Will set what the NPC is doing, an open Snapshot copies the NPC first if it changes
+     * @param sleeping boolean representing if the NPC is sleeping
+     * @param working boolean representing if the NPC is working
+     */
+    private void setActivity(boolean sleeping, boolean working) {
+        if(isSleeping() != sleeping || isWorking() != working) {
+            beforeChange(Snapshot.CORE);
+            components().setSleeping(row(), sleeping);
+            components().setWorking(row(), working);
         }
     }
 
-    private void randomMove() {
-        isWorking = false;
-        isSleeping = false;
+    /**
+     * Used to replay a Journal, sets what the NPC was doing as it was recorded
+     * @param sleeping boolean representing if the NPC is sleeping
+     * @param working boolean representing if the NPC is working
+     */
+    public void restoreActivity(boolean sleeping, boolean working) {
+        components().setSleeping(row(), sleeping);
+        components().setWorking(row(), working);
+    }
+
+    /**
+     * Will add the action strings that show the player how talking with this NPC went
+     * @param player Player representing the player that was talked with
+     * @param playerRelationChange int representing the change of how the player feels about this NPC
+     * @param npcRelationChange int representing the change of how this NPC feels about the player
+     */
+    private void talkedWithPlayer(Player player, int playerRelationChange, int npcRelationChange) {
+        StringBuilder sb = new StringBuilder();
+        String playerChange = (playerRelationChange < 0) ?
+                String.valueOf(playerRelationChange) : sb.append("+").append(playerRelationChange).toString();
+        sb.setLength(0); // clear string builder faster than generating new empty
+        int playerRelationToNPC = player.getRelation(this);
+        String npcChange = (npcRelationChange < 0) ?
+                String.valueOf(npcRelationChange) : sb.append("+").append(npcRelationChange).toString();
+        sb.setLength(0);
+        int npcRelationToPlayer = this.getRelation(player);
+
+        // generate action strings for post turn output
+        sb.append(getFirstName()).append(" ").append(getLastName()).append(" talked with you.");
+        GameState.actionStrings.add(sb.toString());
+        sb.setLength(0);
+
+        sb.append("  Your feelings: ").append(playerChange).append(" total: ").append(playerRelationToNPC);
+        GameState.actionStrings.add(sb.toString());
+        sb.setLength(0);
+
+        sb.append("  ").append(getFirstName()).append(" feelings: ")
+                .append(npcChange).append(" total: ").append(npcRelationToPlayer);
+        GameState.actionStrings.add(sb.toString());
+    }
+
+    /**
+     * Will roll a random direction and find the Place one step that way
+     * @return Place representing the Place to move to, null if the step is past the edge of the World
+     */
+    private Place randomStep() {
         int direction = Dice.d4.roll();
         if(direction == 1) {
-            moveNPC(0, 1); // south
+            return stepPlace(0, 1); // south
         } else if(direction == 2) {
-            moveNPC(0, -1); // north
+            return stepPlace(0, -1); // north
         } else if(direction == 3) {
-            moveNPC(1, 0); // east
-        } else if(direction == 4) {
-            moveNPC(-1, 0); // west
+            return stepPlace(1, 0); // east
         }
+        return stepPlace(-1, 0); // west
     }
 
+    private void move(Place step) {
+        if(step != null) {
+            this.setCurrentPlace(step);
+        }
+    }
+
+    /**
+     * Will plan then do the hour of this NPC alone, GameState ticks every NPC through ParallelTick instead
+     * so they all plan from the same start of the hour
+     */
     @Override
     public void tick() {
-        // check if character isAlive then perform AI task
-        if(isAlive()) {
-            super.tick(); // aging logic
-            GameState gameState = Engine.getGameState();
-            int hour = gameState.getCurrentHour();
-            // basic AI schedule:
-            // 11pm-6am  (8hrs) - go home and sleep
-            // 7am -2pm  (8hrs) - work or collect needs
-            // 3pm -10pm (8hrs) - socialize or collect needs
-            if(hour >= 23 || hour <= 6) {
-                // 23-6
-                if(getCurrentPlace() != getHome()) {
-                    goTowardsPlace(getHome());
-                } else {
-                    if(!isSleeping()) {
-                        sleep();
+        Intent intent = plan();
+        if(intent != null) {
+            commit(intent);
+        }
+    }
+
+    /**
+     * Will put the NPC where its schedule has it after time was skipped, see GameState.fastForward(long)
+     * @param workDays long representing how many times work started in the skipped hours
+     * @param hour int representing the hour of the day time was skipped to
+     */
+    public void fastForward(long workDays, int hour) {
+        if(!isAlive()) {
+            return;
+        }
+        int rice = 0;
+        if(getProfession() == Profession.FARMER) {
+            for(long day = 0; day < workDays; day++) {
+                rice += RICE_PER_WORK_HOUR.roll();
+            }
+        }
+        catchUp(workDays, hour, rice);
+    }
+
+    /**
+     * Will put the NPC where its schedule has it after time was skipped and hand it what it made meanwhile,
+     * a body only keeps the rice it made before it died, see SimulationLod
+     * @param workDays long representing how many times work started in the skipped hours
+     * @param hour int representing the hour of the day time was skipped to
+     * @param rice int representing the rice gathered in the skipped work days
+     */
+    void catchUp(long workDays, int hour, int rice) {
+        if(!isAlive()) {
+            gather(rice);
+            return;
+        }
+        boolean wasSleeping = isSleeping();
+        boolean wasWorking = isWorking();
+        if(getHomeId() != LocationId.NONE && !isAtHome()) {
+            move(getHome());
+        }
+        if(hour >= 23 || hour <= 6) {
+            setActivity(true, false);
+        } else if(hour <= 14) {
+            setActivity(false, true);
+        } else {
+            setActivity(false, false);
+        }
+        gather(rice);
+        if(getProfession() == Profession.CRYPTKEEPER && workDays > 0) {
+            collectBodies();
+        }
+        activityChanged(wasSleeping, wasWorking);
+    }
+
+    /**
+     * Will roll the rice of many work days at once as if RICE_PER_WORK_HOUR was rolled for each,
+     * a 2d2-2 roll is two coin flips so the sum is the count of heads in two flips per day, 64 flips per draw
+     * @param workDays long representing how many work days to roll for, ex: of every farmer of a Region
+     * @param random SplittableRandom representing the stream to roll with
+     * @return long representing the rice gathered
+     */
+    static long rollRice(long workDays, SplittableRandom random) {
+        long flips = workDays * 2;
+        long rice = 0;
+        for(; flips >= Long.SIZE; flips -= Long.SIZE) {
+            rice += Long.bitCount(random.nextLong());
+        }
+        if(flips > 0) {
+            rice += Long.bitCount(random.nextLong() & ((1L << flips) - 1));
+        }
+        return rice;
+    }
+
+    private void activityChanged(boolean wasSleeping, boolean wasWorking) {
+        if(wasSleeping != isSleeping() || wasWorking != isWorking()) {
+            Journal journal = Engine.getGameState().getJournal();
+            if(journal != null) {
+                journal.activityChanged(this);
+            }
+        }
+    }
+
+    // two phase tick, see ParallelTick
+
+    /**
+     * What an NPC decided to do with an hour, planned from the World as it was at the start of the hour
+     */
+    static final class Intent {
+
+        private boolean sleeping;
+        private boolean working;
+        private Place move; // null to stay
+        private int rice;
+        private boolean collect; // crypt-keepers collect bodies when they start work
+        private ArrayList<AbstractCharacter> partners; // null unless socializing
+        private int[] changes = new int[0]; // per partner this NPC change then the partner change
+
+        private Intent(boolean sleeping, boolean working) {
+            this.sleeping = sleeping;
+            this.working = working;
+        }
+
+        private void setActivity(boolean sleeping, boolean working) {
+            this.sleeping = sleeping;
+            this.working = working;
+        }
+
+        private void talk(AbstractCharacter partner, int change, int partnerChange) {
+            if(partners == null) {
+                partners = new ArrayList<>();
+            }
+            int talk = partners.size();
+            partners.add(partner);
+            if(changes.length < (talk + 1) * 2) {
+                changes = Arrays.copyOf(changes, Math.max(8, changes.length * 2));
+            }
+            changes[talk * 2] = change;
+            changes[talk * 2 + 1] = partnerChange;
+        }
+
+    }
+
+    /**
+     * Will decide what this NPC does this hour without changing anything, every other character is seen
+     * as it was at the start of the hour, safe to call from any thread
+     * basic AI schedule:
+     * 11pm-6am  (8hrs) - go home and sleep
+     * 7am -2pm  (8hrs) - work or collect needs
+     * 3pm -10pm (8hrs) - socialize or collect needs
+     * @return Intent representing what this NPC will do, null if it is dead
+     */
+    Intent plan() {
+        if(!isAlive()) {
+            return null;
+        }
+        Intent intent = new Intent(isSleeping(), isWorking());
+        int hour = Engine.getGameState().getCurrentHour();
+        if(hour >= 23 || hour <= 6) {
+            // 23-6
+            if(!isAtHome()) {
+                intent.setActivity(false, false);
+                intent.move = stepTowards(getHome());
+            } else if(!isSleeping()) {
+                intent.setActivity(true, false);
+            }
+        } else if(hour <= 14) {
+            // 7-14
+            if(!isAtHome()) {
+                intent.setActivity(false, false);
+                intent.move = stepTowards(getHome());
+            } else if(!isWorking()) {
+                intent.setActivity(false, true);
+                if(getProfession() == Profession.FARMER) {
+                    intent.rice = RICE_PER_WORK_HOUR.roll();
+                } else if(getProfession() == Profession.CRYPTKEEPER) {
+                    intent.collect = true;
+                }
+            }
+        } else {
+            // 15-22
+            intent.setActivity(false, false);
+            intent.move = randomStep();
+            Place meetingPlace = (intent.move == null) ? getCurrentPlace() : intent.move;
+            World world = Engine.getGameState().getWorld();
+            for(AbstractCharacter nearby: world.getOccupancy().copy(meetingPlace.id())) {
+                if(nearby instanceof Player player) {
+                    int playerRelationChange = player.rollTalk(this);
+                    intent.talk(player, rollTalk(player), playerRelationChange);
+                } else if(nearby instanceof NPC npc && npc != this) {
+                    if(!npc.isSleeping() && !npc.isWorking()) {
+                        int npcRelationChange = rollTalk(npc);
+                        intent.talk(npc, npcRelationChange, npc.rollTalk(this));
                     }
                 }
-            } else if(hour <= 14) {
-                // 7-14
-                if(getCurrentPlace() != getHome()) {
-                    goTowardsPlace(getHome());
+            }
+        }
+        return intent;
+    }
+
+    /**
+     * Will do what this NPC planned, called on the game thread
+     * @param intent Intent representing what this NPC planned this hour
+     */
+    void commit(Intent intent) {
+        boolean wasSleeping = isSleeping();
+        boolean wasWorking = isWorking();
+        super.tick();
+        setActivity(intent.sleeping, intent.working);
+        move(intent.move);
+        gather(intent.rice);
+        if(intent.collect) {
+            collectBodies();
+        }
+        if(intent.partners != null) {
+            for(int talk = 0; talk < intent.partners.size(); talk++) {
+                AbstractCharacter partner = intent.partners.get(talk);
+                int change = intent.changes[talk * 2];
+                int partnerChange = intent.changes[talk * 2 + 1];
+                if(partner instanceof Player player) {
+                    player.changeRelation(this, partnerChange);
+                    changeRelation(player, change);
+                    talkedWithPlayer(player, partnerChange, change);
                 } else {
-                    if(!isWorking()) {
-                        work();
-                    }
+                    changeRelation(partner, change);
+                    partner.changeRelation(this, partnerChange);
                 }
-            } else {
-                // 15-22
-                randomMove();
-                socialize();
             }
         }
+        activityChanged(wasSleeping, wasWorking);
     }
 
 }
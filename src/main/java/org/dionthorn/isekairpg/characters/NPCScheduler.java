@@ -0,0 +1,199 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.GameState;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The NPCScheduler decides which NPCs have to tick in an hour so NPCs with nothing to do are not touched
+ * <p>
+ * An NPC asleep at home during the night or working at home during the day does nothing in NPC.plan()
+ * until the schedule moves on, so after ticking it registers the hour it next has to act on (waking up
+ * at 7 or going out at 15) in a timing wheel with one slot per hour of the day, aging is up to the BirthdayIndex.
+ * Every other living NPC stays active and ticks every hour. Dead NPCs are dropped, as are NPCs that were due
+ * but not ticked, see SimulationLod, until they are added again.
+ * The NPCs of an hour are always ticked in GameState order so the result is the same as ticking every NPC.
+ * Sorting the NPCs that ticked only reads their rows of the CharacterComponents, not the NPC objects.
+ */
+public final class NPCScheduler {
+
+    private static final int WAKE_HOUR = 7;     // first hour of the work schedule
+    private static final int SOCIAL_HOUR = 15;  // first hour of the socialize schedule
+
+    private final List<NPC> npcs;
+    private final CharacterTable characters;
+    private int[] rows = new int[0]; // NPC index -> row in the CharacterComponents, -1 once released, see forget
+    private int[] active = new int[0]; // indices of NPCs that tick every hour, ascending
+    private int activeCount = 0;
+    private final int[][] wheel = new int[GameState.HOURS_PER_DAY][]; // indices of NPCs waking in the hour % 24
+    private final int[] wheelCounts = new int[GameState.HOURS_PER_DAY];
+    private boolean[] scheduled = new boolean[0]; // NPCs that are active or waiting in the wheel
+    private int known; // NPCs this scheduler has seen, NPCs added to the list later start active
+
+    /**
+     * The scheduler starts with every NPC active, they are sorted out by the first settle
+     * @param npcs List<NPC> representing every NPC in GameState order
+     * @param characters CharacterTable representing the table giving the NPCs their rows
+     */
+    public NPCScheduler(List<NPC> npcs, CharacterTable characters) {
+        this.npcs = npcs;
+        this.characters = characters;
+        for(int slot = 0; slot < wheel.length; slot++) {
+            wheel[slot] = new int[16];
+        }
+        known = 0;
+        addNew();
+    }
+
+    private void addNew() {
+        int count = npcs.size();
+        if(known < count) {
+            if(active.length < activeCount + (count - known)) {
+                active = Arrays.copyOf(active, activeCount + (count - known));
+            }
+            scheduled = Arrays.copyOf(scheduled, count);
+            rows = Arrays.copyOf(rows, count);
+            for(int index = known; index < count; index++) {
+                rows[index] = npcs.get(index).getId(); // IDs of the living don't change
+                active[activeCount++] = index; // new NPCs have the highest indices so the order holds
+                scheduled[index] = true;
+            }
+            known = count;
+        }
+    }
+
+    /**
+     * Will provide the NPCs that have to tick this hour, the active ones and the ones waking up now
+     * @param totalHours long representing the hour being ticked, see GameState.getTotalHours()
+     * @return int[] representing the indices of the NPCs to tick in ascending order
+     */
+    public int[] due(long totalHours) {
+        addNew();
+        int slot = (int) (totalHours % GameState.HOURS_PER_DAY);
+        int[] waking = wheel[slot];
+        int wakingCount = wheelCounts[slot];
+        Arrays.sort(waking, 0, wakingCount);
+        // merge the two ascending lists
+        int[] due = new int[activeCount + wakingCount];
+        int fromActive = 0;
+        int fromWaking = 0;
+        int next = 0;
+        while(fromActive < activeCount || fromWaking < wakingCount) {
+            if(fromWaking == wakingCount || (fromActive < activeCount && active[fromActive] < waking[fromWaking])) {
+                due[next++] = active[fromActive++];
+            } else {
+                due[next++] = waking[fromWaking++];
+            }
+            scheduled[due[next - 1]] = false; // until settled
+        }
+        wheelCounts[slot] = 0;
+        return due;
+    }
+
+    /**
+     * Will sort the NPCs that just ticked into the active ones and the ones that can sleep until their next change
+     * @param ticked int[] representing the indices of the NPCs that ticked, as given by due
+     * @param totalHours long representing the hour that was ticked
+     */
+    public void settle(int[] ticked, long totalHours) {
+        if(active.length < ticked.length) {
+            active = new int[ticked.length];
+        }
+        activeCount = 0;
+        long nextHour = totalHours + 1;
+        CharacterComponents components = characters.getComponents();
+        for(int index: ticked) {
+            int row = rows[index];
+            if(row < 0 || !components.isAlive(row)) {
+                continue; // the dead never tick again
+            }
+            scheduled[index] = true;
+            long wake = nextChange(components, row, nextHour);
+            if(wake == nextHour) {
+                active[activeCount++] = index;
+            } else {
+                int slot = (int) (wake % GameState.HOURS_PER_DAY);
+                if(wheelCounts[slot] == wheel[slot].length) {
+                    wheel[slot] = Arrays.copyOf(wheel[slot], wheel[slot].length * 2);
+                }
+                wheel[slot][wheelCounts[slot]++] = index;
+            }
+        }
+    }
+
+    /**
+     * Will make NPCs active again that were due but not ticked, NPCs that are still scheduled are left as they are
+     * @param indices int[] representing the indices of the NPCs to add in ascending order
+     */
+    public void add(int[] indices) {
+        addNew();
+        int[] merged = new int[activeCount + indices.length];
+        int fromActive = 0;
+        int next = 0;
+        for(int index: indices) {
+            if(scheduled[index] || rows[index] < 0) {
+                continue; // the released are never scheduled again
+            }
+            while(fromActive < activeCount && active[fromActive] < index) {
+                merged[next++] = active[fromActive++];
+            }
+            merged[next++] = index;
+            scheduled[index] = true;
+        }
+        while(fromActive < activeCount) {
+            merged[next++] = active[fromActive++];
+        }
+        active = merged;
+        activeCount = next;
+    }
+
+    /**
+     * Will drop the rows of released NPCs before their IDs are handed out again, called by CharacterTable.recycle
+     * @param ids int[] representing the released IDs, ascending up to count
+     * @param count int representing how many of ids are released
+     */
+    void forget(int[] ids, int count) {
+        for(int index = 0; index < known; index++) {
+            if(rows[index] >= 0 && Arrays.binarySearch(ids, 0, count, rows[index]) >= 0) {
+                rows[index] = -1; // the row belongs to whoever gets the ID next
+            }
+        }
+    }
+
+    /**
+     * Will find the next hour the NPC does something in NPC.plan(), the same schedule checks without the rolls
+     * @param components CharacterComponents representing the rows of the NPCs
+     * @param row int representing the row of a living NPC that just ticked
+     * @param nextHour long representing the hour after the one that was ticked
+     * @return long representing the first hour from nextHour on that the NPC has to tick
+     */
+    private static long nextChange(CharacterComponents components, int row, long nextHour) {
+        if(!components.isHome(row)) {
+            return nextHour; // walking home or out and about
+        }
+        int hour = GameState.hourOf(nextHour);
+        long wake;
+        if((hour >= 23 || hour <= 6) && components.isSleeping(row)) {
+            wake = hoursUntil(nextHour, WAKE_HOUR);
+        } else if(hour >= WAKE_HOUR && hour < SOCIAL_HOUR && components.isWorking(row)) {
+            wake = hoursUntil(nextHour, SOCIAL_HOUR);
+        } else {
+            wake = nextHour;
+        }
+        return wake;
+    }
+
+    private static long hoursUntil(long from, int hour) {
+        int wait = Math.floorMod(hour - GameState.hourOf(from), GameState.HOURS_PER_DAY);
+        return from + wait;
+    }
+
+
+    /**
+     * Will provide how many NPCs tick every hour, the rest are waiting in the wheel
+     * @return int representing the count of active NPCs
+     */
+    public int getActiveCount() { return activeCount; }
+
+}
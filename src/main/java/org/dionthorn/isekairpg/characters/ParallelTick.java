@@ -0,0 +1,140 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.dionthorn.isekairpg.worlds.Region;
+import org.dionthorn.isekairpg.worlds.World;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * The ParallelTick advances every NPC one hour in two phases so their decisions can be made in parallel
+ * <p>
+ * Plan: every living NPC decides what to do from the World as it was at the start of the hour, see NPC.plan().
+ * Nothing changes while planning, the NPCs are batched by the Region they start the hour in so a worker mostly
+ * reads the Areas of a single Region, and each NPC rolls with its own stream derived from the World seed,
+ * the hours played and its index.
+ * Commit: the plans are applied one after another on the calling thread in GameState order.
+ * The result only depends on the seed so it is the same for any number of threads, including none,
+ * GameState ticks NPCs this way with or without a pool.
+ */
+public final class ParallelTick {
+
+    private static final int LEAF_SIZE = 8; // Region batches planned by a task before it stops splitting
+
+    private ParallelTick() {
+        // private disallows instantiation, this is a static utility class
+    }
+
+    /**
+     * Will plan every NPC then commit the plans in order
+     * @param npcs List<NPC> representing every NPC in GameState order
+     * @param world World representing the World the NPCs live in
+     * @param totalHours long representing the hours played including this hour, keys the streams of the NPCs
+     * @param pool ForkJoinPool representing the pool to plan on, null to plan on the calling thread
+     */
+    public static void run(List<NPC> npcs, World world, long totalHours, ForkJoinPool pool) {
+        int[] all = new int[npcs.size()];
+        Arrays.setAll(all, index -> index);
+        run(npcs, all, world, totalHours, pool);
+    }
+
+    /**
+     * Will plan the given NPCs then commit the plans in order, see NPCScheduler.due(long)
+     * @param npcs List<NPC> representing every NPC in GameState order
+     * @param due int[] representing the indices of the NPCs to tick in ascending order
+     * @param world World representing the World the NPCs live in
+     * @param totalHours long representing the hours played including this hour, keys the streams of the NPCs
+     * @param pool ForkJoinPool representing the pool to plan on, null to plan on the calling thread
+     */
+    public static void run(List<NPC> npcs, int[] due, World world, long totalHours, ForkJoinPool pool) {
+        int count = due.length;
+        int regionSize = world.getRegionSize();
+        int batchCount = regionSize * regionSize;
+
+        // counting sort of the living NPCs by the Region they start the hour in
+        int[] batchOf = new int[count];
+        int[] batchStart = new int[batchCount + 1];
+        for(int slot = 0; slot < count; slot++) {
+            NPC npc = npcs.get(due[slot]);
+            if(npc.isAlive()) {
+                Region region = npc.getCurrentRegion();
+                batchOf[slot] = region.getY() * regionSize + region.getX();
+                batchStart[batchOf[slot] + 1]++;
+            } else {
+                batchOf[slot] = -1;
+            }
+        }
+        for(int batch = 0; batch < batchCount; batch++) {
+            batchStart[batch + 1] += batchStart[batch];
+        }
+        int[] order = new int[batchStart[batchCount]];
+        int[] cursor = batchStart.clone();
+        for(int slot = 0; slot < count; slot++) {
+            if(batchOf[slot] >= 0) {
+                order[cursor[batchOf[slot]]++] = slot;
+            }
+        }
+
+        NPC.Intent[] intents = new NPC.Intent[count];
+        long seed = world.getSeed();
+        IntConsumer planBatch = batch -> {
+            for(int next = batchStart[batch]; next < batchStart[batch + 1]; next++) {
+                int slot = order[next];
+                int index = due[slot]; // streams are keyed by the GameState index so skipped NPCs change nothing
+                NPC npc = npcs.get(index);
+                intents[slot] = RandomStreams.call(
+                        RandomStreams.stream(seed, RandomStreams.WORKER, totalHours, index), npc::plan
+                );
+            }
+        };
+        if(pool == null) {
+            for(int batch = 0; batch < batchCount; batch++) {
+                planBatch.accept(batch);
+            }
+        } else {
+            pool.invoke(new PlanTask(0, batchCount, planBatch));
+        }
+
+        for(int slot = 0; slot < count; slot++) {
+            if(intents[slot] != null) {
+                npcs.get(due[slot]).commit(intents[slot]);
+            }
+        }
+    }
+
+    /**
+     * Splits the Region batches over the pool, batches only read so they can be planned in any order
+     */
+    private static final class PlanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer planBatch;
+
+        private PlanTask(int from, int to, IntConsumer planBatch) {
+            this.from = from;
+            this.to = to;
+            this.planBatch = planBatch;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= LEAF_SIZE) {
+                for(int batch = from; batch < to; batch++) {
+                    planBatch.accept(batch);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PlanTask(from, middle, planBatch), new PlanTask(middle, to, planBatch));
+            }
+        }
+
+    }
+
+}
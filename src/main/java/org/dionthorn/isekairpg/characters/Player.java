@@ -21,4 +21,10 @@ public class Player extends AbstractCharacter {
         getMoney().add(0, 0, 1, 10); // player starts with 1 silver and 10 copper
     }
 
+    /**
+     * Used to restore a saved Player, nothing is rolled
+     * @param record CharacterRecord representing the saved state of the Player
+     */
+    public Player(CharacterRecord record) { super(record); }
+
 }
@@ -0,0 +1,306 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.persistence.Snapshot;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The RelationshipStore keeps how every character feels about the characters they know
+ * <p>
+ * Every character that knows someone owns an open addressing (linear probing) table from the ID of a known
+ * character to the relation, two primitive arrays per character indexed by its ID, see CharacterTable,
+ * instead of a HashMap with a boxed Integer per relation.
+ * Only the game thread changes the store, a Snapshot reads the table of a character while holding it so the
+ * character is copied before it changes, see AbstractCharacter.changeRelation.
+ */
+public final class RelationshipStore {
+
+    private static final int EMPTY = 0; // key of an unused table entry, keys are the ID of the other character + 1
+    private static final int INITIAL_IDS = 1024;
+    private static final int INITIAL_CAPACITY = 4; // per character, must be a power of 2
+    private static final int HASH_MULTIPLIER = 0x9E3779B9; // fibonacci hashing spreads nearby IDs
+
+    private final CharacterTable characters;
+    private int[][] keys = new int[INITIAL_IDS][]; // ID -> table, null until the character knows someone
+    private int[][] relations = new int[INITIAL_IDS][];
+    private int[] sizes = new int[INITIAL_IDS];
+
+    /**
+     * @param characters CharacterTable representing the table the IDs of the relations belong to
+     */
+    public RelationshipStore(CharacterTable characters) {
+        this.characters = characters;
+    }
+
+    /**
+     * Will add to how a character feels about another, the relation starts at the change if they weren't known
+     * @param character AbstractCharacter representing the character whose feelings change
+     * @param other AbstractCharacter representing the character they feel about
+     * @param change int representing the amount to add
+     * @return int representing the new relation
+     * @throws IllegalArgumentException if either character's ID was released, see CharacterTable.recycle
+     */
+    public int adjust(AbstractCharacter character, AbstractCharacter other, int change) {
+        int id = idOf(character);
+        int key = keyOf(other);
+        int entry = find(id, key);
+        if(entry >= 0) {
+            relations[id][entry] += change;
+            return relations[id][entry];
+        }
+        insert(id, key, change);
+        return change;
+    }
+
+    /**
+     * Will set how a character feels about another, used to restore saved relations
+     * @param character AbstractCharacter representing the character whose feelings are set
+     * @param other AbstractCharacter representing the character they feel about
+     * @param relation int representing the relation
+     * @throws IllegalArgumentException if either character's ID was released, see CharacterTable.recycle
+     */
+    public void set(AbstractCharacter character, AbstractCharacter other, int relation) {
+        int id = idOf(character);
+        int key = keyOf(other);
+        int entry = find(id, key);
+        if(entry >= 0) {
+            relations[id][entry] = relation;
+        } else {
+            insert(id, key, relation);
+        }
+    }
+
+    /**
+     * Will provide how a character feels about another
+     * @param character AbstractCharacter representing the character whose feelings are asked for
+     * @param other AbstractCharacter representing the character they feel about
+     * @return Integer representing the relation, null if they don't know the other character
+     */
+    public Integer get(AbstractCharacter character, AbstractCharacter other) {
+        int id = existingIdOf(character);
+        if(id < 0 || other.getId() < 0) {
+            return null;
+        }
+        int entry = find(id, other.getId() + 1);
+        return (entry < 0) ? null : relations[id][entry];
+    }
+
+    /**
+     * Will provide a read only view of the characters a character knows and how it feels about them
+     * @param character AbstractCharacter representing the character whose relations to view
+     * @return Map<AbstractCharacter, Integer> representing the relations, changes with the store
+     */
+    public Map<AbstractCharacter, Integer> view(AbstractCharacter character) { return new Relations(character); }
+
+    /**
+     * Will remove the relations of and toward characters whose IDs were released, called before the IDs are reused
+     * every character that knew one of them is copied first by an open Snapshot
+     * @param ids int[] representing the released IDs
+     * @param count int representing how many of the IDs are used
+     */
+    void forget(int[] ids, int count) {
+        boolean[] forgotten = new boolean[keys.length];
+        for(int next = 0; next < count; next++) {
+            if(ids[next] < keys.length) {
+                forgotten[ids[next]] = true;
+                keys[ids[next]] = null;
+                relations[ids[next]] = null;
+                sizes[ids[next]] = 0;
+            }
+        }
+        for(int id = 0; id < keys.length; id++) {
+            int[] table = keys[id];
+            if(table == null) {
+                continue;
+            }
+            boolean knowsForgotten = false;
+            for(int key: table) {
+                if(key != EMPTY && key - 1 < forgotten.length && forgotten[key - 1]) {
+                    knowsForgotten = true;
+                    break;
+                }
+            }
+            if(knowsForgotten) {
+                AbstractCharacter character = characters.get(id);
+                if(character != null) {
+                    character.beforeChange(Snapshot.RELATIONS);
+                }
+                rebuild(id, table.length, forgotten);
+            }
+        }
+    }
+
+    /**
+     * Will forget every relation, called when a game is started or loaded
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(relations, null);
+        Arrays.fill(sizes, 0);
+    }
+
+    /**
+     * Will provide the ID of a character with a table to hold its relations
+     */
+    private int idOf(AbstractCharacter character) {
+        int id = character.getId();
+        if(id < 0) {
+            throw new IllegalArgumentException(character.getFirstName() + " " + character.getLastName() + " has no ID");
+        }
+        if(id >= keys.length) {
+            int capacity = Math.max(keys.length * 2, id + 1);
+            keys = Arrays.copyOf(keys, capacity);
+            relations = Arrays.copyOf(relations, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        if(keys[id] == null) {
+            keys[id] = new int[INITIAL_CAPACITY];
+            relations[id] = new int[INITIAL_CAPACITY];
+        }
+        return id;
+    }
+
+    /**
+     * @return int representing the ID of the character, -1 if it knows no one
+     */
+    private static int keyOf(AbstractCharacter other) {
+        if(other.getId() < 0) {
+            throw new IllegalArgumentException(other.getFirstName() + " " + other.getLastName() + " has no ID");
+        }
+        return other.getId() + 1; // never EMPTY
+    }
+
+    private int existingIdOf(AbstractCharacter character) {
+        int id = character.getId();
+        return (id >= 0 && id < keys.length && keys[id] != null) ? id : -1;
+    }
+
+    private static int indexOf(int key, int mask) { return (key * HASH_MULTIPLIER >>> 16) & mask; }
+
+    /**
+     * @return int representing the table entry of the key, -1 if the character doesn't know the other
+     */
+    private int find(int id, int key) {
+        int[] table = keys[id];
+        int mask = table.length - 1;
+        for(int entry = indexOf(key, mask); ; entry = (entry + 1) & mask) {
+            if(table[entry] == key) {
+                return entry;
+            } else if(table[entry] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void insert(int id, int key, int relation) {
+        if((sizes[id] + 1) * 4 > keys[id].length * 3) {
+            rebuild(id, keys[id].length * 2, null); // stay at most three quarters full so probes stay short
+        }
+        int[] table = keys[id];
+        int mask = table.length - 1;
+        int entry = indexOf(key, mask);
+        while(table[entry] != EMPTY) {
+            entry = (entry + 1) & mask;
+        }
+        table[entry] = key;
+        relations[id][entry] = relation;
+        sizes[id]++;
+    }
+
+    /**
+     * Will move the relations of a character to a new table, leaving out the forgotten characters
+     */
+    private void rebuild(int id, int capacity, boolean[] forgotten) {
+        int[] oldKeys = keys[id];
+        int[] oldRelations = relations[id];
+        int[] table = new int[capacity];
+        int[] values = new int[capacity];
+        int mask = capacity - 1;
+        int size = 0;
+        for(int old = 0; old < oldKeys.length; old++) {
+            int key = oldKeys[old];
+            if(key != EMPTY && (forgotten == null || key - 1 >= forgotten.length || !forgotten[key - 1])) {
+                int entry = indexOf(oldKeys[old], mask);
+                while(table[entry] != EMPTY) {
+                    entry = (entry + 1) & mask;
+                }
+                table[entry] = key;
+                values[entry] = oldRelations[old];
+                size++;
+            }
+        }
+        keys[id] = table;
+        relations[id] = values;
+        sizes[id] = size;
+    }
+
+    /**
+     * The relations of one character seen as a Map, entries are made as they are iterated
+     */
+    private final class Relations extends AbstractMap<AbstractCharacter, Integer> {
+
+        private final AbstractCharacter character;
+
+        private Relations(AbstractCharacter character) { this.character = character; }
+
+        @Override
+        public int size() {
+            int id = existingIdOf(character);
+            return (id < 0) ? 0 : sizes[id];
+        }
+
+        @Override
+        public Integer get(Object other) {
+            return (other instanceof AbstractCharacter known) ? RelationshipStore.this.get(character, known) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object other) { return get(other) != null; }
+
+        @Override
+        public Set<Entry<AbstractCharacter, Integer>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() { return Relations.this.size(); }
+
+                @Override
+                public Iterator<Entry<AbstractCharacter, Integer>> iterator() {
+                    int id = existingIdOf(character);
+                    int[] table = (id < 0) ? new int[0] : keys[id];
+                    int[] values = (id < 0) ? new int[0] : relations[id];
+                    return new Iterator<>() {
+                        private int entry = advance(0);
+
+                        private int advance(int from) {
+                            while(from < table.length && table[from] == EMPTY) {
+                                from++;
+                            }
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() { return entry < table.length; }
+
+                        @Override
+                        public Entry<AbstractCharacter, Integer> next() {
+                            if(!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<AbstractCharacter, Integer> next =
+                                    new SimpleImmutableEntry<>(characters.get(table[entry] - 1), values[entry]);
+                            entry = advance(entry + 1);
+                            return next;
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,250 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.dionthorn.isekairpg.worlds.LocationId;
+import org.dionthorn.isekairpg.worlds.Region;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The SimulationLod keeps the hourly NPC AI to the Regions around the Player
+ * <p>
+ * NPCs belong to the Region of their home. Regions within the radius of the Player Region are near, their NPCs tick
+ * every hour. Far Regions only keep the hour they were last near and are settled as a whole when the Player comes
+ * close again, the cost of an hour follows the NPCs near the Player instead of the size of the World:
+ * <p>
+ *   Production - the work days of each profession in the Region are added up, counting a farmer that died out of
+ *   sight up to its death, and the rice of all of them is rolled in one draw then shared by work days, see
+ *   NPC.rollRice. Farming is the only work of the hourly AI that makes anything.
+ *   <p>
+ *   Aging and deaths - go on everywhere through the BirthdayIndex, which already only visits the characters born
+ *   that day, so far NPCs age and die on the same days as near ones.
+ *   <p>
+ *   Migration - none, the hourly AI never changes a home and its evening wandering ends at home every night.
+ * <p>
+ * The NPCs are then put where their schedule has them, see NPC.catchUp. There is no social model: NPCs of far
+ * Regions don't meet or talk, so their relationships stop changing out of sight.
+ * GameState only uses it when isekairpg.lodRadius is set.
+ */
+public final class SimulationLod {
+
+    private final List<NPC> npcs;
+    private final int regionSize;
+    private final int radius;
+    private int[] regionOf = new int[0];  // NPC index -> Region y * regionSize + x
+    private final int[][] residents;      // Region -> NPC indices ascending, alive when the Region was last near
+    private final int[] residentCounts;
+    private final long[] seenHours;       // Region -> last hour its NPCs were simulated
+    private final boolean[] near;
+    private int centerX = -1;
+    private int centerY = -1;
+    private int known; // NPCs this index has seen
+
+    /**
+     * Every Region starts far and up to date with the hour before the one being ticked
+     * @param npcs List<NPC> representing every NPC in GameState order
+     * @param regionSize int representing the width and height of the World in Regions
+     * @param radius int representing how many Regions around the Player Region are near
+     * @param seenHours long representing the last hour every NPC was simulated
+     */
+    public SimulationLod(List<NPC> npcs, int regionSize, int radius, long seenHours) {
+        this.npcs = npcs;
+        this.regionSize = regionSize;
+        this.radius = radius;
+        int regionCount = regionSize * regionSize;
+        residents = new int[regionCount][];
+        residentCounts = new int[regionCount];
+        this.seenHours = new long[regionCount];
+        Arrays.fill(this.seenHours, seenHours);
+        near = new boolean[regionCount];
+        for(int region = 0; region < regionCount; region++) {
+            residents[region] = new int[8];
+        }
+        known = 0;
+        addNew();
+    }
+
+    private void addNew() {
+        int count = npcs.size();
+        if(known < count) {
+            regionOf = Arrays.copyOf(regionOf, count);
+            for(int index = known; index < count; index++) {
+                NPC npc = npcs.get(index);
+                long home = (npc.getHomeId() != LocationId.NONE) ? npc.getHomeId() : npc.getCurrentPlaceId();
+                int region = LocationId.getRegionY(home) * regionSize + LocationId.getRegionX(home);
+                regionOf[index] = region;
+                if(!npc.isAlive()) {
+                    continue;
+                }
+                if(residentCounts[region] == residents[region].length) {
+                    residents[region] = Arrays.copyOf(residents[region], residents[region].length * 2);
+                }
+                residents[region][residentCounts[region]++] = index;
+            }
+            known = count;
+        }
+    }
+
+    /**
+     * Will center the near Regions on the Player, Regions coming near catch up on the hours they were far
+     * @param playerRegion Region representing the Region the Player is in
+     * @param totalHours long representing the hour being ticked
+     * @return int[] representing the indices of the NPCs that caught up in ascending order, they tick from now on
+     */
+    public int[] update(Region playerRegion, long totalHours) {
+        addNew();
+        if(playerRegion.getX() == centerX && playerRegion.getY() == centerY) {
+            return new int[0];
+        }
+        centerX = playerRegion.getX();
+        centerY = playerRegion.getY();
+        long lastHour = totalHours - 1;
+        int caughtUpCount = 0;
+        int[] caughtUp = new int[0];
+        for(int y = 0; y < regionSize; y++) {
+            for(int x = 0; x < regionSize; x++) {
+                int region = y * regionSize + x;
+                boolean nowNear = Math.abs(x - centerX) <= radius && Math.abs(y - centerY) <= radius;
+                if(near[region] && !nowNear) {
+                    seenHours[region] = lastHour; // simulated up to the hour before this one
+                    dropDead(region);
+                } else if(!near[region] && nowNear) {
+                    catchUp(region, lastHour);
+                    caughtUp = Arrays.copyOf(caughtUp, caughtUpCount + residentCounts[region]);
+                    System.arraycopy(residents[region], 0, caughtUp, caughtUpCount, residentCounts[region]);
+                    caughtUpCount += residentCounts[region];
+                }
+                near[region] = nowNear;
+            }
+        }
+        Arrays.sort(caughtUp, 0, caughtUpCount);
+        return caughtUp;
+    }
+
+    /**
+     * Will bring the NPCs of a Region from the hour it was last seen up to the given hour
+     */
+    private void catchUp(int region, long toHours) {
+        long fromHours = seenHours[region];
+        if(fromHours >= toHours) {
+            return;
+        }
+        long workDays = workDays(fromHours, toHours);
+        int hour = GameState.hourOf(toHours);
+        int count = residentCounts[region];
+        int[] regionResidents = residents[region];
+        // work days per farmer then of all of them
+        long[] farmed = new long[count];
+        long farmerDays = 0;
+        for(int resident = 0; resident < count; resident++) {
+            NPC npc = npcs.get(regionResidents[resident]);
+            if(npc.getProfession() == AbstractCharacter.Profession.FARMER) {
+                farmed[resident] = npc.isAlive() ? workDays : workDays(fromHours, diedAt(npc, fromHours, toHours));
+                farmerDays += farmed[resident];
+            }
+        }
+        long rice = NPC.rollRice(farmerDays, RandomStreams.current());
+        long left = rice;
+        for(int resident = 0; resident < count; resident++) {
+            left -= (farmed[resident] == 0) ? 0 : rice * farmed[resident] / farmerDays;
+        }
+        for(int resident = 0; resident < count; resident++) {
+            long share = 0;
+            if(farmed[resident] > 0) {
+                share = rice * farmed[resident] / farmerDays;
+                if(left > 0) {
+                    share++; // what the shares rounded off, at most one each
+                    left--;
+                }
+            }
+            npcs.get(regionResidents[resident]).catchUp(workDays, hour, (int) share);
+        }
+        seenHours[region] = toHours;
+    }
+
+    /**
+     * Will bring every far Region up to the given hour, used before the SimulationLod is replaced
+     * @param totalHours long representing the last hour that was simulated
+     */
+    public void catchUpAll(long totalHours) {
+        addNew();
+        for(int region = 0; region < near.length; region++) {
+            if(!near[region]) {
+                catchUp(region, totalHours);
+            }
+        }
+    }
+
+    /**
+     * Will drop the NPCs of a Region that died, they don't work or move again
+     */
+    private void dropDead(int region) {
+        int kept = 0;
+        for(int resident = 0; resident < residentCounts[region]; resident++) {
+            int index = residents[region][resident];
+            if(npcs.get(index).isAlive()) {
+                residents[region][kept++] = index;
+            }
+        }
+        residentCounts[region] = kept;
+    }
+
+    /**
+     * Will count the hour 7 of each day after fromHours up to toHours, when NPCs start work
+     */
+    private static long workDays(long fromHours, long toHours) {
+        return Math.floorDiv(toHours - 6, GameState.HOURS_PER_DAY) - Math.floorDiv(fromHours - 6, GameState.HOURS_PER_DAY);
+    }
+
+    /**
+     * Will find the hour an NPC that was alive at fromHours died of old age, the first hour of its last birthday
+     * @return long representing the hour it died, fromHours if it died some other way
+     */
+    private static long diedAt(NPC npc, long fromHours, long toHours) {
+        int daysPerYear = GameState.MONTHS_PER_YEAR * GameState.DAYS_PER_MONTH;
+        int birthday = (npc.getBirthMonth() - 1) * GameState.DAYS_PER_MONTH + (npc.getBirthDay() - 1);
+        long toDay = Math.floorDiv(toHours, GameState.HOURS_PER_DAY);
+        long died = (toDay - Math.floorMod(toDay - birthday, daysPerYear)) * GameState.HOURS_PER_DAY;
+        return (npc.getAge() == npc.getMaxAge() && died > fromHours) ? died : fromHours;
+    }
+
+    /**
+     * Will keep the NPCs of near Regions
+     * @param due int[] representing the indices of the NPCs due this hour in ascending order
+     * @return int[] representing the indices of the due NPCs in near Regions in ascending order
+     */
+    public int[] filter(int[] due) {
+        int[] nearDue = new int[due.length];
+        int count = 0;
+        for(int index: due) {
+            if(index >= known || near[regionOf[index]]) {
+                nearDue[count++] = index; // NPCs added since the last update tick until they are sorted in
+            }
+        }
+        return (count == due.length) ? due : Arrays.copyOf(nearDue, count);
+    }
+
+    /**
+     * Will skip the NPCs of near Regions ahead like GameState.fastForward(long), far Regions catch up when near
+     * @param workDays long representing how many times work started in the skipped hours
+     * @param hour int representing the hour of the day time was skipped to
+     */
+    public void fastForward(long workDays, int hour) {
+        for(int region = 0; region < near.length; region++) {
+            if(near[region]) {
+                for(int resident = 0; resident < residentCounts[region]; resident++) {
+                    npcs.get(residents[region][resident]).fastForward(workDays, hour);
+                }
+            }
+        }
+    }
+
+    /**
+     * Will provide how many Regions around the Player Region tick every hour
+     * @return int representing the radius in Regions
+     */
+    public int getRadius() { return radius; }
+
+}
@@ -6,14 +6,20 @@ import javafx.scene.control.ComboBox;
 import javafx.scene.text.Text;
 import org.dionthorn.isekairpg.Engine;
 import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.persistence.WorldImage;
 import org.dionthorn.isekairpg.utilities.Dice;
 import org.dionthorn.isekairpg.worlds.World;
 
+import java.io.IOException;
+import java.nio.file.Files;
+
 public class CharacterCreationScreenController extends AbstractScreenController {
 
     @FXML private Text playerSheet;
     @FXML private ComboBox<String> worldSizeBox;
 
+    private static final String WORLD_IMAGE = "WORLD IMAGE";
+
     private Player player;
 
     @FXML
@@ -21,6 +27,9 @@ public class CharacterCreationScreenController extends AbstractScreenController
         for(World.Size worldSize: World.Size.values()) {
             worldSizeBox.getItems().add(worldSize.name());
         }
+        if(Files.exists(WorldImage.DEFAULT_PATH)) {
+            worldSizeBox.getItems().add(WORLD_IMAGE); // after the sizes so a size is found by its ordinal
+        }
         worldSizeBox.getSelectionModel().select(2); // Medium world size default
         player = new Player(Dice.d8);
         update();
@@ -28,17 +37,31 @@ public class CharacterCreationScreenController extends AbstractScreenController
 
     @FXML
     public void onStartBtn() {
+        if(WORLD_IMAGE.equals(worldSizeBox.getSelectionModel().getSelectedItem())) {
+            try {
+                Engine.getGameState().createWorld(WorldImage.DEFAULT_PATH, player);
+            } catch(IOException e) {
+                Alert failed = new Alert(Alert.AlertType.ERROR);
+                failed.setTitle("Could not open the world image");
+                failed.setHeaderText("");
+                failed.setContentText(e.getMessage());
+                failed.show();
+                return;
+            }
+            Engine.loadFXML("GameScreen.fxml");
+            return;
+        }
         int worldSizeSelection = worldSizeBox.getSelectionModel().getSelectedIndex();
         World.Size worldSizeChoice = World.Size.values()[worldSizeSelection];
 
         Alert loading = new Alert(Alert.AlertType.INFORMATION);
-        if(worldSizeChoice == World.Size.LARGE || worldSizeChoice == World.Size.MEDIUM) {
+        if(worldSizeChoice.compareTo(World.Size.MEDIUM) >= 0) {
             loading.setTitle("Loading the World may take a few seconds.");
             loading.setHeaderText("");
             loading.show();
         }
         Engine.getGameState().createWorld(worldSizeChoice, player);
-        if(worldSizeChoice == World.Size.LARGE || worldSizeChoice == World.Size.MEDIUM) {
+        if(worldSizeChoice.compareTo(World.Size.MEDIUM) >= 0) {
             loading.setTitle("World Created.");
             loading.setContentText("Finished loading the entire World");
         }
@@ -55,9 +78,14 @@ public class CharacterCreationScreenController extends AbstractScreenController
 
     private void update() {
         bottomConsole.setText("Roll your character, and choose a world size!");
-        bottomConsole.appendText("\n\nLarge & Medium Worlds will take a few seconds to load!");
-        bottomConsole.appendText("\n\nMedium Worlds have ~1.6 million places and ~20-25k NPCs");
-        bottomConsole.appendText("\n Large Worlds have ~26  million places and ~110-130k NPCs");
+        bottomConsole.appendText("\n\nMedium & bigger Worlds will take a few seconds to load!");
+        bottomConsole.appendText("\n\n    Medium Worlds have ~1.6 million places and ~20-25k NPCs");
+        bottomConsole.appendText("\n     Large Worlds have ~26  million places and ~110-130k NPCs");
+        bottomConsole.appendText("\nVery Large Worlds have ~105 million places and ~480k NPCs (~9 seconds, ~1.3 GB in play)");
+        bottomConsole.appendText("\n      Huge Worlds have ~420 million places and ~2 million NPCs (~65 seconds, ~2.8 GB, run with -Xmx4g)");
+        if(worldSizeBox.getItems().contains(WORLD_IMAGE)) {
+            bottomConsole.appendText("\n\nWorld Image starts in the World written to " + WorldImage.DEFAULT_PATH + " by the image command");
+        }
         playerSheet.setText(player.getCharacterSheet());
     }
 
@@ -14,11 +14,15 @@ import org.dionthorn.isekairpg.GameState;
 import org.dionthorn.isekairpg.characters.AbstractCharacter;
 import org.dionthorn.isekairpg.characters.NPC;
 import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.persistence.SaveFile;
+import org.dionthorn.isekairpg.persistence.WorldImage;
 import org.dionthorn.isekairpg.utilities.Dice;
 import org.dionthorn.isekairpg.worlds.Area;
+import org.dionthorn.isekairpg.worlds.LocationId;
 import org.dionthorn.isekairpg.worlds.Place;
 import org.dionthorn.isekairpg.worlds.Region;
 import org.dionthorn.isekairpg.worlds.World;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Locale;
 import java.util.Optional;
@@ -94,7 +98,7 @@ public class GameScreenController extends AbstractScreenController {
         Player player = gameState.getPlayer();
         if(player.getMoney().valueInCopper() >= costInCopper) {
             player.getMoney().remove(0, 0, 0, costInCopper);
-            gameState.tick(8);
+            gameState.fastForward(8);
             int heal = healDie.roll();
             if(costInCopper == 0) {
                 GameState.actionStrings.add("You sleep for 8 hours and heal for: " + heal);
@@ -270,6 +274,10 @@ public class GameScreenController extends AbstractScreenController {
         );
 
         bottomConsole.setText(locationInfo);
+        String saveFailure = gameState.takeSaveFailure();
+        if(saveFailure != null) {
+            bottomConsole.appendText("\n" + saveFailure); // saves are written in the background
+        }
         for(String actionString: GameState.actionStrings) {
             bottomConsole.appendText("\n" + actionString); // add all actionString
         }
@@ -354,6 +362,12 @@ public class GameScreenController extends AbstractScreenController {
         bottomConsole.appendText("\nmove [north, west, east, south] -- move the player in the given direction");
         bottomConsole.appendText("\nmove [n, w, e, s]               -- same as above");
         bottomConsole.appendText("\nmem -- show debug memory information");
+        bottomConsole.appendText("\nsave -- save the game to " + SaveFile.DEFAULT_PATH);
+        bottomConsole.appendText("\nload -- load the game from " + SaveFile.DEFAULT_PATH);
+        bottomConsole.appendText("\nautosave -- turn journaled autosave to " + SaveFile.DEFAULT_PATH + " on or off");
+        bottomConsole.appendText("\nrecover -- load the last autosave and replay its journal");
+        bottomConsole.appendText("\nimage -- write the World and its people to " + WorldImage.DEFAULT_PATH + " to start new games in");
+        bottomConsole.appendText("\nwait <days> -- let the given number of days pass");
         bottomConsole.appendText("\n>");
     }
 
@@ -379,9 +393,82 @@ public class GameScreenController extends AbstractScreenController {
                     double memoryUsedPercent = (memoryUsed * 100.0) / memoryMax;
                     bottomConsole.appendText(String.format("\nmemoryUsedPercent: %.2f%%", memoryUsedPercent));
                     bottomConsole.appendText(
-                            String.format("\nabstractCharacters: %s", AbstractCharacter.getCharacterCount())
+                            String.format("\nabstractCharacters: %s", Engine.getGameState().getCharacterTable().getCount())
                     );
                     bottomConsole.appendText("\n>"); // insert cursor so user can do console commands
+                } else if(userInputLazy.equals("save")) {
+                    long startTime = System.nanoTime();
+                    try {
+                        Engine.getGameState().saveGameInBackground(SaveFile.DEFAULT_PATH);
+                        bottomConsole.setText(String.format("Saving to %s in the background, play paused %d ms",
+                                SaveFile.DEFAULT_PATH, (System.nanoTime() - startTime) / 1_000_000));
+                    } catch(IOException e) {
+                        bottomConsole.setText("Could not save: " + e.getMessage());
+                    }
+                    bottomConsole.appendText("\n>");
+                } else if(userInputLazy.equals("load")) {
+                    long startTime = System.nanoTime();
+                    try {
+                        Engine.getGameState().loadGame(SaveFile.DEFAULT_PATH);
+                        update();
+                        bottomConsole.setText(String.format("Loaded %s in %d ms",
+                                SaveFile.DEFAULT_PATH, (System.nanoTime() - startTime) / 1_000_000));
+                    } catch(IOException e) {
+                        bottomConsole.setText("Could not load: " + e.getMessage());
+                    }
+                    bottomConsole.appendText("\n>");
+                } else if(userInputLazy.equals("autosave")) {
+                    GameState gameState = Engine.getGameState();
+                    if(gameState.getJournal() != null) {
+                        gameState.stopAutosave();
+                        bottomConsole.setText("Autosave off");
+                    } else {
+                        try {
+                            gameState.startAutosave(SaveFile.DEFAULT_PATH);
+                            bottomConsole.setText("Autosave on, every hour is journaled to " + SaveFile.DEFAULT_PATH);
+                        } catch(IOException e) {
+                            bottomConsole.setText("Could not start autosave: " + e.getMessage());
+                        }
+                    }
+                    bottomConsole.appendText("\n>");
+                } else if(userInputLazy.equals("recover")) {
+                    long startTime = System.nanoTime();
+                    try {
+                        Engine.getGameState().recoverGame(SaveFile.DEFAULT_PATH);
+                        update();
+                        bottomConsole.setText(String.format("Recovered %s in %d ms, autosave on",
+                                SaveFile.DEFAULT_PATH, (System.nanoTime() - startTime) / 1_000_000));
+                    } catch(IOException e) {
+                        bottomConsole.setText("Could not recover: " + e.getMessage());
+                    }
+                    bottomConsole.appendText("\n>");
+                } else if(userInputLazy.equals("image")) {
+                    long startTime = System.nanoTime();
+                    try {
+                        Engine.getGameState().writeWorldImage(WorldImage.DEFAULT_PATH);
+                        bottomConsole.setText(String.format("Wrote the world image %s in %d ms",
+                                WorldImage.DEFAULT_PATH, (System.nanoTime() - startTime) / 1_000_000));
+                    } catch(IOException e) {
+                        bottomConsole.setText("Could not write the world image: " + e.getMessage());
+                    }
+                    bottomConsole.appendText("\n>");
+                } else if(userInputLazy.split("\\s+")[0].equals("wait")) {
+                    String[] words = userInputLazy.split("\\s+");
+                    try {
+                        int days = (words.length >= 2) ? Integer.parseInt(words[1]) : 1;
+                        if(days <= 0 || words.length > 2) {
+                            consoleHelpPrompt();
+                            return;
+                        }
+                        long startTime = System.nanoTime();
+                        Engine.getGameState().fastForward((long) days * GameState.HOURS_PER_DAY);
+                        update();
+                        bottomConsole.setText(String.format("You waited %d days, it took %d ms",
+                                days, (System.nanoTime() - startTime) / 1_000_000));
+                        bottomConsole.appendText("\n>");
+                    } catch(NumberFormatException e) {
+                        consoleHelpPrompt();
+                    }
                 } else if(userInputLazy.startsWith("map")) {
                     // unknown map command direct to help
                     switch(userInputLazy) {
@@ -502,22 +589,20 @@ public class GameScreenController extends AbstractScreenController {
         Area currentArea = player.getCurrentArea();
         Region currentRegion = player.getCurrentRegion();
 
-        Place attemptPlaceMove = currentArea.getPlace(
-                currentPlace.getX() + directionX,
-                currentPlace.getY() + directionY
-        );
-        if(attemptPlaceMove != null) {
+        long currentId = currentPlace.id();
+        // step with plain ID arithmetic, the neighbor is NONE when it is past the edge
+        long placeMoveId = LocationId.offsetPlace(currentId, directionX, directionY, currentArea.getPlaceSize());
+        if(placeMoveId != LocationId.NONE) {
+            Place attemptPlaceMove = world.resolve(placeMoveId);
             // can move place
             player.setCurrentPlace(attemptPlaceMove);
             gameState.tick();
             GameState.actionStrings.add("Moving places took 1 hour");
         } else {
             // cannot move place attempt to move area
-            Area attemptAreaMove = currentRegion.getArea(
-                    currentArea.getX() + directionX,
-                    currentArea.getY() + directionY
-            );
-            if(attemptAreaMove != null) {
+            long areaMoveId = LocationId.offsetArea(currentId, directionX, directionY, currentRegion.getAreaSize());
+            if(areaMoveId != LocationId.NONE) {
+                Area attemptAreaMove = world.resolveArea(areaMoveId);
                 // can move area
                 int placeSize = attemptAreaMove.getPlaceSize();
                 Dice placeDie = new Dice(placeSize);
@@ -540,11 +625,9 @@ public class GameScreenController extends AbstractScreenController {
                 GameState.actionStrings.add("Moving areas took 1 hour");
             } else {
                 // cannot move area
-                Region attemptRegionMove = world.getRegion(
-                        currentRegion.getX() + directionX,
-                        currentRegion.getY() + directionY
-                );
-                if(attemptRegionMove != null) {
+                long regionMoveId = LocationId.offsetRegion(currentId, directionX, directionY, world.getRegionSize());
+                if(regionMoveId != LocationId.NONE) {
+                    Region attemptRegionMove = world.resolveRegion(regionMoveId);
                     // can move Region
                     Area areaToMove = null;
                     // get the area to move to within the target region
@@ -1,13 +1,13 @@
 package org.dionthorn.isekairpg.groups;
 
 import org.dionthorn.isekairpg.characters.AbstractCharacter;
-import org.dionthorn.isekairpg.worlds.Area;
+import org.dionthorn.isekairpg.worlds.LocationId;
 import java.util.ArrayList;
 
 public class Nation extends AbstractGroup {
 
     private final AbstractCharacter king;
-    private final ArrayList<Area> dominion = new ArrayList<>();
+    private final ArrayList<Long> dominion = new ArrayList<>(); // LocationIds of the Areas so they can be evicted
     private final ArrayList<AbstractCharacter> citizens = new ArrayList<>();
 
     /**
@@ -17,21 +17,31 @@ public class Nation extends AbstractGroup {
      * a nation can expand its dominion or lose it from wars
      * @param name String representing this Nations name
      * @param king AbstractCharacter representing the King of this Nation
-     * @param castle Area representing the Castle of this Nation
+     * @param castle long representing the LocationId of the Castle Area of this Nation
      */
-    public Nation(String name, AbstractCharacter king, Area castle) {
+    public Nation(String name, AbstractCharacter king, long castle) {
         super(name);
         this.king = king;
-        dominion.add(castle);
+        if(castle != LocationId.NONE) {
+            dominion.add(castle);
+        }
     }
 
     public void addCitizen(AbstractCharacter toAdd) { citizens.add(toAdd); }
 
     public ArrayList<AbstractCharacter> getCitizens() { return citizens; }
 
-    public void addDomain(Area toAdd) { dominion.add(toAdd); }
+    /**
+     * Will add an Area to the dominion of this Nation
+     * @param toAdd long representing the LocationId of the Area
+     */
+    public void addDomain(long toAdd) { dominion.add(toAdd); }
 
-    public ArrayList<Area> getDominion() { return dominion; }
+    /**
+     * Will provide the Areas under the dominion of this Nation, see World.resolveArea
+     * @return ArrayList<Long> representing the LocationIds of the Areas, the Castle first
+     */
+    public ArrayList<Long> getDominion() { return dominion; }
 
     public AbstractCharacter getKing() { return king; }
 
@@ -4,14 +4,18 @@ import org.dionthorn.isekairpg.utilities.Dice;
 
 public class Food extends AbstractItem implements Stackable {
 
+    private final Foods.Type type;
     private final Dice healDice;
     private int amount = 0;
 
-    public Food(String name, String description, int weight, Dice healDice) {
+    public Food(Foods.Type type, String name, String description, int weight, Dice healDice) {
         super(name, description, weight);
+        this.type = type;
         this.healDice = healDice;
     }
 
+    public Foods.Type getType() { return type; }
+
     public int eat() { return healDice.roll(); }
 
     @Override
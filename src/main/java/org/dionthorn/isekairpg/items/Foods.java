@@ -33,7 +33,7 @@ public final class Foods {
         if(name.equals("Test")) {
             System.err.println("Food not found!");
         } else {
-            toReturn = new Food(name, description, weight, healDice);
+            toReturn = new Food(type, name, description, weight, healDice);
         }
         return toReturn;
     }
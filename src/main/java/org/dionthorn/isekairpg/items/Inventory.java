@@ -0,0 +1,132 @@
+package org.dionthorn.isekairpg.items;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Inventory holds the items a character carries
+ * <p>
+ * Stackable Foods are kept as a count per Foods.Type so a farmer gathering rice for years holds a few ints
+ * instead of a Food per unit, other items are kept one by one. The total weight is kept as items are added
+ * and removed so it never has to be summed.
+ */
+public final class Inventory {
+
+    private static final Foods.Type[] FOOD_TYPES = Foods.Type.values();
+    private static final int[] FOOD_WEIGHTS = new int[FOOD_TYPES.length];
+
+    static {
+        for(Foods.Type type: FOOD_TYPES) {
+            FOOD_WEIGHTS[type.ordinal()] = Foods.get(type).getWeight();
+        }
+    }
+
+    private final int[] foods = new int[FOOD_TYPES.length]; // Foods.Type ordinal -> count
+    private final ArrayList<AbstractItem> items = new ArrayList<>(0);
+    private int weight = 0;
+
+    public Inventory() { }
+
+    /**
+     * Will copy another Inventory, used to capture it for a save
+     * @param other Inventory representing the inventory to copy
+     */
+    public Inventory(Inventory other) {
+        System.arraycopy(other.foods, 0, foods, 0, foods.length);
+        items.addAll(other.items);
+        weight = other.weight;
+    }
+
+    /**
+     * Will add an item, a Food is added to the count of its type
+     * @param item AbstractItem representing the item to add
+     */
+    public void add(AbstractItem item) {
+        if(item instanceof Food food) {
+            add(food.getType(), 1);
+        } else {
+            items.add(item);
+            weight += item.getWeight();
+        }
+    }
+
+    /**
+     * Will add Food to the count of its type without making any Food
+     * @param type Foods.Type representing the type of Food
+     * @param count int representing how many to add
+     */
+    public void add(Foods.Type type, int count) {
+        foods[type.ordinal()] += count;
+        weight += FOOD_WEIGHTS[type.ordinal()] * count;
+    }
+
+    /**
+     * Will add everything another Inventory holds
+     * @param other Inventory representing the items to add
+     */
+    public void addAll(Inventory other) {
+        for(int type = 0; type < foods.length; type++) {
+            foods[type] += other.foods[type];
+        }
+        items.addAll(other.items);
+        weight += other.weight;
+    }
+
+    /**
+     * Will remove an item, a Food is taken from the count of its type
+     * @param item AbstractItem representing the item to remove
+     * @return boolean representing true if the item was carried and removed
+     */
+    public boolean remove(AbstractItem item) {
+        if(item instanceof Food food) {
+            return remove(food.getType(), 1) == 1;
+        }
+        if(!items.remove(item)) {
+            return false;
+        }
+        weight -= item.getWeight();
+        return true;
+    }
+
+    /**
+     * Will remove up to count of a Food, ex: eating or selling it
+     * @param type Foods.Type representing the type of Food
+     * @param count int representing how many to remove
+     * @return int representing how many were removed, less than count if fewer were carried
+     */
+    public int remove(Foods.Type type, int count) {
+        int removed = Math.min(Math.max(count, 0), foods[type.ordinal()]);
+        foods[type.ordinal()] -= removed;
+        weight -= FOOD_WEIGHTS[type.ordinal()] * removed;
+        return removed;
+    }
+
+    /**
+     * Will provide how many of a Food are carried
+     * @param type Foods.Type representing the type of Food
+     * @return int representing the count
+     */
+    public int getCount(Foods.Type type) { return foods[type.ordinal()]; }
+
+    /**
+     * Will provide the items that are not counted by type
+     * @return List<AbstractItem> representing the items in the order they were added, read only
+     */
+    public List<AbstractItem> getItems() { return Collections.unmodifiableList(items); }
+
+    /**
+     * Will provide how many items are carried, every unit of Food counts
+     * @return int representing the count of items
+     */
+    public int size() {
+        int size = items.size();
+        for(int count: foods) {
+            size += count;
+        }
+        return size;
+    }
+
+    public int getWeight() { return weight; }
+
+}
@@ -1,5 +1,9 @@
 package org.dionthorn.isekairpg.items;
 
+import org.dionthorn.isekairpg.Engine;
+import org.dionthorn.isekairpg.persistence.Journal;
+import org.dionthorn.isekairpg.persistence.Snapshot;
+
 public class Money {
 
     // Holds Platinum, Gold, Silver and Copper coins
@@ -62,6 +66,7 @@ public class Money {
     }
 
     public void add(int platinum, int gold, int silver, int copper) {
+        beforeChange();
         coinCount[COINS.COPPER.ordinal()] += copper;
         while(coinCount[COINS.COPPER.ordinal()] >= 100) {
             coinCount[COINS.SILVER.ordinal()] += 1;
@@ -78,10 +83,12 @@ public class Money {
             coinCount[COINS.GOLD.ordinal()] -= 100;
         }
         coinCount[COINS.PLATINUM.ordinal()] += platinum;
+        journalChange();
     }
 
     public void remove(int platinum, int gold, int silver, int copper) {
         Money targetValue = new Money(platinum, gold, silver, copper);
+        beforeChange();
         if(valueInCopper() < targetValue.valueInCopper()) {
             // this money bag is less than the amount to remove so zero out this bag
             coinCount[COINS.COPPER.ordinal()] = 0;
@@ -93,6 +100,21 @@ public class Money {
             coinCount[COINS.COPPER.ordinal()] -= targetValue.valueInCopper();
             convertToMax();
         }
+        journalChange();
+    }
+
+    private void beforeChange() {
+        Snapshot snapshot = Engine.getGameState().getSnapshot();
+        if(snapshot != null) {
+            snapshot.preserve(this);
+        }
+    }
+
+    private void journalChange() {
+        Journal journal = Engine.getGameState().getJournal();
+        if(journal != null) {
+            journal.moneyChanged(this);
+        }
     }
 
     public int getPlatinum() { return coinCount[COINS.PLATINUM.ordinal()]; }
@@ -0,0 +1,543 @@
+package org.dionthorn.isekairpg.persistence;
+
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.characters.AbstractCharacter;
+import org.dionthorn.isekairpg.characters.NPC;
+import org.dionthorn.isekairpg.items.Foods;
+import org.dionthorn.isekairpg.items.Money;
+import org.dionthorn.isekairpg.worlds.LocationId;
+import org.dionthorn.isekairpg.worlds.Place;
+import org.dionthorn.isekairpg.worlds.World;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * The Journal is a write ahead log of every change to the game since the last checkpoint SaveFile
+ * <p>
+ * The game thread only copies the numbers of each change into a batch of longs, ex: an NPC moved or two characters
+ * talked, at the end of every tick the batch is handed to a background writer thread so the game thread never
+ * encodes a record or waits on the disk. The writer encodes each batch into the small binary records below and
+ * appends them with their length and checksum.
+ * <p>
+ * Recovery loads the checkpoint and replays the records of every complete tick, a batch cut short by a crash
+ * and any records after the last complete tick are ignored. Once the journal grows past its limit the game
+ * starts the next journal and writes a new checkpoint in the background, see Snapshot and nextPathOf.
+ * <p>
+ * Characters are referenced by their index in the checkpoint table (the Player then every NPC in GameState order)
+ * and Places by LocationId.
+ */
+public final class Journal implements AutoCloseable {
+
+    public static final int VERSION = 2;
+
+    private static final long MAGIC = 0x49534B414A524E4CL; // "ISKAJRNL"
+    private static final int HEADER_BYTES = 32;
+    private static final int BATCH_WORDS = 1 << 15;
+    private static final int SPARE_BATCHES = 16; // recycled so a busy tick doesn't churn the heap
+    private static final Batch STOP = new Batch(0); // tells the writer thread to finish
+
+    // record types
+    private static final byte TICK = 1;       // hours played, every record before it belongs to a complete tick
+    private static final byte MOVE = 2;       // character, Place ID
+    private static final byte VITALS = 3;     // character, hp, sp, age, xp, level, alive
+    private static final byte ACTIVITY = 4;   // NPC, sleeping and working flags
+    private static final byte RELATION = 5;   // character, other character, value
+    private static final byte MONEY = 6;      // character, platinum, gold, silver, copper
+    private static final byte ITEM = 7;       // character, item kind, item type, count
+    private static final byte PLACE_TYPE = 8; // Place ID, Place.Type ordinal
+    private static final byte PLACE_NAME = 9; // Place ID, name
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long limitBytes;
+    private final AbstractCharacter[] characters; // checkpoint table, every character knows its own index
+    private final IdentityHashMap<Money, Integer> purses = new IdentityHashMap<>();
+    private final LinkedBlockingQueue<Batch> pending = new LinkedBlockingQueue<>();
+    private final ArrayBlockingQueue<Batch> spare = new ArrayBlockingQueue<>(SPARE_BATCHES);
+    private final Thread writer;
+    private Batch batch = new Batch(BATCH_WORDS);
+    private long appendedBytes = 0; // handed to the writer since the checkpoint
+    private volatile IOException failure;
+
+    /**
+     * The changes of a tick as the game thread copied them, the first word of a record holds its type
+     * in the low byte and the character index above it, see encode for the words of each type
+     */
+    private static final class Batch {
+        private final long[] words;
+        private final ArrayList<byte[]> names = new ArrayList<>(0); // Place names, the word holds the index
+        private int size = 0;
+        private int bytes = 0; // encoded size of the records
+
+        private Batch(int capacity) { words = new long[capacity]; }
+
+        private void clear() {
+            names.clear();
+            size = 0;
+            bytes = 0;
+        }
+    }
+
+    private Journal(Path path, GameState state, long limitBytes) throws IOException {
+        this.path = path;
+        this.limitBytes = limitBytes;
+        characters = new AbstractCharacter[state.getNPCs().size() + 1];
+        characters[0] = state.getPlayer();
+        for(int npc = 0; npc < state.getNPCs().size(); npc++) {
+            characters[npc + 1] = state.getNPCs().get(npc);
+        }
+        for(int index = 0; index < characters.length; index++) {
+            characters[index].setJournalIndex(index);
+            purses.put(characters[index].getMoney(), index);
+        }
+        channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putLong(MAGIC).putInt(VERSION).putLong(state.getWorld().getSeed()).putLong(state.getTotalHours());
+        header.position(HEADER_BYTES).flip();
+        while(header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        writer = new Thread(this::writeBatches, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Will start a new journal for the game, the game must be as its checkpoint was or is about to be written
+     * @param path Path representing the journal file, replaced if it exists
+     * @param state GameState representing the game that is checkpointed
+     * @param limitBytes long representing how large the journal may grow before needsCheckpoint
+     * @return Journal representing the open journal
+     * @throws IOException if the journal can't be created
+     */
+    public static Journal start(Path path, GameState state, long limitBytes) throws IOException {
+        return new Journal(path, state, limitBytes);
+    }
+
+    /**
+     * Will provide the journal file that belongs to a checkpoint save file
+     * @param checkpoint Path representing the checkpoint save file
+     * @return Path representing its journal file
+     */
+    public static Path pathOf(Path checkpoint) { return checkpoint.resolveSibling(checkpoint.getFileName() + ".journal"); }
+
+    /**
+     * Will provide the journal file started while the next checkpoint is written in the background,
+     * it follows the journal of the current checkpoint until promote moves it over that journal
+     * @param checkpoint Path representing the checkpoint save file
+     * @return Path representing the next journal file
+     */
+    public static Path nextPathOf(Path checkpoint) {
+        return checkpoint.resolveSibling(checkpoint.getFileName() + ".journal.next");
+    }
+
+    /**
+     * Will make the next journal the journal of the checkpoint, called once the new checkpoint is on disk
+     * the next journal may still be open, records keep going to the moved file
+     * @param checkpoint Path representing the checkpoint save file that was just written
+     * @throws IOException if the next journal can't be moved
+     */
+    public static void promote(Path checkpoint) throws IOException {
+        try {
+            Files.move(nextPathOf(checkpoint), pathOf(checkpoint),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(nextPathOf(checkpoint), pathOf(checkpoint), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Records, called on the game thread
+
+    /**
+     * @param character AbstractCharacter representing the character that moved
+     * @param placeId long representing the LocationId of the Place it moved to, LocationId.NONE if it left the World
+     */
+    public void moved(AbstractCharacter character, long placeId) {
+        int index = indexOf(character);
+        if(index >= 0) {
+            long[] words = reserve(2, 13);
+            words[batch.size++] = MOVE | (long) index << 8;
+            words[batch.size++] = placeId;
+        }
+    }
+
+    public void vitalsChanged(AbstractCharacter character) {
+        int index = indexOf(character);
+        if(index >= 0) {
+            long[] words = reserve(4, 26);
+            words[batch.size++] = VITALS | (long) index << 8;
+            words[batch.size++] = pair(character.getHP(), character.getSP());
+            words[batch.size++] = pair(character.getAge(), character.getXP());
+            words[batch.size++] = pair(character.getLevel(), character.isAlive() ? 1 : 0);
+        }
+    }
+
+    public void activityChanged(NPC npc) {
+        int index = indexOf(npc);
+        if(index >= 0) {
+            long flags = (npc.isSleeping() ? 1 : 0) | (npc.isWorking() ? 2 : 0);
+            reserve(1, 6)[batch.size++] = ACTIVITY | (long) index << 8 | flags << 40;
+        }
+    }
+
+    public void relationChanged(AbstractCharacter character, AbstractCharacter other, int value) {
+        int index = indexOf(character);
+        int otherIndex = indexOf(other);
+        if(index >= 0 && otherIndex >= 0) {
+            long[] words = reserve(2, 13);
+            words[batch.size++] = RELATION | (long) index << 8;
+            words[batch.size++] = pair(otherIndex, value);
+        }
+    }
+
+    public void moneyChanged(Money money) {
+        Integer index = purses.get(money);
+        if(index != null) {
+            long[] words = reserve(3, 21);
+            words[batch.size++] = MONEY | (long) index << 8;
+            words[batch.size++] = pair(money.getPlatinum(), money.getGold());
+            words[batch.size++] = pair(money.getSilver(), money.getCopper());
+        }
+    }
+
+    public void foodAdded(AbstractCharacter character, Foods.Type type, int count) {
+        int index = indexOf(character);
+        if(index >= 0) {
+            long[] words = reserve(2, 11);
+            words[batch.size++] = ITEM | (long) index << 8 | (long) type.ordinal() << 40;
+            words[batch.size++] = count;
+        }
+    }
+
+    public void placeTypeChanged(Place place) {
+        long[] words = reserve(2, 10);
+        words[batch.size++] = PLACE_TYPE | (long) place.getType().ordinal() << 8;
+        words[batch.size++] = place.id();
+    }
+
+    public void placeNameChanged(Place place) {
+        byte[] name = place.getName().getBytes(StandardCharsets.UTF_8);
+        long[] words = reserve(2, 11 + name.length);
+        words[batch.size++] = PLACE_NAME | (long) batch.names.size() << 8;
+        words[batch.size++] = place.id();
+        batch.names.add(name);
+    }
+
+    /**
+     * Will close the tick and hand its records to the writer thread, called at the end of every tick
+     * @param totalHours long representing the hours played once this tick is done
+     */
+    public void endTick(long totalHours) {
+        long[] words = reserve(2, 9);
+        words[batch.size++] = TICK;
+        words[batch.size++] = totalHours;
+        handOff();
+    }
+
+    /**
+     * Will provide if the journal has grown past its limit and the game should write a new checkpoint
+     * @return boolean representing if a new checkpoint is due
+     */
+    public boolean needsCheckpoint() { return appendedBytes >= limitBytes; }
+
+    /**
+     * Will provide why the writer thread stopped, records handed to it afterwards are dropped
+     * @return IOException representing the failed write, null while the journal is being written
+     */
+    public IOException getFailure() { return failure; }
+
+    /**
+     * Will provide the index of the character in the checkpoint table of this journal
+     * @return int representing the index, -1 if the character is not in the table ex: from an earlier game
+     */
+    private int indexOf(AbstractCharacter character) {
+        int index = character.getJournalIndex();
+        return (index >= 0 && index < characters.length && characters[index] == character) ? index : -1;
+    }
+
+    private static long pair(int high, int low) { return (long) high << 32 | (low & 0xFFFFFFFFL); }
+
+    /**
+     * Will make room in the batch for a record
+     * @param words int representing the words the record takes in the batch
+     * @param bytes int representing the bytes it takes once encoded
+     * @return long[] representing the words of the batch to copy the record into
+     */
+    private long[] reserve(int words, int bytes) {
+        if(batch.size + words > BATCH_WORDS) {
+            handOff();
+        }
+        batch.bytes += bytes;
+        return batch.words;
+    }
+
+    private void handOff() {
+        if(batch.size == 0) {
+            return;
+        }
+        if(failure != null) {
+            batch.clear(); // nothing drains pending once the writer stopped
+            return;
+        }
+        appendedBytes += batch.bytes;
+        pending.add(batch);
+        Batch next = spare.poll();
+        if(next != null) {
+            next.clear();
+        }
+        batch = (next != null) ? next : new Batch(BATCH_WORDS); // never wait for the writer
+    }
+
+    // Writer thread
+
+    private void writeBatches() {
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        ByteBuffer records = ByteBuffer.allocate(BATCH_WORDS * 8);
+        CRC32 checksum = new CRC32();
+        try {
+            long position = HEADER_BYTES;
+            while(true) {
+                Batch next = pending.take();
+                if(next == STOP) {
+                    break;
+                }
+                if(records.capacity() < next.bytes) {
+                    records = ByteBuffer.allocate(next.bytes);
+                }
+                encode(next, records.clear());
+                records.flip();
+                spare.offer(next);
+                checksum.reset();
+                checksum.update(records.duplicate());
+                frame.clear().putInt(records.remaining()).putInt((int) checksum.getValue()).flip();
+                position += writeFully(frame, position);
+                position += writeFully(records, position);
+                if(pending.isEmpty()) {
+                    channel.force(false); // caught up, make what was written durable
+                }
+            }
+            channel.force(false);
+        } catch(IOException e) {
+            failure = e;
+            System.err.println("Journal " + path + " stopped: " + e.getMessage());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Will encode the words of a batch into the records replay reads
+     */
+    private static void encode(Batch batch, ByteBuffer records) {
+        long[] words = batch.words;
+        int word = 0;
+        while(word < batch.size) {
+            long first = words[word++];
+            byte type = (byte) first;
+            int index = (int) (first >>> 8);
+            records.put(type);
+            switch(type) {
+                case TICK -> records.putLong(words[word++]);
+                case MOVE, RELATION -> records.putInt(index).putLong(words[word++]);
+                case VITALS -> records.putInt(index).putLong(words[word++]).putLong(words[word++])
+                        .putInt((int) (words[word] >>> 32)).put((byte) words[word++]);
+                case ACTIVITY -> records.putInt(index).put((byte) (first >>> 40));
+                case MONEY -> records.putInt(index).putLong(words[word++]).putLong(words[word++]);
+                case ITEM -> records.putInt(index).put(SaveFile.FOOD_ITEM).put((byte) (first >>> 40))
+                        .putInt((int) words[word++]);
+                case PLACE_TYPE -> records.putLong(words[word++]).put((byte) index);
+                case PLACE_NAME -> {
+                    byte[] name = batch.names.get(index);
+                    records.putLong(words[word++]).putShort((short) name.length).put(name);
+                }
+                default -> throw new IllegalStateException("Unknown journal record " + type);
+            }
+        }
+    }
+
+    private int writeFully(ByteBuffer source, long at) throws IOException {
+        int written = 0;
+        while(source.hasRemaining()) {
+            written += channel.write(source, at + written);
+        }
+        return written;
+    }
+
+    /**
+     * Will hand off any records left, wait for the writer to write them and close the file
+     * records after the last endTick are written but ignored by replay
+     * @throws IOException if the writer failed to write a batch
+     */
+    @Override
+    public void close() throws IOException {
+        handOff();
+        pending.add(STOP);
+        try {
+            writer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    // Recovery
+
+    /**
+     * Will replay a journal onto the game just loaded from its checkpoint, only complete ticks are replayed
+     * @param path Path representing the journal file
+     * @param state GameState representing the game loaded from the checkpoint the journal was started from
+     * @return long representing the hours played after the last replayed tick, -1 if nothing was replayed
+     * @throws IOException if the journal can't be read
+     */
+    public static long replay(Path path, GameState state) throws IOException {
+        if(!Files.exists(path)) {
+            return -1;
+        }
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(path));
+        if(journal.remaining() < HEADER_BYTES || journal.getLong() != MAGIC || journal.getInt() != VERSION) {
+            throw new IOException("Not an IsekaiRPG journal " + path);
+        }
+        if(journal.getLong() != state.getWorld().getSeed() || journal.getLong() != state.getTotalHours()) {
+            return -1; // started from another checkpoint, the checkpoint already holds everything it recorded
+        }
+        journal.position(HEADER_BYTES);
+
+        // keep whole batches up to the first one cut short by a crash
+        ArrayList<ByteBuffer> batches = new ArrayList<>();
+        CRC32 checksum = new CRC32();
+        while(journal.remaining() >= 8) {
+            int length = journal.getInt();
+            int expected = journal.getInt();
+            if(length < 0 || length > journal.remaining()) {
+                break;
+            }
+            ByteBuffer batch = journal.slice(journal.position(), length);
+            checksum.reset();
+            checksum.update(batch.duplicate());
+            if((int) checksum.getValue() != expected) {
+                break;
+            }
+            batches.add(batch);
+            journal.position(journal.position() + length);
+        }
+
+        ArrayList<AbstractCharacter> table = new ArrayList<>();
+        table.add(state.getPlayer());
+        table.addAll(state.getNPCs());
+        World world = state.getWorld();
+        // records after the last tick marker belong to a tick that never finished
+        int lastBatch = -1;
+        int lastPosition = -1;
+        for(int batch = 0; batch < batches.size(); batch++) {
+            int end = scanTicks(batches.get(batch));
+            if(end >= 0) {
+                lastBatch = batch;
+                lastPosition = end;
+            }
+        }
+        long totalHours = -1;
+        for(int batch = 0; batch <= lastBatch; batch++) {
+            ByteBuffer records = batches.get(batch);
+            int end = (batch == lastBatch) ? lastPosition : records.limit();
+            while(records.position() < end) {
+                byte type = records.get();
+                switch(type) {
+                    case TICK -> totalHours = records.getLong();
+                    case MOVE -> {
+                        AbstractCharacter character = table.get(records.getInt());
+                        long placeId = records.getLong();
+                        character.setCurrentPlace((placeId == LocationId.NONE) ? null : world.resolve(placeId));
+                    }
+                    case VITALS -> table.get(records.getInt()).restoreVitals(
+                            records.getInt(), records.getInt(), records.getInt(), records.getInt(),
+                            records.getInt(), records.get() != 0
+                    );
+                    case ACTIVITY -> {
+                        NPC npc = (NPC) table.get(records.getInt());
+                        byte flags = records.get();
+                        npc.restoreActivity((flags & 1) != 0, (flags & 2) != 0);
+                    }
+                    case RELATION -> table.get(records.getInt())
+                            .restoreRelation(table.get(records.getInt()), records.getInt());
+                    case MONEY -> {
+                        Money money = table.get(records.getInt()).getMoney();
+                        int platinum = records.getInt();
+                        int gold = records.getInt();
+                        int silver = records.getInt();
+                        int copper = records.getInt();
+                        money.remove(money.getPlatinum(), money.getGold(), money.getSilver(), money.getCopper());
+                        money.add(platinum, gold, silver, copper);
+                    }
+                    case ITEM -> SaveFile.Items.add(
+                            table.get(records.getInt()).getInventory(), records.get(), records.get(), records.getInt()
+                    );
+                    case PLACE_TYPE -> {
+                        Place place = world.resolve(records.getLong());
+                        place.setType(Place.Type.values()[records.get()]);
+                    }
+                    case PLACE_NAME -> {
+                        Place place = world.resolve(records.getLong());
+                        byte[] name = new byte[Short.toUnsignedInt(records.getShort())];
+                        records.get(name);
+                        place.setName(new String(name, StandardCharsets.UTF_8));
+                    }
+                    default -> throw new UncheckedIOException(new IOException("Unknown journal record " + type));
+                }
+            }
+        }
+        return totalHours;
+    }
+
+    /**
+     * Will find where the last tick marker of a batch ends
+     * @return int representing the position after the last tick marker, -1 if the batch has none
+     */
+    private static int scanTicks(ByteBuffer records) {
+        int lastTick = -1;
+        ByteBuffer scan = records.duplicate();
+        while(scan.hasRemaining()) {
+            byte type = scan.get();
+            switch(type) {
+                case TICK -> {
+                    scan.position(scan.position() + 8);
+                    lastTick = scan.position();
+                }
+                case MOVE, RELATION -> scan.position(scan.position() + 12);
+                case VITALS -> scan.position(scan.position() + 25);
+                case ACTIVITY -> scan.position(scan.position() + 5);
+                case MONEY -> scan.position(scan.position() + 20);
+                case ITEM -> scan.position(scan.position() + 10);
+                case PLACE_TYPE -> scan.position(scan.position() + 9);
+                case PLACE_NAME -> {
+                    scan.position(scan.position() + 8);
+                    int nameLength = Short.toUnsignedInt(scan.getShort());
+                    scan.position(scan.position() + nameLength);
+                }
+                default -> {
+                    return lastTick; // unknown data ends the batch
+                }
+            }
+        }
+        return lastTick;
+    }
+
+}
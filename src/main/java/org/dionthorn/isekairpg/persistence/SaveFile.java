@@ -0,0 +1,845 @@
+package org.dionthorn.isekairpg.persistence;
+
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.characters.AbstractCharacter;
+import org.dionthorn.isekairpg.characters.CharacterRecord;
+import org.dionthorn.isekairpg.characters.NPC;
+import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.groups.Nation;
+import org.dionthorn.isekairpg.items.AbstractItem;
+import org.dionthorn.isekairpg.items.Armor;
+import org.dionthorn.isekairpg.items.Armors;
+import org.dionthorn.isekairpg.items.Food;
+import org.dionthorn.isekairpg.items.Foods;
+import org.dionthorn.isekairpg.items.Inventory;
+import org.dionthorn.isekairpg.items.Weapon;
+import org.dionthorn.isekairpg.items.Weapons;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.dionthorn.isekairpg.worlds.Area;
+import org.dionthorn.isekairpg.worlds.DirtyRegionStore;
+import org.dionthorn.isekairpg.worlds.LocationId;
+import org.dionthorn.isekairpg.worlds.Place;
+import org.dionthorn.isekairpg.worlds.Region;
+import org.dionthorn.isekairpg.worlds.RegionSource;
+import org.dionthorn.isekairpg.worlds.World;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The SaveFile reads and writes the full GameState in a versioned binary format through a FileChannel
+ * <p>
+ * Layout: a fixed size header, then compressed chunks, then an index of every chunk at the end of the file.
+ * The header holds the version, World size, seed and calendar and points at the index.
+ * Chunks: one WORLD chunk with the Region Biomes, one REGION chunk per Region with the Area Settings and
+ * packed Place types, then CHARACTER and RELATION chunks of up to CHARACTERS_PER_CHUNK characters and a NATION chunk.
+ * Every chunk is deflated on its own and has a checksum, so any single Region can be read at random by its index
+ * entry. A loaded World reads its Regions from the file as they are first visited, see RegionSource.
+ * <p>
+ * Characters are stored in a table, the Player first then every NPC in GameState order,
+ * Places and characters are referenced by LocationId and table index instead of object references.
+ * <p>
+ * A WorldImage holds its characters as a save without the WORLD and REGION chunks at an offset within the image.
+ */
+public final class SaveFile implements RegionSource, AutoCloseable {
+
+    public static final Path DEFAULT_PATH = Path.of("isekairpg.sav");
+    public static final int VERSION = 2;
+
+    private static final long MAGIC = 0x49534B4149525047L; // "ISKAIRPG"
+    private static final int HEADER_BYTES = 64;
+    private static final int INDEX_ENTRY_BYTES = 25; // type, key, offset, compressed length, raw length, checksum
+    private static final int CHARACTERS_PER_CHUNK = 4096;
+
+    // chunk types
+    private static final byte WORLD_CHUNK = 1;
+    private static final byte REGION_CHUNK = 2;
+    private static final byte CHARACTER_CHUNK = 3;
+    private static final byte RELATION_CHUNK = 4;
+    private static final byte NATION_CHUNK = 5;
+
+    // item kinds in the inventory table
+    static final byte WEAPON_ITEM = 0;
+    static final byte ARMOR_ITEM = 1;
+    static final byte FOOD_ITEM = 2;
+
+    private record Chunk(byte type, int key, long offset, int compressedLength, int rawLength, int checksum) { }
+
+    private final FileChannel channel;
+    private final long base; // where the save starts within the file
+    private final HashMap<Long, Chunk> index = new HashMap<>();
+    private final int version;
+    private final World.Size worldSize;
+    private final long seed;
+    private final int[] calendar; // year, month, day, hour
+    private final int regionSize;
+
+    private SaveFile(FileChannel channel, long base) throws IOException {
+        this.channel = channel;
+        this.base = base;
+        ByteBuffer header = readFully(0, HEADER_BYTES);
+        if(header.getLong() != MAGIC) {
+            throw new IOException("Not an IsekaiRPG save file");
+        }
+        version = header.getInt();
+        if(version != VERSION) {
+            throw new IOException("Unsupported save version " + version + " expected " + VERSION);
+        }
+        worldSize = valueOf(World.Size.values(), header.getInt(), "World size");
+        seed = header.getLong();
+        calendar = new int[] { header.getInt(), header.getInt(), header.getInt(), header.getInt() };
+        if(calendar[0] < 1 || calendar[1] < 1 || calendar[1] > GameState.MONTHS_PER_YEAR
+                || calendar[2] < 1 || calendar[2] > GameState.DAYS_PER_MONTH
+                || calendar[3] < 1 || calendar[3] > GameState.HOURS_PER_DAY) {
+            throw new IOException("Corrupt save file date");
+        }
+        long indexOffset = header.getLong();
+        int chunkCount = header.getInt();
+        regionSize = worldSize.getRegionSize();
+        // the header has no checksum, everything it points at must be inside the file
+        if(chunkCount < 0 || indexOffset < HEADER_BYTES
+                || indexOffset + (long) chunkCount * INDEX_ENTRY_BYTES > channel.size() - base) {
+            throw new IOException("Corrupt save file index");
+        }
+        ByteBuffer entries = readFully(indexOffset, chunkCount * INDEX_ENTRY_BYTES);
+        for(int entry = 0; entry < chunkCount; entry++) {
+            Chunk chunk = new Chunk(
+                    entries.get(), entries.getInt(), entries.getLong(), entries.getInt(), entries.getInt(), entries.getInt()
+            );
+            if(chunk.offset() < HEADER_BYTES || chunk.compressedLength() < 0 || chunk.rawLength() < 0
+                    || chunk.offset() + chunk.compressedLength() > indexOffset) {
+                throw new IOException("Corrupt save file index entry " + entry);
+            }
+            index.put(keyOf(chunk.type(), chunk.key()), chunk);
+        }
+    }
+
+    /**
+     * Will open a save file and read its header and index, nothing else is read until it is needed
+     * @param path Path representing the save file
+     * @return SaveFile representing the open save, close it when the World loaded from it is discarded
+     * @throws IOException if the file can't be read or is not a save of this version
+     */
+    public static SaveFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new SaveFile(channel, 0);
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Will read the header and index of a save written within another file, used by WorldImage
+     * @param channel FileChannel representing the open file, it stays open when the save fails to open
+     * @param base long representing where the save starts within the file
+     * @return SaveFile representing the save, closing it closes the channel
+     * @throws IOException if the save can't be read or is not of this version
+     */
+    static SaveFile open(FileChannel channel, long base) throws IOException { return new SaveFile(channel, base); }
+
+    // Writing
+
+    /**
+     * Will write the full GameState to the path, the file is written beside it first then moved over it
+     * @param state GameState representing the game to save
+     * @param path Path representing the save file
+     * @throws IOException if the file can't be written
+     */
+    public static void write(GameState state, Path path) throws IOException {
+        write(Snapshot.capture(state), path);
+    }
+
+    /**
+     * Will write a captured game to the path, can be called on any thread while the game plays on
+     * @param snapshot Snapshot representing the game to save
+     * @param path Path representing the save file
+     * @throws IOException if the file can't be written
+     */
+    public static void write(Snapshot snapshot, Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            new Writer(channel, 0).write(snapshot, true);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Will write the characters and Nations of a game within another file, the World is left to a WorldImage
+     * @param state GameState representing the game to save
+     * @param channel FileChannel representing the file to write into
+     * @param base long representing where the save starts within the file
+     * @return long representing how many bytes were written
+     * @throws IOException if the file can't be written
+     */
+    static long writeCharacters(GameState state, FileChannel channel, long base) throws IOException {
+        return new Writer(channel, base).write(Snapshot.capture(state), false);
+    }
+
+    /**
+     * Writes the chunks one after another then the index and finally the header
+     */
+    private static final class Writer {
+
+        private final FileChannel channel;
+        private final long base;
+        private final ArrayList<Chunk> chunks = new ArrayList<>();
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final ByteArrayOutputStream raw = new ByteArrayOutputStream(1 << 16);
+        private final DataOutputStream out = new DataOutputStream(raw);
+        private long position = HEADER_BYTES;
+
+        private Writer(FileChannel channel, long base) {
+            this.channel = channel;
+            this.base = base;
+        }
+
+        private long write(Snapshot snapshot, boolean withWorld) throws IOException {
+            World world = snapshot.getWorld();
+            int regionSize = world.getRegionSize();
+            AbstractCharacter[] characters = snapshot.getCharacters();
+            IdentityHashMap<AbstractCharacter, Integer> table = new IdentityHashMap<>();
+            for(int character = 0; character < characters.length; character++) {
+                table.put(characters[character], character);
+            }
+
+            if(withWorld) {
+                // Region Biomes
+                for(int y = 0; y < regionSize; y++) {
+                    for(int x = 0; x < regionSize; x++) {
+                        out.writeByte(world.getRegion(x, y).getBiome().ordinal());
+                    }
+                }
+                flushChunk(WORLD_CHUNK, 0);
+
+                // Areas of every Region, Regions that were never visited are read back from the World source
+                for(int y = 0; y < regionSize; y++) {
+                    for(int x = 0; x < regionSize; x++) {
+                        writeRegion(world.getRegion(x, y), snapshot);
+                        flushChunk(REGION_CHUNK, y * regionSize + x);
+                    }
+                }
+            }
+
+            Snapshot.CharacterState[] states = new Snapshot.CharacterState[CHARACTERS_PER_CHUNK];
+            for(int first = 0; first < characters.length; first += CHARACTERS_PER_CHUNK) {
+                int last = Math.min(first + CHARACTERS_PER_CHUNK, characters.length);
+                for(int character = first; character < last; character++) {
+                    states[character - first] = snapshot.stateOf(characters[character]);
+                    writeCharacter(states[character - first]);
+                }
+                flushChunk(CHARACTER_CHUNK, first / CHARACTERS_PER_CHUNK);
+                for(int character = first; character < last; character++) {
+                    writeRelations(states[character - first], table);
+                }
+                flushChunk(RELATION_CHUNK, first / CHARACTERS_PER_CHUNK);
+            }
+
+            out.writeInt(snapshot.getNations().size());
+            for(Nation nation: snapshot.getNations()) {
+                writeString(nation.getName());
+                out.writeInt(table.getOrDefault(nation.getKing(), -1));
+                out.writeInt(nation.getDominion().size());
+                for(long area: nation.getDominion()) {
+                    out.writeLong(area);
+                }
+                out.writeInt(nation.getCitizens().size());
+                for(AbstractCharacter citizen: nation.getCitizens()) {
+                    out.writeInt(table.getOrDefault(citizen, -1));
+                }
+            }
+            flushChunk(NATION_CHUNK, 0);
+
+            // index at the end then the header pointing at it
+            ByteBuffer entries = ByteBuffer.allocate(chunks.size() * INDEX_ENTRY_BYTES);
+            for(Chunk chunk: chunks) {
+                entries.put(chunk.type()).putInt(chunk.key()).putLong(chunk.offset())
+                        .putInt(chunk.compressedLength()).putInt(chunk.rawLength()).putInt(chunk.checksum());
+            }
+            long indexOffset = position;
+            writeFully(entries.flip(), indexOffset);
+            int[] calendar = snapshot.getCalendar();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putLong(MAGIC).putInt(VERSION).putInt(world.getWorldSize().ordinal()).putLong(world.getSeed());
+            header.putInt(calendar[0]).putInt(calendar[1]).putInt(calendar[2]).putInt(calendar[3]);
+            header.putLong(indexOffset).putInt(chunks.size());
+            writeFully(header.position(HEADER_BYTES).flip(), 0);
+            channel.force(true);
+            deflater.end();
+            return indexOffset + entries.capacity();
+        }
+
+        private void writeRegion(Region region, Snapshot snapshot) throws IOException {
+            for(Area[] areaLayer: region.getAreas()) {
+                for(Area area: areaLayer) {
+                    DirtyRegionStore.AreaRecord record = snapshot.recordOf(area);
+                    out.writeByte(area.getSetting().ordinal());
+                    out.write(record.placeTypes());
+                    out.writeShort(record.placeNames().size());
+                    for(Map.Entry<Integer, String> renamed: record.placeNames().entrySet()) {
+                        out.writeShort(renamed.getKey());
+                        writeString(renamed.getValue());
+                    }
+                }
+            }
+        }
+
+        private void writeCharacter(Snapshot.CharacterState state) throws IOException {
+            Snapshot.Core core = state.core;
+            CharacterRecord record = core.record();
+            out.writeBoolean(core.player());
+            writeString(record.firstName());
+            writeString(record.lastName());
+            out.writeByte(record.birthMonth());
+            out.writeByte(record.birthDay());
+            for(int score: record.attributes()) {
+                out.writeByte(score);
+            }
+            out.writeInt(record.hitDieAmount());
+            out.writeInt(record.hitDieFaces());
+            out.writeInt(record.hitDieModifier());
+            out.writeBoolean(record.alive());
+            out.writeInt(record.maxAge());
+            out.writeInt(record.age());
+            out.writeInt(record.maxHitPoints());
+            out.writeInt(record.hitPoints());
+            out.writeInt(record.soulPoints());
+            out.writeInt(record.level());
+            out.writeInt(record.xp());
+            out.writeByte(record.profession());
+            out.writeLong(core.home());
+            out.writeLong(core.current());
+            out.writeInt(core.occupancySlot());
+            out.writeByte(core.weapon());
+            out.writeByte(core.armor());
+            for(int coins: state.coins) {
+                out.writeInt(coins);
+            }
+            // stacks of kind, type and count, Foods are stacked by type
+            List<AbstractItem> items = state.inventory.getItems();
+            int foods = 0;
+            for(Foods.Type type: Foods.Type.values()) {
+                foods += (state.inventory.getCount(type) > 0) ? 1 : 0;
+            }
+            out.writeInt(items.size() + foods);
+            for(AbstractItem item: items) {
+                out.writeByte(Items.kindOf(item));
+                out.writeByte(Items.typeOf(item));
+                out.writeInt(1);
+            }
+            for(Foods.Type type: Foods.Type.values()) {
+                if(state.inventory.getCount(type) > 0) {
+                    out.writeByte(FOOD_ITEM);
+                    out.writeByte(type.ordinal());
+                    out.writeInt(state.inventory.getCount(type));
+                }
+            }
+            if(!core.player()) {
+                out.writeBoolean(core.sleeping());
+                out.writeBoolean(core.working());
+            }
+        }
+
+        private void writeRelations(Snapshot.CharacterState state, Map<AbstractCharacter, Integer> table)
+                throws IOException {
+            ArrayList<int[]> known = new ArrayList<>();
+            for(int relation = 0; relation < state.others.length; relation++) {
+                Integer other = table.get(state.others[relation]);
+                if(other != null) {
+                    known.add(new int[] { other, state.relations[relation] });
+                }
+            }
+            known.sort(Comparator.comparingInt(relation -> relation[0]));
+            out.writeInt(known.size());
+            for(int[] relation: known) {
+                out.writeInt(relation[0]);
+                out.writeInt(relation[1]);
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * Will compress what was written to out since the last chunk and append it to the file
+         */
+        private void flushChunk(byte type, int key) throws IOException {
+            out.flush();
+            byte[] bytes = raw.toByteArray();
+            raw.reset();
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes);
+            deflater.reset();
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] compressed = new byte[Math.max(64, bytes.length + (bytes.length >> 3) + 64)];
+            int length = 0;
+            while(!deflater.finished()) {
+                if(length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            writeFully(ByteBuffer.wrap(compressed, 0, length), position);
+            chunks.add(new Chunk(type, key, position, length, bytes.length, (int) checksum.getValue()));
+            position += length;
+        }
+
+        private void writeFully(ByteBuffer buffer, long at) throws IOException {
+            at += base;
+            while(buffer.hasRemaining()) {
+                at += channel.write(buffer, at);
+            }
+        }
+
+    }
+
+    // Reading
+
+    /**
+     * Will replace the game in the state with the saved one, the World keeps reading its Regions from this file
+     * as they are first visited so the file must stay open until the World is discarded
+     * @param state GameState representing the game to load into
+     * @throws IOException if a chunk can't be read or is corrupt
+     */
+    public void restore(GameState state) throws IOException {
+        World world = new World(worldSize, seed);
+        try {
+            ByteBuffer in = readChunk(WORLD_CHUNK, 0);
+            Region.Biome[][] biomes = new Region.Biome[regionSize][regionSize];
+            for(int y = 0; y < regionSize; y++) {
+                for(int x = 0; x < regionSize; x++) {
+                    biomes[y][x] = valueOf(Region.Biome.values(), in.get(), "Biome");
+                }
+            }
+            world.restore(biomes, this);
+            restoreCharacters(state, world, null);
+        } catch(BufferUnderflowException e) {
+            throw new IOException("Save file chunk cut short", e);
+        }
+    }
+
+    /**
+     * Will replace the game in the state with the saved characters and Nations in a World read from elsewhere
+     * @param state GameState representing the game to load into
+     * @param world World representing the World the characters live in, ex: one created from a WorldImage
+     * @param player Player representing a new Player to take the place of the saved one, placed by the caller
+     * @throws IOException if a chunk can't be read or is corrupt
+     */
+    void restore(GameState state, World world, Player player) throws IOException {
+        try {
+            restoreCharacters(state, world, player);
+        } catch(BufferUnderflowException e) {
+            throw new IOException("Save file chunk cut short", e);
+        }
+    }
+
+    private void restoreCharacters(GameState state, World world, Player player) throws IOException {
+        state.getCharacterTable().clear();
+        state.getRelationshipStore().clear();
+        if(player != null) {
+            state.getCharacterTable().add(player); // created before the game started
+        }
+        ArrayList<AbstractCharacter> characters = new ArrayList<>();
+        ArrayList<long[]> places = new ArrayList<>(); // home, current, occupancy slot per character
+        int chunkCount = 0;
+        while(index.containsKey(keyOf(CHARACTER_CHUNK, chunkCount))) {
+            ByteBuffer in = readChunk(CHARACTER_CHUNK, chunkCount);
+            while(in.hasRemaining()) {
+                AbstractCharacter character = readCharacter(in, places);
+                state.getCharacterTable().add(character); // IDs are handed out again in the saved order
+                if(player != null && characters.isEmpty() && character instanceof Player) {
+                    // the saved Player makes way for the new one, its ID is handed out again
+                    state.getCharacterTable().release(character);
+                    character = player;
+                }
+                characters.add(character);
+            }
+            chunkCount++;
+        }
+        if(characters.isEmpty() || !(characters.get(0) instanceof Player)) {
+            throw new IOException("Save file has no Player");
+        }
+
+        // characters are added in the order of their saved occupancy slots and nobody leaves while restoring,
+        // so every Place gets its occupants back in the same slots
+        Integer[] arrival = new Integer[characters.size()];
+        for(int character = 0; character < arrival.length; character++) {
+            arrival[character] = character;
+        }
+        Arrays.sort(arrival, Comparator.comparingLong((Integer character) -> places.get(character)[1])
+                .thenComparingLong(character -> places.get(character)[2]));
+        for(int character: arrival) {
+            if(character == 0 && player != null) {
+                continue;
+            }
+            long[] ids = places.get(character);
+            AbstractCharacter restored = characters.get(character);
+            restored.setHome(placeOf(world, ids[0]));
+            restored.setCurrentPlace(placeOf(world, ids[1]));
+        }
+
+        for(int chunk = 0; chunk < chunkCount; chunk++) {
+            ByteBuffer in = readChunk(RELATION_CHUNK, chunk);
+            int first = chunk * CHARACTERS_PER_CHUNK;
+            int last = Math.min(first + CHARACTERS_PER_CHUNK, characters.size());
+            for(int character = first; character < last; character++) {
+                AbstractCharacter restored = characters.get(character);
+                int count = countOf(in, 8, "relations");
+                for(int relation = 0; relation < count; relation++) {
+                    AbstractCharacter other = characterOf(characters, in.getInt());
+                    int value = in.getInt();
+                    if(player == null || (restored != player && other != player)) {
+                        restored.restoreRelation(other, value); // nobody knows a new Player yet
+                    }
+                }
+            }
+        }
+
+        ArrayList<Nation> nations = new ArrayList<>();
+        ByteBuffer in = readChunk(NATION_CHUNK, 0);
+        int nationCount = countOf(in, 10, "Nations");
+        for(int nation = 0; nation < nationCount; nation++) {
+            String name = getString(in);
+            int king = in.getInt();
+            int dominionCount = countOf(in, 8, "domains");
+            long castle = (dominionCount > 0) ? LocationId.of(areaOf(world, in.getLong())) : LocationId.NONE;
+            Nation restored = new Nation(name, (king < 0) ? null : characterOf(characters, king), castle);
+            for(int domain = 1; domain < dominionCount; domain++) {
+                restored.addDomain(LocationId.of(areaOf(world, in.getLong())));
+            }
+            int citizenCount = countOf(in, 4, "citizens");
+            for(int citizen = 0; citizen < citizenCount; citizen++) {
+                int citizenIndex = in.getInt();
+                if(citizenIndex >= 0) {
+                    restored.addCitizen(characterOf(characters, citizenIndex));
+                }
+            }
+            nations.add(restored);
+        }
+
+        ArrayList<NPC> npcs = new ArrayList<>(characters.size());
+        for(int character = 1; character < characters.size(); character++) {
+            if(!(characters.get(character) instanceof NPC npc)) {
+                throw new IOException("Save file has more than one Player");
+            }
+            npcs.add(npc);
+        }
+        state.restore(world, (Player) characters.get(0), npcs, nations,
+                calendar[0], calendar[1], calendar[2], calendar[3]);
+        // rolls after loading continue the same way they did after saving
+        RandomStreams.resume(seed, state.getTotalHours());
+    }
+
+    private AbstractCharacter readCharacter(ByteBuffer in, List<long[]> places) throws IOException {
+        boolean isPlayer = in.get() != 0;
+        String firstName = getString(in);
+        String lastName = getString(in);
+        int birthMonth = in.get();
+        int birthDay = in.get();
+        int[] attributes = new int[6];
+        for(int attribute = 0; attribute < attributes.length; attribute++) {
+            attributes[attribute] = in.get();
+        }
+        CharacterRecord record = new CharacterRecord(
+                firstName, lastName, birthMonth, birthDay, attributes,
+                in.getInt(), in.getInt(), in.getInt(),
+                in.get() != 0, in.getInt(), in.getInt(), in.getInt(), in.getInt(), in.getInt(),
+                in.getInt(), in.getInt(), in.get()
+        );
+        places.add(new long[] { in.getLong(), in.getLong(), in.getInt() });
+        int weapon = in.get();
+        int armor = in.get();
+        int[] coins = { in.getInt(), in.getInt(), in.getInt(), in.getInt() };
+        Inventory inventory = new Inventory();
+        int stackCount = countOf(in, 6, "item stacks");
+        for(int stack = 0; stack < stackCount; stack++) {
+            Items.add(inventory, in.get(), in.get(), in.getInt());
+        }
+        AbstractCharacter character = isPlayer ? new Player(record) : new NPC(record, in.get() != 0, in.get() != 0);
+        character.setEquippedWeapon((weapon < 0) ? null : Weapons.get(valueOf(Weapons.Type.values(), weapon, "Weapon")));
+        character.setEquippedArmor((armor < 0) ? null : Armors.get(valueOf(Armors.Type.values(), armor, "Armor")));
+        character.getMoney().add(coins[0], coins[1], coins[2], coins[3]);
+        character.getInventory().addAll(inventory);
+        return character;
+    }
+
+    /**
+     * Will read the stored Areas of a Region from its chunk, called by the World when the Region is materialized
+     * @param x int representing the Region x coordinate within the World
+     * @param y int representing the Region y coordinate within the World
+     * @return RegionImage representing the stored Areas of the Region
+     */
+    @Override
+    public RegionImage loadRegion(int x, int y) {
+        try {
+            ByteBuffer in = readChunk(REGION_CHUNK, y * regionSize + x);
+            int areaSize = worldSize.getAreaSize();
+            Area.Setting[][] settings = new Area.Setting[areaSize][areaSize];
+            DirtyRegionStore.AreaRecord[][] areas = new DirtyRegionStore.AreaRecord[areaSize][areaSize];
+            for(int yArea = 0; yArea < areaSize; yArea++) {
+                for(int xArea = 0; xArea < areaSize; xArea++) {
+                    Area.Setting setting = valueOf(Area.Setting.values(), in.get(), "Area setting");
+                    byte[] placeTypes = new byte[setting.getSize() * setting.getSize()];
+                    in.get(placeTypes);
+                    int renamedCount = Short.toUnsignedInt(in.getShort());
+                    Map<Integer, String> placeNames = (renamedCount == 0) ? Map.of() : new HashMap<>();
+                    for(int renamed = 0; renamed < renamedCount; renamed++) {
+                        placeNames.put(Short.toUnsignedInt(in.getShort()), getString(in));
+                    }
+                    settings[yArea][xArea] = setting;
+                    areas[yArea][xArea] = new DirtyRegionStore.AreaRecord(placeTypes, placeNames);
+                }
+            }
+            return new RegionImage(settings, areas);
+        } catch(BufferUnderflowException e) {
+            throw new UncheckedIOException("Could not load Region " + x + ", " + y,
+                    new IOException("Save file chunk cut short", e));
+        } catch(IOException e) {
+            throw new UncheckedIOException("Could not load Region " + x + ", " + y, e);
+        }
+    }
+
+    /**
+     * Will read, check and inflate a chunk, positional reads so Regions can be loaded from any thread
+     */
+    private ByteBuffer readChunk(byte type, int key) throws IOException {
+        Chunk chunk = index.get(keyOf(type, key));
+        if(chunk == null) {
+            throw new IOException("Missing chunk " + type + ":" + key);
+        }
+        ByteBuffer compressed = readFully(chunk.offset(), chunk.compressedLength());
+        byte[] bytes = new byte[chunk.rawLength()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), 0, chunk.compressedLength());
+            int length = 0;
+            while(length < bytes.length && !inflater.finished()) {
+                int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                if(inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += inflated;
+            }
+            if(length != bytes.length) {
+                throw new IOException("Truncated chunk " + type + ":" + key);
+            }
+        } catch(DataFormatException e) {
+            throw new IOException("Corrupt chunk " + type + ":" + key, e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+        if((int) checksum.getValue() != chunk.checksum()) {
+            throw new IOException("Checksum mismatch in chunk " + type + ":" + key);
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Will provide the constant of a saved ordinal
+     * @throws IOException if no constant has the ordinal
+     */
+    static <T> T valueOf(T[] values, int ordinal, String what) throws IOException {
+        if(ordinal < 0 || ordinal >= values.length) {
+            throw new IOException("Unknown " + what + " " + ordinal + " in save file");
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Will read a count of entries that each take at least bytesEach more bytes of the chunk
+     * @throws IOException if the chunk is too short to hold that many
+     */
+    private static int countOf(ByteBuffer in, int bytesEach, String what) throws IOException {
+        int count = in.getInt();
+        if(count < 0 || (long) count * bytesEach > in.remaining()) {
+            throw new IOException("Corrupt count of " + what + " " + count + " in save file");
+        }
+        return count;
+    }
+
+    private static AbstractCharacter characterOf(List<AbstractCharacter> characters, int index) throws IOException {
+        if(index < 0 || index >= characters.size()) {
+            throw new IOException("Unknown character " + index + " in save file");
+        }
+        return characters.get(index);
+    }
+
+    /**
+     * Will provide the Area of a saved LocationId
+     * @throws IOException if the ID is outside the saved World
+     */
+    private Area areaOf(World world, long id) throws IOException {
+        int areaSize = worldSize.getAreaSize();
+        if(id == LocationId.NONE || LocationId.getRegionX(id) >= regionSize || LocationId.getRegionY(id) >= regionSize
+                || LocationId.getAreaX(id) >= areaSize || LocationId.getAreaY(id) >= areaSize) {
+            throw new IOException("Location " + Long.toHexString(id) + " outside the saved World");
+        }
+        return world.resolveArea(id);
+    }
+
+    /**
+     * Will provide the Place of a saved LocationId
+     * @return Place representing the Place, null for LocationId.NONE
+     * @throws IOException if the ID is outside the saved World
+     */
+    private Place placeOf(World world, long id) throws IOException {
+        if(id == LocationId.NONE) {
+            return null;
+        }
+        Area area = areaOf(world, id);
+        if(LocationId.getPlaceX(id) >= area.getPlaceSize() || LocationId.getPlaceY(id) >= area.getPlaceSize()) {
+            throw new IOException("Location " + Long.toHexString(id) + " outside the saved World");
+        }
+        return area.getPlace(LocationId.getPlaceX(id), LocationId.getPlaceY(id));
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer readFully(long at, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, base + at + buffer.position());
+            if(read < 0) {
+                throw new IOException("Unexpected end of save file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static long keyOf(byte type, int key) { return ((long) type << 32) | (key & 0xFFFFFFFFL); }
+
+    /**
+     * Will provide the version of the format this file was written with
+     * @return int representing the format version
+     */
+    public int getVersion() { return version; }
+
+    /**
+     * Will provide the size of the saved World
+     * @return World.Size representing the saved World size
+     */
+    public World.Size getWorldSize() { return worldSize; }
+
+    /**
+     * Will provide the seed of the saved World
+     * @return long representing the saved World seed
+     */
+    public long getSeed() { return seed; }
+
+    @Override
+    public void close() throws IOException { channel.close(); }
+
+    /**
+     * Maps items to the factory Type they were created from, items are saved as a kind and a Type ordinal
+     */
+    static final class Items {
+
+        private static final HashMap<String, Integer> WEAPON_TYPES = new HashMap<>();
+        private static final HashMap<String, Integer> ARMOR_TYPES = new HashMap<>();
+        private static final HashMap<String, Integer> FOOD_TYPES = new HashMap<>();
+
+        static {
+            for(Weapons.Type type: Weapons.Type.values()) {
+                WEAPON_TYPES.put(Weapons.get(type).getName(), type.ordinal());
+            }
+            for(Armors.Type type: Armors.Type.values()) {
+                ARMOR_TYPES.put(Armors.get(type).getName(), type.ordinal());
+            }
+            for(Foods.Type type: Foods.Type.values()) {
+                FOOD_TYPES.put(Foods.get(type).getName(), type.ordinal());
+            }
+        }
+
+        static byte kindOf(AbstractItem item) {
+            if(item instanceof Weapon) {
+                return WEAPON_ITEM;
+            } else if(item instanceof Armor) {
+                return ARMOR_ITEM;
+            } else if(item instanceof Food) {
+                return FOOD_ITEM;
+            }
+            throw new IllegalArgumentException("Unknown item " + item.getClass().getSimpleName());
+        }
+
+        static byte typeOf(AbstractItem item) {
+            if(item == null) {
+                return -1;
+            }
+            HashMap<String, Integer> types = switch(kindOf(item)) {
+                case WEAPON_ITEM -> WEAPON_TYPES;
+                case ARMOR_ITEM -> ARMOR_TYPES;
+                default -> FOOD_TYPES;
+            };
+            Integer type = types.get(item.getName());
+            if(type == null) {
+                throw new IllegalArgumentException("Unknown item " + item.getName());
+            }
+            return type.byteValue();
+        }
+
+        static AbstractItem create(byte kind, byte type) throws IOException {
+            return switch(kind) {
+                case WEAPON_ITEM -> Weapons.get(valueOf(Weapons.Type.values(), type, "Weapon"));
+                case ARMOR_ITEM -> Armors.get(valueOf(Armors.Type.values(), type, "Armor"));
+                case FOOD_ITEM -> Foods.get(valueOf(Foods.Type.values(), type, "Food"));
+                default -> throw new IOException("Unknown item kind " + kind + " in save file");
+            };
+        }
+
+        /**
+         * Will add a stack of items to an inventory, Food is only counted
+         */
+        static void add(Inventory inventory, byte kind, byte type, int count) throws IOException {
+            if(count < 0) {
+                throw new IOException("Corrupt item count " + count + " in save file");
+            }
+            if(kind == FOOD_ITEM) {
+                inventory.add(valueOf(Foods.Type.values(), type, "Food"), count);
+                return;
+            }
+            for(int item = 0; item < count; item++) {
+                inventory.add(create(kind, type));
+            }
+        }
+
+    }
+
+}
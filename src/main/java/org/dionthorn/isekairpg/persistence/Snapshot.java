@@ -0,0 +1,239 @@
+package org.dionthorn.isekairpg.persistence;
+
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.characters.AbstractCharacter;
+import org.dionthorn.isekairpg.characters.CharacterRecord;
+import org.dionthorn.isekairpg.characters.NPC;
+import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.groups.Nation;
+import org.dionthorn.isekairpg.items.Inventory;
+import org.dionthorn.isekairpg.items.Money;
+import org.dionthorn.isekairpg.worlds.Area;
+import org.dionthorn.isekairpg.worlds.DirtyRegionStore;
+import org.dionthorn.isekairpg.worlds.LocationId;
+import org.dionthorn.isekairpg.worlds.World;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Snapshot is the GameState as it was at one moment, it can be written by another thread while the game plays on
+ * <p>
+ * Capturing only copies the character table and the calendar. While the Snapshot is open the game thread copies
+ * a part of a character, a purse or an Area the first time it changes it, see preserve, and the writer thread copies
+ * everything else as it reaches it. Characters are locked only while one of them is copied so neither thread waits
+ * on the other for longer than that, and a character the writer already copied is never copied again.
+ */
+public final class Snapshot {
+
+    // parts of a character that are copied on their own, moving a character doesn't copy its relationships
+    public static final int CORE = 1;      // vitals, Places, equipment and activity
+    public static final int RELATIONS = 2; // relationships
+    public static final int INVENTORY = 4; // carried items
+
+    private static final AtomicInteger EPOCHS = new AtomicInteger();
+
+    /**
+     * The vitals, Places, equipment and activity of a character
+     */
+    record Core(CharacterRecord record, boolean player, long home, long current, int occupancySlot,
+                byte weapon, byte armor, boolean sleeping, boolean working) { }
+
+    /**
+     * The copied parts of a character, parts are null until copied
+     */
+    static final class CharacterState {
+        Core core;
+        AbstractCharacter[] others; // relationships, with the value at the same index of relations
+        int[] relations;
+        Inventory inventory;
+        int[] coins; // platinum, gold, silver, copper
+    }
+
+    private final int epoch = EPOCHS.incrementAndGet();
+    private final World world;
+    private final AbstractCharacter[] characters; // the Player first then every NPC in GameState order
+    private final List<Nation> nations; // Nations don't change after the World is generated
+    private final int[] calendar; // year, month, day, hour
+    private final long totalHours;
+    private final ConcurrentHashMap<AbstractCharacter, CharacterState> preserved = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Money, int[]> preservedPurses = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, DirtyRegionStore.AreaRecord> preservedAreas = new ConcurrentHashMap<>();
+
+    private Snapshot(GameState state) {
+        world = state.getWorld();
+        List<? extends AbstractCharacter> npcs = state.getNPCs();
+        characters = new AbstractCharacter[npcs.size() + 1];
+        characters[0] = state.getPlayer();
+        for(int npc = 0; npc < npcs.size(); npc++) {
+            characters[npc + 1] = npcs.get(npc);
+        }
+        nations = List.copyOf(state.getNations());
+        calendar = new int[] {
+                state.getCurrentYear(), state.getCurrentMonth(), state.getCurrentDay(), state.getCurrentHour()
+        };
+        totalHours = state.getTotalHours();
+    }
+
+    /**
+     * Will capture the game as it is now, called on the game thread between ticks
+     * the game only copies what it changes while the Snapshot is open once it is set with GameState
+     * @param state GameState representing the game to capture
+     * @return Snapshot representing the game as it is now
+     */
+    public static Snapshot capture(GameState state) { return new Snapshot(state); }
+
+    // Preserving, called on the game thread before a change
+
+    /**
+     * Will copy a part of the character as it was captured unless it was already copied
+     * @param character AbstractCharacter representing the character about to change
+     * @param part int representing the part about to change, CORE, RELATIONS or INVENTORY
+     */
+    public void preserve(AbstractCharacter character, int part) {
+        synchronized(character) {
+            if(character.getSnapshotEpoch() == epoch) {
+                return; // the writer already has this character
+            }
+            CharacterState state = preserved.computeIfAbsent(character, key -> new CharacterState());
+            if(part == CORE && state.core == null) {
+                state.core = coreOf(character);
+            } else if(part == RELATIONS && state.others == null) {
+                copyRelations(character, state);
+            } else if(part == INVENTORY && state.inventory == null) {
+                state.inventory = new Inventory(character.getInventory());
+            }
+            if(state.core != null && state.others != null && state.inventory != null) {
+                character.setSnapshotEpoch(epoch); // nothing left to copy
+            }
+        }
+    }
+
+    /**
+     * Will copy the coins of a purse as they were captured unless they were already copied
+     * @param money Money representing the purse about to change
+     */
+    public void preserve(Money money) {
+        synchronized(money) {
+            preservedPurses.computeIfAbsent(money, Snapshot::coinsOf);
+        }
+    }
+
+    /**
+     * Will copy the Places of an Area as they were captured unless they were already copied
+     * @param area Area representing the Area about to change
+     */
+    public void preserve(Area area) {
+        synchronized(area) {
+            preservedAreas.computeIfAbsent(LocationId.of(area), id -> area.toRecord());
+        }
+    }
+
+    // Reading, called on the writer thread
+
+    /**
+     * Will provide a character as it was captured, copying whatever the game thread didn't
+     */
+    CharacterState stateOf(AbstractCharacter character) {
+        CharacterState state;
+        synchronized(character) {
+            state = preserved.remove(character);
+            if(state == null) {
+                state = new CharacterState();
+            }
+            if(state.core == null) {
+                state.core = coreOf(character);
+            }
+            if(state.others == null) {
+                copyRelations(character, state);
+            }
+            if(state.inventory == null) {
+                state.inventory = new Inventory(character.getInventory());
+            }
+            character.setSnapshotEpoch(epoch);
+        }
+        Money money = character.getMoney();
+        synchronized(money) {
+            int[] coins = preservedPurses.remove(money);
+            state.coins = (coins == null) ? coinsOf(money) : coins;
+        }
+        return state;
+    }
+
+    /**
+     * Will provide the Places of an Area as they were captured
+     */
+    DirtyRegionStore.AreaRecord recordOf(Area area) {
+        synchronized(area) {
+            DirtyRegionStore.AreaRecord record = preservedAreas.get(LocationId.of(area));
+            return (record == null) ? area.toRecord() : record;
+        }
+    }
+
+    private static Core coreOf(AbstractCharacter character) {
+        NPC npc = (character instanceof NPC) ? (NPC) character : null;
+        return new Core(
+                character.toRecord(), character instanceof Player,
+                character.getHomeId(), character.getCurrentPlaceId(), character.getOccupancySlot(),
+                SaveFile.Items.typeOf(character.getEquippedWeapon()), SaveFile.Items.typeOf(character.getEquippedArmor()),
+                npc != null && npc.isSleeping(), npc != null && npc.isWorking()
+        );
+    }
+
+    private static void copyRelations(AbstractCharacter character, CharacterState state) {
+        Map<AbstractCharacter, Integer> relationships = character.getRelationships();
+        state.others = new AbstractCharacter[relationships.size()];
+        state.relations = new int[relationships.size()];
+        int relation = 0;
+        for(Map.Entry<AbstractCharacter, Integer> known: relationships.entrySet()) {
+            state.others[relation] = known.getKey();
+            state.relations[relation] = known.getValue();
+            relation++;
+        }
+    }
+
+    private static int[] coinsOf(Money money) {
+        return new int[] { money.getPlatinum(), money.getGold(), money.getSilver(), money.getCopper() };
+    }
+
+    // Pure Getters
+
+    /**
+     * Will provide the epoch of this Snapshot, every Snapshot has its own
+     * @return int representing the epoch characters are marked with once they no longer need copying
+     */
+    public int getEpoch() { return epoch; }
+
+    /**
+     * Will provide the World of the captured game, its Areas are read through recordOf
+     * @return World representing the captured World
+     */
+    public World getWorld() { return world; }
+
+    /**
+     * Will provide the captured character table, read each character through stateOf
+     * @return AbstractCharacter[] representing the Player first then every NPC in GameState order
+     */
+    AbstractCharacter[] getCharacters() { return characters; }
+
+    /**
+     * Will provide the Nations of the captured game
+     * @return List<Nation> representing every Nation
+     */
+    public List<Nation> getNations() { return nations; }
+
+    /**
+     * Will provide the captured calendar
+     * @return int[] representing the year, month, day and hour
+     */
+    int[] getCalendar() { return calendar; }
+
+    /**
+     * Will provide the hours played when the game was captured
+     * @return long representing the total hours played
+     */
+    public long getTotalHours() { return totalHours; }
+
+}
@@ -0,0 +1,422 @@
+package org.dionthorn.isekairpg.persistence;
+
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.worlds.Area;
+import org.dionthorn.isekairpg.worlds.DirtyRegionStore;
+import org.dionthorn.isekairpg.worlds.Place;
+import org.dionthorn.isekairpg.worlds.PlaceIndex;
+import org.dionthorn.isekairpg.worlds.Region;
+import org.dionthorn.isekairpg.worlds.RegionSource;
+import org.dionthorn.isekairpg.worlds.World;
+import org.dionthorn.isekairpg.worlds.WorldCensus;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The WorldImage is a pre-generated World laid out to be memory mapped, open it once and start any number of games
+ * <p>
+ * Layout: a fixed size header, the Region Biome table, the Area Setting table, a table of where each Region starts,
+ * the packed Place types of every Region, the few renamed Places, the PlaceIndex with its census
+ * and finally the characters and Nations as a SaveFile without the World.
+ * Nothing is compressed so an Area reads its Place types straight from the mapped file, see Area.
+ * Changes never reach the file, a changed Area copies its Place types onto the heap first and is kept by the
+ * World DirtyRegionStore when its Region is evicted, so the image is a read only base with a copy on write overlay.
+ * <p>
+ * Opening reads the header and renamed Places only, so it takes the same time for any World size,
+ * and the OS page cache holding the image is shared by every process that opens the same file.
+ * Starting a game from it reads the stored index and characters instead of walking every Place,
+ * so it only takes longer with the number of characters.
+ * Location names are derived from the World seed so only the seed is stored.
+ */
+public final class WorldImage implements RegionSource, AutoCloseable {
+
+    public static final Path DEFAULT_PATH = Path.of(System.getProperty("isekairpg.worldImage", "isekairpg.world"));
+    public static final int VERSION = 2;
+
+    private static final long MAGIC = 0x49534B41574F524CL; // "ISKAWORL"
+    private static final int HEADER_BYTES = 80;
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE; // the most a single MappedByteBuffer can hold
+    private static final Area.Setting[] SETTINGS = Area.Setting.values(); // values() copies the array every call
+
+    private final FileChannel channel;
+    private final World.Size worldSize;
+    private final long seed;
+    private final int regionSize;
+    private final int areaSize;
+    private final MappedByteBuffer tables; // header, Biome, Setting and Region offset tables
+    private final long settingsOffset;
+    private final long regionTableOffset;
+    private final long indexOffset;
+    private final long charactersOffset;
+    // Place types mapped in segments that each hold whole Regions
+    private final MappedByteBuffer[] segments;
+    private final long[] segmentStarts;
+    private final int[] regionSegments;
+    // renamed Places by Region index then Area index
+    private final HashMap<Integer, HashMap<Integer, Map<Integer, String>>> renamedPlaces = new HashMap<>();
+
+    private WorldImage(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while(header.hasRemaining()) {
+            if(channel.read(header, header.position()) < 0) {
+                throw new IOException("Not an IsekaiRPG world image");
+            }
+        }
+        header.flip();
+        if(header.getLong() != MAGIC) {
+            throw new IOException("Not an IsekaiRPG world image");
+        }
+        int version = header.getInt();
+        if(version != VERSION) {
+            throw new IOException("Unsupported world image version " + version + " expected " + VERSION);
+        }
+        worldSize = SaveFile.valueOf(World.Size.values(), header.getInt(), "World size");
+        seed = header.getLong();
+        settingsOffset = header.getLong();
+        regionTableOffset = header.getLong();
+        long placesOffset = header.getLong();
+        long renamesOffset = header.getLong();
+        indexOffset = header.getLong();
+        charactersOffset = header.getLong();
+        if(settingsOffset < HEADER_BYTES || regionTableOffset < settingsOffset || placesOffset < regionTableOffset
+                || renamesOffset < placesOffset || indexOffset < renamesOffset || charactersOffset < indexOffset
+                || charactersOffset > channel.size()) {
+            throw new IOException("Corrupt world image header");
+        }
+        regionSize = worldSize.getRegionSize();
+        areaSize = worldSize.getAreaSize();
+        int regionCount = regionSize * regionSize;
+
+        tables = channel.map(FileChannel.MapMode.READ_ONLY, 0, placesOffset);
+        // split the Place types into as few mappings as possible without splitting a Region
+        ArrayList<MappedByteBuffer> mapped = new ArrayList<>();
+        ArrayList<Long> starts = new ArrayList<>();
+        regionSegments = new int[regionCount];
+        long segmentStart = placesOffset;
+        for(int region = 0; region < regionCount; region++) {
+            long regionEnd = regionStart(region + 1);
+            if(regionEnd - segmentStart > MAX_SEGMENT_BYTES) {
+                mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, regionStart(region) - segmentStart));
+                starts.add(segmentStart);
+                segmentStart = regionStart(region);
+            }
+            regionSegments[region] = mapped.size();
+        }
+        mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, regionStart(regionCount) - segmentStart));
+        starts.add(segmentStart);
+        segments = mapped.toArray(new MappedByteBuffer[0]);
+        segmentStarts = starts.stream().mapToLong(Long::longValue).toArray();
+
+        ByteBuffer renames = channel.map(FileChannel.MapMode.READ_ONLY, renamesOffset, indexOffset - renamesOffset);
+        int renamedCount = renames.getInt();
+        for(int renamed = 0; renamed < renamedCount; renamed++) {
+            int region = renames.getInt();
+            int area = renames.getInt();
+            int cell = Short.toUnsignedInt(renames.getShort());
+            byte[] name = new byte[Short.toUnsignedInt(renames.getShort())];
+            renames.get(name);
+            renamedPlaces.computeIfAbsent(region, key -> new HashMap<>())
+                    .computeIfAbsent(area, key -> new HashMap<>())
+                    .put(cell, new String(name, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Will open and map a world image
+     * @param path Path representing the world image file
+     * @return WorldImage representing the mapped image, close it when the Worlds created from it are discarded
+     * @throws IOException if the file can't be read or is not a world image of this version
+     */
+    public static WorldImage open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new WorldImage(channel);
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Will create a World backed by this image, its Areas are created from the mapped file as they are visited
+     * @return World representing the World stored in this image
+     */
+    public World createWorld() {
+        World world = new World(worldSize, seed);
+        Region.Biome[][] biomes = new Region.Biome[regionSize][regionSize];
+        for(int y = 0; y < regionSize; y++) {
+            for(int x = 0; x < regionSize; x++) {
+                biomes[y][x] = Region.Biome.values()[tables.get(HEADER_BYTES + y * regionSize + x)];
+            }
+        }
+        world.restore(biomes, this);
+        return world;
+    }
+
+    /**
+     * Will start a game in a World backed by this image with the characters and Nations stored in it,
+     * the stored Player makes way for a new one that the caller places, nothing walks the World
+     * @param state GameState representing the game to replace
+     * @param player Player representing the users character, not placed yet
+     * @return PlaceIndex representing the index and census stored with the World
+     * @throws IOException if the stored index or characters can't be read
+     */
+    public PlaceIndex restore(GameState state, Player player) throws IOException {
+        World world = createWorld();
+        PlaceIndex placeIndex = readPlaceIndex(world);
+        SaveFile.open(channel, charactersOffset).restore(state, world, player);
+        return placeIndex;
+    }
+
+    private PlaceIndex readPlaceIndex(World world) throws IOException {
+        ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, charactersOffset - indexOffset);
+        try {
+            int regionCount = in.getInt();
+            int areaCount = in.getInt();
+            long placeCount = in.getLong();
+            int[] settingCounts = new int[Area.Setting.values().length];
+            for(int setting = 0; setting < settingCounts.length; setting++) {
+                settingCounts[setting] = in.getInt();
+            }
+            long[] typeCounts = new long[Place.Type.values().length];
+            for(int type = 0; type < typeCounts.length; type++) {
+                typeCounts[type] = in.getLong();
+            }
+            EnumMap<Area.Setting, long[]> areas = new EnumMap<>(Area.Setting.class);
+            for(Area.Setting setting: Area.Setting.values()) {
+                areas.put(setting, readHandles(in));
+            }
+            EnumMap<Place.Type, long[]> places = new EnumMap<>(Place.Type.class);
+            for(Place.Type type: PlaceIndex.INDEXED_TYPES) {
+                places.put(type, readHandles(in));
+            }
+            WorldCensus census = new WorldCensus(regionCount, areaCount, placeCount, settingCounts, typeCounts);
+            return PlaceIndex.of(world, areas, places, census);
+        } catch(BufferUnderflowException e) {
+            throw new IOException("World image place index cut short", e);
+        }
+    }
+
+    private static long[] readHandles(ByteBuffer in) throws IOException {
+        int count = in.getInt();
+        if(count < 0 || (long) count * Long.BYTES > in.remaining()) {
+            throw new IOException("Corrupt count of handles " + count + " in world image");
+        }
+        long[] handles = new long[count];
+        in.asLongBuffer().get(handles);
+        in.position(in.position() + count * Long.BYTES);
+        return handles;
+    }
+
+    /**
+     * Will provide the Areas of a Region, mapped Place types for every Area except the few with renamed Places
+     * @param x int representing the Region x coordinate within the World
+     * @param y int representing the Region y coordinate within the World
+     * @return RegionImage representing the stored Areas of the Region
+     */
+    @Override
+    public RegionImage loadRegion(int x, int y) {
+        int region = y * regionSize + x;
+        HashMap<Integer, Map<Integer, String>> renamed = renamedPlaces.get(region);
+        MappedByteBuffer segment = segments[regionSegments[region]];
+        int position = (int) (regionStart(region) - segmentStarts[regionSegments[region]]);
+        int settingsPosition = (int) (settingsOffset + (long) region * areaSize * areaSize);
+        Area.Setting[][] settings = new Area.Setting[areaSize][areaSize];
+        ByteBuffer[][] mappedAreas = new ByteBuffer[areaSize][areaSize];
+        DirtyRegionStore.AreaRecord[][] areas = (renamed == null) ? null : new DirtyRegionStore.AreaRecord[areaSize][areaSize];
+        for(int yArea = 0; yArea < areaSize; yArea++) {
+            for(int xArea = 0; xArea < areaSize; xArea++) {
+                int area = yArea * areaSize + xArea;
+                Area.Setting setting = SETTINGS[tables.get(settingsPosition + area)];
+                int length = setting.getSize() * setting.getSize();
+                ByteBuffer placeTypes = segment.slice(position, length).asReadOnlyBuffer();
+                Map<Integer, String> placeNames = (renamed == null) ? null : renamed.get(area);
+                if(placeNames != null) {
+                    byte[] copied = new byte[length];
+                    placeTypes.get(0, copied);
+                    areas[yArea][xArea] = new DirtyRegionStore.AreaRecord(copied, placeNames);
+                } else {
+                    mappedAreas[yArea][xArea] = placeTypes;
+                }
+                settings[yArea][xArea] = setting;
+                position += length;
+            }
+        }
+        return new RegionImage(settings, areas, mappedAreas);
+    }
+
+    private long regionStart(int region) { return tables.getLong((int) (regionTableOffset + (long) region * Long.BYTES)); }
+
+    /**
+     * Will provide the size of the World in this image
+     * @return World.Size representing the World size
+     */
+    public World.Size getWorldSize() { return worldSize; }
+
+    /**
+     * Will provide the seed of the World in this image
+     * @return long representing the World seed
+     */
+    public long getSeed() { return seed; }
+
+    @Override
+    public void close() throws IOException { channel.close(); }
+
+    // Writing
+
+    /**
+     * Will write the World of the game with its PlaceIndex, characters and Nations to a world image,
+     * the file is written beside the path first then moved over it
+     * Regions are visited one at a time so a World over its memory budget can be written too
+     * @param state GameState representing the game to store, its Player is replaced when the image is opened
+     * @param path Path representing the world image file
+     * @throws IOException if the file can't be written
+     */
+    public static void write(GameState state, Path path) throws IOException {
+        World world = state.getWorld();
+        PlaceIndex placeIndex = state.getPlaceIndex();
+        int regionSize = world.getRegionSize();
+        int areaSize = world.getWorldSize().getAreaSize();
+        int regionCount = regionSize * regionSize;
+        int areaCount = areaSize * areaSize;
+        long settingsOffset = HEADER_BYTES + regionCount;
+        long regionTableOffset = (settingsOffset + (long) regionCount * areaCount + 7) & ~7L; // 8 byte aligned
+        long placesOffset = regionTableOffset + (long) (regionCount + 1) * Long.BYTES;
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer biomes = ByteBuffer.allocate(regionCount);
+            ByteBuffer settings = ByteBuffer.allocate(regionCount * areaCount);
+            ByteBuffer regionStarts = ByteBuffer.allocate((regionCount + 1) * Long.BYTES);
+            ByteBuffer renames = ByteBuffer.allocate(1 << 12);
+            int renamedCount = 0;
+            ByteBuffer places = ByteBuffer.allocate(1 << 20);
+            long position = placesOffset;
+            for(int y = 0; y < regionSize; y++) {
+                for(int x = 0; x < regionSize; x++) {
+                    Region region = world.getRegion(x, y);
+                    int regionIndex = y * regionSize + x;
+                    biomes.put((byte) region.getBiome().ordinal());
+                    regionStarts.putLong(position + places.position()); // some of the Place types before it may not be written yet
+                    Area[][] areas = region.getAreas();
+                    for(int yArea = 0; yArea < areaSize; yArea++) {
+                        for(int xArea = 0; xArea < areaSize; xArea++) {
+                            Area area = areas[yArea][xArea];
+                            DirtyRegionStore.AreaRecord record = area.toRecord();
+                            settings.put((byte) area.getSetting().ordinal());
+                            if(places.remaining() < record.placeTypes().length) {
+                                position += writeFully(channel, places.flip(), position);
+                                places.clear();
+                            }
+                            places.put(record.placeTypes());
+                            for(Map.Entry<Integer, String> renamed: record.placeNames().entrySet()) {
+                                byte[] name = renamed.getValue().getBytes(StandardCharsets.UTF_8);
+                                if(renames.remaining() < 12 + name.length) {
+                                    renames = ByteBuffer.allocate(renames.capacity() * 2 + name.length)
+                                            .put(renames.flip());
+                                }
+                                renames.putInt(regionIndex).putInt(yArea * areaSize + xArea)
+                                        .putShort(renamed.getKey().shortValue()).putShort((short) name.length).put(name);
+                                renamedCount++;
+                            }
+                        }
+                    }
+                }
+            }
+            position += writeFully(channel, places.flip(), position);
+            regionStarts.putLong(position); // end of the last Region
+
+            long renamesOffset = position;
+            writeFully(channel, ByteBuffer.allocate(Integer.BYTES).putInt(renamedCount).flip(), renamesOffset);
+            long indexOffset = renamesOffset + Integer.BYTES;
+            indexOffset += writeFully(channel, renames.flip(), indexOffset);
+            long charactersOffset = writePlaceIndex(channel, placeIndex, places.clear(), indexOffset);
+            SaveFile.writeCharacters(state, channel, charactersOffset);
+            writeFully(channel, biomes.flip(), HEADER_BYTES);
+            writeFully(channel, settings.flip(), settingsOffset);
+            writeFully(channel, regionStarts.flip(), regionTableOffset);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putLong(MAGIC).putInt(VERSION).putInt(world.getWorldSize().ordinal()).putLong(world.getSeed());
+            header.putLong(settingsOffset).putLong(regionTableOffset).putLong(placesOffset).putLong(renamesOffset);
+            header.putLong(indexOffset).putLong(charactersOffset);
+            writeFully(channel, header.position(HEADER_BYTES).flip(), 0);
+            channel.force(true);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Will write the census then the handles of every Setting and indexed Type, buffer is reused as it fills
+     * @return long representing where the place index ends
+     */
+    private static long writePlaceIndex(FileChannel channel, PlaceIndex placeIndex, ByteBuffer buffer, long at)
+            throws IOException {
+        WorldCensus census = placeIndex.getCensus();
+        buffer.putInt(census.getRegionCount()).putInt(census.getAreaCount()).putLong(census.getPlaceCount());
+        for(Area.Setting setting: Area.Setting.values()) {
+            buffer.putInt(census.getAreaCount(setting));
+        }
+        for(Place.Type type: Place.Type.values()) {
+            buffer.putLong(census.getPlaceCount(type));
+        }
+        for(Area.Setting setting: Area.Setting.values()) {
+            buffer.putInt(placeIndex.size(setting));
+            for(int area = 0; area < placeIndex.size(setting); area++) {
+                at = flushIfFull(channel, buffer, at);
+                buffer.putLong(placeIndex.getHandle(setting, area));
+            }
+            at = flushIfFull(channel, buffer, at);
+        }
+        for(Place.Type type: PlaceIndex.INDEXED_TYPES) {
+            buffer.putInt(placeIndex.size(type));
+            for(int place = 0; place < placeIndex.size(type); place++) {
+                at = flushIfFull(channel, buffer, at);
+                buffer.putLong(placeIndex.getHandle(type, place));
+            }
+            at = flushIfFull(channel, buffer, at);
+        }
+        return at + writeFully(channel, buffer.flip(), at);
+    }
+
+    /**
+     * Will write the buffer out if it can't take another handle
+     * @return long representing where the buffer is written next
+     */
+    private static long flushIfFull(FileChannel channel, ByteBuffer buffer, long at) throws IOException {
+        if(buffer.remaining() < Long.BYTES) {
+            at += writeFully(channel, buffer.flip(), at);
+            buffer.clear();
+        }
+        return at;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long at) throws IOException {
+        int written = 0;
+        while(buffer.hasRemaining()) {
+            written += channel.write(buffer, at + written);
+        }
+        return written;
+    }
+
+}
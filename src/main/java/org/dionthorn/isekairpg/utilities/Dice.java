@@ -1,16 +1,15 @@
 package org.dionthorn.isekairpg.utilities;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * The Dice class will be used for game related random 'rolls'.
  * Easily the most portable class in the game.
+ * Rolls use the random stream of the calling thread from RandomStreams so the same seed gives the same rolls.
  * final disallows extending this class
  */
 public final class Dice {
 
-    // singular random object that all dice share
-    private static final Random RAND = new Random();
     // Commonly used die
     public static final Dice d2 = new Dice(2);   // 50% per face
     public static final Dice d4 = new Dice(4);   // 25%
@@ -64,10 +63,17 @@ public final class Dice {
      * </p>
      * @return the integer value of the sum of the dice roll and modifier
      */
-    public int roll() {
+    public int roll() { return roll(RandomStreams.current()); }
+
+    /**
+     * Returns the integer value of the sum of the dice roll using the provided random stream
+     * @param random SplittableRandom representing the stream to roll with
+     * @return the integer value of the sum of the dice roll and modifier
+     */
+    public int roll(SplittableRandom random) {
         int rollValue = 0;
         for(int die = 0; die< amount; die++) {
-            rollValue += 1 + RAND.nextInt(faces);
+            rollValue += 1 + random.nextInt(faces);
         }
         rollValue += modifier;
         return rollValue;
@@ -1,11 +1,18 @@
 package org.dionthorn.isekairpg.utilities;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.IntUnaryOperator;
+
 /**
  * The Names class is a static utility class that provides random formatted naming
- * Using romaji combinations at random
+ * Using romaji combinations at random, or derived from a seed so the same seed always gives the same name
  */
 public final class Names {
 
+    private static final int NAME_CACHE_SIZE = 1024; // how many recently derived place names we keep
+
     // A list of all common romaji
     private static final String[] romaji = new String[] {
             "a", "i", "u", "e", "o",
@@ -36,6 +43,15 @@ public final class Names {
             "pya", "pyu", "pyo"
     };
 
+    // access ordered so the least recently shown name is evicted first
+    private static final LinkedHashMap<Long, String> PLACE_NAME_CACHE =
+            new LinkedHashMap<>(NAME_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                    return size() > NAME_CACHE_SIZE;
+                }
+            };
+
     private Names() {
         // static utility class for name generation using romaji
         // usage of this class is intended to be Names.method()
@@ -46,11 +62,34 @@ public final class Names {
      * @return String representing a Place name generated randomly with romaji
      */
     public static String getPlaceName() {
+        return buildPlaceName(bound -> new Dice(bound).roll() - 1);
+    }
+
+    /**
+     * Will provide a Place name using romaji derived from the seed, recently derived names are cached
+     * @param seed long representing the seed of the location being named
+     * @return String representing a Place name, always the same for the same seed
+     */
+    public static String getPlaceName(long seed) {
+        synchronized(PLACE_NAME_CACHE) {
+            String cached = PLACE_NAME_CACHE.get(seed);
+            if(cached != null) {
+                return cached;
+            }
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        String name = buildPlaceName(random::nextInt);
+        synchronized(PLACE_NAME_CACHE) {
+            PLACE_NAME_CACHE.put(seed, name);
+        }
+        return name;
+    }
+
+    private static String buildPlaceName(IntUnaryOperator random) {
         StringBuilder result = new StringBuilder();
-        Dice romajiDie = new Dice(romaji.length);
-        int sectionCount = Dice.d4.roll() + 1; // 2-5 sections of a place name
+        int sectionCount = random.applyAsInt(4) + 2; // 2-5 sections of a place name
         for(int steps=0; steps<sectionCount; steps++) {
-            result.append(romaji[romajiDie.roll() - 1]);
+            result.append(romaji[random.applyAsInt(romaji.length)]);
             if(sectionCount > 3 && steps == 2) {
                 result.append("-"); // add a hyphen to longer names
             }
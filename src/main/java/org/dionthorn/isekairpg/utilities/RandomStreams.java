@@ -0,0 +1,125 @@
+package org.dionthorn.isekairpg.utilities;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The RandomStreams class is a static utility class that hands out the random number streams Dice rolls with.
+ * <p>
+ * Every thread rolls with its own stream so no mutable random state is ever shared between threads.
+ * Work that has to be reproducible (generating a Region, a simulation worker) derives its own stream
+ * from a seed with stream(seed, keys...) and binds it to the thread running it with run() or call().
+ * The same seed and keys always give the same sequence of rolls no matter which thread runs the work.
+ */
+public final class RandomStreams {
+
+    // keys that separate the streams of different kinds of work using the same seed
+    public static final long GENERATION = 1; // world generation tasks
+    public static final long GAME = 2;       // the game thread after the world is created
+    public static final long WORKER = 3;     // simulation worker threads
+    private static final long THREAD = 4;    // threads that were never given a stream
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; // SplitMix64 increment
+    private static final AtomicLong THREAD_COUNT = new AtomicLong();
+    private static volatile long rootSeed = new SplittableRandom().nextLong();
+    private static final ThreadLocal<SplittableRandom> CURRENT = ThreadLocal.withInitial(
+            () -> stream(rootSeed, THREAD, THREAD_COUNT.incrementAndGet())
+    );
+
+    private RandomStreams() {
+        // private disallows instantiation, this is a static utility class
+    }
+
+    /**
+     * Will set the root seed and restart the calling threads stream from it,
+     * the game thread calls this when a World is created so everything after is reproducible
+     * @param seed long representing the new root seed
+     */
+    public static void reseed(long seed) {
+        rootSeed = seed;
+        CURRENT.set(stream(seed, GAME));
+    }
+
+    /**
+     * Will set the root seed and restart the calling threads stream from a checkpoint of it,
+     * a game is saved and loaded at the same checkpoint so playing on after a save or after loading it rolls the same
+     * @param seed long representing the root seed
+     * @param checkpoint long representing the checkpoint, ex: the hours played so far
+     */
+    public static void resume(long seed, long checkpoint) {
+        rootSeed = seed;
+        CURRENT.set(stream(seed, GAME, checkpoint));
+    }
+
+    /**
+     * Will provide the stream bound to the calling thread, never share the result with another thread
+     * @return SplittableRandom representing the calling threads random stream
+     */
+    public static SplittableRandom current() { return CURRENT.get(); }
+
+    /**
+     * Will provide a new stream derived from the seed and keys, the same seed and keys give the same stream
+     * @param seed long representing the seed to derive from
+     * @param keys long... representing what the stream is for ex: (GENERATION) or (WORKER, workerIndex)
+     * @return SplittableRandom representing a new independent stream
+     */
+    public static SplittableRandom stream(long seed, long... keys) { return new SplittableRandom(deriveSeed(seed, keys)); }
+
+    /**
+     * Will run the task with the stream bound to the calling thread, the previous stream is restored afterwards
+     * @param stream SplittableRandom representing the stream to roll with while the task runs
+     * @param task Runnable representing the work to do
+     */
+    public static void run(SplittableRandom stream, Runnable task) {
+        call(stream, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Will call the task with the stream bound to the calling thread, the previous stream is restored afterwards
+     * @param stream SplittableRandom representing the stream to roll with while the task runs
+     * @param task Supplier representing the work to do
+     * @param <T> the type of the result of the task
+     * @return T representing the result of the task
+     */
+    public static <T> T call(SplittableRandom stream, Supplier<T> task) {
+        SplittableRandom previous = CURRENT.get();
+        CURRENT.set(stream);
+        try {
+            return task.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Will derive a child seed from a parent seed and keys, ex: a Region seed from the World seed and its x, y
+     * @param seed long representing the parent seed
+     * @param keys long... representing the keys to mix into the seed in order
+     * @return long representing the derived seed
+     */
+    public static long deriveSeed(long seed, long... keys) {
+        long result = seed;
+        for(long key: keys) {
+            result = mix(result + GOLDEN_GAMMA * (key + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Provides the root seed of the current World, or a random one if no World was created yet
+     * @return long representing the root seed
+     */
+    public static long getRootSeed() { return rootSeed; }
+
+    // SplitMix64 finalizer, spreads the bits of z so nearby keys give unrelated seeds
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
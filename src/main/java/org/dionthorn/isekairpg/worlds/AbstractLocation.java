@@ -8,17 +8,19 @@ import java.util.Locale;
  */
 public class AbstractLocation {
 
-    private final String name;
+    private final long seed;
     private final int x, y;
     private AbstractLocation parent = null;
 
     /**
-     * creates a new abstract location and provides a random name for the location from Names.getPlaceName()
+     * creates a new abstract location, the name of the location is derived from the seed when it is asked for
+     * child locations should derive their seed from their parents with RandomStreams.deriveSeed(parentSeed, x, y)
      * @param x int representing the locations x coordinate
      * @param y int representing the locations y coordinate
+     * @param seed long representing the seed this locations name is derived from
      */
-    public AbstractLocation(int x, int y) {
-        this.name = Names.getPlaceName();
+    public AbstractLocation(int x, int y, long seed) {
+        this.seed = seed;
         this.x = x;
         this.y = y;
     }
@@ -50,10 +52,16 @@ public class AbstractLocation {
     // Pure Getters
 
     /**
-     * Provides the name of this AbstractLocation
+     * Provides the name of this AbstractLocation, the same seed always gives the same name
      * @return String representing this AbstractLocations name
      */
-    public String getName() { return name; }
+    public String getName() { return Names.getPlaceName(seed); }
+
+    /**
+     * Provides the seed of this AbstractLocation which its name and the seeds of its children derive from
+     * @return long representing this AbstractLocations seed
+     */
+    public long getSeed() { return seed; }
 
     /**
      * Provides the x coordinate of this AbstractLocation
@@ -6,17 +6,36 @@ import javafx.scene.image.Image;
 import javafx.scene.paint.Color;
 import org.dionthorn.isekairpg.graphics.TileSet;
 import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
 
-import java.util.ArrayList;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 
 /**
- * The Area class contains references to all it's associated Place objects as well as a Setting type
+ * The Area class contains all it's associated Places as well as a Setting type
  * The Setting determines what kind of places are generated
+ * <p>
+ * Places are stored packed, a single Place.Type ordinal byte per cell in row major order (y * size + x).
+ * A new name lives in a sparse side table that only has entries for renamed cells, occupants are tracked
+ * by the World OccupancyIndex. Place objects are views created on demand by getPlace(x, y).
+ * An Area opened from a WorldImage reads its Place types straight from the mapped file and only copies them
+ * onto the heap the first time one of them changes.
  */
 public class Area extends AbstractLocation {
 
-    private final Place[][] places;
+    private volatile byte[] placeTypes; // Place.Type ordinal per cell, null while read from mappedTypes
+    private final ByteBuffer mappedTypes; // read only Place.Type ordinals in a mapped file, null if generated
     private final Setting setting;
+    private static final long AREA_OVERHEAD_BYTES = 96; // object headers, fields and the placeTypes array header
+    private volatile boolean dirty = false; // changed since generation or since last saved to the DirtyRegionStore
+    // sparse side tables keyed by cell index, null until the first cell needs one
+    private HashMap<Integer, String> placeNames; // only places that were renamed
+    // views handed out by getPlace, weak so unreferenced views can be collected and recreated later
+    private HashMap<Integer, PlaceView> placeViews;
+    private ReferenceQueue<Place> collectedViews; // views the collector cleared, drained by getPlace
 
     /**
      * WILD is dangerous places but no communities
@@ -49,27 +68,71 @@ public class Area extends AbstractLocation {
      * @param x int representing this Area x coordinate within it's parent Region
      * @param y int representing this Area y coordinate within it's parent Region
      */
-    public Area(Region parent, Setting setting, int x, int y) {
-        super(x, y);
+    public Area(Region parent, Setting setting, int x, int y) { this(parent, setting, x, y, null, null); }
+
+    /**
+     * Areas have Places, restores the Places from a saved record or generates them if there is none
+     * @param parent Region representing the parent Region this Area is a part of for easy reference
+     * @param setting Setting representing the type of Area this is
+     * @param x int representing this Area x coordinate within it's parent Region
+     * @param y int representing this Area y coordinate within it's parent Region
+     * @param saved DirtyRegionStore.AreaRecord representing the saved state of this Area, null to generate
+     */
+    Area(Region parent, Setting setting, int x, int y, DirtyRegionStore.AreaRecord saved) {
+        this(parent, setting, x, y, saved, null);
+    }
+
+    /**
+     * Areas have Places, reads the Places from a mapped file until the first one changes
+     * @param parent Region representing the parent Region this Area is a part of for easy reference
+     * @param setting Setting representing the type of Area this is
+     * @param x int representing this Area x coordinate within it's parent Region
+     * @param y int representing this Area y coordinate within it's parent Region
+     * @param mappedTypes ByteBuffer representing the Place.Type ordinal per cell in row major order
+     */
+    Area(Region parent, Setting setting, int x, int y, ByteBuffer mappedTypes) {
+        this(parent, setting, x, y, null, mappedTypes);
+    }
+
+    private Area(Region parent, Setting setting, int x, int y,
+                 DirtyRegionStore.AreaRecord saved, ByteBuffer mappedTypes) {
+        super(x, y, RandomStreams.deriveSeed(parent.getSeed(), x, y));
         setParent(parent);
         this.setting = setting;
-        Region.Biome biome = ((Region) getParent()).getBiome();
-        places = new Place[setting.getSize()][setting.getSize()];
+        this.mappedTypes = mappedTypes;
+        if(mappedTypes != null) {
+            placeTypes = null; // copied on the first write
+        } else if(saved != null) {
+            placeTypes = saved.placeTypes().clone();
+            if(!saved.placeNames().isEmpty()) {
+                placeNames = new HashMap<>(saved.placeNames());
+            }
+        } else {
+            placeTypes = new byte[setting.getSize() * setting.getSize()];
+            // every Area rolls with its own stream derived from its seed so Areas can be generated in any order
+            RandomStreams.run(RandomStreams.stream(getSeed(), RandomStreams.GENERATION), this::generatePlaces);
+        }
+    }
 
+    /**
+     * Will roll the Place types of this Area from its Setting and its parent Regions Biome
+     */
+    private void generatePlaces() {
+        Region.Biome biome = ((Region) getParent()).getBiome();
         for(int yPlace = 0; yPlace< setting.getSize(); yPlace++) {
             for(int xPlace = 0; xPlace< setting.getSize(); xPlace++) {
                 int roll = Dice.d20.roll(); // chance roll
                 if(setting == Setting.WILDS || setting == Setting.SAFEZONE) {
-                    places[yPlace][xPlace] = new Place(this, Place.Type.OUTDOORS, xPlace, yPlace);
+                    putType(xPlace, yPlace, Place.Type.OUTDOORS);
                 } else if(setting == Setting.DUNGEON) {
                     // dungeons are special cases they get rooms and caves filled with monsters
                     // and potentially rare resources
                     if(roll > 10) {
                         // 50%
-                        places[yPlace][xPlace] = new Place(this, Place.Type.CAVE, xPlace, yPlace);
+                        putType(xPlace, yPlace, Place.Type.CAVE);
                     } else {
                         // 50%
-                        places[yPlace][xPlace] = new Place(this, Place.Type.INDOORS, xPlace, yPlace);
+                        putType(xPlace, yPlace, Place.Type.INDOORS);
                     }
                 } else if(setting == Setting.HAMLET || setting == Setting.VILLAGE || setting == Setting.TOWN) {
                     if(biome == Region.Biome.PLAINS || biome == Region.Biome.HILLS) {
@@ -86,7 +149,7 @@ public class Area extends AbstractLocation {
                 } else if(setting == Setting.CASTLE) {
                     // castles are special cases, filled with rooms no services just politic and monarchies
                     // a castle is the head of a Nation AbstractGroup areas with multiple castles tend to be tense
-                    places[yPlace][xPlace] = new Place(this, Place.Type.INDOORS, xPlace, yPlace);
+                    putType(xPlace, yPlace, Place.Type.INDOORS);
                 }
             }
         }
@@ -99,16 +162,36 @@ public class Area extends AbstractLocation {
     private void addGraveyard() {
         // find a free outdoors space to turn into a graveyard every area should have 1 graveyard
         // except wild, safe, castle, dungeon
-        ArrayList<Place> outdoorPlaces = new ArrayList<>();
-        for(Place[] placeLayer: places) {
-            for(Place place: placeLayer) {
-                if(place.getType() == Place.Type.OUTDOORS) {
-                    outdoorPlaces.add(place);
-                }
+        byte outdoors = (byte) Place.Type.OUTDOORS.ordinal();
+        int outdoorCount = 0;
+        for(byte type: placeTypes) {
+            if(type == outdoors) {
+                outdoorCount++;
             }
         }
-        Dice randomOutdoor = new Dice(1, outdoorPlaces.size(), -1);
-        outdoorPlaces.get(randomOutdoor.roll()).setType(Place.Type.GRAVEYARD);
+        if(outdoorCount == 0) {
+            // no outdoors left to build on, the graveyard replaces a random place instead
+            placeTypes[new Dice(1, placeTypes.length, -1).roll()] = (byte) Place.Type.GRAVEYARD.ordinal();
+            return;
+        }
+        // pick the nth outdoor cell in row major order
+        int chosen = new Dice(1, outdoorCount, -1).roll();
+        for(int index = 0; index < placeTypes.length; index++) {
+            if(placeTypes[index] == outdoors && chosen-- == 0) {
+                placeTypes[index] = (byte) Place.Type.GRAVEYARD.ordinal();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stores the Type of the Place at x,y during generation
+     * @param xPlace int representing the x coordinate of the Place
+     * @param yPlace int representing the y coordinate of the Place
+     * @param type Place.Type representing the type of the Place
+     */
+    private void putType(int xPlace, int yPlace, Place.Type type) {
+        placeTypes[yPlace * setting.getSize() + xPlace] = (byte) type.ordinal();
     }
 
     /**
@@ -123,25 +206,25 @@ public class Area extends AbstractLocation {
             // 50%
             int typeRoll = Dice.d8.roll();
             if(typeRoll == 1) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.RESERVE, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.RESERVE);
             } else if(typeRoll == 2) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.FISHERY, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.FISHERY);
             } else if(typeRoll == 3) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.FARM, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.FARM);
             } else if(typeRoll == 4) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.TRADER, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.TRADER);
             } else if(typeRoll == 5) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.MINE, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.MINE);
             } else if(typeRoll == 6) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.BLACKSMITH, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.BLACKSMITH);
             } else if(typeRoll == 7) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.WOODLAND, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.WOODLAND);
             } else if(typeRoll == 8) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.INN, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.INN);
             }
         } else {
             // 50%
-            places[yPlace][xPlace] = new Place(this, Place.Type.OUTDOORS, xPlace, yPlace);
+            putType(xPlace, yPlace, Place.Type.OUTDOORS);
         }
     }
 
@@ -157,21 +240,21 @@ public class Area extends AbstractLocation {
             // 50%
             int typeRoll = Dice.d6.roll();
             if(typeRoll == 1) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.RESERVE, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.RESERVE);
             } else if(typeRoll == 2) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.FISHERY, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.FISHERY);
             } else if(typeRoll == 3) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.TRADER, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.TRADER);
             } else if(typeRoll == 4) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.MINE, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.MINE);
             } else if(typeRoll == 5) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.BLACKSMITH, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.BLACKSMITH);
             } else if(typeRoll == 6) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.INN, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.INN);
             }
         } else {
             // 50%
-            places[yPlace][xPlace] = new Place(this, Place.Type.OUTDOORS, xPlace, yPlace);
+            putType(xPlace, yPlace, Place.Type.OUTDOORS);
         }
     }
     /**
@@ -186,21 +269,21 @@ public class Area extends AbstractLocation {
             // 50%
             int typeRoll = Dice.d6.roll();
             if(typeRoll == 1) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.RESERVE, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.RESERVE);
             } else if(typeRoll == 2) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.FISHERY, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.FISHERY);
             } else if(typeRoll == 3) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.FARM, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.FARM);
             } else if(typeRoll == 4) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.TRADER, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.TRADER);
             } else if(typeRoll == 5) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.INN, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.INN);
             } else if(typeRoll == 6) {
-                places[yPlace][xPlace] = new Place(this, Place.Type.WOODLAND, xPlace, yPlace);
+                putType(xPlace, yPlace, Place.Type.WOODLAND);
             }
         } else {
             // 50%
-            places[yPlace][xPlace] = new Place(this, Place.Type.OUTDOORS, xPlace, yPlace);
+            putType(xPlace, yPlace, Place.Type.OUTDOORS);
         }
     }
 
@@ -214,13 +297,13 @@ public class Area extends AbstractLocation {
         // deserts only have hunting
         if(roll > 16) {
             // 20% (17-20)
-            places[yPlace][xPlace] = new Place(this, Place.Type.RESERVE, xPlace, yPlace);
+            putType(xPlace, yPlace, Place.Type.RESERVE);
         } else if(roll > 12) {
             // 20% (13-16)
-            places[yPlace][xPlace] = new Place(this, Place.Type.INN, xPlace, yPlace);
+            putType(xPlace, yPlace, Place.Type.INN);
         } else {
             // 60% (1-12)
-            places[yPlace][xPlace] = new Place(this, Place.Type.OUTDOORS, xPlace, yPlace);
+            putType(xPlace, yPlace, Place.Type.OUTDOORS);
         }
     }
 
@@ -234,13 +317,13 @@ public class Area extends AbstractLocation {
         // tundras only have fishing
         if(roll > 16) {
             // 20% (17-20)
-            places[yPlace][xPlace] = new Place(this, Place.Type.FISHERY, xPlace, yPlace);
+            putType(xPlace, yPlace, Place.Type.FISHERY);
         } else if(roll > 12) {
             // 20% (13-16)
-            places[yPlace][xPlace] = new Place(this, Place.Type.INN, xPlace, yPlace);
+            putType(xPlace, yPlace, Place.Type.INN);
         } else {
             // 60% (1-12)
-            places[yPlace][xPlace] = new Place(this, Place.Type.OUTDOORS, xPlace, yPlace);
+            putType(xPlace, yPlace, Place.Type.OUTDOORS);
         }
     }
 
@@ -252,10 +335,20 @@ public class Area extends AbstractLocation {
     public int getPlaceSize() { return getSetting().getSize(); }
 
     /**
-     * returns the Place[][] of all places in this Area
+     * returns a Place[][] of all places in this Area, this creates a view for every cell
+     * so prefer getPlaceType(x, y) when only the types are needed
      * @return Place[][] representing all places in this Area
      */
-    public Place[][] getPlaces() { return places; }
+    public Place[][] getPlaces() {
+        int size = getPlaceSize();
+        Place[][] places = new Place[size][size];
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                places[y][x] = getPlace(x, y);
+            }
+        }
+        return places;
+    }
 
     /**
      * returns the Place object at the x,y coordinate in this Area
@@ -265,15 +358,138 @@ public class Area extends AbstractLocation {
      * will return null if Place doesn't exist at x,y
      */
     public Place getPlace(int x, int y) {
-        Place toGet = null;
-        try {
-            toGet = places[y][x];
-        } catch(Exception e) {
-            // if x,y doesn't exist in this area will return null
+        if(!contains(x, y)) {
+            return null; // if x,y doesn't exist in this area will return null
+        }
+        int index = indexOf(x, y);
+        synchronized(this) {
+            if(placeViews == null) {
+                placeViews = new HashMap<>();
+                collectedViews = new ReferenceQueue<>();
+            }
+            // drop only the entries whose views were collected since the last lookup
+            for(Reference<? extends Place> stale; (stale = collectedViews.poll()) != null; ) {
+                placeViews.remove(((PlaceView) stale).index, stale);
+            }
+            PlaceView reference = placeViews.get(index);
+            Place view = (reference == null) ? null : reference.get();
+            if(view == null) {
+                view = new Place(this, x, y);
+                placeViews.put(index, new PlaceView(view, index, collectedViews));
+            }
+            return view;
         }
-        return toGet;
     }
 
+    /**
+     * A weak reference to a Place view that remembers its cell so it can be removed once it is collected
+     */
+    private static final class PlaceView extends WeakReference<Place> {
+
+        private final int index;
+
+        private PlaceView(Place view, int index, ReferenceQueue<Place> queue) {
+            super(view, queue);
+            this.index = index;
+        }
+
+    }
+
+    /**
+     * returns the Place.Type at the x,y coordinate in this Area without creating a Place view
+     * @param x the target Place x coordinate
+     * @param y the target Place y coordinate
+     * @return Place.Type representing the type of the Place at the target x,y in this Area
+     */
+    public Place.Type getPlaceType(int x, int y) {
+        byte[] types = placeTypes;
+        int index = indexOf(x, y);
+        return Place.TYPES[(types != null) ? types[index] : mappedTypes.get(index)];
+    }
+
+    void setPlaceType(int x, int y, Place.Type type) {
+        byte[] types = placeTypes;
+        if(types == null) {
+            types = copyOnWrite();
+        }
+        types[indexOf(x, y)] = (byte) type.ordinal();
+        markDirty();
+    }
+
+    /**
+     * Will copy the mapped Place types onto the heap so they can change, the mapped file is never written
+     * @return byte[] representing the Place.Type ordinal per cell
+     */
+    private synchronized byte[] copyOnWrite() {
+        if(placeTypes == null) {
+            byte[] types = new byte[mappedTypes.capacity()];
+            mappedTypes.get(0, types);
+            placeTypes = types;
+        }
+        return placeTypes;
+    }
+
+    synchronized String getPlaceName(int x, int y) {
+        // null unless renamed, Place then derives the name from its seed
+        return (placeNames == null) ? null : placeNames.get(indexOf(x, y));
+    }
+
+    void setPlaceName(int x, int y, String name) {
+        synchronized(this) {
+            if(placeNames == null) {
+                placeNames = new HashMap<>();
+            }
+            placeNames.put(indexOf(x, y), name);
+        }
+        markDirty(); // outside the Area lock, the Region locks itself then the Area when it evicts
+    }
+
+    /**
+     * Will remember that this Area no longer matches what its seed generates
+     * the parent Region saves it right away if the Region was already evicted
+     */
+    private void markDirty() {
+        dirty = true;
+        ((Region) getParent()).areaChanged(this);
+    }
+
+    boolean isDirty() { return dirty; }
+
+    void setDirty(boolean dirty) { this.dirty = dirty; }
+
+    /**
+     * Will estimate how many bytes this Area holds on the heap, used by the World memory budget
+     * @return long representing the estimated size of this Area in bytes
+     */
+    long getResidentBytes() {
+        byte[] types = placeTypes;
+        // mapped Place types live in the OS page cache, not on the heap
+        return AREA_OVERHEAD_BYTES + ((types == null) ? 0 : types.length);
+    }
+
+    /**
+     * Will copy the state of this Area that can't be generated again from its seed
+     * @return DirtyRegionStore.AreaRecord representing the Place types and renamed Places of this Area
+     */
+    public synchronized DirtyRegionStore.AreaRecord toRecord() {
+        HashMap<Integer, String> names = (placeNames == null) ? new HashMap<>() : new HashMap<>(placeNames);
+        byte[] types = placeTypes;
+        if(types == null) {
+            types = new byte[mappedTypes.capacity()];
+            mappedTypes.get(0, types);
+        } else {
+            types = types.clone();
+        }
+        return new DirtyRegionStore.AreaRecord(types, names);
+    }
+
+    private boolean contains(int x, int y) {
+        int size = getPlaceSize();
+        return x >= 0 && y >= 0 && x < size && y < size;
+    }
+
+    private int indexOf(int x, int y) { return y * getPlaceSize() + x; }
+
     /**
      * returns the Area.Setting instance variable setting for this Area
      * @return Setting object representing this Area objects Area.Setting instance variable setting
@@ -287,11 +503,10 @@ public class Area extends AbstractLocation {
 
         for (int x = 0; x < placeSize; x++) {
             for (int y = 0; y < placeSize; y++) {
-                Place place = getPlace(x, y);
                 Region region = (Region) getParent();
                 Region.Biome biome = region.getBiome();
                 Area.Setting setting = region.getArea(getX(), getY()).getSetting();
-                Place.Type type = place.getType();
+                Place.Type type = getPlaceType(x, y);
 
                 Image[] typesBiomeTiles = null;
                 if(biome == Region.Biome.PLAINS) {
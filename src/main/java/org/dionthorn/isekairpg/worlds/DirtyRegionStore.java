@@ -0,0 +1,208 @@
+package org.dionthorn.isekairpg.worlds;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The DirtyRegionStore keeps the state of Areas that were changed after generation (Place.setType, Place.setName)
+ * whose Region has been evicted. Unchanged Areas are never stored since they can be generated again from their seed.
+ * When an evicted Region is materialized again its changed Areas are restored from here instead.
+ * <p>
+ * Records are spilled to a temporary file as they are saved so they don't count against the memory budget,
+ * only an index of where each Area was last written stays on the heap. A newer record of an Area replaces the
+ * older one in the index, the file is compacted once most of it is replaced records. The file is deleted by close.
+ * <p>
+ * Saves are serialized but get takes no lock, Regions materializing in parallel read their records at the same time.
+ */
+public class DirtyRegionStore implements AutoCloseable {
+
+    private static final long COMPACT_BYTES = 1 << 20; // replaced records tolerated before compacting
+
+    /**
+     * The saved state of a changed Area
+     * @param placeTypes byte[] representing the Place.Type ordinal per cell in row major order
+     * @param placeNames Map<Integer, String> representing the renamed cells, empty if none were renamed
+     */
+    public record AreaRecord(byte[] placeTypes, Map<Integer, String> placeNames) { }
+
+    /**
+     * Where the last record of an Area was written, never changed once in the index
+     * @param channel FileChannel representing the file the record is in
+     * @param offset long representing the position of the record in the file
+     * @param length int representing the size of the record in bytes
+     */
+    private record Entry(FileChannel channel, long offset, int length) { }
+
+    private final ConcurrentHashMap<Long, Entry> records = new ConcurrentHashMap<>(); // key -> where the record is
+    private Path path;
+    private FileChannel channel; // opened by the first save, only used by saves
+    private long fileBytes = 0;
+    private long liveBytes = 0;
+
+    public DirtyRegionStore() { }
+
+    /**
+     * Will save the current state of the Area replacing any older record of it
+     * @param area Area representing the changed Area to save
+     */
+    synchronized void save(Area area) {
+        try {
+            byte[] bytes = encode(area.toRecord());
+            if(channel == null) {
+                path = Files.createTempFile("isekairpg-dirty", ".bin");
+                path.toFile().deleteOnExit();
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            writeFully(ByteBuffer.wrap(bytes), fileBytes);
+            // only put in the index once it is written so a reader never sees a record cut short
+            Entry old = records.put(keyOf(area), new Entry(channel, fileBytes, bytes.length));
+            fileBytes += bytes.length;
+            liveBytes += bytes.length - ((old == null) ? 0 : old.length());
+            if(fileBytes - liveBytes > Math.max(COMPACT_BYTES, liveBytes)) {
+                compact();
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException("Could not save changed Area " + area.getName(), e);
+        }
+    }
+
+    /**
+     * Will provide the saved state of the Area at x,y in the Region
+     * @param region Region representing the Region the Area is a part of
+     * @param x int representing the Area x coordinate within the Region
+     * @param y int representing the Area y coordinate within the Region
+     * @return AreaRecord representing the saved state, null if the Area was never changed
+     */
+    AreaRecord get(Region region, int x, int y) {
+        long key = keyOf(region, x, y);
+        while(true) {
+            Entry entry = records.get(key);
+            if(entry == null) {
+                return null;
+            }
+            try {
+                return decode(read(entry));
+            } catch(ClosedChannelException e) {
+                // compacted while reading, the index already points into the new file
+                if(records.get(key) == entry) {
+                    throw new UncheckedIOException("Could not read changed Area " + x + ", " + y, e);
+                }
+            } catch(IOException e) {
+                throw new UncheckedIOException("Could not read changed Area " + x + ", " + y, e);
+            }
+        }
+    }
+
+    /**
+     * Provides how many changed Areas are stored
+     * @return int representing the count of stored Areas
+     */
+    public int size() { return records.size(); }
+
+    /**
+     * Will delete the file the records were spilled to, the store is empty afterwards
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        records.clear();
+        fileBytes = 0;
+        liveBytes = 0;
+        if(channel != null) {
+            channel.close();
+            Files.deleteIfExists(path);
+            channel = null;
+        }
+    }
+
+    private static ByteBuffer read(Entry entry) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(entry.length());
+        while(bytes.hasRemaining()) {
+            // positional reads do not move the channel so any number of threads may read at once
+            if(entry.channel().read(bytes, entry.offset() + bytes.position()) < 0) {
+                throw new IOException("Changed Area record cut short");
+            }
+        }
+        return bytes.flip();
+    }
+
+    private void writeFully(ByteBuffer bytes, long offset) throws IOException {
+        while(bytes.hasRemaining()) {
+            offset += channel.write(bytes, offset);
+        }
+    }
+
+    /**
+     * Will write the records still in the index to a new file and drop the old one
+     */
+    private void compact() throws IOException {
+        Path compactPath = Files.createTempFile("isekairpg-dirty", ".bin");
+        compactPath.toFile().deleteOnExit();
+        FileChannel compacted = FileChannel.open(compactPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long offset = 0;
+        for(Map.Entry<Long, Entry> record: records.entrySet()) {
+            Entry entry = record.getValue();
+            ByteBuffer bytes = read(entry);
+            while(bytes.hasRemaining()) {
+                compacted.write(bytes, offset + bytes.position());
+            }
+            record.setValue(new Entry(compacted, offset, entry.length()));
+            offset += entry.length();
+        }
+        channel.close();
+        Files.deleteIfExists(path);
+        channel = compacted;
+        path = compactPath;
+        fileBytes = offset;
+        liveBytes = offset;
+    }
+
+    private static byte[] encode(AreaRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(record.placeTypes().length + 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(record.placeTypes().length);
+        out.write(record.placeTypes());
+        out.writeShort(record.placeNames().size());
+        for(Map.Entry<Integer, String> renamed: record.placeNames().entrySet()) {
+            out.writeShort(renamed.getKey());
+            byte[] name = renamed.getValue().getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static AreaRecord decode(ByteBuffer in) {
+        byte[] placeTypes = new byte[in.getInt()];
+        in.get(placeTypes);
+        int renamedCount = Short.toUnsignedInt(in.getShort());
+        HashMap<Integer, String> placeNames = new HashMap<>(renamedCount);
+        for(int renamed = 0; renamed < renamedCount; renamed++) {
+            int cell = Short.toUnsignedInt(in.getShort());
+            byte[] name = new byte[Short.toUnsignedInt(in.getShort())];
+            in.get(name);
+            placeNames.put(cell, new String(name, StandardCharsets.UTF_8));
+        }
+        return new AreaRecord(placeTypes, placeNames);
+    }
+
+    private static long keyOf(Area area) { return keyOf((Region) area.getParent(), area.getX(), area.getY()); }
+
+    private static long keyOf(Region region, int x, int y) {
+        // 16 bits per coordinate, Regions and Areas are never that wide
+        return ((long) region.getX() << 48) | ((long) region.getY() << 32) | ((long) x << 16) | y;
+    }
+
+}
@@ -0,0 +1,213 @@
+package org.dionthorn.isekairpg.worlds;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The FlowFields keep a direction per cell toward targets many characters walk to, like their homes
+ * <p>
+ * A Place field belongs to an Area and holds the direction to step from each of its Places toward one target Place,
+ * an Area field belongs to a Region and holds the direction toward one target Area from each of its Areas.
+ * A field is built the first time a target is asked for, by searching outward from the target so every cell gets
+ * the first step of its cheapest way there, ties go south, north, east then west. Fields are kept in least recently
+ * used order, Place fields per Area and Area fields per target Area, and dropped when a Place of their Area or Region
+ * changes, see Place.setType, which also moves the version on so fields held elsewhere are fetched again.
+ * Every Place costs the same to enter for now, see costOf, and Areas cost what the Pathfinder gives them.
+ * Only the caches are guarded by the lock, a missing field is built outside it so workers planning in parallel
+ * do not wait on each other, and kept only if no field was dropped meanwhile. Two workers building the same field
+ * build the same directions, the first one kept is the one handed out from then on.
+ */
+public final class FlowFields {
+
+    public static final byte ARRIVED = -1; // the direction at the target itself
+
+    private static final int AREA_CACHE_SIZE = 1 << 14;  // Areas with Place fields
+    private static final int AREA_FIELD_CACHE_SIZE = 1 << 14; // Area fields, a Region holds about a dozen homes
+
+    private final int areaSize;
+    private volatile int version = 0; // moved on whenever fields are dropped
+    // Area ID -> Place fields by target Place index, access ordered so the least recently used Area is evicted first
+    private final LinkedHashMap<Long, byte[][]> placeFields = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[][]> eldest) {
+            return size() > AREA_CACHE_SIZE;
+        }
+    };
+    // target Area ID -> Area field of its Region
+    private final LinkedHashMap<Long, byte[]> areaFields = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > AREA_FIELD_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * @param areaSize int representing the width and height of a Region in Areas
+     */
+    public FlowFields(int areaSize) {
+        this.areaSize = areaSize;
+    }
+
+    /**
+     * Will provide the field of an Area toward one of its Places, safe to call from any thread
+     * @param area Area representing the Area of the target Place
+     * @param targetX int representing the x of the target Place
+     * @param targetY int representing the y of the target Place
+     * @return byte[] representing the direction to step from the Place at y * placeSize + x,
+     * Pathfinder.SOUTH, NORTH, EAST or WEST, ARRIVED at the target, do not modify
+     */
+    public byte[] placeField(Area area, int targetX, int targetY) {
+        int size = area.getPlaceSize();
+        long areaId = LocationId.of(area);
+        int target = targetY * size + targetX;
+        int seen;
+        synchronized(this) {
+            byte[][] fields = placeFields.get(areaId);
+            if(fields != null && fields[target] != null) {
+                return fields[target];
+            }
+            seen = version;
+        }
+        int[] costs = new int[size * size];
+        for(int cell = 0; cell < costs.length; cell++) {
+            costs[cell] = costOf(area.getPlaceType(cell % size, cell / size));
+        }
+        byte[] field = build(size, target, costs);
+        synchronized(this) {
+            if(seen != version) {
+                return field; // built against Places that may have changed since, handed out but not kept
+            }
+            byte[][] fields = placeFields.computeIfAbsent(areaId, id -> new byte[size * size][]);
+            if(fields[target] == null) {
+                fields[target] = field;
+            }
+            return fields[target];
+        }
+    }
+
+    /**
+     * Will provide the field of a Region toward one of its Areas, safe to call from any thread
+     * @param region Region representing the Region of the target Area
+     * @param targetX int representing the x of the target Area
+     * @param targetY int representing the y of the target Area
+     * @return byte[] representing the direction to walk from the Area at y * areaSize + x,
+     * Pathfinder.SOUTH, NORTH, EAST or WEST, ARRIVED at the target, do not modify
+     */
+    public byte[] areaField(Region region, int targetX, int targetY) {
+        long targetId = LocationId.of(region.getX(), region.getY(), targetX, targetY, 0, 0);
+        int seen;
+        synchronized(this) {
+            byte[] field = areaFields.get(targetId);
+            if(field != null) {
+                return field;
+            }
+            seen = version;
+        }
+        int[] costs = new int[areaSize * areaSize];
+        for(int cell = 0; cell < costs.length; cell++) {
+            costs[cell] = Pathfinder.costOf(
+                    region.getX() * areaSize + cell % areaSize, region.getY() * areaSize + cell / areaSize
+            );
+        }
+        byte[] field = build(areaSize, targetY * areaSize + targetX, costs);
+        synchronized(this) {
+            if(seen != version) {
+                return field; // built against a Region that may have changed since, handed out but not kept
+            }
+            byte[] kept = areaFields.putIfAbsent(targetId, field);
+            return (kept != null) ? kept : field;
+        }
+    }
+
+    /**
+     * Will drop the fields a changed Place could be on, called after a Place changes type
+     * @param placeId long representing the LocationId of the changed Place
+     */
+    public synchronized void invalidate(long placeId) {
+        placeFields.remove(LocationId.toArea(placeId));
+        long region = LocationId.toRegion(placeId);
+        areaFields.keySet().removeIf(targetId -> LocationId.toRegion(targetId) == region);
+        version++;
+    }
+
+    /**
+     * Will search outward from the target with Dijkstra and point every cell at its cheapest neighbor
+     * @param size int representing the width and height of the grid
+     * @param target int representing the index of the target cell
+     * @param costs int[] representing the cost of entering each cell
+     * @return byte[] representing the direction of each cell, ARRIVED at the target
+     */
+    private static byte[] build(int size, int target, int[] costs) {
+        int cells = size * size;
+        int[] distances = new int[cells]; // cheapest cost from each cell to the target
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        distances[target] = 0;
+        // open cells packed as distance then cell so the smallest long is the next to settle
+        long[] open = new long[cells];
+        int openCount = 0;
+        open[openCount++] = target;
+        while(openCount > 0) {
+            long next = open[0];
+            open[0] = open[--openCount];
+            Pathfinder.siftDown(open, openCount);
+            int cell = (int) (next & 0xFFFFF);
+            if((int) (next >>> 20) > distances[cell]) {
+                continue; // settled through a cheaper neighbor already
+            }
+            int x = cell % size;
+            int y = cell / size;
+            for(byte direction = 0; direction < 4; direction++) {
+                // a neighbor steps into this cell so it pays the cost of entering it
+                int fromX = x - Pathfinder.directionX(direction);
+                int fromY = y - Pathfinder.directionY(direction);
+                if(fromX >= 0 && fromY >= 0 && fromX < size && fromY < size) {
+                    int from = fromY * size + fromX;
+                    int distance = distances[cell] + costs[cell];
+                    if(distance < distances[from]) {
+                        distances[from] = distance;
+                        if(openCount == open.length) {
+                            open = Arrays.copyOf(open, openCount * 2);
+                        }
+                        open[openCount++] = ((long) distance << 20) | from;
+                        Pathfinder.siftUp(open, openCount - 1);
+                    }
+                }
+            }
+        }
+        byte[] field = new byte[cells];
+        for(int cell = 0; cell < cells; cell++) {
+            field[cell] = ARRIVED;
+            if(cell == target) {
+                continue;
+            }
+            int x = cell % size;
+            int y = cell / size;
+            long best = Long.MAX_VALUE;
+            for(byte direction = 0; direction < 4; direction++) {
+                int toX = x + Pathfinder.directionX(direction);
+                int toY = y + Pathfinder.directionY(direction);
+                if(toX >= 0 && toY >= 0 && toX < size && toY < size) {
+                    int to = toY * size + toX;
+                    if(distances[to] != Integer.MAX_VALUE && (long) costs[to] + distances[to] < best) {
+                        best = (long) costs[to] + distances[to];
+                        field[cell] = direction;
+                    }
+                }
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Will provide the cost of entering a Place, every Place costs the same until terrain has a travel cost
+     */
+    private static int costOf(Place.Type type) { return 1; }
+
+    /**
+     * Will provide the version of the fields, fields fetched under an older version may be out of date
+     * @return int representing the current version
+     */
+    public int getVersion() { return version; }
+
+}
@@ -0,0 +1,54 @@
+package org.dionthorn.isekairpg.worlds;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * The GenerationTask splits a range of generation work (Regions of a World, Areas of a Region) over a ForkJoinPool.
+ * Each index must be independent of the others, they roll with their own streams so the order does not matter.
+ */
+final class GenerationTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+    private static final int LEAF_SIZE = 4; // indices generated by a task before it stops splitting
+
+    private final int from;
+    private final int to;
+    private final IntConsumer generator;
+
+    private GenerationTask(int from, int to, IntConsumer generator) {
+        this.from = from;
+        this.to = to;
+        this.generator = generator;
+    }
+
+    /**
+     * Will call the generator for every index in [0, count), in parallel when the caller is already running
+     * inside a ForkJoinPool otherwise one after another on the calling thread
+     * @param count int representing how many indices to generate
+     * @param generator IntConsumer representing the work to do for each index
+     */
+    static void run(int count, IntConsumer generator) {
+        if(ForkJoinTask.inForkJoinPool()) {
+            new GenerationTask(0, count, generator).invoke();
+        } else {
+            for(int index = 0; index < count; index++) {
+                generator.accept(index);
+            }
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if(to - from <= LEAF_SIZE) {
+            for(int index = from; index < to; index++) {
+                generator.accept(index);
+            }
+        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new GenerationTask(from, middle, generator), new GenerationTask(middle, to, generator));
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+package org.dionthorn.isekairpg.worlds;
+
+/**
+ * The LocationId class is a static utility class that packs the full coordinate of a Place into a single long
+ * so indexes, saves and tables can hold primitive IDs instead of Place references, see World.resolve(long)
+ * <p>
+ * Layout from the highest bits: region y, region x, area y, area x, place y, place x at 10 bits each.
+ * y comes before x at every level so sorting IDs gives World order (row major from Region down to Place).
+ * An Area or Region ID is the ID of its first Place (0, 0).
+ */
+public final class LocationId {
+
+    public static final long NONE = -1L; // no location, ex: a neighbor past the edge of the World
+
+    private static final int BITS = 10;
+    private static final long MASK = (1L << BITS) - 1;
+    public static final int MAX_COORDINATE = (int) MASK; // every coordinate must be in [0, MAX_COORDINATE]
+
+    // shift of each coordinate
+    private static final int PLACE_X = 0;
+    private static final int PLACE_Y = BITS;
+    private static final int AREA_X = BITS * 2;
+    private static final int AREA_Y = BITS * 3;
+    private static final int REGION_X = BITS * 4;
+    private static final int REGION_Y = BITS * 5;
+
+    private LocationId() {
+        // private disallows instantiation, this is a static utility class
+    }
+
+    /**
+     * Will pack the coordinates of a Place into an ID
+     * @param regionX int representing the Region x coordinate within the World
+     * @param regionY int representing the Region y coordinate within the World
+     * @param areaX int representing the Area x coordinate within the Region
+     * @param areaY int representing the Area y coordinate within the Region
+     * @param placeX int representing the Place x coordinate within the Area
+     * @param placeY int representing the Place y coordinate within the Area
+     * @return long representing the ID of the Place
+     */
+    public static long of(int regionX, int regionY, int areaX, int areaY, int placeX, int placeY) {
+        return ((long) regionY << REGION_Y) | ((long) regionX << REGION_X)
+                | ((long) areaY << AREA_Y) | ((long) areaX << AREA_X)
+                | ((long) placeY << PLACE_Y) | ((long) placeX << PLACE_X);
+    }
+
+    /**
+     * Will provide the ID of an Area, the ID of its first Place
+     * @param area Area representing the Area
+     * @return long representing the ID of the Area
+     */
+    public static long of(Area area) {
+        Region region = (Region) area.getParent();
+        return of(region.getX(), region.getY(), area.getX(), area.getY(), 0, 0);
+    }
+
+    // the coordinates packed in an ID
+
+    public static int getRegionX(long id) { return (int) ((id >>> REGION_X) & MASK); }
+
+    public static int getRegionY(long id) { return (int) ((id >>> REGION_Y) & MASK); }
+
+    public static int getAreaX(long id) { return (int) ((id >>> AREA_X) & MASK); }
+
+    public static int getAreaY(long id) { return (int) ((id >>> AREA_Y) & MASK); }
+
+    public static int getPlaceX(long id) { return (int) ((id >>> PLACE_X) & MASK); }
+
+    public static int getPlaceY(long id) { return (int) ((id >>> PLACE_Y) & MASK); }
+
+    /**
+     * Will provide the ID of the Area the location is in
+     * @param id long representing a Place ID
+     * @return long representing the ID of its Area
+     */
+    public static long toArea(long id) { return id & ~((MASK << PLACE_Y) | (MASK << PLACE_X)); }
+
+    /**
+     * Will provide the ID of the Region the location is in
+     * @param id long representing a Place or Area ID
+     * @return long representing the ID of its Region
+     */
+    public static long toRegion(long id) { return id & ((MASK << REGION_Y) | (MASK << REGION_X)); }
+
+    /**
+     * Will provide the ID of the Place next to this one in the same Area
+     * @param id long representing the Place ID to step from
+     * @param directionX int representing the x step
+     * @param directionY int representing the y step
+     * @param placeSize int representing the side length of the Area in Places
+     * @return long representing the ID of the neighbor, NONE if it would be outside the Area
+     */
+    public static long offsetPlace(long id, int directionX, int directionY, int placeSize) {
+        int x = getPlaceX(id) + directionX;
+        int y = getPlaceY(id) + directionY;
+        if(x < 0 || y < 0 || x >= placeSize || y >= placeSize) {
+            return NONE;
+        }
+        return withPlace(id, x, y);
+    }
+
+    /**
+     * Will provide the ID of the Area next to the one this location is in within the same Region
+     * @param id long representing the Place or Area ID to step from
+     * @param directionX int representing the x step
+     * @param directionY int representing the y step
+     * @param areaSize int representing the side length of the Region in Areas
+     * @return long representing the ID of the neighbor Area, NONE if it would be outside the Region
+     */
+    public static long offsetArea(long id, int directionX, int directionY, int areaSize) {
+        int x = getAreaX(id) + directionX;
+        int y = getAreaY(id) + directionY;
+        if(x < 0 || y < 0 || x >= areaSize || y >= areaSize) {
+            return NONE;
+        }
+        return withArea(toArea(id), x, y);
+    }
+
+    /**
+     * Will provide the ID of the Region next to the one this location is in
+     * @param id long representing the Place, Area or Region ID to step from
+     * @param directionX int representing the x step
+     * @param directionY int representing the y step
+     * @param regionSize int representing the side length of the World in Regions
+     * @return long representing the ID of the neighbor Region, NONE if it would be outside the World
+     */
+    public static long offsetRegion(long id, int directionX, int directionY, int regionSize) {
+        int x = getRegionX(id) + directionX;
+        int y = getRegionY(id) + directionY;
+        if(x < 0 || y < 0 || x >= regionSize || y >= regionSize) {
+            return NONE;
+        }
+        return of(x, y, 0, 0, 0, 0);
+    }
+
+    /**
+     * Will replace the Place coordinates of an ID
+     * @param id long representing the ID to change
+     * @param placeX int representing the new Place x coordinate
+     * @param placeY int representing the new Place y coordinate
+     * @return long representing the ID of the Place at placeX, placeY in the same Area
+     */
+    public static long withPlace(long id, int placeX, int placeY) {
+        return toArea(id) | ((long) placeY << PLACE_Y) | ((long) placeX << PLACE_X);
+    }
+
+    /**
+     * Will replace the Area coordinates of an ID, the Place coordinates are kept
+     * @param id long representing the ID to change
+     * @param areaX int representing the new Area x coordinate
+     * @param areaY int representing the new Area y coordinate
+     * @return long representing the ID in the Area at areaX, areaY of the same Region
+     */
+    public static long withArea(long id, int areaX, int areaY) {
+        return (id & ~((MASK << AREA_Y) | (MASK << AREA_X))) | ((long) areaY << AREA_Y) | ((long) areaX << AREA_X);
+    }
+
+    /**
+     * Will format an ID for debugging ex: R(1,2)A(3,4)P(0,1)
+     * @param id long representing the ID to format
+     * @return String representing the coordinates of the ID
+     */
+    public static String toString(long id) {
+        if(id == NONE) {
+            return "NONE";
+        }
+        return String.format("R(%d,%d)A(%d,%d)P(%d,%d)",
+                getRegionX(id), getRegionY(id), getAreaX(id), getAreaY(id), getPlaceX(id), getPlaceY(id)
+        );
+    }
+
+}
@@ -0,0 +1,213 @@
+package org.dionthorn.isekairpg.worlds;
+
+import org.dionthorn.isekairpg.characters.AbstractCharacter;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The OccupancyIndex tracks which characters are at which Place for the whole World
+ * <p>
+ * It is an open addressing (linear probing) table from a Place LocationId to a compact array of occupants,
+ * only occupied Places have an entry so the millions of empty Places cost nothing.
+ * Every character remembers its slot in its Place occupants so leaving a Place is an O(1) swap-remove,
+ * the order of occupants is therefore not the order they arrived in.
+ */
+public final class OccupancyIndex {
+
+    private static final long EMPTY = LocationId.NONE; // key of an unused table entry
+    private static final int INITIAL_CAPACITY = 1024; // must be a power of 2
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L; // fibonacci hashing spreads nearby IDs
+
+    private long[] keys;
+    private AbstractCharacter[][] occupants;
+    private int[] counts;
+    private int mask;
+    private int size = 0; // occupied Places
+
+    public OccupancyIndex() { allocate(INITIAL_CAPACITY); }
+
+    /**
+     * Will add the character to the occupants of the Place, the character must not be at another Place
+     * @param placeId long representing the LocationId of the Place
+     * @param character AbstractCharacter representing the character arriving
+     */
+    public synchronized void add(long placeId, AbstractCharacter character) {
+        int entry = find(placeId);
+        if(entry < 0) {
+            if((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2); // stay at most half full so probes stay short
+            }
+            entry = insert(placeId);
+        }
+        AbstractCharacter[] cell = occupants[entry];
+        int count = counts[entry];
+        if(count == cell.length) {
+            cell = Arrays.copyOf(cell, count * 2);
+            occupants[entry] = cell;
+        }
+        cell[count] = character;
+        character.setOccupancySlot(count);
+        counts[entry] = count + 1;
+    }
+
+    /**
+     * Will remove the character from the occupants of the Place, the last occupant takes its slot
+     * @param placeId long representing the LocationId of the Place
+     * @param character AbstractCharacter representing the character leaving
+     */
+    public synchronized void remove(long placeId, AbstractCharacter character) {
+        int entry = find(placeId);
+        if(entry < 0) {
+            return;
+        }
+        AbstractCharacter[] cell = occupants[entry];
+        int slot = character.getOccupancySlot();
+        if(slot < 0 || slot >= counts[entry] || cell[slot] != character) {
+            return; // not at this Place
+        }
+        int last = counts[entry] - 1;
+        if(slot != last) {
+            cell[slot] = cell[last];
+            cell[slot].setOccupancySlot(slot);
+        }
+        cell[last] = null;
+        counts[entry] = last;
+        character.setOccupancySlot(-1);
+        if(last == 0) {
+            delete(entry); // empty Places hold no entry
+        }
+    }
+
+    /**
+     * Will provide how many characters are at the Place
+     * @param placeId long representing the LocationId of the Place
+     * @return int representing the count of occupants
+     */
+    public synchronized int count(long placeId) {
+        int entry = find(placeId);
+        return (entry < 0) ? 0 : counts[entry];
+    }
+
+    /**
+     * Will provide the nth occupant of the Place
+     * @param placeId long representing the LocationId of the Place
+     * @param index int representing which occupant
+     * @return AbstractCharacter representing the occupant
+     */
+    public synchronized AbstractCharacter get(long placeId, int index) {
+        int entry = find(placeId);
+        if(entry < 0 || index < 0 || index >= counts[entry]) {
+            throw new IndexOutOfBoundsException("Index: " + index + " occupants: " + ((entry < 0) ? 0 : counts[entry]));
+        }
+        return occupants[entry][index];
+    }
+
+    /**
+     * Will copy the occupants of the Place as they are now with a single lookup, ex: for readers on other threads
+     * @param placeId long representing the LocationId of the Place
+     * @return AbstractCharacter[] representing the occupants of the Place in slot order, which stops being
+     * arrival order once an occupant leaves since leaving swaps the last occupant into the freed slot
+     */
+    public synchronized AbstractCharacter[] copy(long placeId) {
+        int entry = find(placeId);
+        return (entry < 0) ? new AbstractCharacter[0] : Arrays.copyOf(occupants[entry], counts[entry]);
+    }
+
+    /**
+     * Will provide a read only view of the occupants of the Place, it reflects later arrivals and departures
+     * @param placeId long representing the LocationId of the Place
+     * @return List<AbstractCharacter> representing the occupants of the Place
+     */
+    public List<AbstractCharacter> view(long placeId) {
+        return new AbstractList<>() {
+            @Override
+            public AbstractCharacter get(int index) { return OccupancyIndex.this.get(placeId, index); }
+
+            @Override
+            public int size() { return count(placeId); }
+        };
+    }
+
+    /**
+     * Will provide how many Places have at least one occupant
+     * @return int representing the count of occupied Places
+     */
+    public synchronized int size() { return size; }
+
+    /**
+     * Will remove every occupant from every Place
+     */
+    public synchronized void clear() { allocate(INITIAL_CAPACITY); }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        occupants = new AbstractCharacter[capacity][];
+        counts = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private int home(long key) { return (int) ((key * HASH_MULTIPLIER) >>> 32) & mask; }
+
+    private int find(long key) {
+        for(int entry = home(key); keys[entry] != EMPTY; entry = (entry + 1) & mask) {
+            if(keys[entry] == key) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private int insert(long key) {
+        int entry = home(key);
+        while(keys[entry] != EMPTY) {
+            entry = (entry + 1) & mask;
+        }
+        keys[entry] = key;
+        occupants[entry] = new AbstractCharacter[2];
+        counts[entry] = 0;
+        size++;
+        return entry;
+    }
+
+    /**
+     * Will free the entry and shift later entries of the probe run back so no tombstones are needed
+     */
+    private void delete(int entry) {
+        int gap = entry;
+        int next = (gap + 1) & mask;
+        while(keys[next] != EMPTY) {
+            int wanted = home(keys[next]);
+            // move the entry into the gap if the gap lies between where it wants to be and where it is
+            if(((next - wanted) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                occupants[gap] = occupants[next];
+                counts[gap] = counts[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        occupants[gap] = null;
+        counts[gap] = 0;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        AbstractCharacter[][] oldOccupants = occupants;
+        int[] oldCounts = counts;
+        allocate(capacity);
+        for(int entry = 0; entry < oldKeys.length; entry++) {
+            if(oldKeys[entry] != EMPTY) {
+                int moved = insert(oldKeys[entry]);
+                occupants[moved] = oldOccupants[entry];
+                counts[moved] = oldCounts[entry];
+            }
+        }
+    }
+
+}
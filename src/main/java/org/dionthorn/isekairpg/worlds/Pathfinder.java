@@ -0,0 +1,344 @@
+package org.dionthorn.isekairpg.worlds;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The Pathfinder finds the Areas to cross between two Areas of its World, searching the Region grid first
+ * <p>
+ * A route is found in two levels: an A* search over Regions picks the Regions to pass through, then an A* search
+ * over the Areas of only those Regions picks the Areas. Both search the box around the two ends widened by
+ * SEARCH_MARGIN Regions. A Region route wider or taller than LEG_REGIONS is walked a leg at a time: the Areas are only
+ * searched up to the last Region of the first leg and the route ends in the Area of it closest to the destination,
+ * the walker asks again from there. Within a Region characters follow the FlowFields instead
+ * so Places are never searched. Routes are kept per origin and destination Area as one direction per Area
+ * crossed, so many characters walking the same way share a single search.
+ * Every Region and Area costs the same to cross for now, see costOf, the searches already weigh the cost so
+ * routes stay the cheapest ones once terrain slows travel down.
+ */
+public final class Pathfinder {
+
+    // directions of a route step
+    public static final byte SOUTH = 0;
+    public static final byte NORTH = 1;
+    public static final byte EAST = 2;
+    public static final byte WEST = 3;
+    private static final int[] DIRECTION_X = { 0, 0, 1, -1 };
+    private static final int[] DIRECTION_Y = { 1, -1, 0, 0 };
+
+    private static final int ROUTE_CACHE_SIZE = 1 << 16;
+    private static final int SEARCH_MARGIN = 1; // Regions searched around the two Regions of a route
+    private static final int LEG_REGIONS = 8; // widest box of Regions whose Areas are searched at once
+    private static final int KEEP_CELLS = 1 << 16; // larger scratch arrays are dropped after the search
+    private static final int MAX_CELLS = 1 << 24; // cells are packed in 24 bits, see pack
+    private static final byte[] NO_ROUTE = new byte[0];
+
+    /**
+     * The origin and destination Area of a cached route
+     */
+    private record RouteKey(long from, long to) { }
+
+    private final int regionSize;
+    private final int areaSize;
+    // access ordered so the least recently walked route is evicted first
+    private final LinkedHashMap<RouteKey, byte[]> routes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<RouteKey, byte[]> eldest) {
+            return size() > ROUTE_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * @param regionSize int representing the width and height of the World in Regions
+     * @param areaSize int representing the width and height of a Region in Areas
+     */
+    public Pathfinder(int regionSize, int areaSize) {
+        this.regionSize = regionSize;
+        this.areaSize = areaSize;
+    }
+
+    /**
+     * Will provide the Areas to cross from one Area to another, safe to call from any thread
+     * @param fromArea long representing the LocationId of the Area to start in
+     * @param toArea long representing the LocationId of the Area to reach
+     * @return byte[] representing one direction per Area crossed, SOUTH, NORTH, EAST or WEST, do not modify,
+     * a long route ends before toArea and is asked for again from where it ends, see LEG_REGIONS
+     */
+    public byte[] route(long fromArea, long toArea) {
+        RouteKey key = new RouteKey(LocationId.toArea(fromArea), LocationId.toArea(toArea));
+        synchronized(routes) {
+            byte[] route = routes.get(key);
+            if(route != null) {
+                return route;
+            }
+        }
+        byte[] route = search(key.from(), key.to());
+        synchronized(routes) {
+            routes.put(key, route);
+        }
+        return route;
+    }
+
+    private byte[] search(long fromArea, long toArea) {
+        int fromRegionX = LocationId.getRegionX(fromArea);
+        int fromRegionY = LocationId.getRegionY(fromArea);
+        int toRegionX = LocationId.getRegionX(toArea);
+        int toRegionY = LocationId.getRegionY(toArea);
+        // Regions to pass through, searched around the two Regions so a detour can go a Region out of the way
+        int minRegionX = Math.max(0, Math.min(fromRegionX, toRegionX) - SEARCH_MARGIN);
+        int minRegionY = Math.max(0, Math.min(fromRegionY, toRegionY) - SEARCH_MARGIN);
+        int maxRegionX = Math.min(regionSize - 1, Math.max(fromRegionX, toRegionX) + SEARCH_MARGIN);
+        int maxRegionY = Math.min(regionSize - 1, Math.max(fromRegionY, toRegionY) + SEARCH_MARGIN);
+        int boxWidth = maxRegionX - minRegionX + 1;
+        boolean[] corridor = new boolean[boxWidth * (maxRegionY - minRegionY + 1)];
+        int regionX = fromRegionX;
+        int regionY = fromRegionY;
+        corridor[(regionY - minRegionY) * boxWidth + (regionX - minRegionX)] = true;
+        // the box of the Regions passed through, the Areas are only searched in it
+        int minCorridorX = regionX;
+        int minCorridorY = regionY;
+        int maxCorridorX = regionX;
+        int maxCorridorY = regionY;
+        if(fromRegionX != toRegionX || fromRegionY != toRegionY) {
+            byte[] regionRoute = search(
+                    fromRegionX, fromRegionY, toRegionX, toRegionY,
+                    minRegionX, minRegionY, maxRegionX, maxRegionY, (x, y) -> true
+            );
+            if(regionRoute == null) {
+                return NO_ROUTE;
+            }
+            for(byte direction: regionRoute) {
+                int nextX = regionX + DIRECTION_X[direction];
+                int nextY = regionY + DIRECTION_Y[direction];
+                if(Math.max(maxCorridorX, nextX) - Math.min(minCorridorX, nextX) >= LEG_REGIONS
+                        || Math.max(maxCorridorY, nextY) - Math.min(minCorridorY, nextY) >= LEG_REGIONS) {
+                    break; // the rest of the route is searched from the end of this leg
+                }
+                regionX = nextX;
+                regionY = nextY;
+                corridor[(regionY - minRegionY) * boxWidth + (regionX - minRegionX)] = true;
+                minCorridorX = Math.min(minCorridorX, regionX);
+                minCorridorY = Math.min(minCorridorY, regionY);
+                maxCorridorX = Math.max(maxCorridorX, regionX);
+                maxCorridorY = Math.max(maxCorridorY, regionY);
+            }
+        }
+        // Areas of those Regions to pass through, in Area coordinates across the whole World
+        // a leg ends in the Area of its last Region closest to the destination
+        int goalX = Math.min(Math.max(toRegionX * areaSize + LocationId.getAreaX(toArea), regionX * areaSize),
+                (regionX + 1) * areaSize - 1);
+        int goalY = Math.min(Math.max(toRegionY * areaSize + LocationId.getAreaY(toArea), regionY * areaSize),
+                (regionY + 1) * areaSize - 1);
+        byte[] areaRoute = search(
+                fromRegionX * areaSize + LocationId.getAreaX(fromArea),
+                fromRegionY * areaSize + LocationId.getAreaY(fromArea),
+                goalX, goalY,
+                minCorridorX * areaSize, minCorridorY * areaSize,
+                (maxCorridorX + 1) * areaSize - 1, (maxCorridorY + 1) * areaSize - 1,
+                (x, y) -> corridor[(y / areaSize - minRegionY) * boxWidth + (x / areaSize - minRegionX)]
+        );
+        return (areaRoute == null) ? NO_ROUTE : areaRoute;
+    }
+
+    /**
+     * The arrays of a search, kept per thread and cleared by moving to the next generation instead of filling them
+     */
+    private static final class Scratch {
+        int[] costs = new int[0];      // cheapest cost found to each cell
+        byte[] arrivals = new byte[0]; // direction each cell was reached in
+        int[] seen = new int[0];       // generation a cell was last reached in, costs are stale before that
+        long[] open = new long[64];
+        int generation = 0;
+
+        private void prepare(int cells) {
+            if(costs.length < cells) {
+                costs = new int[cells];
+                arrivals = new byte[cells];
+                seen = new int[cells];
+                generation = 0;
+            }
+            generation++;
+            if(generation == 0) {
+                Arrays.fill(seen, 0); // wrapped around, start over
+                generation = 1;
+            }
+        }
+
+        private int costOf(int cell) { return (seen[cell] == generation) ? costs[cell] : Integer.MAX_VALUE; }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * A grid cell that can be entered
+     */
+    @FunctionalInterface
+    private interface Passable {
+        boolean test(int x, int y);
+    }
+
+    /**
+     * Will search the box of a grid with A*, ties go to the cell closest to the goal then the lowest cell
+     * so the same search always finds the same route
+     * @return byte[] representing the directions from the start to the goal, null if the goal can't be reached
+     */
+    private static byte[] search(int fromX, int fromY, int toX, int toY,
+                                 int minX, int minY, int maxX, int maxY, Passable passable) {
+        int width = maxX - minX + 1;
+        long boxCells = (long) width * (maxY - minY + 1);
+        if(boxCells > MAX_CELLS) {
+            throw new IllegalStateException("Search box of " + boxCells + " cells is too large to pack");
+        }
+        int cells = (int) boxCells;
+        int start = (fromY - minY) * width + (fromX - minX);
+        int goal = (toY - minY) * width + (toX - minX);
+        Scratch scratch = SCRATCH.get();
+        scratch.prepare(cells);
+        int[] costs = scratch.costs;
+        byte[] arrivals = scratch.arrivals;
+        int[] seen = scratch.seen;
+        int generation = scratch.generation;
+        // open cells packed as cost + heuristic, heuristic then cell so the smallest long is the next to expand
+        long[] open = scratch.open;
+        int openCount = 0;
+        costs[start] = 0;
+        seen[start] = generation;
+        int startHeuristic = distance(fromX, fromY, toX, toY);
+        open[openCount++] = pack(startHeuristic, startHeuristic, start);
+        while(openCount > 0) {
+            long next = open[0];
+            open[0] = open[--openCount];
+            siftDown(open, openCount);
+            int cell = (int) (next & 0xFFFFFF);
+            int heuristic = (int) ((next >>> 24) & 0x3FFF);
+            int cost = (int) (next >>> 38) - heuristic;
+            if(cost > costs[cell]) { // cells in the open list were reached this generation
+                continue; // a cheaper way here was already expanded
+            }
+            if(cell == goal) {
+                release(scratch, open, cells);
+                return directions(start, goal, width, arrivals);
+            }
+            int x = cell % width + minX;
+            int y = cell / width + minY;
+            for(byte direction = 0; direction < DIRECTION_X.length; direction++) {
+                int nextX = x + DIRECTION_X[direction];
+                int nextY = y + DIRECTION_Y[direction];
+                if(nextX < minX || nextY < minY || nextX > maxX || nextY > maxY || !passable.test(nextX, nextY)) {
+                    continue;
+                }
+                int neighbor = (nextY - minY) * width + (nextX - minX);
+                int nextCost = cost + costOf(nextX, nextY);
+                if(nextCost < scratch.costOf(neighbor)) {
+                    costs[neighbor] = nextCost;
+                    seen[neighbor] = generation;
+                    arrivals[neighbor] = direction;
+                    int nextHeuristic = distance(nextX, nextY, toX, toY);
+                    if(openCount == open.length) {
+                        open = Arrays.copyOf(open, openCount * 2);
+                    }
+                    open[openCount++] = pack(nextCost + nextHeuristic, nextHeuristic, neighbor);
+                    siftUp(open, openCount - 1);
+                }
+            }
+        }
+        release(scratch, open, cells);
+        return null;
+    }
+
+    /**
+     * Will keep the grown open list for the next search of the thread, or drop the scratch of an unusually large
+     * search so it isn't held by the thread for good
+     */
+    private static void release(Scratch scratch, long[] open, int cells) {
+        if(cells > KEEP_CELLS) {
+            SCRATCH.remove();
+        } else {
+            scratch.open = open;
+        }
+    }
+
+    /**
+     * Will provide the cost of entering a cell, every Region and Area costs the same until terrain has a travel cost
+     * the heuristic counts steps so a cost must never be below 1
+     */
+    static int costOf(int x, int y) { return 1; }
+
+    private static int distance(int fromX, int fromY, int toX, int toY) {
+        return Math.abs(toX - fromX) + Math.abs(toY - fromY);
+    }
+
+    private static long pack(int estimate, int heuristic, int cell) {
+        return ((long) estimate << 38) | ((long) heuristic << 24) | cell;
+    }
+
+    // binary min heap of packed open cells, shared with FlowFields
+
+    static void siftUp(long[] heap, int index) {
+        long value = heap[index];
+        while(index > 0) {
+            int parent = (index - 1) >>> 1;
+            if(heap[parent] <= value) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    static void siftDown(long[] heap, int count) {
+        if(count == 0) {
+            return;
+        }
+        long value = heap[0];
+        int index = 0;
+        while(true) {
+            int child = index * 2 + 1;
+            if(child >= count) {
+                break;
+            }
+            if(child + 1 < count && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if(heap[child] >= value) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+
+    private static byte[] directions(int start, int goal, int width, byte[] arrivals) {
+        int length = 0;
+        for(int cell = goal; cell != start; cell = previous(cell, width, arrivals[cell])) {
+            length++;
+        }
+        byte[] route = new byte[length];
+        for(int cell = goal; cell != start; cell = previous(cell, width, arrivals[cell])) {
+            route[--length] = arrivals[cell];
+        }
+        return route;
+    }
+
+    private static int previous(int cell, int width, byte direction) {
+        return cell - DIRECTION_Y[direction] * width - DIRECTION_X[direction];
+    }
+
+    /**
+     * Will provide the x direction of a route step
+     * @param direction byte representing SOUTH, NORTH, EAST or WEST
+     * @return int representing the x direction -1, 0 or 1
+     */
+    public static int directionX(byte direction) { return DIRECTION_X[direction]; }
+
+    /**
+     * Will provide the y direction of a route step
+     * @param direction byte representing SOUTH, NORTH, EAST or WEST
+     * @return int representing the y direction -1, 0 or 1
+     */
+    public static int directionY(byte direction) { return DIRECTION_Y[direction]; }
+
+}
@@ -1,19 +1,23 @@
 package org.dionthorn.isekairpg.worlds;
 
 import javafx.scene.image.Image;
+import org.dionthorn.isekairpg.Engine;
 import org.dionthorn.isekairpg.characters.AbstractCharacter;
 import org.dionthorn.isekairpg.graphics.TileSet;
+import org.dionthorn.isekairpg.persistence.Journal;
+import org.dionthorn.isekairpg.persistence.Snapshot;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The Place class has a Type which determines how the Place is represented and if NPCs will be spawned in there
+ * <p>
+ * A Place does not hold any state itself, it is a lightweight view over the packed storage of its parent Area.
+ * Views are created on demand by Area.getPlace(x, y) and the same view is returned while it is still referenced.
  */
 public class Place extends AbstractLocation {
 
-    private Type type;
-    private final ArrayList<AbstractCharacter> nearbyCharacters = new ArrayList<>();
-
     /**
      * FARM - a farm has a farmer NPC
      * FISHERY - a fishing area has a fisherman NPC
@@ -36,6 +40,9 @@ public class Place extends AbstractLocation {
         CAVE, INDOORS, OUTDOORS, THRONEROOM // special
     }
 
+    // Type[] index with the ordinal byte stored by Area, cached so we don't copy values() on every lookup
+    static final Type[] TYPES = Type.values();
+
     public static final Image[] TYPE_TILES_PLAINS = new TileSet("Types_Plains.png").getTiles();
     public static final Image[] TYPE_TILES_HILLS = new TileSet("Types_Hills.png").getTiles();
     public static final Image[] TYPE_TILES_MOUNTAINS = new TileSet("Types_Mountains.png").getTiles();
@@ -44,31 +51,109 @@ public class Place extends AbstractLocation {
     public static final Image[] TYPE_TILES_TUNDRAS = new TileSet("Types_Tundras.png").getTiles();
 
     /**
-     * A Place is a part of an Area and has a Type which determines how the Place is handled
+     * A Place is a part of an Area, only the parent Area creates Place views use Area.getPlace(x, y)
      * @param parent Area representing this Place parent Area
-     * @param type Type representing this Place type
      * @param x int representing this Place x coordinate
      * @param y int representing this Place y coordinate
      */
-    public Place(Area parent, Type type, int x, int y) {
-        super(x, y);
+    Place(Area parent, int x, int y) {
+        super(x, y, RandomStreams.deriveSeed(parent.getSeed(), x, y));
         setParent(parent);
-        this.type = type;
+    }
+
+    /**
+     * Provides this Place name, if the Place was never renamed the name is derived from its seed
+     * @return String representing this Place name
+     */
+    @Override
+    public String getName() {
+        String renamed = getArea().getPlaceName(getX(), getY());
+        return (renamed == null) ? super.getName() : renamed;
+    }
+
+    /**
+     * Renames this Place, example: player builds a house and names it
+     * @param newName String representing the new name of this Place
+     */
+    public void setName(String newName) {
+        beforeChange();
+        getArea().setPlaceName(getX(), getY(), newName);
+        Journal journal = Engine.getGameState().getJournal();
+        if(journal != null) {
+            journal.placeNameChanged(this);
+        }
+    }
+
+    /**
+     * Will let an open Snapshot copy the Area of this Place before it changes, see Snapshot.preserve
+     */
+    private void beforeChange() {
+        Snapshot snapshot = Engine.getGameState().getSnapshot();
+        if(snapshot != null) {
+            snapshot.preserve(getArea());
+        }
+    }
+
+    /**
+     * Provides this Place ID, resolve it again with World.resolve(long)
+     * @return long representing the LocationId of this Place
+     */
+    public long id() {
+        Area area = getArea();
+        Region region = (Region) area.getParent();
+        return LocationId.of(region.getX(), region.getY(), area.getX(), area.getY(), getX(), getY());
     }
 
     /**
      * Provides this Place associated Type
      * @return Type representing this Place type
      */
-    public Type getType() { return type; }
+    public Type getType() { return getArea().getPlaceType(getX(), getY()); }
 
     /**
      * used to set the KINGSROOM, can also be used to convert outdoors into another type
      * example: player builds a house
      * @param newType Place.Type representing the new type to set this Place
      */
-    public void setType(Place.Type newType) { this.type = newType; }
+    public void setType(Place.Type newType) {
+        beforeChange();
+        getArea().setPlaceType(getX(), getY(), newType);
+        getWorld().getFlowFields().invalidate(id()); // the cost of crossing may change
+        Journal journal = Engine.getGameState().getJournal();
+        if(journal != null) {
+            journal.placeTypeChanged(this);
+        }
+    }
+
+    /**
+     * Provides the characters currently at this Place, the list is a read only view of the World OccupancyIndex
+     * use addNearbyCharacter and removeNearbyCharacter to change occupants
+     * @return List<AbstractCharacter> representing the characters currently at this Place
+     */
+    public List<AbstractCharacter> getNearbyCharacters() { return getWorld().getOccupancy().view(id()); }
+
+    /**
+     * Will add a character to the occupants of this Place
+     * @param character AbstractCharacter representing the character arriving at this Place
+     */
+    public void addNearbyCharacter(AbstractCharacter character) {
+        getWorld().getOccupancy().add(id(), character);
+    }
+
+    /**
+     * Will remove a character from the occupants of this Place
+     * @param character AbstractCharacter representing the character leaving this Place
+     */
+    public void removeNearbyCharacter(AbstractCharacter character) {
+        getWorld().getOccupancy().remove(id(), character);
+    }
+
+    private Area getArea() { return (Area) getParent(); }
 
-    public ArrayList<AbstractCharacter> getNearbyCharacters() { return nearbyCharacters; }
+    /**
+     * Will provide the World this Place is in
+     * @return World representing the World of this Place
+     */
+    public World getWorld() { return ((Region) getArea().getParent()).getWorld(); }
 
 }
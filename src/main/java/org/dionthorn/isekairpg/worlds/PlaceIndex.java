@@ -0,0 +1,271 @@
+package org.dionthorn.isekairpg.worlds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * The PlaceIndex lists every resource and service Place (FARM to GRAVEYARD) and every Area by Setting
+ * as LocationId handles instead of Place and Area objects, resolve a handle with getPlace or World.resolve(long).
+ * <p>
+ * It is built in a single pass over the World that tallies each Region in parallel,
+ * the handles keep the World order (Region, Area then Place in row major order) no matter how the work is split.
+ * A WorldImage stores the index with the World so opening the image doesn't walk the World again, see of.
+ */
+public final class PlaceIndex {
+
+    // the Place Types worth listing, OUTDOORS and INDOORS are most of the World and are only counted
+    public static final Set<Place.Type> INDEXED_TYPES = EnumSet.range(Place.Type.FARM, Place.Type.GRAVEYARD);
+
+    private final World world;
+    private final EnumMap<Place.Type, long[]> places = new EnumMap<>(Place.Type.class);
+    private final EnumMap<Area.Setting, long[]> areas = new EnumMap<>(Area.Setting.class);
+    private final WorldCensus census;
+
+    private PlaceIndex(World world, RegionTally[] tallies) {
+        this.world = world;
+        for(Place.Type type: INDEXED_TYPES) {
+            places.put(type, merge(tallies, tally -> tally.places[type.ordinal()]));
+        }
+        int[] settingCounts = new int[Area.Setting.values().length];
+        for(Area.Setting setting: Area.Setting.values()) {
+            long[] merged = merge(tallies, tally -> tally.areas[setting.ordinal()]);
+            areas.put(setting, merged);
+            settingCounts[setting.ordinal()] = merged.length;
+        }
+        int areaCount = 0;
+        long placeCount = 0;
+        long[] typeCounts = new long[Place.TYPES.length];
+        for(RegionTally tally: tallies) {
+            areaCount += tally.areaCount;
+            placeCount += tally.placeCount;
+            for(int type = 0; type < typeCounts.length; type++) {
+                typeCounts[type] += tally.typeCounts[type];
+            }
+        }
+        census = new WorldCensus(tallies.length, areaCount, placeCount, settingCounts, typeCounts);
+    }
+
+    private PlaceIndex(World world, EnumMap<Area.Setting, long[]> areas, EnumMap<Place.Type, long[]> places,
+                       WorldCensus census) {
+        this.world = world;
+        this.areas.putAll(areas);
+        this.places.putAll(places);
+        this.census = census;
+    }
+
+    /**
+     * Will provide an index stored earlier instead of walking the World, ex: one read from a WorldImage
+     * @param world World representing the World the handles point into
+     * @param areas EnumMap<Area.Setting, long[]> representing the Area handles of every Setting in World order
+     * @param places EnumMap<Place.Type, long[]> representing the Place handles of every one of the INDEXED_TYPES
+     * @param census WorldCensus representing the census taken with the index
+     * @return PlaceIndex representing the stored index
+     */
+    public static PlaceIndex of(World world, EnumMap<Area.Setting, long[]> areas, EnumMap<Place.Type, long[]> places,
+                                WorldCensus census) {
+        if(!areas.keySet().equals(EnumSet.allOf(Area.Setting.class)) || !places.keySet().equals(INDEXED_TYPES)) {
+            throw new IllegalArgumentException("A stored PlaceIndex needs every Setting and every indexed Type");
+        }
+        return new PlaceIndex(world, areas, places, census);
+    }
+
+    /**
+     * Will walk the whole World once, tallying each Region in parallel on the common ForkJoinPool
+     * @param world World representing the World to index
+     * @return PlaceIndex representing the index and census of the World
+     */
+    public static PlaceIndex build(World world) { return build(world, ForkJoinPool.commonPool()); }
+
+    /**
+     * Will walk the whole World once, tallying each Region using the provided pool
+     * @param world World representing the World to index
+     * @param pool ForkJoinPool representing the pool to tally on, null to tally on the calling thread
+     * @return PlaceIndex representing the index and census of the World
+     */
+    public static PlaceIndex build(World world, ForkJoinPool pool) {
+        int regionSize = world.getRegionSize();
+        RegionTally[] tallies = new RegionTally[regionSize * regionSize];
+        Runnable tallyRegions = () -> GenerationTask.run(tallies.length, index ->
+                tallies[index] = new RegionTally(world.getRegion(index % regionSize, index / regionSize))
+        );
+        if(pool == null) {
+            tallyRegions.run();
+        } else {
+            pool.invoke(ForkJoinTask.adapt(tallyRegions));
+        }
+        return new PlaceIndex(world, tallies);
+    }
+
+    /**
+     * Will provide how many Places of the Type are indexed
+     * @param type Place.Type representing one of the INDEXED_TYPES
+     * @return int representing the count of indexed Places, 0 if the Type is not indexed
+     */
+    public int size(Place.Type type) {
+        long[] handles = places.get(type);
+        return (handles == null) ? 0 : handles.length;
+    }
+
+    /**
+     * Will provide how many Areas of the Setting are indexed
+     * @param setting Area.Setting representing the Setting
+     * @return int representing the count of Areas with the Setting
+     */
+    public int size(Area.Setting setting) { return areas.get(setting).length; }
+
+    /**
+     * Will provide the handle of the nth Place of the Type in World order
+     * @param type Place.Type representing one of the INDEXED_TYPES
+     * @param index int representing which Place of the Type
+     * @return long representing the handle of the Place
+     */
+    public long getHandle(Place.Type type, int index) { return places.get(type)[index]; }
+
+    /**
+     * Will provide the handle of the nth Area of the Setting in World order
+     * @param setting Area.Setting representing the Setting
+     * @param index int representing which Area of the Setting
+     * @return long representing the LocationId of the Area
+     */
+    public long getHandle(Area.Setting setting, int index) { return areas.get(setting)[index]; }
+
+    /**
+     * Will provide the nth Place of the Type in World order
+     * @param type Place.Type representing one of the INDEXED_TYPES
+     * @param index int representing which Place of the Type
+     * @return Place representing the Place, the Type may have changed since the index was built
+     */
+    public Place getPlace(Place.Type type, int index) { return getPlace(getHandle(type, index)); }
+
+    /**
+     * Will provide the nth Area of the Setting in World order
+     * @param setting Area.Setting representing the Setting
+     * @param index int representing which Area of the Setting
+     * @return Area representing the Area
+     */
+    public Area getArea(Area.Setting setting, int index) { return getArea(areas.get(setting)[index]); }
+
+    /**
+     * Will provide every Area with one of the Settings in World order
+     * @param settings Set<Area.Setting> representing the Settings to list, ex: the community Settings
+     * @return ArrayList<Area> representing the Areas with one of the Settings
+     */
+    public ArrayList<Area> getAreas(Set<Area.Setting> settings) {
+        int total = 0;
+        for(Area.Setting setting: settings) {
+            total += size(setting);
+        }
+        long[] handles = new long[total];
+        int offset = 0;
+        for(Area.Setting setting: settings) {
+            System.arraycopy(areas.get(setting), 0, handles, offset, size(setting));
+            offset += size(setting);
+        }
+        Arrays.sort(handles); // LocationIds sort in World order
+        ArrayList<Area> found = new ArrayList<>(total);
+        for(long handle: handles) {
+            found.add(getArea(handle));
+        }
+        return found;
+    }
+
+    /**
+     * Will resolve a Place handle of this index to its Place
+     * @param handle long representing a handle from getHandle
+     * @return Place representing the Place the handle points at
+     */
+    public Place getPlace(long handle) { return world.resolve(handle); }
+
+    private Area getArea(long handle) { return world.resolveArea(handle); }
+
+    /**
+     * Will provide the census taken while the index was built
+     * @return WorldCensus representing the counts of the World
+     */
+    public WorldCensus getCensus() { return census; }
+
+    /**
+     * Will concatenate the handles of every Region in Region order
+     */
+    private static long[] merge(RegionTally[] tallies, Function<RegionTally, HandleList> list) {
+        int total = 0;
+        for(RegionTally tally: tallies) {
+            total += list.apply(tally).size;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for(RegionTally tally: tallies) {
+            HandleList handles = list.apply(tally);
+            System.arraycopy(handles.handles, 0, merged, offset, handles.size);
+            offset += handles.size;
+        }
+        return merged;
+    }
+
+    /**
+     * The handles and counts of a single Region, each Region is tallied by one thread
+     */
+    private static final class RegionTally {
+
+        private final HandleList[] places = new HandleList[Place.TYPES.length];
+        private final HandleList[] areas = new HandleList[Area.Setting.values().length];
+        private final long[] typeCounts = new long[Place.TYPES.length];
+        private int areaCount = 0;
+        private long placeCount = 0;
+
+        private RegionTally(Region region) {
+            for(Place.Type type: INDEXED_TYPES) {
+                places[type.ordinal()] = new HandleList();
+            }
+            for(int setting = 0; setting < areas.length; setting++) {
+                areas[setting] = new HandleList();
+            }
+            for(Area[] areaLayer: region.getAreas()) {
+                for(Area area: areaLayer) {
+                    areaCount++;
+                    areas[area.getSetting().ordinal()].add(
+                            LocationId.of(area)
+                    );
+                    // read the packed types and only keep handles for the indexed ones
+                    int placeSize = area.getPlaceSize();
+                    placeCount += (long) placeSize * placeSize;
+                    for(int y = 0; y < placeSize; y++) {
+                        for(int x = 0; x < placeSize; x++) {
+                            Place.Type type = area.getPlaceType(x, y);
+                            typeCounts[type.ordinal()]++;
+                            HandleList handles = places[type.ordinal()];
+                            if(handles != null) {
+                                handles.add(LocationId.of(region.getX(), region.getY(), area.getX(), area.getY(), x, y));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * A growable long[] so handles are not boxed while tallying
+     */
+    private static final class HandleList {
+
+        private long[] handles = new long[8];
+        private int size = 0;
+
+        private void add(long handle) {
+            if(size == handles.length) {
+                handles = Arrays.copyOf(handles, size * 2);
+            }
+            handles[size++] = handle;
+        }
+
+    }
+
+}
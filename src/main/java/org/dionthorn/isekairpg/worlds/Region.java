@@ -4,18 +4,33 @@ import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
 import javafx.scene.paint.Color;
-import org.dionthorn.isekairpg.Engine;
 import org.dionthorn.isekairpg.graphics.TileSet;
 import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * The Region class contains Areas and has an assigned Biome which determines what type of Areas are created
+ * <p>
+ * Areas are materialized on demand the first time they are needed and may be evicted again by the World
+ * when it is over its memory budget. An evicted Region generates the same Areas again from its seed,
+ * or loads them from the World RegionSource if it has one,
+ * Areas that were changed are restored from the World DirtyRegionStore instead.
  */
 public class Region extends AbstractLocation {
 
-    private final Area[][] areas;
+    private final World world;
     private final Biome biome;
+    private final World.Size worldSize;
     private final int areaSize;
+    private volatile Area[][] areas; // null while this Region is not resident
+    private EvictedArea[] evictedAreas; // Areas still referenced elsewhere are reused when materialized
+    private int evictedLive; // evicted Areas not collected yet, evictedAreas is dropped when none are left
+    private Area.Setting[][] layout; // the blueprint of Area Settings, only held while generating
 
     /**
      * All biomes that roll 1-9 on a d20 will spawn a WILD Setting Area
@@ -32,23 +47,166 @@ public class Region extends AbstractLocation {
     // Image[] index with [Biome.ordinal()]
     public static final Image[] BIOME_TILES = new TileSet("Biomes.png").getTiles();
 
+    /**
+     * A weak reference to an Area of an evicted Region, the World hands it back once the Area was collected
+     * so a Region whose evicted Areas are all gone stops holding a reference for each of them
+     */
+    static final class EvictedArea extends WeakReference<Area> {
+
+        private final Region region;
+        private final EvictedArea[] eviction; // the eviction it was made by, a Region may be evicted again since
+
+        private EvictedArea(Area area, Region region, EvictedArea[] eviction, ReferenceQueue<Area> queue) {
+            super(area, queue);
+            this.region = region;
+            this.eviction = eviction;
+        }
+
+        /**
+         * Will let the Region know its Area was collected, see World.dropCollected
+         */
+        void collected() { region.evictedCollected(eviction); }
+
+    }
+
     /**
      * Regions have Areas. The Region Biome determines the Area Settings
+     * Areas are not generated until they are first needed, see materialize()
+     * @param world World representing the World this Region is a part of
+     * @param biome Biome representing the type of Region this is
+     * @param x int representing this Region x coordinate within the World
+     * @param y int representing this Region y coordinate within the World
      */
-    public Region(Biome biome, int x, int y, int areaSize) {
-        super(x, y);
+    public Region(World world, Biome biome, int x, int y) {
+        super(x, y, RandomStreams.deriveSeed(world.getSeed(), x, y));
         // regions do not have a 'parent' location, all the regions together are considered the 'world'
         // you can access the world object anywhere with Engine.getGameState().getWorld()
+        this.world = world;
         this.biome = biome;
-        this.areaSize = areaSize;
-        areas = new Area[areaSize][areaSize];
+        this.worldSize = world.getWorldSize();
+        this.areaSize = worldSize.getAreaSize();
+    }
 
-        // Fill region with wild lands
-        for(int yArea=0; yArea<areaSize; yArea++) {
-            for(int xArea=0; xArea<areaSize; xArea++) {
-                areas[yArea][xArea] = new Area(this, Area.Setting.WILDS, xArea, yArea);
+    /**
+     * Will make sure the Areas of this Region are resident, generating them if needed
+     * Areas are built in parallel when called inside a ForkJoinPool, see World.create()
+     * @return Area[][] representing all Areas in this Region
+     */
+    Area[][] materialize() {
+        Area[][] resident = areas;
+        if(resident != null) {
+            world.touch(this);
+            return resident;
+        }
+        long residentBytes = 0;
+        synchronized(this) {
+            if(areas != null) {
+                return areas;
+            }
+            Area[][] built = new Area[areaSize][areaSize];
+            RegionSource source = world.getRegionSource();
+            RegionSource.RegionImage image = (source == null) ? null : source.loadRegion(getX(), getY());
+            if(image != null) {
+                layout = image.settings();
+            } else {
+                layout = new Area.Setting[areaSize][areaSize];
+                // the layout rolls with the Regions own stream so it comes out the same on any thread
+                RandomStreams.run(RandomStreams.stream(getSeed(), RandomStreams.GENERATION), this::generateLayout);
+            }
+            // every Area then generates from its own stream so they can be built in any order
+            GenerationTask.run(areaSize * areaSize, index -> {
+                int xArea = index % areaSize;
+                int yArea = index / areaSize;
+                Area area = (evictedAreas == null) ? null : evictedAreas[index].get();
+                if(area == null) {
+                    DirtyRegionStore.AreaRecord saved = world.getDirtyRegionStore().get(this, xArea, yArea);
+                    if(saved == null && image != null && image.areas() != null) {
+                        saved = image.areas()[yArea][xArea];
+                    }
+                    ByteBuffer mapped = (saved == null && image != null && image.mappedAreas() != null)
+                            ? image.mappedAreas()[yArea][xArea] : null;
+                    if(mapped != null) {
+                        area = new Area(this, layout[yArea][xArea], xArea, yArea, mapped);
+                    } else {
+                        area = new Area(this, layout[yArea][xArea], xArea, yArea, saved);
+                    }
+                }
+                built[yArea][xArea] = area;
+            });
+            layout = null; // only needed while generating
+            evictedAreas = null;
+            for(Area[] areaRow: built) {
+                for(Area area: areaRow) {
+                    residentBytes += area.getResidentBytes();
+                }
+            }
+            areas = built;
+            resident = built;
+        }
+        // outside the Region lock, admitting may evict other Regions
+        world.admit(this, residentBytes);
+        return resident;
+    }
+
+    /**
+     * Will drop the Areas of this Region so they can be garbage collected, changed Areas are saved first
+     */
+    synchronized void evict() {
+        if(areas == null) {
+            return;
+        }
+        evictedAreas = new EvictedArea[areaSize * areaSize];
+        evictedLive = evictedAreas.length;
+        for(int yArea = 0; yArea < areaSize; yArea++) {
+            for(int xArea = 0; xArea < areaSize; xArea++) {
+                Area area = areas[yArea][xArea];
+                if(area.isDirty()) {
+                    world.getDirtyRegionStore().save(area);
+                    area.setDirty(false);
+                }
+                evictedAreas[yArea * areaSize + xArea] =
+                        new EvictedArea(area, this, evictedAreas, world.getEvictedQueue());
             }
         }
+        areas = null;
+    }
+
+    /**
+     * Will count an evicted Area as collected, once none are left the references to them are dropped
+     * @param eviction EvictedArea[] representing the eviction the collected Area was made by
+     */
+    private synchronized void evictedCollected(EvictedArea[] eviction) {
+        if(eviction == evictedAreas && --evictedLive == 0) {
+            evictedAreas = null;
+        }
+    }
+
+    /**
+     * Will save a changed Area right away if this Region was already evicted,
+     * an Area can outlive its Region eviction while one of its Places is still in use, ex: a move being planned
+     * @param area Area representing the Area of this Region that was changed
+     */
+    synchronized void areaChanged(Area area) {
+        if(areas == null) {
+            world.getDirtyRegionStore().save(area);
+            area.setDirty(false);
+        }
+    }
+
+    /**
+     * Will check if the Areas of this Region are currently generated
+     * @return boolean representing true if the Region is resident
+     */
+    public boolean isResident() { return areas != null; }
+
+    /**
+     * Will fill the layout with wild lands then roll a blueprint to populate it with
+     */
+    private void generateLayout() {
+        // Fill region with wild lands
+        for(Area.Setting[] layoutRow: layout) {
+            Arrays.fill(layoutRow, Area.Setting.WILDS);
+        }
 
         int roll = Dice.d20.roll();
         Dice chanceX = new Dice(areaSize);
@@ -75,14 +233,11 @@ public class Region extends AbstractLocation {
      * @param chanceY Dice representing the y coordinate roll
      */
     private void populateNations(Dice chanceX, Dice chanceY) {
-        World theWorld = Engine.getGameState().getWorld();
-        World.Size worldSize = theWorld.getWorldSize();
-
         Dice countDie = Dice.d2; // default VERY_SMALL
         if(worldSize == World.Size.MEDIUM) {
             countDie = new Dice(3);
-        } else if(worldSize == World.Size.LARGE) {
-            countDie = new Dice(4);
+        } else if(worldSize.compareTo(World.Size.LARGE) >= 0) {
+            countDie = new Dice(4); // LARGE and up share the same 32*32 Areas per Region
         }
         int nationCount = countDie.roll();
         int tries = 0;
@@ -92,9 +247,9 @@ public class Region extends AbstractLocation {
             while(!validCastleSpot) {
                 int castleX = chanceX.roll() - 1;
                 int castleY = chanceY.roll() - 1;
-                if(areas[castleY][castleX].getSetting() == Area.Setting.WILDS ||
-                        areas[castleY][castleX].getSetting() == Area.Setting.SAFEZONE) {
-                    areas[castleY][castleX] = new Area(this, Area.Setting.CASTLE, castleX, castleY);
+                if(layout[castleY][castleX] == Area.Setting.WILDS ||
+                        layout[castleY][castleX] == Area.Setting.SAFEZONE) {
+                    layout[castleY][castleX] = Area.Setting.CASTLE;
                     // tame land around castle
                     tameAround(castleX, castleY);
                     validCastleSpot = true;
@@ -111,9 +266,9 @@ public class Region extends AbstractLocation {
                 while(!validTownSpot) {
                     int townX = chanceX.roll() - 1;
                     int townY = chanceY.roll() - 1;
-                    if(areas[townY][townX].getSetting() == Area.Setting.WILDS ||
-                            areas[townY][townX].getSetting() == Area.Setting.SAFEZONE) {
-                        areas[townY][townX] = new Area(this, Area.Setting.TOWN, townX, townY);
+                    if(layout[townY][townX] == Area.Setting.WILDS ||
+                            layout[townY][townX] == Area.Setting.SAFEZONE) {
+                        layout[townY][townX] = Area.Setting.TOWN;
                         // tame land around town
                         tameAround(townX, townY);
                         validTownSpot = true;
@@ -132,9 +287,9 @@ public class Region extends AbstractLocation {
                 while(!validVillageSpot) {
                     int villageX = chanceX.roll() - 1;
                     int villageY = chanceY.roll() - 1;
-                    if(areas[villageY][villageX].getSetting() == Area.Setting.WILDS ||
-                            areas[villageY][villageX].getSetting() == Area.Setting.SAFEZONE) {
-                        areas[villageY][villageX] = new Area(this, Area.Setting.VILLAGE, villageX, villageY);
+                    if(layout[villageY][villageX] == Area.Setting.WILDS ||
+                            layout[villageY][villageX] == Area.Setting.SAFEZONE) {
+                        layout[villageY][villageX] = Area.Setting.VILLAGE;
                         tameAround(villageX, villageY);
                         validVillageSpot = true;
                     }
@@ -152,9 +307,9 @@ public class Region extends AbstractLocation {
                 while(!validHamletSpot) {
                     int hamletX = chanceX.roll() - 1;
                     int hamletY = chanceY.roll() - 1;
-                    if(areas[hamletY][hamletX].getSetting() == Area.Setting.WILDS ||
-                            areas[hamletY][hamletX].getSetting() == Area.Setting.SAFEZONE) {
-                        areas[hamletY][hamletX] = new Area(this, Area.Setting.HAMLET, hamletX, hamletY);
+                    if(layout[hamletY][hamletX] == Area.Setting.WILDS ||
+                            layout[hamletY][hamletX] == Area.Setting.SAFEZONE) {
+                        layout[hamletY][hamletX] = Area.Setting.HAMLET;
                         validHamletSpot = true;
                     }
                     tries++;
@@ -172,14 +327,11 @@ public class Region extends AbstractLocation {
      * @param chanceY Dice representing the y coordinate roll
      */
     private void populateHigh(Dice chanceX, Dice chanceY) {
-        World theWorld = Engine.getGameState().getWorld();
-        World.Size worldSize = theWorld.getWorldSize();
-
         Dice countDie = Dice.d2; // default VERY_SMALL
         if(worldSize == World.Size.MEDIUM) {
             countDie = new Dice(3);
-        } else if(worldSize == World.Size.LARGE) {
-            countDie = new Dice(4);
+        } else if(worldSize.compareTo(World.Size.LARGE) >= 0) {
+            countDie = new Dice(4); // LARGE and up share the same 32*32 Areas per Region
         }
 
         // populate with 0-1 towns
@@ -190,9 +342,9 @@ public class Region extends AbstractLocation {
             while(!validTownSpot) {
                 int townX = chanceX.roll() - 1;
                 int townY = chanceY.roll() - 1;
-                if(areas[townY][townX].getSetting() == Area.Setting.WILDS ||
-                        areas[townY][townX].getSetting() == Area.Setting.SAFEZONE) {
-                    areas[townY][townX] = new Area(this, Area.Setting.TOWN, townX, townY);
+                if(layout[townY][townX] == Area.Setting.WILDS ||
+                        layout[townY][townX] == Area.Setting.SAFEZONE) {
+                    layout[townY][townX] = Area.Setting.TOWN;
                     tameAround(townX, townY);
                     validTownSpot = true;
                 }
@@ -211,9 +363,9 @@ public class Region extends AbstractLocation {
             while(!validVillageSpot) {
                 int villageX = chanceX.roll() - 1;
                 int villageY = chanceY.roll() - 1;
-                if(areas[villageY][villageX].getSetting() == Area.Setting.WILDS ||
-                        areas[villageY][villageX].getSetting() == Area.Setting.SAFEZONE) {
-                    areas[villageY][villageX] = new Area(this, Area.Setting.VILLAGE, villageX, villageY);
+                if(layout[villageY][villageX] == Area.Setting.WILDS ||
+                        layout[villageY][villageX] == Area.Setting.SAFEZONE) {
+                    layout[villageY][villageX] = Area.Setting.VILLAGE;
                     tameAround(villageX, villageY);
                     validVillageSpot = true;
                 }
@@ -232,9 +384,9 @@ public class Region extends AbstractLocation {
             while(!validHamletSpot) {
                 int hamletX = chanceX.roll() - 1;
                 int hamletY = chanceY.roll() - 1;
-                if(areas[hamletY][hamletX].getSetting() == Area.Setting.WILDS ||
-                        areas[hamletY][hamletX].getSetting() == Area.Setting.SAFEZONE) {
-                    areas[hamletY][hamletX] = new Area(this, Area.Setting.HAMLET, hamletX, hamletY);
+                if(layout[hamletY][hamletX] == Area.Setting.WILDS ||
+                        layout[hamletY][hamletX] == Area.Setting.SAFEZONE) {
+                    layout[hamletY][hamletX] = Area.Setting.HAMLET;
                     validHamletSpot = true;
                 }
                 tries++;
@@ -251,14 +403,11 @@ public class Region extends AbstractLocation {
      * @param chanceY Dice representing the y coordinate roll
      */
     private void populateLow(Dice chanceX, Dice chanceY) {
-        World theWorld = Engine.getGameState().getWorld();
-        World.Size worldSize = theWorld.getWorldSize();
-
         Dice countDie = Dice.d2; // default VERY_SMALL
         if(worldSize == World.Size.MEDIUM) {
             countDie = new Dice(3);
-        } else if(worldSize == World.Size.LARGE) {
-            countDie = new Dice(4);
+        } else if(worldSize.compareTo(World.Size.LARGE) >= 0) {
+            countDie = new Dice(4); // LARGE and up share the same 32*32 Areas per Region
         }
 
         // populate with 0-1 villages
@@ -269,9 +418,9 @@ public class Region extends AbstractLocation {
             while(!validVillageSpot) {
                 int villageX = chanceX.roll() - 1;
                 int villageY = chanceY.roll() - 1;
-                if(areas[villageY][villageX].getSetting() == Area.Setting.WILDS ||
-                        areas[villageY][villageX].getSetting() == Area.Setting.SAFEZONE) {
-                    areas[villageY][villageX] = new Area(this, Area.Setting.VILLAGE, villageX, villageY);
+                if(layout[villageY][villageX] == Area.Setting.WILDS ||
+                        layout[villageY][villageX] == Area.Setting.SAFEZONE) {
+                    layout[villageY][villageX] = Area.Setting.VILLAGE;
                     tameAround(villageX, villageY);
                     validVillageSpot = true;
                 }
@@ -290,9 +439,9 @@ public class Region extends AbstractLocation {
             while(!validHamletSpot) {
                 int hamletX = chanceX.roll() - 1;
                 int hamletY = chanceY.roll() - 1;
-                if(areas[hamletY][hamletX].getSetting() == Area.Setting.WILDS ||
-                        areas[hamletY][hamletX].getSetting() == Area.Setting.SAFEZONE) {
-                    areas[hamletY][hamletX] = new Area(this, Area.Setting.HAMLET, hamletX, hamletY);
+                if(layout[hamletY][hamletX] == Area.Setting.WILDS ||
+                        layout[hamletY][hamletX] == Area.Setting.SAFEZONE) {
+                    layout[hamletY][hamletX] = Area.Setting.HAMLET;
                     validHamletSpot = true;
                 }
                 tries++;
@@ -317,8 +466,8 @@ public class Region extends AbstractLocation {
             while(!validDungeonSpot) {
                 int dungeonX = chanceX.roll() - 1;
                 int dungeonY = chanceY.roll() - 1;
-                if(areas[dungeonY][dungeonX].getSetting() == Area.Setting.WILDS) {
-                    areas[dungeonY][dungeonX] = new Area(this, Area.Setting.DUNGEON, dungeonX, dungeonY);
+                if(layout[dungeonY][dungeonX] == Area.Setting.WILDS) {
+                    layout[dungeonY][dungeonX] = Area.Setting.DUNGEON;
                     validDungeonSpot = true;
                 }
                 tries++;
@@ -330,7 +479,7 @@ public class Region extends AbstractLocation {
     }
 
     /**
-     * Will Tame the areas around the provided x,y coordinate
+     * Will Tame the areas around the provided x,y coordinate in the layout
      * @param x int representing the x coordinate
      * @param y int representing the y coordinate
      */
@@ -338,8 +487,8 @@ public class Region extends AbstractLocation {
         for(int tameX=x-1; tameX<x+2; tameX++) {
             for(int tameY=y-1; tameY<y+2; tameY++) {
                 if((tameX >= 0 && tameY >= 0) && (tameX < areaSize && tameY < areaSize)) {
-                    if(areas[tameY][tameX].getSetting() == Area.Setting.WILDS) {
-                        areas[tameY][tameX] = new Area(this, Area.Setting.SAFEZONE, tameX, tameY);
+                    if(layout[tameY][tameX] == Area.Setting.WILDS) {
+                        layout[tameY][tameX] = Area.Setting.SAFEZONE;
                     }
                 }
             }
@@ -356,13 +505,11 @@ public class Region extends AbstractLocation {
      * return null if Area doesn't exist at x,y
      */
     public Area getArea(int x, int y) {
-        Area toGet = null;
-        try {
-            toGet = areas[y][x];
-        } catch(Exception e) {
-            // if x,y doesn't exist in this area will return null
+        if(x < 0 || y < 0 || x >= areaSize || y >= areaSize) {
+            // if x,y doesn't exist in this region will return null
+            return null;
         }
-        return toGet;
+        return materialize()[y][x];
     }
 
     public Canvas getAreaMapCanvas(int areaX, int areaY) {
@@ -398,10 +545,16 @@ public class Region extends AbstractLocation {
     public int getAreaSize() { return areaSize; }
 
     /**
-     * Will return the Area[][] of this Region
+     * Will return the Area[][] of this Region, generating the Areas if the Region is not resident
      * @return Area[][] representing all areas in this Region
      */
-    public Area[][] getAreas() { return areas; }
+    public Area[][] getAreas() { return materialize(); }
+
+    /**
+     * Will return the World this Region is a part of
+     * @return World representing the World of this Region
+     */
+    World getWorld() { return world; }
 
     /**
      * Will return the Biome associated to this Region
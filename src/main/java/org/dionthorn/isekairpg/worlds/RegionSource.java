@@ -0,0 +1,34 @@
+package org.dionthorn.isekairpg.worlds;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A RegionSource provides the stored Areas of a Region instead of generating them from the Region seed,
+ * ex: a save file or a WorldImage. Set it with World.restore(Region.Biome[][], RegionSource).
+ * Areas changed after they were loaded still go to the World DirtyRegionStore when their Region is evicted.
+ */
+public interface RegionSource {
+
+    /**
+     * The stored Areas of a Region, every Area is either a record or read only mapped Place types
+     * @param settings Area.Setting[][] representing the Setting of every Area indexed [y][x]
+     * @param areas DirtyRegionStore.AreaRecord[][] representing the Places of every Area indexed [y][x], may be null
+     * @param mappedAreas ByteBuffer[][] representing the mapped Place types of Areas without a record, may be null
+     */
+    record RegionImage(Area.Setting[][] settings, DirtyRegionStore.AreaRecord[][] areas, ByteBuffer[][] mappedAreas) {
+
+        public RegionImage(Area.Setting[][] settings, DirtyRegionStore.AreaRecord[][] areas) {
+            this(settings, areas, null);
+        }
+
+    }
+
+    /**
+     * Will provide the stored Areas of the Region at x, y, called whenever the Region is materialized
+     * @param x int representing the Region x coordinate within the World
+     * @param y int representing the Region y coordinate within the World
+     * @return RegionImage representing the stored Areas, null to generate the Region from its seed
+     */
+    RegionImage loadRegion(int x, int y);
+
+}
@@ -5,25 +5,94 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import org.dionthorn.isekairpg.graphics.TileSet;
 import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * The World class holds all geographic information about the game world, Regions, Areas, Places.
+ * <p>
+ * Regions keep their Areas resident in least recently used order, when the resident Areas go over the
+ * memory budget the least recently used Regions are evicted and generated again from their seed when needed.
+ * The budget is the Size default unless set with setMemoryBudget or the isekairpg.memoryBudgetMB system property.
  */
 public class World extends AbstractLocation {
 
-    private static World.Size worldSize;
+    public static final long UNLIMITED_BUDGET = Long.MAX_VALUE;
+
+    private final World.Size worldSize;
     private final Region[][] regions;
     private final int regionSize;
+    private final DirtyRegionStore dirtyRegions = new DirtyRegionStore();
+    private final OccupancyIndex occupancy = new OccupancyIndex();
+    private final Pathfinder pathfinder;
+    private final FlowFields flowFields;
+    private volatile RegionSource regionSource = null; // null generates every Region from its seed
+    // access ordered so the first entry is always the least recently used resident Region
+    private final LinkedHashMap<Region, Long> residentRegions = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes = 0;
+    private final ReferenceQueue<Area> evictedQueue = new ReferenceQueue<>(); // evicted Areas that were collected
+    private volatile long memoryBudget;
 
     /**
      * How large or small to make the world at generation time
+     * <p>
+     * Areas per Region stop growing at LARGE so the bigger tiers only add Regions,
+     * HUGE is too big to keep every Area in memory so it defaults to a memory budget, see setMemoryBudget,
+     * and only the NPCs near the Player tick every hour so far Regions are not generated again each hour
+     * Time and heap for GameState.createWorld measured on a single core with the default settings,
+     * then the heap after a week of play with every NPC resident:
+     * VERY_SMALL  ~0.2 s  ~1   MB                  ~1.6 thousand Places
+     * SMALL       ~0.4 s  ~3   MB                  ~25  thousand Places
+     * MEDIUM      ~1   s  ~25  MB                  ~1.6 million  Places   ~20-25k NPCs
+     * LARGE       ~5   s  ~220 MB  ~320 MB a week  ~26  million  Places  ~110-130k NPCs
+     * VERY_LARGE  ~9   s  ~830 MB  ~1.3 GB a week  ~105 million  Places  ~480k NPCs (no memory budget)
+     * HUGE        ~65  s  ~2.8 GB  ~2.4 GB a week  ~420 million  Places  ~2 million NPCs
+     *                     (default 1 GB budget and lodRadius 1, run with -Xmx4g)
      */
     public enum Size {
-        VERY_SMALL,// 2^2 = 4  *4  Regions = 16   Regions
-        SMALL,     // 2^3 = 8  *8  Regions = 64   Regions
-        MEDIUM,    // 2^4 = 16 *16 Regions = 256  Regions
-        LARGE      // 2^5 = 32 *32 Regions = 1024 Regions
-        // Very_Large at 64 would take too much memory.
+        VERY_SMALL(4, 4, 0),     // 4   *4   Regions = 16    Regions of 4  *4  Areas
+        SMALL(8, 8, 0),          // 8   *8   Regions = 64    Regions of 8  *8  Areas
+        MEDIUM(16, 16, 0),       // 16  *16  Regions = 256   Regions of 16 *16 Areas
+        LARGE(32, 32, 0),        // 32  *32  Regions = 1024  Regions of 32 *32 Areas
+        VERY_LARGE(64, 32, 0),   // 64  *64  Regions = 4096  Regions of 32 *32 Areas
+        HUGE(128, 32, 1024);     // 128 *128 Regions = 16384 Regions of 32 *32 Areas
+
+        private final int regionSize;
+        private final int areaSize;
+        private final long defaultBudgetMB;
+
+        Size(int regionSize, int areaSize, long defaultBudgetMB) {
+            this.regionSize = regionSize;
+            this.areaSize = areaSize;
+            this.defaultBudgetMB = defaultBudgetMB;
+        }
+
+        /**
+         * Will provide the length of one side of the World in Regions
+         * @return int representing the region size of this tier
+         */
+        public int getRegionSize() { return regionSize; }
+
+        /**
+         * Will provide the length of one side of a Region in Areas
+         * @return int representing the area size of this tier
+         */
+        public int getAreaSize() { return areaSize; }
+
+        /**
+         * Will provide the memory budget used when isekairpg.memoryBudgetMB is not set
+         * @return long representing the default budget in MB, 0 for unlimited
+         */
+        public long getDefaultBudgetMB() { return defaultBudgetMB; }
     }
 
     /**
@@ -32,41 +101,187 @@ public class World extends AbstractLocation {
      * <p>
      * Regions are huge and may have many nations or none in them
      */
-    public World(Size size) {
-        super(0, 0); // World x,y is 0,0
+    public World(Size size) { this(size, RandomStreams.current().nextLong()); }
+
+    /**
+     * Creates a World from a known seed, all location names are derived from the seed
+     * @param size Size representing how large the World is
+     * @param seed long representing the seed of this World
+     */
+    public World(Size size, long seed) {
+        super(0, 0, seed); // World x,y is 0,0
         worldSize = size;
-        regionSize = (int) Math.pow(2, worldSize.ordinal() + 2);
+        regionSize = worldSize.getRegionSize();
         regions = new Region[regionSize][regionSize];
+        pathfinder = new Pathfinder(regionSize, worldSize.getAreaSize());
+        flowFields = new FlowFields(worldSize.getAreaSize());
+        long budgetMB = Long.getLong("isekairpg.memoryBudgetMB", worldSize.getDefaultBudgetMB());
+        memoryBudget = (budgetMB <= 0) ? UNLIMITED_BUDGET : budgetMB * 1024 * 1024;
+    }
+
+    /**
+     * Will populate the World with Regions, generating Regions and their Areas in parallel on the common ForkJoinPool
+     * the same seed always creates the same World, with a memory budget set Areas are generated on demand instead
+     */
+    public void create() { create(ForkJoinPool.commonPool()); }
+
+    /**
+     * Will populate the World with Regions using the provided pool, or on the calling thread if the pool is null
+     * the result is the same for the same seed no matter how the work is split
+     * @param pool ForkJoinPool representing the pool to generate on, null to generate sequentially
+     */
+    public void create(ForkJoinPool pool) {
+        // biomes are rolled from the World stream, each Region then generates from its own stream
+        SplittableRandom biomeStream = RandomStreams.stream(getSeed(), RandomStreams.GENERATION);
+        Region.Biome[][] biomes = new Region.Biome[regionSize][regionSize];
+        for (int y = 0; y < regionSize; y++) {
+            for (int x = 0; x < regionSize; x++) {
+                biomes[y][x] = rollBiome(Dice.d20.roll(biomeStream));
+            }
+        }
+        populate(biomes);
+        if (getMemoryBudget() != UNLIMITED_BUDGET) {
+            return; // Regions materialize as they are visited and are evicted to stay under the budget
+        }
+        Runnable generateRegions = () -> GenerationTask.run(
+                regionSize * regionSize,
+                index -> regions[index / regionSize][index % regionSize].materialize()
+        );
+        if (pool == null) {
+            generateRegions.run();
+        } else {
+            pool.invoke(ForkJoinTask.adapt(generateRegions));
+        }
     }
 
     /**
-     * Will populate the World with Regions
+     * Will populate the World with Regions of known Biomes whose Areas are loaded from the source when visited
+     * used to restore a World from a save, nothing is loaded until a Region is first needed
+     * @param biomes Region.Biome[][] representing the Biome of every Region indexed [y][x]
+     * @param source RegionSource representing where the Areas of the Regions are stored
      */
-    public void create() {
+    public void restore(Region.Biome[][] biomes, RegionSource source) {
+        regionSource = source;
+        populate(biomes);
+    }
+
+    private void populate(Region.Biome[][] biomes) {
         for (int y = 0; y < regionSize; y++) {
             for (int x = 0; x < regionSize; x++) {
-                int roll = Dice.d20.roll();
-                if (roll == 20) {
-                    // 20(1) 5%
-                    regions[y][x] = new Region(Region.Biome.TUNDRA, x, y, regionSize);
-                } else if (roll == 19) {
-                    // 19(1) 5%
-                    regions[y][x] = new Region(Region.Biome.DESERT, x, y, regionSize);
-                } else if (roll > 16) {
-                    // 17-18(2) 10%
-                    regions[y][x] = new Region(Region.Biome.MOUNTAIN, x, y, regionSize);
-                } else if (roll > 10) {
-                    // 11-16(6) 30%
-                    regions[y][x] = new Region(Region.Biome.PLAINS, x, y, regionSize);
-                } else if (roll > 5) {
-                    // 6-10(5) 25%
-                    regions[y][x] = new Region(Region.Biome.FOREST, x, y, regionSize);
-                } else {
-                    // 1-5(5) 25%
-                    regions[y][x] = new Region(Region.Biome.HILLS, x, y, regionSize);
-                }
+                regions[y][x] = new Region(this, biomes[y][x], x, y);
+            }
+        }
+    }
+
+    /**
+     * Will pick the Biome for a d20 roll
+     * @param roll int representing the result of a d20 roll
+     * @return Region.Biome representing the Biome of the Region
+     */
+    private static Region.Biome rollBiome(int roll) {
+        if (roll == 20) {
+            // 20(1) 5%
+            return Region.Biome.TUNDRA;
+        } else if (roll == 19) {
+            // 19(1) 5%
+            return Region.Biome.DESERT;
+        } else if (roll > 16) {
+            // 17-18(2) 10%
+            return Region.Biome.MOUNTAIN;
+        } else if (roll > 10) {
+            // 11-16(6) 30%
+            return Region.Biome.PLAINS;
+        } else if (roll > 5) {
+            // 6-10(5) 25%
+            return Region.Biome.FOREST;
+        } else {
+            // 1-5(5) 25%
+            return Region.Biome.HILLS;
+        }
+    }
+
+    /**
+     * Will record a Region that just materialized its Areas and evict the least recently used Regions
+     * until the resident Areas fit in the memory budget again, the newly admitted Region is never evicted
+     * @param region Region representing the Region that became resident
+     * @param bytes long representing the estimated size of the Region Areas
+     */
+    void admit(Region region, long bytes) {
+        dropCollected();
+        ArrayList<Region> victims;
+        synchronized (residentRegions) {
+            Long previous = residentRegions.put(region, bytes);
+            residentBytes += bytes - ((previous == null) ? 0 : previous);
+            victims = collectOverBudget(region);
+        }
+        // evicted outside the lock so a Region materializing on another thread can't deadlock with us
+        for (Region victim: victims) {
+            victim.evict();
+        }
+    }
+
+    /**
+     * Will hand the evicted Areas that were collected back to their Regions, see Region.EvictedArea
+     */
+    private void dropCollected() {
+        Reference<? extends Area> collected;
+        while ((collected = evictedQueue.poll()) != null) {
+            ((Region.EvictedArea) collected).collected();
+        }
+    }
+
+    /**
+     * Will provide the queue the evicted Areas of every Region are handed to once collected
+     * @return ReferenceQueue<Area> representing the queue of collected Areas
+     */
+    ReferenceQueue<Area> getEvictedQueue() { return evictedQueue; }
+
+    /**
+     * Will mark a resident Region as the most recently used
+     * @param region Region representing the Region whose Areas were just accessed
+     */
+    void touch(Region region) {
+        if (memoryBudget == UNLIMITED_BUDGET) {
+            return; // nothing is ever evicted so the order does not matter
+        }
+        synchronized (residentRegions) {
+            residentRegions.get(region);
+        }
+    }
+
+    /**
+     * Will set how many bytes of Areas may be resident at once, Regions over the budget are evicted right away
+     * @param bytes long representing the memory budget in bytes, UNLIMITED_BUDGET to never evict
+     */
+    public void setMemoryBudget(long bytes) {
+        ArrayList<Region> victims;
+        synchronized (residentRegions) {
+            memoryBudget = bytes;
+            victims = collectOverBudget(null);
+        }
+        for (Region victim: victims) {
+            victim.evict();
+        }
+    }
+
+    /**
+     * Will remove the least recently used Regions from the resident Regions until they fit in the budget,
+     * must hold the residentRegions lock, the caller evicts the returned Regions after releasing it
+     * @param keep Region representing a Region that must stay resident, null if any may go
+     * @return ArrayList<Region> representing the Regions to evict
+     */
+    private ArrayList<Region> collectOverBudget(Region keep) {
+        ArrayList<Region> victims = new ArrayList<>();
+        Iterator<Map.Entry<Region, Long>> eldest = residentRegions.entrySet().iterator();
+        while (residentBytes > memoryBudget && eldest.hasNext()) {
+            Map.Entry<Region, Long> entry = eldest.next();
+            if (entry.getKey() != keep) {
+                residentBytes -= entry.getValue();
+                victims.add(entry.getKey());
+                eldest.remove();
             }
         }
+        return victims;
     }
 
     // Logical Getters
@@ -80,13 +295,46 @@ public class World extends AbstractLocation {
      * will return null if Region doesn't exist at x,y
      */
     public Region getRegion(int x, int y) {
-        Region toGet = null;
-        try {
-            toGet = regions[y][x];
-        } catch (Exception e) {
-            // if x,y doesn't exist in this area will return null
+        if (x < 0 || y < 0 || x >= regionSize || y >= regionSize) {
+            // if x,y doesn't exist in this world will return null
+            return null;
+        }
+        return regions[y][x];
+    }
+
+    /**
+     * Will provide the Place with the ID, see LocationId
+     *
+     * @param id long representing the ID of the Place
+     * @return Place representing the Place with the ID, null if the ID is outside the World
+     */
+    public Place resolve(long id) {
+        Area area = resolveArea(id);
+        return (area == null) ? null : area.getPlace(LocationId.getPlaceX(id), LocationId.getPlaceY(id));
+    }
+
+    /**
+     * Will provide the Area the ID is in, see LocationId
+     *
+     * @param id long representing the ID of a Place or Area
+     * @return Area representing the Area of the ID, null if the ID is outside the World
+     */
+    public Area resolveArea(long id) {
+        Region region = resolveRegion(id);
+        return (region == null) ? null : region.getArea(LocationId.getAreaX(id), LocationId.getAreaY(id));
+    }
+
+    /**
+     * Will provide the Region the ID is in, see LocationId
+     *
+     * @param id long representing the ID of a Place, Area or Region
+     * @return Region representing the Region of the ID, null if the ID is outside the World
+     */
+    public Region resolveRegion(long id) {
+        if (id == LocationId.NONE) {
+            return null;
         }
-        return toGet;
+        return getRegion(LocationId.getRegionX(id), LocationId.getRegionY(id));
     }
 
     public Canvas getRegionMapCanvas(int regionX, int regionY) {
@@ -126,6 +374,59 @@ public class World extends AbstractLocation {
      */
     public Region[][] getRegions() { return regions; }
 
+    /**
+     * Will provide how many bytes of Areas may be resident at once
+     *
+     * @return long representing the memory budget in bytes, UNLIMITED_BUDGET if Regions are never evicted
+     */
+    public long getMemoryBudget() { return memoryBudget; }
+
+    /**
+     * Will provide the estimated size of all resident Areas
+     *
+     * @return long representing the resident Areas in bytes
+     */
+    public long getResidentBytes() {
+        synchronized (residentRegions) {
+            return residentBytes;
+        }
+    }
+
+    /**
+     * Will provide the store of changed Areas whose Region was evicted
+     *
+     * @return DirtyRegionStore representing the saved Areas of evicted Regions
+     */
+    public DirtyRegionStore getDirtyRegionStore() { return dirtyRegions; }
+
+    /**
+     * Will provide where the Areas of this World are loaded from
+     *
+     * @return RegionSource representing the source of this World, null if Regions are generated from their seed
+     */
+    public RegionSource getRegionSource() { return regionSource; }
+
+    /**
+     * Will provide the index of which characters are at which Place
+     *
+     * @return OccupancyIndex representing the occupants of every Place in this World
+     */
+    public OccupancyIndex getOccupancy() { return occupancy; }
+
+    /**
+     * Will provide the Pathfinder of this World, it keeps the routes characters walked recently
+     *
+     * @return Pathfinder representing the route finder between Areas of this World
+     */
+    public Pathfinder getPathfinder() { return pathfinder; }
+
+    /**
+     * Will provide the FlowFields of this World, the directions toward Places and Areas walked to often
+     *
+     * @return FlowFields representing the flow fields of this World
+     */
+    public FlowFields getFlowFields() { return flowFields; }
+
     /**
      * Will provide the World current Size
      *
@@ -0,0 +1,96 @@
+package org.dionthorn.isekairpg.worlds;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The WorldCensus holds the counts of everything generated in a World, taken once by PlaceIndex.build(World)
+ * and stored with the index by a WorldImage
+ * It is immutable, changes made to the World after the census was taken are not reflected.
+ */
+public final class WorldCensus {
+
+    private final int regionCount;
+    private final int areaCount;
+    private final long placeCount;
+    private final EnumMap<Area.Setting, Integer> settingCounts;
+    private final EnumMap<Place.Type, Long> typeCounts;
+
+    /**
+     * Created by PlaceIndex.build(World) from the tallies of every Region or read back from a WorldImage
+     * @param regionCount int representing how many Regions the World has
+     * @param areaCount int representing how many Areas the World has
+     * @param placeCount long representing how many Places the World has
+     * @param settingCounts int[] representing the count of Areas per Area.Setting ordinal
+     * @param typeCounts long[] representing the count of Places per Place.Type ordinal
+     */
+    public WorldCensus(int regionCount, int areaCount, long placeCount, int[] settingCounts, long[] typeCounts) {
+        this.regionCount = regionCount;
+        this.areaCount = areaCount;
+        this.placeCount = placeCount;
+        this.settingCounts = new EnumMap<>(Area.Setting.class);
+        for(Area.Setting setting: Area.Setting.values()) {
+            this.settingCounts.put(setting, settingCounts[setting.ordinal()]);
+        }
+        this.typeCounts = new EnumMap<>(Place.Type.class);
+        for(Place.Type type: Place.TYPES) {
+            this.typeCounts.put(type, typeCounts[type.ordinal()]);
+        }
+    }
+
+    /**
+     * Will provide how many Areas of the Setting were generated
+     * @param setting Area.Setting representing the Setting to count
+     * @return int representing the count of Areas with the Setting
+     */
+    public int getAreaCount(Area.Setting setting) { return settingCounts.get(setting); }
+
+    /**
+     * Will provide how many Places of the Type were generated
+     * @param type Place.Type representing the Type to count
+     * @return long representing the count of Places with the Type
+     */
+    public long getPlaceCount(Place.Type type) { return typeCounts.get(type); }
+
+    /**
+     * Will provide how many community Areas were generated (hamlet, village, town)
+     * @return int representing the count of community Areas
+     */
+    public int getCommunityCount() {
+        return getAreaCount(Area.Setting.HAMLET) + getAreaCount(Area.Setting.VILLAGE) + getAreaCount(Area.Setting.TOWN);
+    }
+
+    /**
+     * Will provide the count of Areas per Setting
+     * @return Map<Area.Setting, Integer> representing a read only view of the Area counts
+     */
+    public Map<Area.Setting, Integer> getAreaCounts() { return Collections.unmodifiableMap(settingCounts); }
+
+    /**
+     * Will provide the count of Places per Type
+     * @return Map<Place.Type, Long> representing a read only view of the Place counts
+     */
+    public Map<Place.Type, Long> getPlaceCounts() { return Collections.unmodifiableMap(typeCounts); }
+
+    // Pure Getters
+
+    /**
+     * Will provide how many Regions the World has
+     * @return int representing the count of Regions
+     */
+    public int getRegionCount() { return regionCount; }
+
+    /**
+     * Will provide how many Areas the World has
+     * @return int representing the count of Areas
+     */
+    public int getAreaCount() { return areaCount; }
+
+    /**
+     * Will provide how many Places the World has
+     * @return long representing the count of Places
+     */
+    public long getPlaceCount() { return placeCount; }
+
+}
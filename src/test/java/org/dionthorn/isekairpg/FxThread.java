@@ -0,0 +1,49 @@
+package org.dionthorn.isekairpg;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs test code on the JavaFX application thread like the game does, the toolkit runs headless, see pom.xml
+ */
+public final class FxThread {
+
+    /**
+     * Test code that may throw
+     */
+    @FunctionalInterface
+    public interface Work {
+        void run() throws Exception;
+    }
+
+    private FxThread() { }
+
+    /**
+     * Will run the work on the JavaFX application thread and wait for it, starting the toolkit the first time
+     * @param work Work representing the test code to run
+     * @throws Exception if the work throws
+     */
+    public static void run(Work work) throws Exception {
+        try {
+            Platform.startup(() -> { });
+        } catch(IllegalStateException alreadyStarted) {
+            // started by an earlier test
+        }
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            work.run();
+            return null;
+        });
+        Platform.runLater(task);
+        try {
+            task.get();
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+}
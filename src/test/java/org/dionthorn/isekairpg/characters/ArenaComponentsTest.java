@@ -0,0 +1,78 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.worlds.LocationId;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ArenaComponentsTest {
+
+    private static final int PAGE_ROWS = ArenaComponents.PAGE_ROWS;
+    private static final int MIN_ROWS = ArenaComponents.MIN_ROWS;
+
+    @Test
+    void theLastPageOnlyHoldsTheRowsAskedFor() {
+        ArenaComponents arena = new ArenaComponents(10);
+        assertEquals(MIN_ROWS, arena.getHeldRows());
+        arena.ensureCapacity(MIN_ROWS); // already held
+        assertEquals(MIN_ROWS, arena.getHeldRows());
+        arena.ensureCapacity(MIN_ROWS + 1);
+        assertEquals(MIN_ROWS * 2, arena.getHeldRows()); // doubled
+        arena.ensureCapacity(MIN_ROWS * 10);
+        assertEquals(MIN_ROWS * 10, arena.getHeldRows()); // more than double goes straight to the rows asked for
+        arena.ensureCapacity(PAGE_ROWS / 2 + 1);
+        assertEquals(PAGE_ROWS, arena.getHeldRows()); // past half a page the page is filled
+        arena.ensureCapacity(PAGE_ROWS + 1);
+        assertEquals(PAGE_ROWS + MIN_ROWS, arena.getHeldRows()); // a new last page starts small
+        arena.ensureCapacity(PAGE_ROWS * 3 + 5);
+        assertEquals(PAGE_ROWS * 3L + MIN_ROWS, arena.getHeldRows()); // pages before the last are full
+    }
+
+    @Test
+    void rowsKeepTheirRecordsAsPagesGrow() {
+        ArenaComponents arena = new ArenaComponents(1);
+        HeapComponents heap = new HeapComponents(1);
+        int[] rows = { 0, 5, MIN_ROWS - 1, MIN_ROWS * 3, PAGE_ROWS - 1, PAGE_ROWS, PAGE_ROWS * 2 + 7 };
+        long farthest = LocationId.of(
+                LocationId.MAX_COORDINATE, LocationId.MAX_COORDINATE, LocationId.MAX_COORDINATE,
+                LocationId.MAX_COORDINATE, LocationId.MAX_COORDINATE, LocationId.MAX_COORDINATE
+        );
+        for(int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            heap.clear(row);
+            heap.setAlive(row, true);
+            heap.setWorking(row, i % 2 == 0);
+            heap.setAge(row, 20 + i);
+            heap.setMaxAge(row, 90 - i);
+            heap.setHitPoints(row, -i);
+            heap.setProfession(row, i % 3 - 1);
+            heap.setHome(row, (i % 2 == 0) ? LocationId.NONE : farthest);
+            heap.setPlace(row, LocationId.of(i, 0, 0, i, 0, 1));
+            arena.copy(row, heap, row); // grows the arena to fit
+        }
+        for(int row: rows) {
+            assertRowEquals(heap, arena, row);
+        }
+        // rows never written read as new rows
+        int untouched = PAGE_ROWS + 1;
+        assertFalse(arena.isAlive(untouched));
+        assertEquals(-1, arena.getProfession(untouched));
+        assertEquals(LocationId.NONE, arena.getHome(untouched));
+        assertEquals(LocationId.NONE, arena.getPlace(untouched));
+        assertEquals(0, arena.getAge(untouched));
+    }
+
+    private static void assertRowEquals(CharacterComponents expected, CharacterComponents actual, int row) {
+        assertEquals(expected.isAlive(row), actual.isAlive(row), "row " + row);
+        assertEquals(expected.isSleeping(row), actual.isSleeping(row), "row " + row);
+        assertEquals(expected.isWorking(row), actual.isWorking(row), "row " + row);
+        assertEquals(expected.getAge(row), actual.getAge(row), "row " + row);
+        assertEquals(expected.getMaxAge(row), actual.getMaxAge(row), "row " + row);
+        assertEquals(expected.getHitPoints(row), actual.getHitPoints(row), "row " + row);
+        assertEquals(expected.getProfession(row), actual.getProfession(row), "row " + row);
+        assertEquals(expected.getHome(row), actual.getHome(row), "row " + row);
+        assertEquals(expected.getPlace(row), actual.getPlace(row), "row " + row);
+    }
+
+}
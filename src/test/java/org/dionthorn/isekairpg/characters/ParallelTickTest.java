@@ -0,0 +1,58 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.Engine;
+import org.dionthorn.isekairpg.FxThread;
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.items.Foods;
+import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.dionthorn.isekairpg.worlds.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParallelTickTest {
+
+    private static final long SEED = 42L;
+
+    @Test
+    void parallelTickMatchesSequentialTick() throws Exception {
+        FxThread.run(() -> assertEquals(play(false), play(true)));
+    }
+
+    /**
+     * Will play two days of a SMALL World and describe every NPC
+     */
+    private static List<String> play(boolean parallel) {
+        GameState gameState = Engine.getGameState();
+        boolean wasParallel = gameState.isParallelTick();
+        try {
+            gameState.setParallelTick(parallel);
+            RandomStreams.reseed(7);
+            gameState.createWorld(World.Size.SMALL, new Player(Dice.d8), SEED);
+            gameState.tick(48);
+        } finally {
+            gameState.setParallelTick(wasParallel);
+        }
+        List<String> described = new ArrayList<>();
+        for(NPC npc: gameState.getNPCs()) {
+            TreeMap<String, Integer> relations = new TreeMap<>();
+            for(Map.Entry<AbstractCharacter, Integer> relation: npc.getRelationships().entrySet()) {
+                relations.put(relation.getKey().getFirstName() + " " + relation.getKey().getLastName(), relation.getValue());
+            }
+            described.add(String.join(" ",
+                    npc.getFirstName(), npc.getLastName(), "hp " + npc.getHP(), "alive " + npc.isAlive(),
+                    "at " + ((npc.getCurrentPlace() == null) ? "none" : npc.getCurrentPlace().id()),
+                    "sleeping " + npc.isSleeping(), "working " + npc.isWorking(),
+                    "rice " + npc.getInventory().getCount(Foods.Type.RICE), "relations " + relations
+            ));
+        }
+        return described;
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.Engine;
+import org.dionthorn.isekairpg.FxThread;
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.dionthorn.isekairpg.worlds.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelationshipStoreTest {
+
+    private static final long SEED = 42L;
+    private static final int KNOWN = 60; // characters that get to know each other
+
+    @Test
+    void relationsMatchAPlainMapThroughGrowthAndForgetting() throws Exception {
+        FxThread.run(() -> {
+            GameState gameState = Engine.getGameState();
+            RandomStreams.reseed(7);
+            gameState.createWorld(World.Size.VERY_SMALL, new Player(Dice.d8), SEED);
+            RelationshipStore store = gameState.getRelationshipStore();
+            CharacterTable table = gameState.getCharacterTable();
+            List<AbstractCharacter> characters = new ArrayList<>(gameState.getNPCs().subList(0, KNOWN));
+            HashMap<AbstractCharacter, HashMap<AbstractCharacter, Integer>> expected = new HashMap<>();
+            for(AbstractCharacter character: characters) {
+                expected.put(character, new HashMap<>());
+            }
+            // enough relations per character that the tables grow several times
+            SplittableRandom random = new SplittableRandom(42);
+            for(int step = 0; step < 5000; step++) {
+                AbstractCharacter character = characters.get(random.nextInt(KNOWN));
+                AbstractCharacter other = characters.get(random.nextInt(KNOWN));
+                int change = random.nextInt(-10, 11);
+                if(random.nextInt(5) == 0) {
+                    store.set(character, other, change);
+                    expected.get(character).put(other, change);
+                } else {
+                    assertEquals(expected.get(character).merge(other, change, Integer::sum),
+                            store.adjust(character, other, change));
+                }
+            }
+            check(store, characters, expected);
+
+            // release a few, their IDs must be gone from every table before they are handed out again
+            Set<Integer> releasedIds = new HashSet<>();
+            for(int i = 0; i < 10; i++) {
+                AbstractCharacter released = characters.remove(random.nextInt(characters.size()));
+                releasedIds.add(released.getId());
+                table.release(released);
+                expected.remove(released);
+                for(HashMap<AbstractCharacter, Integer> relations: expected.values()) {
+                    relations.remove(released);
+                }
+            }
+            table.recycle(store, null);
+            check(store, characters, expected);
+            Player newcomer = new Player(Dice.d8);
+            table.add(newcomer);
+            assertTrue(releasedIds.contains(newcomer.getId()), "released IDs are handed out again");
+            assertTrue(store.view(newcomer).isEmpty());
+            for(AbstractCharacter character: characters) {
+                assertNull(store.get(character, newcomer), "a reused ID must not inherit relations");
+            }
+        });
+    }
+
+    /**
+     * Will check every lookup and every view matches the expected relations
+     */
+    private static void check(RelationshipStore store, List<AbstractCharacter> characters,
+                              HashMap<AbstractCharacter, HashMap<AbstractCharacter, Integer>> expected) {
+        for(AbstractCharacter character: characters) {
+            Map<AbstractCharacter, Integer> relations = expected.get(character);
+            assertEquals(relations, new HashMap<>(store.view(character)));
+            assertEquals(relations.size(), store.view(character).size());
+            for(AbstractCharacter other: characters) {
+                assertEquals(relations.get(other), store.get(character, other));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.dionthorn.isekairpg.characters;
+
+import org.dionthorn.isekairpg.Engine;
+import org.dionthorn.isekairpg.FxThread;
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.items.Foods;
+import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.dionthorn.isekairpg.worlds.LocationId;
+import org.dionthorn.isekairpg.worlds.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulationLodTest {
+
+    private static final long SEED = 42L;
+    private static final int DAYS = 90;
+
+    /**
+     * What became of the NPCs of one Region
+     * @param dead List<Integer> representing the indices of the NPCs that died in GameState order
+     * @param rice long representing the rice the farmers of the Region hold, bodies included
+     */
+    private record Outcome(List<Integer> dead, long rice) { }
+
+    @Test
+    void aFarRegionCaughtUpMatchesTheFullSimulation() throws Exception {
+        FxThread.run(() -> {
+            Outcome full = simulate(-1);
+            Outcome far = simulate(0); // only the Region of the Player ticks every hour
+            assertFalse(full.dead().isEmpty());
+            assertEquals(full.dead(), far.dead(), "far NPCs age and die on the same days");
+            // the rice of a work day is 2d2-2, mean 1 and variance 1/2, so the two differ by about sqrt(rice)
+            assertTrue(full.rice() > 0);
+            assertTrue(Math.abs(full.rice() - far.rice()) <= 4 * Math.sqrt(full.rice()),
+                    "full " + full.rice() + " far " + far.rice());
+        });
+    }
+
+    /**
+     * Will start a SMALL World, play DAYS days then walk the Player into the Region with the most farmers
+     * @param lodRadius int representing the radius of the near Regions, -1 to tick every Region
+     */
+    private static Outcome simulate(int lodRadius) {
+        GameState gameState = Engine.getGameState();
+        RandomStreams.reseed(7);
+        gameState.createWorld(World.Size.SMALL, new Player(Dice.d8), SEED);
+        gameState.setLodRadius(lodRadius);
+        World world = gameState.getWorld();
+        List<NPC> npcs = gameState.getNPCs();
+        long playerRegion = LocationId.toRegion(gameState.getPlayer().getCurrentPlaceId());
+        int[] farmers = new int[world.getRegionSize() * world.getRegionSize()];
+        for(NPC npc: npcs) {
+            if(npc.getProfession() == AbstractCharacter.Profession.FARMER
+                    && LocationId.toRegion(npc.getHomeId()) != playerRegion) {
+                farmers[regionOf(npc, world)]++;
+            }
+        }
+        int farRegion = 0;
+        for(int region = 1; region < farmers.length; region++) {
+            if(farmers[region] > farmers[farRegion]) {
+                farRegion = region;
+            }
+        }
+        // the residents born in the first two months die on their birthday, farmers keep the rice they made until then
+        for(NPC npc: npcs) {
+            if(regionOf(npc, world) == farRegion && npc.getBirthMonth() <= 2) {
+                npc.setAge(npc.getMaxAge() - 1);
+            }
+        }
+
+        gameState.tick(DAYS * GameState.HOURS_PER_DAY);
+        NPC resident = null;
+        for(NPC npc: npcs) {
+            if(npc.isAlive() && regionOf(npc, world) == farRegion) {
+                resident = npc;
+                break;
+            }
+        }
+        assertTrue(resident != null);
+        gameState.getPlayer().setCurrentPlace(resident.getHome()); // the Region catches up as the Player arrives
+        gameState.tick();
+
+        List<Integer> dead = new ArrayList<>();
+        long rice = 0;
+        for(int index = 0; index < npcs.size(); index++) {
+            NPC npc = npcs.get(index);
+            if(regionOf(npc, world) == farRegion) {
+                if(!npc.isAlive()) {
+                    dead.add(index);
+                }
+                if(npc.getProfession() == AbstractCharacter.Profession.FARMER) {
+                    rice += npc.getInventory().getCount(Foods.Type.RICE);
+                }
+            }
+        }
+        return new Outcome(dead, rice);
+    }
+
+    private static int regionOf(NPC npc, World world) {
+        long home = npc.getHomeId();
+        return LocationId.getRegionY(home) * world.getRegionSize() + LocationId.getRegionX(home);
+    }
+
+}
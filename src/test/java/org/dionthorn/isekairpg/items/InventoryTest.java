@@ -0,0 +1,85 @@
+package org.dionthorn.isekairpg.items;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryTest {
+
+    private static final Foods.Type[] FOOD_TYPES = Foods.Type.values();
+    private static final Weapons.Type[] WEAPON_TYPES = Weapons.Type.values();
+
+    @Test
+    void cachedWeightMatchesTheItemsCarried() {
+        Inventory inventory = new Inventory();
+        SplittableRandom random = new SplittableRandom(42);
+        for(int step = 0; step < 5000; step++) {
+            Foods.Type food = FOOD_TYPES[random.nextInt(FOOD_TYPES.length)];
+            switch(random.nextInt(6)) {
+                case 0 -> inventory.add(Foods.get(food));
+                case 1 -> inventory.add(food, random.nextInt(20));
+                case 2 -> {
+                    // asking for more than is carried, or a negative count, only removes what is there
+                    int carried = inventory.getCount(food);
+                    int count = random.nextInt(-2, 30);
+                    assertEquals(Math.min(Math.max(count, 0), carried), inventory.remove(food, count));
+                }
+                case 3 -> inventory.add(Weapons.get(WEAPON_TYPES[random.nextInt(WEAPON_TYPES.length)]));
+                case 4 -> {
+                    if(!inventory.getItems().isEmpty()) {
+                        AbstractItem item = inventory.getItems().get(random.nextInt(inventory.getItems().size()));
+                        assertTrue(inventory.remove(item));
+                    }
+                }
+                default -> {
+                    boolean carried = inventory.getCount(food) > 0;
+                    assertEquals(carried, inventory.remove(Foods.get(food)));
+                }
+            }
+            assertEquals(sum(inventory), inventory.getWeight(), "after step " + step);
+        }
+    }
+
+    @Test
+    void copiesAndMergesCarryTheirWeight() {
+        Inventory inventory = new Inventory();
+        inventory.add(Foods.Type.RICE, 12);
+        inventory.add(Foods.get(Foods.Type.FISH));
+        inventory.add(Weapons.get(Weapons.Type.KATANA));
+        inventory.add(Armors.get(Armors.Type.CLOTH));
+        Inventory copy = new Inventory(inventory);
+        assertEquals(inventory.getWeight(), copy.getWeight());
+        copy.remove(Foods.Type.RICE, 5);
+        assertEquals(sum(inventory), inventory.getWeight(), "a copy must not share the counts");
+        assertEquals(sum(copy), copy.getWeight());
+
+        Inventory merged = new Inventory();
+        merged.add(Foods.Type.FISH, 3);
+        merged.addAll(copy);
+        assertEquals(sum(merged), merged.getWeight());
+        assertEquals(4, merged.getCount(Foods.Type.FISH));
+        assertEquals(7 + 4 + 2, merged.size());
+
+        assertFalse(merged.remove(Weapons.get(Weapons.Type.TANTO)), "only carried items are removed");
+        assertEquals(sum(merged), merged.getWeight());
+    }
+
+    /**
+     * Will sum the weight of everything carried the slow way
+     */
+    private static int sum(Inventory inventory) {
+        int weight = 0;
+        for(Foods.Type type: FOOD_TYPES) {
+            weight += Foods.get(type).getWeight() * inventory.getCount(type);
+        }
+        for(AbstractItem item: inventory.getItems()) {
+            weight += item.getWeight();
+        }
+        return weight;
+    }
+
+}
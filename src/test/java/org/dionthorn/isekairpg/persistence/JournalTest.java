@@ -0,0 +1,57 @@
+package org.dionthorn.isekairpg.persistence;
+
+import org.dionthorn.isekairpg.Engine;
+import org.dionthorn.isekairpg.FxThread;
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.dionthorn.isekairpg.worlds.World;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JournalTest {
+
+    private static final long SEED = 42L;
+
+    @Test
+    void recoveredGameMatchesJournaledGame(@TempDir Path directory) throws Exception {
+        FxThread.run(() -> {
+            GameState gameState = Engine.getGameState();
+            RandomStreams.reseed(7);
+            gameState.createWorld(World.Size.SMALL, new Player(Dice.d8), SEED);
+            Path path = directory.resolve("autosave.sav");
+            gameState.startAutosave(path);
+            gameState.tick(30);
+            gameState.fastForward(2L * GameState.HOURS_PER_DAY);
+            gameState.tick(6);
+            gameState.getPlayer().getCurrentPlace().setName("Journaled Place");
+            gameState.tick();
+            List<String> journaled = SaveFileTest.describe(gameState);
+            long journaledWorld = SaveFileTest.describe(gameState.getWorld());
+            long journaledHours = gameState.getTotalHours();
+            gameState.stopAutosave();
+            assertNull(gameState.takeSaveFailure());
+
+            // a crash while writing the next batch leaves a torn tail that replay must ignore
+            Files.write(Journal.pathOf(path), new byte[] { 0, 0, 1, 0, 7 }, StandardOpenOption.APPEND);
+            gameState.tick(12);
+            gameState.recoverGame(path);
+
+            assertEquals(journaledHours, gameState.getTotalHours());
+            assertEquals(journaledWorld, SaveFileTest.describe(gameState.getWorld()));
+            assertEquals(journaled, SaveFileTest.describe(gameState));
+            assertEquals("Journaled Place", gameState.getPlayer().getCurrentPlace().getName());
+            gameState.stopAutosave();
+        });
+    }
+
+}
@@ -0,0 +1,136 @@
+package org.dionthorn.isekairpg.persistence;
+
+import org.dionthorn.isekairpg.Engine;
+import org.dionthorn.isekairpg.FxThread;
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.characters.AbstractCharacter;
+import org.dionthorn.isekairpg.characters.NPC;
+import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.items.Foods;
+import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.dionthorn.isekairpg.worlds.Area;
+import org.dionthorn.isekairpg.worlds.Place;
+import org.dionthorn.isekairpg.worlds.Region;
+import org.dionthorn.isekairpg.worlds.World;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SaveFileTest {
+
+    private static final long SEED = 42L;
+
+    @Test
+    void loadedGameMatchesSavedGame(@TempDir Path directory) throws Exception {
+        FxThread.run(() -> {
+            GameState gameState = Engine.getGameState();
+            RandomStreams.reseed(7);
+            gameState.createWorld(World.Size.SMALL, new Player(Dice.d8), SEED);
+            gameState.tick(36);
+            Place renamed = gameState.getPlayer().getCurrentPlace();
+            renamed.setName("Saved Place");
+            Path path = directory.resolve("test.sav");
+            gameState.saveGame(path);
+            List<String> saved = describe(gameState);
+            long savedWorld = describe(gameState.getWorld());
+            long savedHours = gameState.getTotalHours();
+
+            gameState.tick(12); // changes after the save must not survive the load
+            assertNotEquals(saved, describe(gameState));
+            gameState.loadGame(path);
+
+            assertEquals(savedHours, gameState.getTotalHours());
+            assertEquals(savedWorld, describe(gameState.getWorld()));
+            assertEquals(saved, describe(gameState));
+            assertEquals("Saved Place", gameState.getPlayer().getCurrentPlace().getName());
+        });
+    }
+
+    @Test
+    void unknownWorldSizeIsAnIOException(@TempDir Path directory) throws Exception {
+        FxThread.run(() -> {
+            GameState gameState = Engine.getGameState();
+            RandomStreams.reseed(7);
+            gameState.createWorld(World.Size.VERY_SMALL, new Player(Dice.d8), SEED);
+            Path path = directory.resolve("corrupt.sav");
+            gameState.saveGame(path);
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(4).putInt(0, 99), 12); // World.Size ordinal after magic and version
+            }
+            assertThrows(IOException.class, () -> SaveFile.open(path));
+        });
+    }
+
+    /**
+     * Will describe every character, relations name the other character by its place in GameState order
+     */
+    static List<String> describe(GameState gameState) {
+        List<AbstractCharacter> characters = new ArrayList<>();
+        characters.add(gameState.getPlayer());
+        characters.addAll(gameState.getNPCs());
+        IdentityHashMap<AbstractCharacter, Integer> order = new IdentityHashMap<>();
+        for(AbstractCharacter character: characters) {
+            order.put(character, order.size());
+        }
+        List<String> described = new ArrayList<>();
+        for(AbstractCharacter character: characters) {
+            TreeMap<Integer, Integer> relations = new TreeMap<>();
+            for(Map.Entry<AbstractCharacter, Integer> relation: character.getRelationships().entrySet()) {
+                relations.put(order.get(relation.getKey()), relation.getValue());
+            }
+            String activity = (character instanceof NPC npc) ? npc.isSleeping() + " " + npc.isWorking() : "";
+            described.add(String.join(" ",
+                    character.getFirstName(), character.getLastName(),
+                    "age " + character.getAge() + "/" + character.getMaxAge(),
+                    "hp " + character.getHP() + "/" + character.getMaxHP(), "sp " + character.getSP(),
+                    "level " + character.getLevel(), "xp " + character.getXP(), "alive " + character.isAlive(),
+                    "profession " + character.getProfession(),
+                    "home " + ((character.getHome() == null) ? "none" : character.getHome().id()),
+                    "at " + ((character.getCurrentPlace() == null) ? "none" : character.getCurrentPlace().id()),
+                    "slot " + character.getOccupancySlot(),
+                    "money " + character.getMoney().valueInCopper(),
+                    "items " + character.getInventory().size(),
+                    "rice " + character.getInventory().getCount(Foods.Type.RICE),
+                    "weight " + character.getCarriedWeight(),
+                    "relations " + relations, activity
+            ));
+        }
+        return described;
+    }
+
+    /**
+     * Will digest the Place types and names of every Area of the World
+     */
+    static long describe(World world) {
+        long digest = 1;
+        for(Region[] regionRow: world.getRegions()) {
+            for(Region region: regionRow) {
+                for(Area[] areaRow: region.getAreas()) {
+                    for(Area area: areaRow) {
+                        digest = digest * 31 + area.getSetting().ordinal();
+                        digest = digest * 31 + Arrays.hashCode(area.toRecord().placeTypes());
+                        digest = digest * 31 + new TreeMap<>(area.toRecord().placeNames()).hashCode();
+                    }
+                }
+            }
+        }
+        return digest;
+    }
+
+}
@@ -0,0 +1,49 @@
+package org.dionthorn.isekairpg.persistence;
+
+import org.dionthorn.isekairpg.Engine;
+import org.dionthorn.isekairpg.FxThread;
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.dionthorn.isekairpg.worlds.World;
+import org.dionthorn.isekairpg.worlds.WorldCensus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WorldImageTest {
+
+    private static final long SEED = 42L;
+
+    @Test
+    void gameStartedFromImageMatchesGeneratedGame(@TempDir Path directory) throws Exception {
+        FxThread.run(() -> {
+            GameState gameState = Engine.getGameState();
+            RandomStreams.reseed(7);
+            gameState.createWorld(World.Size.SMALL, new Player(Dice.d8), SEED);
+            Path path = directory.resolve("test.world");
+            gameState.writeWorldImage(path);
+            WorldCensus generatedCensus = gameState.getPlaceIndex().getCensus();
+            gameState.tick(36);
+            List<String> generated = SaveFileTest.describe(gameState);
+            long generatedWorld = SaveFileTest.describe(gameState.getWorld());
+
+            RandomStreams.reseed(7);
+            gameState.createWorld(path, new Player(Dice.d8));
+            WorldCensus storedCensus = gameState.getPlaceIndex().getCensus();
+            assertEquals(generatedCensus.getPlaceCount(), storedCensus.getPlaceCount());
+            assertEquals(generatedCensus.getAreaCounts(), storedCensus.getAreaCounts());
+            assertEquals(generatedCensus.getPlaceCounts(), storedCensus.getPlaceCounts());
+            gameState.tick(36);
+
+            assertEquals(generated, SaveFileTest.describe(gameState));
+            assertEquals(generatedWorld, SaveFileTest.describe(gameState.getWorld()));
+        });
+    }
+
+}
@@ -0,0 +1,90 @@
+package org.dionthorn.isekairpg.worlds;
+
+import org.dionthorn.isekairpg.FxThread;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FlowFieldsTest {
+
+    private static final long SEED = 42L;
+
+    @Test
+    void everyCellFollowsItsFieldToTheTarget() throws Exception {
+        FxThread.run(() -> {
+            World world = world();
+            FlowFields flowFields = world.getFlowFields();
+            Area area = world.getRegion(1, 2).getArea(3, 1);
+            int size = area.getPlaceSize();
+            byte[] field = flowFields.placeField(area, 2, size - 1);
+            assertEquals(FlowFields.ARRIVED, field[(size - 1) * size + 2]);
+            for(int cell = 0; cell < size * size; cell++) {
+                assertEquals(Math.abs(cell % size - 2) + Math.abs(cell / size - (size - 1)), follow(field, size, cell));
+            }
+            Region region = world.getRegion(0, 3);
+            int areaSize = world.getWorldSize().getAreaSize();
+            byte[] areaField = flowFields.areaField(region, 0, 0);
+            for(int cell = 0; cell < areaSize * areaSize; cell++) {
+                assertEquals(cell % areaSize + cell / areaSize, follow(areaField, areaSize, cell));
+            }
+        });
+    }
+
+    @Test
+    void changingAPlaceOnlyDropsTheFieldsItCouldBeOn() throws Exception {
+        FxThread.run(() -> {
+            World world = world();
+            FlowFields flowFields = world.getFlowFields();
+            Region changedRegion = world.getRegion(1, 1);
+            Region otherRegion = world.getRegion(2, 1);
+            Area changed = changedRegion.getArea(0, 0);
+            Area sameRegion = changedRegion.getArea(1, 0);
+            Area other = otherRegion.getArea(0, 0);
+            byte[] changedField = flowFields.placeField(changed, 1, 1);
+            byte[] sameRegionField = flowFields.placeField(sameRegion, 1, 1);
+            byte[] otherField = flowFields.placeField(other, 1, 1);
+            byte[] changedAreaField = flowFields.areaField(changedRegion, 1, 1);
+            byte[] otherAreaField = flowFields.areaField(otherRegion, 1, 1);
+            // kept until something changes
+            assertSame(changedField, flowFields.placeField(changed, 1, 1));
+            assertSame(changedAreaField, flowFields.areaField(changedRegion, 1, 1));
+
+            int version = flowFields.getVersion();
+            changed.getPlace(0, 0).setType(Place.Type.FARM);
+            assertEquals(version + 1, flowFields.getVersion(), "fields held elsewhere must be fetched again");
+            byte[] rebuilt = flowFields.placeField(changed, 1, 1);
+            assertNotSame(changedField, rebuilt);
+            assertArrayEquals(changedField, rebuilt); // every Place still costs the same
+            assertNotSame(changedAreaField, flowFields.areaField(changedRegion, 1, 1));
+            assertSame(sameRegionField, flowFields.placeField(sameRegion, 1, 1));
+            assertSame(otherField, flowFields.placeField(other, 1, 1));
+            assertSame(otherAreaField, flowFields.areaField(otherRegion, 1, 1));
+        });
+    }
+
+    /**
+     * Will step along the field from a cell until it arrives
+     * @return int representing the steps taken
+     */
+    private static int follow(byte[] field, int size, int cell) {
+        int steps = 0;
+        while(field[cell] != FlowFields.ARRIVED) {
+            cell += Pathfinder.directionY(field[cell]) * size + Pathfinder.directionX(field[cell]);
+            steps++;
+            if(steps > field.length) {
+                throw new AssertionError("field loops from cell " + cell);
+            }
+        }
+        return steps;
+    }
+
+    private static World world() {
+        World world = new World(World.Size.VERY_SMALL, SEED);
+        world.create(null);
+        return world;
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.dionthorn.isekairpg.worlds;
+
+import org.dionthorn.isekairpg.Engine;
+import org.dionthorn.isekairpg.FxThread;
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.characters.NPC;
+import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GenerationTest {
+
+    private static final long SEED = 42L;
+
+    @Test
+    void parallelGenerationMatchesSequentialGeneration() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4); // split the work even on a single core
+        try {
+            FxThread.run(() -> assertEquals(generate(null), generate(pool)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Will start a game in a SMALL World and describe every Area then every NPC
+     */
+    private static List<String> generate(ForkJoinPool pool) {
+        GameState gameState = Engine.getGameState();
+        RandomStreams.reseed(7);
+        gameState.createWorld(World.Size.SMALL, new Player(Dice.d8), SEED, pool);
+        List<String> described = new ArrayList<>();
+        for(Region[] regionRow: gameState.getWorld().getRegions()) {
+            for(Region region: regionRow) {
+                for(Area[] areaRow: region.getAreas()) {
+                    for(Area area: areaRow) {
+                        described.add(String.join(" ",
+                                Long.toString(LocationId.of(area)), area.getSetting().toString(), area.getName(),
+                                Arrays.toString(area.toRecord().placeTypes()),
+                                new TreeMap<>(area.toRecord().placeNames()).toString()
+                        ));
+                    }
+                }
+            }
+        }
+        for(NPC npc: gameState.getNPCs()) {
+            described.add(String.join(" ",
+                    npc.getFirstName(), npc.getLastName(), "profession " + npc.getProfession(),
+                    "home " + ((npc.getHome() == null) ? "none" : npc.getHome().id()),
+                    "at " + ((npc.getCurrentPlace() == null) ? "none" : npc.getCurrentPlace().id())
+            ));
+        }
+        described.add("player at " + gameState.getPlayer().getCurrentPlace().id());
+        return described;
+    }
+
+}
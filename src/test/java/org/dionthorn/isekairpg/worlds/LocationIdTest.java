@@ -0,0 +1,77 @@
+package org.dionthorn.isekairpg.worlds;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationIdTest {
+
+    private static final int MAX = LocationId.MAX_COORDINATE;
+
+    @Test
+    void coordinatesSurviveAPackAtTheirLimits() {
+        int[][] coordinates = {
+                {0, 0, 0, 0, 0, 0}, {MAX, MAX, MAX, MAX, MAX, MAX},
+                {MAX, 0, MAX, 0, MAX, 0}, {0, MAX, 0, MAX, 0, MAX}, {1, 2, 3, 4, 5, 6}
+        };
+        for(int[] c: coordinates) {
+            long id = LocationId.of(c[0], c[1], c[2], c[3], c[4], c[5]);
+            assertTrue(id >= 0, "an ID must never collide with NONE or sort below 0");
+            assertNotEquals(LocationId.NONE, id);
+            assertArrayEquals(c, new int[] {
+                    LocationId.getRegionX(id), LocationId.getRegionY(id), LocationId.getAreaX(id),
+                    LocationId.getAreaY(id), LocationId.getPlaceX(id), LocationId.getPlaceY(id)
+            });
+        }
+    }
+
+    @Test
+    void sortedIdsAreInWorldOrder() {
+        // listed in World order, row major from Region down to Place, y before x at every level
+        long[] ordered = {
+                LocationId.of(0, 0, 0, 0, 0, 0), LocationId.of(0, 0, 0, 0, MAX, 0),
+                LocationId.of(0, 0, 0, 0, 0, 1), LocationId.of(0, 0, MAX, 0, MAX, MAX),
+                LocationId.of(0, 0, 0, 1, 0, 0), LocationId.of(MAX, 0, MAX, MAX, MAX, MAX),
+                LocationId.of(0, 1, 0, 0, 0, 0), LocationId.of(MAX, MAX, MAX, MAX, MAX, MAX)
+        };
+        long[] sorted = ordered.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(ordered, sorted);
+    }
+
+    @Test
+    void areaAndRegionIdsAreTheirFirstPlace() {
+        long id = LocationId.of(MAX, 7, 3, MAX, MAX, 2);
+        assertEquals(LocationId.of(MAX, 7, 3, MAX, 0, 0), LocationId.toArea(id));
+        assertEquals(LocationId.of(MAX, 7, 0, 0, 0, 0), LocationId.toRegion(id));
+        assertEquals(LocationId.toRegion(id), LocationId.toRegion(LocationId.toArea(id)));
+        assertEquals(LocationId.of(MAX, 7, 3, MAX, 0, MAX), LocationId.withPlace(id, 0, MAX));
+        assertEquals(LocationId.of(MAX, 7, 0, 0, MAX, 2), LocationId.withArea(id, 0, 0));
+    }
+
+    @Test
+    void offsetsStopAtTheEdge() {
+        int size = 4;
+        long corner = LocationId.of(0, 0, 0, 0, 0, 0);
+        long far = LocationId.of(size - 1, size - 1, size - 1, size - 1, size - 1, size - 1);
+        assertEquals(LocationId.NONE, LocationId.offsetPlace(corner, -1, 0, size));
+        assertEquals(LocationId.NONE, LocationId.offsetPlace(corner, 0, -1, size));
+        assertEquals(LocationId.NONE, LocationId.offsetPlace(far, 1, 0, size));
+        assertEquals(LocationId.NONE, LocationId.offsetArea(far, 0, 1, size));
+        assertEquals(LocationId.NONE, LocationId.offsetRegion(far, 1, 0, size));
+        assertEquals(LocationId.NONE, LocationId.offsetRegion(corner, 0, -1, size));
+        assertEquals(LocationId.of(0, 0, 0, 0, 1, 0), LocationId.offsetPlace(corner, 1, 0, size));
+        // stepping Areas or Regions lands on the first Place of the neighbor
+        assertEquals(LocationId.of(3, 3, 2, 3, 0, 0), LocationId.offsetArea(far, -1, 0, size));
+        assertEquals(LocationId.of(3, 2, 0, 0, 0, 0), LocationId.offsetRegion(far, 0, -1, size));
+        // a step at the largest coordinate never carries into the next field
+        long max = LocationId.of(0, 0, 0, 0, MAX, 0);
+        assertEquals(LocationId.NONE, LocationId.offsetPlace(max, 1, 0, MAX + 1));
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.dionthorn.isekairpg.worlds;
+
+import org.dionthorn.isekairpg.FxThread;
+import org.dionthorn.isekairpg.characters.AbstractCharacter;
+import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.utilities.Dice;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class OccupancyIndexTest {
+
+    private static final int CHARACTERS = 400;
+    private static final int PLACES = 1500; // more than the initial table holds so it resizes
+
+    @Test
+    void swapRemoveKeepsEveryOccupantInItsSlot() throws Exception {
+        FxThread.run(() -> {
+            OccupancyIndex index = new OccupancyIndex();
+            long place = LocationId.of(1, 2, 3, 4, 5, 6);
+            Player[] players = players(4);
+            for(Player player: players) {
+                index.add(place, player);
+            }
+            index.remove(place, players[1]);
+            // the last occupant takes the freed slot
+            assertArrayEquals(new AbstractCharacter[] {players[0], players[3], players[2]}, index.copy(place));
+            assertEquals(1, players[3].getOccupancySlot());
+            assertEquals(-1, players[1].getOccupancySlot());
+            index.remove(place, players[1]); // already gone
+            assertEquals(3, index.count(place));
+            index.remove(place, players[2]); // the last slot leaves without a swap
+            assertArrayEquals(new AbstractCharacter[] {players[0], players[3]}, index.copy(place));
+            index.remove(place, players[0]);
+            index.remove(place, players[3]);
+            assertEquals(0, index.count(place));
+            assertEquals(0, index.size());
+        });
+    }
+
+    @Test
+    void deletesShiftProbeRunsBackInsteadOfLosingEntries() throws Exception {
+        FxThread.run(() -> {
+            OccupancyIndex index = new OccupancyIndex();
+            Player[] players = players(CHARACTERS);
+            // neighboring Places of a few Areas, the IDs differ only in their low bits like real ones
+            long[] places = new long[PLACES];
+            for(int i = 0; i < PLACES; i++) {
+                places[i] = LocationId.of(0, 0, i / 100 % 10, i / 1000, i % 10, i / 10 % 10);
+            }
+            SplittableRandom random = new SplittableRandom(42);
+            HashMap<Player, Long> at = new HashMap<>();
+            for(int step = 0; step < 20_000; step++) {
+                Player player = players[random.nextInt(players.length)];
+                Long from = at.remove(player);
+                if(from != null) {
+                    index.remove(from, player);
+                }
+                if(random.nextInt(4) != 0) {
+                    long to = places[random.nextInt((step < 10_000) ? PLACES : 40)]; // then crowd a few Places
+                    index.add(to, player);
+                    at.put(player, to);
+                }
+                if(step % 500 == 0) {
+                    check(index, places, at);
+                }
+            }
+            check(index, places, at);
+            for(Map.Entry<Player, Long> entry: new ArrayList<>(at.entrySet())) {
+                index.remove(entry.getValue(), entry.getKey());
+            }
+            assertEquals(0, index.size());
+            for(long place: places) {
+                assertEquals(0, index.count(place));
+            }
+        });
+    }
+
+    /**
+     * Will check every Place holds exactly the characters the model put there, each in the slot it remembers
+     */
+    private static void check(OccupancyIndex index, long[] places, HashMap<Player, Long> at) {
+        HashMap<Long, HashSet<AbstractCharacter>> expected = new HashMap<>();
+        for(Map.Entry<Player, Long> entry: at.entrySet()) {
+            expected.computeIfAbsent(entry.getValue(), key -> new HashSet<>()).add(entry.getKey());
+        }
+        assertEquals(expected.size(), index.size());
+        for(long place: places) {
+            AbstractCharacter[] occupants = index.copy(place);
+            assertEquals(expected.getOrDefault(place, new HashSet<>()), new HashSet<>(Arrays.asList(occupants)));
+            assertEquals(occupants.length, index.count(place));
+            for(int slot = 0; slot < occupants.length; slot++) {
+                assertEquals(slot, occupants[slot].getOccupancySlot());
+                assertSame(occupants[slot], index.get(place, slot));
+            }
+        }
+    }
+
+    private static Player[] players(int count) {
+        List<Player> players = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            players.add(new Player(Dice.d8));
+        }
+        return players.toArray(new Player[0]);
+    }
+
+}
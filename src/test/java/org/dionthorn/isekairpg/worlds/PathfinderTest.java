@@ -0,0 +1,89 @@
+package org.dionthorn.isekairpg.worlds;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathfinderTest {
+
+    private static final int REGION_SIZE = 24; // wider than a leg so long routes are split
+    private static final int AREA_SIZE = 8;
+
+    @Test
+    void routesReachTheDestinationTheShortestWay() {
+        Pathfinder pathfinder = new Pathfinder(REGION_SIZE, AREA_SIZE);
+        SplittableRandom random = new SplittableRandom(42);
+        for(int i = 0; i < 200; i++) {
+            // within a few Regions so the whole route is one leg
+            long from = randomArea(random, 4);
+            long to = randomArea(random, 4);
+            byte[] route = pathfinder.route(from, to);
+            assertEquals(to, walk(from, route), LocationId.toString(from) + " to " + LocationId.toString(to));
+            assertEquals(distance(from, to), route.length, "every Area costs the same so no step is wasted");
+        }
+        long area = LocationId.of(3, 3, 2, 2, 0, 0);
+        assertEquals(0, pathfinder.route(area, area).length);
+    }
+
+    @Test
+    void longRoutesArriveOneLegAtATime() {
+        Pathfinder pathfinder = new Pathfinder(REGION_SIZE, AREA_SIZE);
+        long from = LocationId.of(0, 1, 3, 5, 0, 0);
+        long to = LocationId.of(REGION_SIZE - 1, REGION_SIZE - 2, 6, 0, 0, 0);
+        long at = from;
+        int steps = 0;
+        int legs = 0;
+        while(at != to) {
+            byte[] route = pathfinder.route(at, to);
+            assertTrue(route.length > 0, "stuck at " + LocationId.toString(at));
+            at = walk(at, route);
+            steps += route.length;
+            legs++;
+        }
+        assertTrue(legs > 1, "a route across the World is walked in legs");
+        assertEquals(distance(from, to), steps);
+    }
+
+    @Test
+    void routesAreCachedAndTheSameOnEveryPathfinder() {
+        Pathfinder pathfinder = new Pathfinder(REGION_SIZE, AREA_SIZE);
+        long from = LocationId.of(1, 2, 7, 0, 0, 0);
+        long to = LocationId.of(4, 0, 0, 7, 0, 0);
+        byte[] route = pathfinder.route(from, to);
+        // any Place of the two Areas shares the route of the Areas
+        assertSame(route, pathfinder.route(LocationId.withPlace(from, 3, 1), LocationId.withPlace(to, 2, 2)));
+        assertArrayEquals(route, new Pathfinder(REGION_SIZE, AREA_SIZE).route(from, to));
+    }
+
+    /**
+     * Will follow the directions of a route from an Area across Region borders
+     */
+    private static long walk(long from, byte[] route) {
+        int x = LocationId.getRegionX(from) * AREA_SIZE + LocationId.getAreaX(from);
+        int y = LocationId.getRegionY(from) * AREA_SIZE + LocationId.getAreaY(from);
+        for(byte direction: route) {
+            x += Pathfinder.directionX(direction);
+            y += Pathfinder.directionY(direction);
+            assertTrue(x >= 0 && y >= 0 && x < REGION_SIZE * AREA_SIZE && y < REGION_SIZE * AREA_SIZE);
+        }
+        return LocationId.of(x / AREA_SIZE, y / AREA_SIZE, x % AREA_SIZE, y % AREA_SIZE, 0, 0);
+    }
+
+    private static int distance(long from, long to) {
+        return Math.abs(LocationId.getRegionX(to) * AREA_SIZE + LocationId.getAreaX(to)
+                - LocationId.getRegionX(from) * AREA_SIZE - LocationId.getAreaX(from))
+                + Math.abs(LocationId.getRegionY(to) * AREA_SIZE + LocationId.getAreaY(to)
+                - LocationId.getRegionY(from) * AREA_SIZE - LocationId.getAreaY(from));
+    }
+
+    private static long randomArea(SplittableRandom random, int regions) {
+        return LocationId.of(random.nextInt(regions), random.nextInt(regions),
+                random.nextInt(AREA_SIZE), random.nextInt(AREA_SIZE), 0, 0);
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.dionthorn.isekairpg.worlds;
+
+import org.dionthorn.isekairpg.Engine;
+import org.dionthorn.isekairpg.FxThread;
+import org.dionthorn.isekairpg.GameState;
+import org.dionthorn.isekairpg.characters.NPC;
+import org.dionthorn.isekairpg.characters.Player;
+import org.dionthorn.isekairpg.utilities.Dice;
+import org.dionthorn.isekairpg.utilities.RandomStreams;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionEvictionTest {
+
+    private static final long SEED = 42L;
+
+    @Test
+    void aChangedRegionComesBackFromTheSpillFile() throws Exception {
+        FxThread.run(() -> {
+            GameState gameState = Engine.getGameState();
+            RandomStreams.reseed(7);
+            gameState.createWorld(World.Size.VERY_SMALL, new Player(Dice.d8), SEED);
+            World world = gameState.getWorld();
+            NPC npc = gameState.getNPCs().get(0);
+            long home = npc.getHomeId();
+            Region region = world.resolveRegion(home);
+            change(world, home);
+            List<String> before = describe(region);
+            WeakReference<Area> homeArea = new WeakReference<>(world.resolveArea(home));
+
+            world.setMemoryBudget(0);
+            assertFalse(region.isResident());
+            assertTrue(world.getDirtyRegionStore().size() > 0, "the changed Area is spilled when evicted");
+            // the NPC living there must not keep its Area in memory
+            for(int gc = 0; gc < 20 && homeArea.get() != null; gc++) {
+                System.gc();
+            }
+            assertNull(homeArea.get(), "an evicted Area is only held by the characters Place IDs");
+
+            assertEquals(before, describe(region)); // materialized again from its seed and the spill file
+            assertEquals(home, npc.getHome().id());
+            assertEquals("Spilled Place", npc.getHome().getName());
+            world.setMemoryBudget(World.UNLIMITED_BUDGET);
+        });
+    }
+
+    /**
+     * Will rename the home and change the type of the Place next to it
+     */
+    private static void change(World world, long home) {
+        world.resolve(home).setName("Spilled Place");
+        int placeSize = world.resolveArea(home).getPlaceSize();
+        long next = LocationId.withPlace(home, (LocationId.getPlaceX(home) + 1) % placeSize, LocationId.getPlaceY(home));
+        world.resolve(next).setType(Place.Type.GRAVEYARD);
+    }
+
+    /**
+     * Will describe every Area of the Region
+     */
+    private static List<String> describe(Region region) {
+        List<String> described = new ArrayList<>();
+        for(Area[] areaRow: region.getAreas()) {
+            for(Area area: areaRow) {
+                described.add(String.join(" ",
+                        Long.toString(LocationId.of(area)), area.getSetting().toString(), area.getName(),
+                        Arrays.toString(area.toRecord().placeTypes()),
+                        new TreeMap<>(area.toRecord().placeNames()).toString()
+                ));
+            }
+        }
+        return described;
+    }
+
+}